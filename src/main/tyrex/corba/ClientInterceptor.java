@@ -55,6 +55,29 @@ public class ClientInterceptor
 	private org.omg.PortableInterceptor.ORBInitInfo info;
 	private int t_slot;
 	
+	/**
+	 * The maximum number of encoded propagation contexts held by the interceptor
+	 */
+	private static final int MAX_ENCODED = 128;
+	
+	/**
+	 * The codec used to encode propagation contexts, created on first use
+	 */
+	private org.omg.IOP.Codec codec;
+	
+	/**
+	 * The encoded propagation contexts of recent transactions, keyed by
+	 * transaction identifier and timeout. The least recently used context
+	 * is discarded when the map is full.
+	 */
+	private final java.util.LinkedHashMap encoded = new java.util.LinkedHashMap( 16, 0.75f, true )
+	{
+		protected boolean removeEldestEntry( java.util.Map.Entry eldest )
+		{
+			return size() > MAX_ENCODED;
+		}
+	};
+	
 	/**
 	 * Constructor which initializes the ORBInitInfo and the Sender reference
 	 */
@@ -89,27 +112,69 @@ public class ClientInterceptor
 		
 		org.omg.IOP.ServiceContext serviceCtx = new org.omg.IOP.ServiceContext();
 		serviceCtx.context_id = org.omg.IOP.TransactionService.value;
+		serviceCtx.context_data = encode( pctx );
+		
+		ri.add_request_service_context(serviceCtx, true);
+	}
+	
+	/**
+	 * Returns the encoded propagation context. The propagation context of a
+	 * transaction is only encoded once, and reused by all the requests made
+	 * in that transaction until its timeout changes.
+	 * @param pctx the propagation context
+	 * @return the encoded propagation context
+	 */
+	private byte[] encode( org.omg.CosTransactions.PropagationContext pctx )
+	{
+		ContextKey key = new ContextKey( pctx );
+		byte[] data;
+		
+		synchronized ( encoded )
+		{
+			data = ( byte[] ) encoded.get( key );
+		}
+		if ( data != null )
+			return data;
 		
 		try
 		{
-			org.omg.IOP.CodecFactory codecFactory = info.codec_factory();
-			
-			org.omg.IOP.Encoding encoding = new org.omg.IOP.Encoding(org.omg.IOP.ENCODING_CDR_ENCAPS.value, new Integer(1).byteValue(), new Integer(2).byteValue());
-			org.omg.IOP.Codec codec = codecFactory.create_codec(encoding);
 			org.omg.CORBA.Any pany = org.omg.CORBA.ORB.init().create_any();
 			org.omg.CosTransactions.PropagationContextHelper.insert(pany, pctx);
-			serviceCtx.context_data = codec.encode_value(pany);
-		}
-		catch (org.omg.IOP.CodecFactoryPackage.UnknownEncoding ue) 
-		{
-			fatal("TransactionalClientInterceptor", "Unknown Encoding");
+			data = getCodec().encode_value(pany);
 		}
 		catch (org.omg.IOP.CodecPackage.InvalidTypeForEncoding it) 
 		{
 			fatal("TransactionalClientInterceptor", "Invalid Type for encoding");
 		}
 		
-		ri.add_request_service_context(serviceCtx, true);
+		synchronized ( encoded )
+		{
+			encoded.put( key, data );
+		}
+		return data;
+	}
+	
+	/**
+	 * Returns the codec used to encode propagation contexts. The codec is
+	 * created once and used for all requests.
+	 */
+	private org.omg.IOP.Codec getCodec()
+	{
+		if ( codec == null )
+		{
+			try
+			{
+				org.omg.IOP.CodecFactory codecFactory = info.codec_factory();
+				
+				org.omg.IOP.Encoding encoding = new org.omg.IOP.Encoding(org.omg.IOP.ENCODING_CDR_ENCAPS.value, (byte) 1, (byte) 2);
+				codec = codecFactory.create_codec(encoding);
+			}
+			catch (org.omg.IOP.CodecFactoryPackage.UnknownEncoding ue) 
+			{
+				fatal("TransactionalClientInterceptor", "Unknown Encoding");
+			}
+		}
+		return codec;
 	}
 
 	/**
@@ -163,4 +228,45 @@ public class ClientInterceptor
             tyrex.util.logging.Logger.ots.warn(from + ": " + msg );
             throw new org.omg.CORBA.INTERNAL(msg);
         }
+	
+	/**
+	 * Identifies the propagation context of a transaction. The propagation
+	 * context does not change for the duration of the transaction, except
+	 * for its timeout.
+	 */
+	private static final class ContextKey
+	{
+		private final int formatID;
+		private final int bqual_length;
+		private final byte[] tid;
+		private final int timeout;
+		private final int hashCode;
+		
+		ContextKey( org.omg.CosTransactions.PropagationContext pctx )
+		{
+			formatID = pctx.current.otid.formatID;
+			bqual_length = pctx.current.otid.bqual_length;
+			tid = pctx.current.otid.tid;
+			timeout = pctx.timeout;
+			
+			int hash = formatID ^ timeout;
+			for ( int i = 0; i < tid.length; i++ )
+				hash = hash * 31 + tid[i];
+			hashCode = hash;
+		}
+		
+		public int hashCode()
+		{
+			return hashCode;
+		}
+		
+		public boolean equals( Object object )
+		{
+			if ( ! ( object instanceof ContextKey ) )
+				return false;
+			ContextKey key = ( ContextKey ) object;
+			return key.formatID == formatID && key.bqual_length == bqual_length &&
+			       key.timeout == timeout && java.util.Arrays.equals( key.tid, tid );
+		}
+	}
 }
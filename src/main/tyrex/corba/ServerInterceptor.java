@@ -55,6 +55,11 @@ public class ServerInterceptor
  	private org.omg.PortableInterceptor.ORBInitInfo info;
 	private int t_slot;
 	
+	/**
+	 * The codec used to decode propagation contexts, created on first use
+	 */
+	private org.omg.IOP.Codec codec;
+	
 	/**
 	 * Constructor which initializes the ORBInitInfo and the slot reference
 	 */
@@ -82,9 +87,12 @@ public class ServerInterceptor
 		// save the propagation context in the PICurrent for TS Use
 		try
 		{
-			org.omg.IOP.CodecFactory codecFactory = info.codec_factory();
-			org.omg.IOP.Encoding encoding = new org.omg.IOP.Encoding(org.omg.IOP.ENCODING_CDR_ENCAPS.value, new Integer(1).byteValue(), new Integer(2).byteValue());
-			org.omg.IOP.Codec codec = codecFactory.create_codec(encoding);
+			if ( codec == null )
+			{
+				org.omg.IOP.CodecFactory codecFactory = info.codec_factory();
+				org.omg.IOP.Encoding encoding = new org.omg.IOP.Encoding(org.omg.IOP.ENCODING_CDR_ENCAPS.value, (byte) 1, (byte) 2);
+				codec = codecFactory.create_codec(encoding);
+			}
 			
 			org.omg.CORBA.Any any = codec.decode_value(serviceCtx.context_data, org.omg.CosTransactions.PropagationContextHelper.type());
 			
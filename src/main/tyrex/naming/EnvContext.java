@@ -49,6 +49,7 @@ package tyrex.naming;
 
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Enumeration;
 import java.util.StringTokenizer;
@@ -64,6 +65,8 @@ import javax.naming.CompositeName;
 import javax.naming.NotContextException;
 import javax.naming.NameNotFoundException;
 import javax.naming.OperationNotSupportedException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
 import javax.naming.spi.NamingManager;
 import tyrex.tm.impl.ThreadContext;
 
@@ -88,7 +91,7 @@ import tyrex.tm.impl.ThreadContext;
  * @version $Revision: 1.9 $ $Date: 2001/03/13 20:59:02 $
  */
 public final class EnvContext
-    implements Context, Serializable
+    implements EventContext, Serializable
 {
 
 
@@ -115,6 +118,24 @@ public final class EnvContext
     private String                   _path;
 
 
+    /**
+     * True if this context is a view returned from looking up a
+     * subcontext. Views are shared by all callers that look up the
+     * same bindings with the same environment, so their environment
+     * cannot be changed and closing them has no effect. Naming
+     * listeners registered through a view are kept until they are
+     * removed.
+     */
+    private final boolean            _view;
+
+
+    /**
+     * The bindings with which naming listeners have been registered
+     * through this context. Created when the first listener is added.
+     */
+    private transient ArrayList      _listeners;
+
+
     /**
      * Construct a new context for the root path.
      */
@@ -134,6 +155,7 @@ public final class EnvContext
         } else
             env = new Hashtable();
         _path = null;
+        _view = false;
     }
 
 
@@ -142,11 +164,23 @@ public final class EnvContext
      * environment attributes.
      */
     EnvContext( MemoryBinding bindings, Hashtable env )
+    {
+        this( bindings, env, false );
+    }
+
+
+    /**
+     * Construct a new context with the specified bindings and
+     * environment attributes. If <tt>view</tt> is true, the
+     * context's environment cannot be changed.
+     */
+    private EnvContext( MemoryBinding bindings, Hashtable env, boolean view )
     {
         Enumeration enum;
         String      name;
         
         _bindings = bindings;
+        _view = view;
         _path = _bindings.getName();
         if ( _path.length() == 0 )
             _path = null;
@@ -172,7 +206,8 @@ public final class EnvContext
     public Object lookup( String name )
         throws NamingException
     {
-        Object object;
+        Object                     object;
+        MemoryBinding.ResolvedName resolved;
 
         // This is a simple case optimization of the composite name lookup.
         // It only applies if we're looking for a simple name that is
@@ -196,11 +231,11 @@ public final class EnvContext
                 // If we found a subcontext, we must return a new context
                 // to represent it and keep the environment set for this
                 // context (e.g. read-only).
-                return new EnvContext( (MemoryBinding) object, _env );
+                return getView( (MemoryBinding) object );
             } else if ( object instanceof Reference ) {
                 // Reconstruct a reference.
                 try {
-                    return NamingManager.getObjectInstance( object, new CompositeName( name ), this, _env );
+                    return getObjectInstance( getBindings(), name, (Reference) object );
                 } catch ( Exception except ) {
                     throw new NamingException( except.toString() );
                 }
@@ -208,8 +243,25 @@ public final class EnvContext
                 // Simplest case, just return the bound object.
                 return object;
             }
-        } else
+        }
+
+        // Composite names that are reachable through memory bindings
+        // are resolved once and cached by the bindings, avoiding the
+        // need to parse the name and walk each subcontext.
+        resolved = getBindings().resolve( name );
+        if ( resolved == null || resolved._value instanceof LinkRef )
             return internalLookup( new CompositeName( name ), true );
+        object = resolved._value;
+        if ( object instanceof MemoryBinding )
+            return getView( (MemoryBinding) object );
+        else if ( object instanceof Reference ) {
+            try {
+                return getObjectInstance( resolved._bindings, resolved._name, (Reference) object );
+            } catch ( Exception except ) {
+                throw new NamingException( except.getMessage() );
+            }
+        } else
+            return object;
     }
 
 
@@ -257,7 +309,7 @@ public final class EnvContext
             while ( ! name.isEmpty() && name.get( 0 ).length() == 0 )
                 name = name.getSuffix( 1 );
             if ( name.isEmpty() )
-                return new EnvContext( bindings, _env );
+                return getView( bindings );
             
             // Simple is the first part of the name for a composite name,
             // for looking up the subcontext, or the last part of the
@@ -302,12 +354,11 @@ public final class EnvContext
                     // If we found a subcontext, we must return a new context
                     // to represent it and keep the environment set for this
                     // context (e.g. read-only).
-                    return new EnvContext( (MemoryBinding) object, _env );
+                    return getView( (MemoryBinding) object );
                 } else if ( object instanceof Reference ) {
                     // Reconstruct a reference
                     try {
-                        return NamingManager.getObjectInstance( object, name,
-                                                                new EnvContext( bindings, _env ), _env );
+                        return getObjectInstance( bindings, simple, (Reference) object );
                     } catch ( Exception except ) {
                         throw new NamingException( except.getMessage() );
                     }
@@ -320,6 +371,57 @@ public final class EnvContext
     }
 
 
+    /**
+     * Creates the object for a reference bound in the specified
+     * bindings. If the reference factory implements {@link
+     * SharedObjectFactory}, the object is created once and returned
+     * from all subsequent lookups, until the name is rebound.
+     *
+     * @param bindings The bindings holding the reference
+     * @param name The name of the reference in these bindings
+     * @param reference The reference
+     * @return The object created from the reference
+     * @throws Exception The object factory reported an error
+     */
+    private Object getObjectInstance( MemoryBinding bindings, String name, Reference reference )
+        throws Exception
+    {
+        Object object;
+
+        object = bindings.getShared( name, reference );
+        if ( object != null )
+            return object;
+        object = NamingManager.getObjectInstance( reference, new CompositeName( name ),
+                                                  bindings == _bindings ? this : getView( bindings ),
+                                                  _env );
+        bindings.setShared( name, reference, object );
+        return object;
+    }
+
+
+    /**
+     * Returns a context for the specified bindings with the same
+     * environment as this context. The context is an immutable view
+     * that is created once and held by the bindings, so repeated
+     * lookups of a subcontext return the same context.
+     *
+     * @param bindings The bindings
+     * @return A context view of the bindings
+     */
+    private Context getView( MemoryBinding bindings )
+    {
+        Context       context;
+        EnvContext    view;
+
+        context = bindings.getView( EnvContext.class, _env );
+        if ( context != null )
+            return context;
+        view = new EnvContext( bindings, _env, true );
+        bindings.addView( view, view._env );
+        return view;
+    }
+
+
     //---------//
     // Binding //
     //---------//
@@ -625,31 +727,95 @@ public final class EnvContext
     }
     
 
+    //--------//
+    // Events //
+    //--------//
+
+
+    public void addNamingListener( String target, int scope, NamingListener listener )
+        throws NamingException
+    {
+        addNamingListener( new CompositeName( target ), scope, listener );
+    }
+
+
+    public void addNamingListener( Name target, int scope, NamingListener listener )
+        throws NamingException
+    {
+        MemoryBinding bindings;
+
+        bindings = getBindings().addListener( target, scope, listener, this );
+        synchronized ( this ) {
+            if ( _listeners == null )
+                _listeners = new ArrayList();
+            if ( ! _listeners.contains( bindings ) )
+                _listeners.add( bindings );
+        }
+    }
+
+
+    public synchronized void removeNamingListener( NamingListener listener )
+    {
+        MemoryBinding bindings;
+
+        if ( _listeners == null )
+            return;
+        for ( int i = _listeners.size() ; i-- > 0 ; ) {
+            bindings = (MemoryBinding) _listeners.get( i );
+            if ( ! bindings.removeListener( listener, this ) )
+                _listeners.remove( i );
+        }
+    }
+
+
+    public boolean targetMustExist()
+    {
+        return true;
+    }
+
+
     //-------------//
     // Environment //
     //-------------//
 
 
     public Object addToEnvironment( String name, Object value )
+        throws NamingException
     {
+        if ( _view )
+            throw new OperationNotSupportedException( "Context environment cannot be changed" );
         return _env.put( name, value );
     }
     
     
     public Hashtable getEnvironment()
     {
+        if ( _view )
+            return (Hashtable) _env.clone();
         return _env;
     }
     
     
     public Object removeFromEnvironment( String name )
+        throws NamingException
     {
+        if ( _view )
+            throw new OperationNotSupportedException( "Context environment cannot be changed" );
         return _env.remove( name );
     }
     
     
     public void close()
     {
+        if ( _view )
+            return;
+        synchronized ( this ) {
+            if ( _listeners != null ) {
+                for ( int i = _listeners.size() ; i-- > 0 ; )
+                    ( (MemoryBinding) _listeners.get( i ) ).removeListeners( this );
+                _listeners = null;
+            }
+        }
         _env.clear();
     }
     
@@ -675,7 +841,6 @@ public final class EnvContext
     private MemoryBinding getBindings()
         throws NamingException
     {
-        ThreadContext       context;
         MemoryBinding       bindings;
         StringTokenizer     tokenizer;
         String              token;
@@ -683,8 +848,7 @@ public final class EnvContext
 
         if ( _bindings != null )
             return _bindings;
-        context = ThreadContext.getThreadContext();
-        bindings = context.getMemoryBinding();
+        bindings = ThreadContext.getCurrentMemoryBinding();
         if ( _path != null ) {
             tokenizer = new StringTokenizer( _path, MemoryContext.NameSeparator );
             while ( tokenizer.hasMoreTokens() ) {
@@ -48,7 +48,19 @@ package tyrex.naming;
 
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.NoSuchElementException;
+import javax.naming.Name;
+import javax.naming.NameNotFoundException;
+import javax.naming.NotContextException;
+import javax.naming.InvalidNameException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingListener;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.ObjectChangeListener;
 import javax.naming.Reference;
 import javax.naming.NamingEnumeration;
 import javax.naming.NameClassPair;
@@ -71,7 +83,27 @@ import javax.naming.spi.NamingManager;
  * MemoryBinding}, with each sub-context (child node) or bound
  * value represented by a name/value pair.
  * <p>
- * This object is thread-safe.
+ * This object is thread-safe. Lookups do not synchronize: entries
+ * are replaced rather than modified once added to the hash table,
+ * and the table is replaced rather than resized in place, so
+ * {@link #get get} can walk the table while it is being changed.
+ * Changes to the bindings synchronize on this object.
+ * <p>
+ * Composite names looked up from this binding are resolved once
+ * and cached, see {@link #resolve resolve}. The cache is discarded
+ * whenever this binding or any binding underneath it changes.
+ * <p>
+ * Objects created from references whose factory implements {@link
+ * SharedObjectFactory} are held by the binding entry, see {@link
+ * #getShared getShared}.
+ * <p>
+ * Contexts returned from looking up this binding are immutable
+ * views that are created once for each environment and held by the
+ * binding, see {@link #getView getView}.
+ * <p>
+ * Naming listeners registered with a context are held by the
+ * binding they listen to. Changes to the binding are reported to
+ * them from a background thread, see {@link NamingEventDispatcher}.
  *
  * @author <a href="arkin@intalio.com">Assaf Arkin</a>
  * @version $Revision: 1.11 $ $Date: 2001/09/17 16:45:09 $
@@ -87,9 +119,11 @@ public final class MemoryBinding
 
 
     /**
-     * The maximum capacity for the hashtable.
+     * The maximum capacity for the hashtable. The hashtable keeps
+     * growing with the number of bindings, so lookups in large
+     * contexts do not degrade into walking long chains.
      */
-    public static final int   MAXIMUM_CAPACITY    = 191;
+    public static final int   MAXIMUM_CAPACITY    = 1 << 30;
 
 
     /**
@@ -98,6 +132,18 @@ public final class MemoryBinding
     public static final float LOAD_FACTOR         = 0.75f;
 
 
+    /**
+     * The maximum number of composite names cached by a binding.
+     */
+    public static final int   MAXIMUM_RESOLVED    = 256;
+
+
+    /**
+     * The maximum number of context views held by a binding.
+     */
+    public static final int   MAXIMUM_VIEWS       = 4;
+
+
 
     /**
      * The path of this binding.
@@ -114,7 +160,7 @@ public final class MemoryBinding
     /**
      * The number of bindings in the hash table.
      */
-    private int              _count;
+    private volatile int     _count;
 
 
     /**
@@ -124,9 +170,52 @@ public final class MemoryBinding
 
 
     /**
-     * The hashtable of memory binding entries.
+     * The hashtable of memory binding entries. Written after every
+     * change to the table, so that reading it first makes the change
+     * visible to lookups that do not synchronize.
      */
-    private BindingEntry[]   _hashTable;
+    private volatile BindingEntry[]   _hashTable;
+
+
+    /**
+     * The version of this binding. Incremented after every change
+     * to this binding or any binding underneath it.
+     */
+    private volatile int     _version;
+
+
+    /**
+     * Composite names resolved from this binding. Replaced rather
+     * than modified, and only valid for the version it records.
+     */
+    private volatile ResolvedCache    _resolved;
+
+
+    /**
+     * Context views of this binding. Replaced rather than modified.
+     */
+    private volatile ContextView[]    _views = new ContextView[ 0 ];
+
+
+    /**
+     * Lock used to increment the version of bindings, so writers
+     * do not lock bindings above the one they change.
+     */
+    private static final Object       _versionLock = new Object();
+
+
+    /**
+     * Naming listeners registered with this binding. Replaced rather
+     * than modified.
+     */
+    private volatile ListenerEntry[]  _listeners = new ListenerEntry[ 0 ];
+
+
+    /**
+     * The number of naming listeners registered with all bindings.
+     * Changes do not look for listeners if there are none.
+     */
+    private static volatile int       _listenerCount;
 
 
     public MemoryBinding()
@@ -143,182 +232,585 @@ public final class MemoryBinding
     }
 
 
-    public synchronized Object get( String name )
+    public Object get( String name )
     {
-        int          hashCode;
-        int          index;
         BindingEntry entry;
 
-        if ( name == null )
-            throw new IllegalArgumentException( "Argument name is null" );
-        hashCode = name.hashCode();
-        index = ( hashCode & 0x7FFFFFFF ) % _hashTable.length;
-        entry = _hashTable[ index ];
-        while ( entry != null ) {
-            if ( entry._hashCode == hashCode && entry._name.equals( name ) )
-                return entry._value;
-            entry = entry._next;
-        }
-        return null;
+        entry = getEntry( name );
+        if ( entry == null )
+            return null;
+        return entry._value;
     }
 
 
-    public synchronized void put( String name, Object value )
+    /**
+     * Returns the object created from a reference bound to the
+     * specified name. Returns null if no object has been recorded
+     * for this reference, or the reference is no longer bound to
+     * this name.
+     *
+     * @param name The name
+     * @param reference The reference bound to that name
+     * @return The object created from the reference, or null
+     * @see #setShared
+     */
+    Object getShared( String name, Reference reference )
+    {
+        BindingEntry entry;
+        SharedObject shared;
+
+        entry = getEntry( name );
+        if ( entry == null )
+            return null;
+        shared = entry._shared;
+        if ( shared == null || shared._reference != reference )
+            return null;
+        return shared._object;
+    }
+
+
+    /**
+     * Records the object created from a reference bound to the
+     * specified name. The object is only recorded if the factory
+     * named by the reference implements {@link SharedObjectFactory},
+     * and is discarded when the name is rebound or unbound.
+     *
+     * @param name The name
+     * @param reference The reference bound to that name
+     * @param object The object created from the reference
+     */
+    void setShared( String name, Reference reference, Object object )
     {
-        int          hashCode;
-        int          index;
         BindingEntry entry;
-        BindingEntry next;
+        SharedObject shared;
+
+        entry = getEntry( name );
+        if ( entry == null || entry._value != reference )
+            return;
+        // Once we know the factory does not share objects, there is
+        // no need to load the factory class again.
+        shared = entry._shared;
+        if ( shared != null && shared._reference == reference )
+            return;
+        if ( isShared( reference ) )
+            entry._shared = new SharedObject( reference, object );
+        else
+            entry._shared = new SharedObject( reference, null );
+    }
+
+
+    public synchronized void put( String name, Object value )
+    {
+        Object oldValue;
 
         if ( name == null )
             throw new IllegalArgumentException( "Argument name is null" );
         if ( value == null )
             throw new IllegalArgumentException( "Argument value is null" );
+        oldValue = internalPut( name, value );
+        changed();
+        if ( oldValue == null )
+            fire( NamingEvent.OBJECT_ADDED, name, null, null, value );
+        else
+            fire( NamingEvent.OBJECT_CHANGED, name, null, oldValue, value );
+    }
+
+
+    public synchronized Object remove( String name )
+    { 
+        Object oldValue;
+
+        if ( name == null )
+            throw new IllegalArgumentException( "Argument name is null" );
+        oldValue = internalRemove( name );
+        if ( oldValue != null ) {
+            changed();
+            fire( NamingEvent.OBJECT_REMOVED, name, null, oldValue, null );
+        }
+        return oldValue;
+    }
+
+
+    /**
+     * Renames a binding. The value bound to the old name is bound
+     * to the new name, replacing any value bound to it, and reported
+     * to listeners as a single rename.
+     *
+     * @param oldName The old name
+     * @param newName The new name
+     * @return The value bound to the old name, or null if the old
+     *   name is not bound
+     */
+    synchronized Object rename( String oldName, String newName )
+    {
+        Object value;
+
+        if ( oldName == null )
+            throw new IllegalArgumentException( "Argument oldName is null" );
+        if ( newName == null )
+            throw new IllegalArgumentException( "Argument newName is null" );
+        value = internalRemove( oldName );
+        if ( value != null ) {
+            internalPut( newName, value );
+            changed();
+            fire( NamingEvent.OBJECT_RENAMED, oldName, newName, value, value );
+        }
+        return value;
+    }
+
+
+    /**
+     * Binds the value to the name, returning the value previously
+     * bound to that name, or null. Called with the lock held.
+     */
+    private Object internalPut( String name, Object value )
+    {
+        int            hashCode;
+        int            index;
+        BindingEntry[] table;
+        BindingEntry   first;
+        BindingEntry   entry;
 
         if ( value instanceof MemoryBinding ) {
+            // A binding moved from another parent no longer reports
+            // its changes there, so names that parent resolved through
+            // it are discarded.
+            if ( ( (MemoryBinding) value )._parent != null && ( (MemoryBinding) value )._parent != this )
+                ( (MemoryBinding) value )._parent.changed();
             ( (MemoryBinding) value )._parent = this;
             ( (MemoryBinding) value )._name = name;
         }
 
         hashCode = name.hashCode();
-        index = ( hashCode & 0x7FFFFFFF ) % _hashTable.length;
-        entry = _hashTable[ index ];
-        if ( entry == null ) {
-            entry = new BindingEntry( name, hashCode, value );
-            _hashTable[ index ] = entry;
-            ++_count;
-        } else {
+        table = _hashTable;
+        index = ( hashCode & 0x7FFFFFFF ) % table.length;
+        first = table[ index ];
+        entry = first;
+        while ( entry != null ) {
             if ( entry._hashCode == hashCode && entry._name.equals( name ) ) {
-                entry._value = value;
-                return;
-            } else {
-                next = entry._next;
-                while ( next != null ) {
-                    if ( next._hashCode == hashCode && next._name.equals( name ) ) {
-                        next._value = value;
-                        return;
-                    }
-                    entry = next;
-                    next = next._next;
-                }
-                entry._next = new BindingEntry( name, hashCode, value );
-                ++_count;
+                // The entry is replaced rather than modified, so a
+                // lookup that finds it without synchronizing also
+                // sees its value.
+                table[ index ] = copyBefore( first, entry,
+                                             new BindingEntry( name, hashCode, value, null, entry._next ) );
+                _hashTable = table;
+                return entry._value;
             }
+            entry = entry._next;
         }
+        // New entries are added at the head of the chain, so the
+        // entries already in the chain are not modified.
+        table[ index ] = new BindingEntry( name, hashCode, value, null, first );
+        _count = _count + 1;
         if ( _count >= _threshold )
             rehash();
+        else
+            _hashTable = table;
+        return null;
     }
 
 
-    public synchronized Object remove( String name )
+    /**
+     * Removes the name, returning the value bound to it, or null.
+     * Called with the lock held.
+     */
+    private Object internalRemove( String name )
     { 
-        int          hashCode;
-        int          index;
-        BindingEntry entry;
-        BindingEntry next;
+        int            hashCode;
+        int            index;
+        BindingEntry[] table;
+        BindingEntry   first;
+        BindingEntry   entry;
 
-        if ( name == null )
-            throw new IllegalArgumentException( "Argument name is null" );
         hashCode = name.hashCode();
-        index = ( hashCode & 0x7FFFFFFF ) % _hashTable.length;
-        entry = _hashTable[ index ];
+        table = _hashTable;
+        index = ( hashCode & 0x7FFFFFFF ) % table.length;
+        first = table[ index ];
+        entry = first;
+        while ( entry != null && ! ( entry._hashCode == hashCode && entry._name.equals( name ) ) )
+            entry = entry._next;
         if ( entry == null )
             return null;
-        if ( entry._hashCode == hashCode && entry._name.equals( name ) ) {
-            _hashTable[ index ] = entry._next;
-            --_count;
-            return entry._value;
-        }
-        next = entry._next;
-        while ( next != null ) {
-            if ( next._hashCode == hashCode && next._name.equals( name ) ) {
-                entry._next = next._next;
-                --_count;
-                return next._value;
-            }
-            entry = next;
-            next = next._next;
+        table[ index ] = copyBefore( first, entry, entry._next );
+        _count = _count - 1;
+        _hashTable = table;
+        return entry._value;
+    }
+
+
+    /**
+     * Returns a chain that holds copies of the entries from
+     * <tt>first</tt> up to <tt>entry</tt>, excluding it, in front of
+     * <tt>chain</tt>. Entries are not modified, so the entries that
+     * precede a replaced or removed entry are copied.
+     *
+     * @param first The first entry in the chain
+     * @param entry The entry replaced or removed
+     * @param chain The entries that follow the copied entries
+     * @return The new chain
+     */
+    private static BindingEntry copyBefore( BindingEntry first, BindingEntry entry, BindingEntry chain )
+    {
+        while ( first != entry ) {
+            chain = new BindingEntry( first._name, first._hashCode, first._value, first._shared, chain );
+            first = first._next;
         }
-        return null;
+        return chain;
     }
 
 
-    public String getName()
+    /**
+     * Resolves a composite name relative to this binding. Returns
+     * the value bound to the last part of the name and the binding
+     * that holds it. Returns null if the name is not bound, or if
+     * it is not reachable through memory bindings alone, e.g. it
+     * passes through a foreign context or ends with an empty part.
+     * <p>
+     * Resolved names are cached until this binding or any binding
+     * underneath it changes, so repeated lookups of the same name
+     * do not parse the name or walk the subcontexts. A name that
+     * passes through a binding whose parent is another binding,
+     * e.g. a context bound under a second name, is not cached,
+     * since changes to that binding are not reported here.
+     *
+     * @param name The composite name
+     * @return The resolved name, or null
+     * @throws NamingException The name is not a valid composite name
+     */
+    ResolvedName resolve( String name )
+        throws NamingException
     {
-        if ( _parent != null && _parent.getName().length() > 0 )
-            return _parent.getName() + MemoryContext.NameSeparator + _name;
-        return _name;
+        int           version;
+        ResolvedCache cache;
+        ResolvedName  resolved;
+        Name          parsed;
+        MemoryBinding bindings;
+        Object        value;
+        String        simple;
+        int           last;
+        HashMap       names;
+        boolean       cacheable;
+
+        // The version is read before the bindings, so a change made
+        // while resolving the name discards the result.
+        version = _version;
+        cache = _resolved;
+        if ( cache != null && cache._version == version ) {
+            resolved = (ResolvedName) cache._names.get( name );
+            if ( resolved != null )
+                return resolved;
+        }
+
+        parsed = new CompositeName( name );
+        last = parsed.size() - 1;
+        if ( last < 0 || parsed.get( last ).length() == 0 )
+            return null;
+        bindings = this;
+        cacheable = true;
+        for ( int i = 0 ; i < last ; ++i ) {
+            simple = parsed.get( i );
+            if ( simple.length() > 0 ) {
+                value = bindings.get( simple );
+                if ( ! ( value instanceof MemoryBinding ) )
+                    return null;
+                if ( ( (MemoryBinding) value )._parent != bindings )
+                    cacheable = false;
+                bindings = (MemoryBinding) value;
+            }
+        }
+        simple = parsed.get( last );
+        value = bindings.get( simple );
+        if ( value == null )
+            return null;
+        resolved = new ResolvedName( bindings, simple, value );
+        if ( ! cacheable )
+            return resolved;
+
+        // The cache is copied rather than modified. A name added by
+        // another thread at the same time may be lost, and will be
+        // resolved again on the next lookup.
+        if ( cache != null && cache._version == version ) {
+            if ( cache._names.size() >= MAXIMUM_RESOLVED )
+                return resolved;
+            names = (HashMap) cache._names.clone();
+        } else
+            names = new HashMap();
+        names.put( name, resolved );
+        _resolved = new ResolvedCache( version, names );
+        return resolved;
     }
 
 
-    public boolean isRoot()
+    /**
+     * Returns a context view of this binding of the specified class
+     * and with the specified environment. Returns null if no such
+     * view has been recorded.
+     *
+     * @param type The context class
+     * @param env The environment of the context
+     * @return The context view, or null
+     * @see #addView
+     */
+    Context getView( Class type, Hashtable env )
     {
-        return ( _parent == null );
+        ContextView[] views;
+
+        views = _views;
+        for ( int i = 0 ; i < views.length ; ++i ) {
+            if ( views[ i ]._context.getClass() == type &&
+                 ( views[ i ]._env == env || views[ i ]._env.equals( env ) ) )
+                return views[ i ]._context;
+        }
+        return null;
     }
 
 
-    public boolean isEmpty()
+    /**
+     * Records a context view of this binding. The context must not
+     * allow its environment to be changed, since it is returned to
+     * all callers that look up this binding with the same environment.
+     * At most {@link #MAXIMUM_VIEWS} views are recorded.
+     *
+     * @param context The context view
+     * @param env The environment of the context
+     */
+    void addView( Context context, Hashtable env )
     {
-        return _count == 0;
+        ContextView[] views;
+        ContextView[] newViews;
+
+        if ( context == null )
+            throw new IllegalArgumentException( "Argument context is null" );
+        if ( env == null )
+            throw new IllegalArgumentException( "Argument env is null" );
+        // The views are copied rather than modified. A view added by
+        // another thread at the same time may be lost, and will be
+        // created again on the next lookup.
+        views = _views;
+        if ( views.length >= MAXIMUM_VIEWS )
+            return;
+        newViews = new ContextView[ views.length + 1 ];
+        System.arraycopy( views, 0, newViews, 0, views.length );
+        newViews[ views.length ] = new ContextView( context, env );
+        _views = newViews;
     }
 
 
     /**
-     * Called when destroying the subcontext and binding associated
-     * with it.
+     * Returns the names bound in this binding. The names are those
+     * bound when this method is called. Used when writing a snapshot
+     * of the bindings.
+     *
+     * @return The names bound in this binding
      */
-    public void destroy()
+    String[] getNames()
     {
-        _hashTable = null;
+        BindingEntry[] table;
+        BindingEntry   entry;
+        String[]       names;
+        String[]       newNames;
+        int            count;
+
+        table = _hashTable;
+        names = new String[ _count ];
+        count = 0;
+        for ( int i = table.length ; i-- > 0 ; ) {
+            entry = table[ i ];
+            while ( entry != null ) {
+                if ( count == names.length ) {
+                    newNames = new String[ count * 2 + 1 ];
+                    System.arraycopy( names, 0, newNames, 0, count );
+                    names = newNames;
+                }
+                names[ count++ ] = entry._name;
+                entry = entry._next;
+            }
+        }
+        if ( count == names.length )
+            return names;
+        newNames = new String[ count ];
+        System.arraycopy( names, 0, newNames, 0, count );
+        return newNames;
     }
 
 
     /**
-     * Returns an array of all the name/value bindings in this binding,
-     * exclusing sub-contexts. Each entry is of type {@link Binding} as
-     * defined in the JNDI API.
+     * Registers a naming listener for the target named relative to
+     * this binding. The listener is held by the binding it listens
+     * to, which is returned, so the context can later remove it.
+     *
+     * @param target The target name, relative to this binding
+     * @param scope The scope, as defined by {@link EventContext}
+     * @param listener The naming listener
+     * @param source The context reported as the source of events
+     * @return The binding that holds the listener
+     * @throws NamingException The target is not bound, or is not
+     *   a subcontext for one level scope
      */
-    /*
-    public Binding[] getBinding()
+    MemoryBinding addListener( Name target, int scope, NamingListener listener, EventContext source )
+        throws NamingException
     {
-        Vector      list;
-        Enumeration enum;
-        String      key;
-        
-        list = new Vector();
-        enum = _bindings.keys();
-        while ( enum.hasMoreElements() ) {
-            key = (String) enum.nextElement();
-            if ( ! ( _bindings.get( key ) instanceof MemoryBinding ) ) {
-                list.addElement( new Binding( key, _bindings.get( key ) ) );
+        MemoryBinding bindings;
+        String        simple;
+        Object        value;
+        StringBuffer  prefix;
+
+        if ( target == null )
+            throw new IllegalArgumentException( "Argument target is null" );
+        if ( listener == null )
+            throw new IllegalArgumentException( "Argument listener is null" );
+        if ( source == null )
+            throw new IllegalArgumentException( "Argument source is null" );
+
+        // The prefix is the name of the listener's binding relative to
+        // the source, and is used to name the bindings in events.
+        bindings = this;
+        simple = null;
+        prefix = new StringBuffer();
+        for ( int i = 0 ; i < target.size() ; ++i ) {
+            if ( target.get( i ).length() > 0 ) {
+                if ( simple != null ) {
+                    value = bindings.get( simple );
+                    if ( ! ( value instanceof MemoryBinding ) )
+                        throw new NotContextException( simple + " is not a subcontext" );
+                    bindings = (MemoryBinding) value;
+                    if ( prefix.length() > 0 )
+                        prefix.append( MemoryContext.NameSeparator );
+                    prefix.append( simple );
+                }
+                simple = target.get( i );
+            }
+        }
+        if ( simple == null ) {
+            if ( scope == EventContext.OBJECT_SCOPE )
+                throw new InvalidNameException( "Cannot listen to empty name with object scope" );
+        } else {
+            value = bindings.get( simple );
+            if ( value == null )
+                throw new NameNotFoundException( simple + " not found" );
+            if ( scope != EventContext.OBJECT_SCOPE ) {
+                if ( value instanceof MemoryBinding ) {
+                    bindings = (MemoryBinding) value;
+                    if ( prefix.length() > 0 )
+                        prefix.append( MemoryContext.NameSeparator );
+                    prefix.append( simple );
+                    simple = null;
+                } else if ( scope == EventContext.ONELEVEL_SCOPE )
+                    throw new NotContextException( simple + " is not a subcontext" );
             }
         }
-        return (Binding[]) list.toArray( new Binding[ list.size() ] );
+        bindings.addListener( new ListenerEntry( listener, source, prefix.toString(), simple,
+                                                 simple == null ? scope : EventContext.OBJECT_SCOPE ) );
+        return bindings;
     }
-    */
 
 
     /**
-     * Returns an array of all the sub-contexts of this binding.
+     * Removes a naming listener registered through the specified
+     * context. Returns true if other listeners registered through
+     * that context remain with this binding.
+     *
+     * @param listener The naming listener
+     * @param source The context with which it was registered
+     * @return True if listeners registered through that context remain
      */
-    /*
-    public MemoryBinding[] getContext()
+    synchronized boolean removeListener( NamingListener listener, EventContext source )
     {
-        Vector      list;
-        Enumeration enum;
-        String      key;
+        ListenerEntry[] entries;
+        ArrayList       remaining;
+        boolean         hasSource;
+
+        entries = _listeners;
+        remaining = new ArrayList( entries.length );
+        hasSource = false;
+        for ( int i = 0 ; i < entries.length ; ++i ) {
+            if ( entries[ i ]._source == source ) {
+                if ( entries[ i ]._listener == listener )
+                    continue;
+                hasSource = true;
+            }
+            remaining.add( entries[ i ] );
+        }
+        if ( remaining.size() < entries.length ) {
+            _listeners = (ListenerEntry[]) remaining.toArray( new ListenerEntry[ remaining.size() ] );
+            synchronized ( _versionLock ) {
+                _listenerCount = _listenerCount - ( entries.length - remaining.size() );
+            }
+        }
+        return hasSource;
+    }
 
-        list = new Vector();
-        enum = _bindings.keys();
-        while ( enum.hasMoreElements() ) {
-            key = (String) enum.nextElement();
-            if ( _bindings.get( key ) instanceof MemoryBinding ) {
-                list.addElement( _bindings.get( key ) );
+
+    /**
+     * Removes all the naming listeners registered through the
+     * specified context. Called when the context is closed.
+     *
+     * @param source The context with which they were registered
+     */
+    synchronized void removeListeners( EventContext source )
+    {
+        ListenerEntry[] entries;
+        ArrayList       remaining;
+
+        entries = _listeners;
+        remaining = new ArrayList( entries.length );
+        for ( int i = 0 ; i < entries.length ; ++i ) {
+            if ( entries[ i ]._source != source )
+                remaining.add( entries[ i ] );
+        }
+        if ( remaining.size() < entries.length ) {
+            _listeners = (ListenerEntry[]) remaining.toArray( new ListenerEntry[ remaining.size() ] );
+            synchronized ( _versionLock ) {
+                _listenerCount = _listenerCount - ( entries.length - remaining.size() );
             }
         }
-        return (MemoryBinding[]) list.toArray( new MemoryBinding[ list.size() ] );
     }
-    */
+
+
+    private synchronized void addListener( ListenerEntry entry )
+    {
+        ListenerEntry[] entries;
+        ListenerEntry[] newEntries;
+
+        entries = _listeners;
+        newEntries = new ListenerEntry[ entries.length + 1 ];
+        System.arraycopy( entries, 0, newEntries, 0, entries.length );
+        newEntries[ entries.length ] = entry;
+        _listeners = newEntries;
+        synchronized ( _versionLock ) {
+            _listenerCount = _listenerCount + 1;
+        }
+    }
+
+
+    public String getName()
+    {
+        if ( _parent != null && _parent.getName().length() > 0 )
+            return _parent.getName() + MemoryContext.NameSeparator + _name;
+        return _name;
+    }
+
+
+    public boolean isRoot()
+    {
+        return ( _parent == null );
+    }
+
+
+    public boolean isEmpty()
+    {
+        return _count == 0;
+    }
+
+
+    /**
+     * Called when destroying the subcontext and binding associated
+     * with it.
+     */
+    public void destroy()
+    {
+        _hashTable = null;
+    }
 
 
     void debug( PrintWriter writer )
@@ -364,39 +856,160 @@ public final class MemoryBinding
     }
 
 
+    /**
+     * Returns the entry for the specified name, or null.
+     */
+    private BindingEntry getEntry( String name )
+    {
+        int            hashCode;
+        BindingEntry[] table;
+        BindingEntry   entry;
+
+        if ( name == null )
+            throw new IllegalArgumentException( "Argument name is null" );
+        hashCode = name.hashCode();
+        table = _hashTable;
+        entry = table[ ( hashCode & 0x7FFFFFFF ) % table.length ];
+        while ( entry != null ) {
+            if ( entry._hashCode == hashCode && entry._name.equals( name ) )
+                return entry;
+            entry = entry._next;
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns true if the factory named by the reference implements
+     * {@link SharedObjectFactory}. Returns false if the reference
+     * does not name a factory, or the factory class cannot be loaded.
+     */
+    private static boolean isShared( Reference reference )
+    {
+        String      className;
+        ClassLoader loader;
+        Class       factory;
+
+        className = reference.getFactoryClassName();
+        if ( className == null )
+            return false;
+        try {
+            loader = Thread.currentThread().getContextClassLoader();
+            if ( loader != null )
+                factory = loader.loadClass( className );
+            else
+                factory = Class.forName( className );
+        } catch ( Exception except ) {
+            return false;
+        }
+        return SharedObjectFactory.class.isAssignableFrom( factory );
+    }
+
+
+    /**
+     * Called after every change to this binding. Increments the
+     * version of this binding and all the bindings above it, which
+     * discards the names they have resolved. Called with the lock
+     * held.
+     */
+    private void changed()
+    {
+        MemoryBinding binding;
+
+        synchronized ( _versionLock ) {
+            binding = this;
+            while ( binding != null ) {
+                binding._version = binding._version + 1;
+                binding = binding._parent;
+            }
+        }
+    }
+
+
+    /**
+     * Reports a change to this binding to the naming listeners of
+     * this binding and the bindings above it. The events are
+     * dispatched from a background thread. Called with the lock held.
+     *
+     * @param type The event type
+     * @param name The name that changed
+     * @param newName The new name if the name was renamed, or null
+     * @param oldValue The old value, or null
+     * @param newValue The new value, or null
+     */
+    private void fire( int type, String name, String newName, Object oldValue, Object newValue )
+    {
+        MemoryBinding   binding;
+        ListenerEntry[] entries;
+        ListenerEntry   entry;
+        String          path;
+
+        if ( _listenerCount == 0 )
+            return;
+        // The path is the name of this binding relative to the binding
+        // whose listeners are being notified.
+        binding = this;
+        path = "";
+        while ( binding != null ) {
+            entries = binding._listeners;
+            for ( int i = 0 ; i < entries.length ; ++i ) {
+                entry = entries[ i ];
+                if ( entry.accepts( type ) &&
+                     ( entry._scope == EventContext.SUBTREE_SCOPE ||
+                       ( binding == this && ( entry._scope == EventContext.ONELEVEL_SCOPE ||
+                                              name.equals( entry._name ) ) ) ) )
+                    NamingEventDispatcher.dispatch( entry.createEvent( type, path, name, newName, oldValue, newValue ),
+                                                    entry._listener );
+            }
+            if ( binding._parent != null )
+                path = binding._name + MemoryContext.NameSeparator + path;
+            binding = binding._parent;
+        }
+    }
+
+
+    /**
+     * Replaces the hash table with a larger one. The entries are copied
+     * into the new table, so lookups can continue to use the old table
+     * until the new one is published. Called with the lock held.
+     */
     private void rehash()
     {
         int             newSize;
+        BindingEntry[]  table;
         BindingEntry[]  newTable;
         BindingEntry    entry;
-        BindingEntry    next;
         int             index;
 
-        newSize = _hashTable.length * 2 + 1;
+        table = _hashTable;
         // Prevent the hash table from being resized beyond some maximum capacity limit.
-        if ( newSize > MAXIMUM_CAPACITY ) {
+        if ( table.length >= MAXIMUM_CAPACITY / 2 ) {
             _threshold = Integer.MAX_VALUE;
+            _hashTable = table;
             return;
         }
 
+        newSize = table.length * 2 + 1;
         newTable = new BindingEntry[ newSize ];
-        for ( int i = _hashTable.length ; i-- > 0 ; ) {
-            entry = _hashTable[ i ];
+        for ( int i = table.length ; i-- > 0 ; ) {
+            entry = table[ i ];
             while ( entry != null ) {
-                next = entry._next;
                 index = ( entry._hashCode & 0x7FFFFFFF) % newSize;
-                entry._next = newTable[ index ];
-                newTable[ index ] = entry;
-                entry = next;
+                newTable[ index ] = new BindingEntry( entry._name, entry._hashCode, entry._value,
+                                                      entry._shared, newTable[ index ] );
+                entry = entry._next;
             }
         }
-        _hashTable = newTable;
         _threshold = (int)( newSize * LOAD_FACTOR );
+        _hashTable = newTable;
     }
 
 
     /**
      * Name to value binding entry in the memory binding hashtable.
+     * The name and value are final, so a lookup that finds the entry
+     * without synchronizing sees them. Rebinding the name replaces
+     * the entry.
      */
     private static class BindingEntry
     {
@@ -417,20 +1030,249 @@ public final class MemoryBinding
         /**
          * The bound value.
          */
-        Object        _value;
+        final Object  _value;
+
+
+        /**
+         * The object created from the bound reference, if the
+         * reference factory shares its objects.
+         */
+        volatile SharedObject  _shared;
 
 
         /**
          * The next binding in the hash table entry.
          */
-        BindingEntry  _next;
+        final BindingEntry  _next;
 
 
-        BindingEntry( String name, int hashCode, Object value )
+        BindingEntry( String name, int hashCode, Object value, SharedObject shared, BindingEntry next )
         {
             _name = name;
             _hashCode = hashCode;
             _value = value;
+            _shared = shared;
+            _next = next;
+        }
+
+
+    }
+
+
+    /**
+     * A composite name resolved by {@link MemoryBinding#resolve}.
+     */
+    static final class ResolvedName
+    {
+
+
+        /**
+         * The binding that holds the value.
+         */
+        final MemoryBinding  _bindings;
+
+
+        /**
+         * The last part of the name.
+         */
+        final String         _name;
+
+
+        /**
+         * The bound value.
+         */
+        final Object         _value;
+
+
+        ResolvedName( MemoryBinding bindings, String name, Object value )
+        {
+            _bindings = bindings;
+            _name = name;
+            _value = value;
+        }
+
+
+    }
+
+
+    /**
+     * A naming listener registered with a binding.
+     */
+    private static final class ListenerEntry
+    {
+
+
+        /**
+         * The naming listener.
+         */
+        final NamingListener  _listener;
+
+
+        /**
+         * The context with which the listener was registered.
+         */
+        final EventContext    _source;
+
+
+        /**
+         * The name of the binding relative to the source context.
+         */
+        final String          _prefix;
+
+
+        /**
+         * The name of the object listened to for object scope,
+         * null for other scopes.
+         */
+        final String          _name;
+
+
+        /**
+         * The scope, as defined by {@link EventContext}.
+         */
+        final int             _scope;
+
+
+        ListenerEntry( NamingListener listener, EventContext source, String prefix, String name, int scope )
+        {
+            _listener = listener;
+            _source = source;
+            _prefix = prefix;
+            _name = name;
+            _scope = scope;
+        }
+
+
+        /**
+         * Returns true if the listener accepts events of this type.
+         * Only object change listeners are notified of changes, and
+         * only namespace change listeners of other events.
+         */
+        boolean accepts( int type )
+        {
+            if ( type == NamingEvent.OBJECT_CHANGED )
+                return _listener instanceof ObjectChangeListener;
+            return _listener instanceof NamespaceChangeListener;
+        }
+
+
+        NamingEvent createEvent( int type, String path, String name, String newName,
+                                 Object oldValue, Object newValue )
+        {
+            Binding oldBinding;
+            Binding newBinding;
+
+            oldBinding = null;
+            newBinding = null;
+            if ( oldValue != null )
+                oldBinding = createBinding( path + name, oldValue );
+            if ( newValue != null )
+                newBinding = createBinding( path + ( newName == null ? name : newName ), newValue );
+            return new NamingEvent( _source, type, newBinding, oldBinding, null );
+        }
+
+
+        private Binding createBinding( String name, Object value )
+        {
+            if ( _prefix.length() > 0 )
+                name = _prefix + MemoryContext.NameSeparator + name;
+            // Subcontexts are not exposed outside of a context.
+            if ( value instanceof MemoryBinding )
+                return new Binding( name, Context.class.getName(), null );
+            return new Binding( name, value );
+        }
+
+
+    }
+
+
+    /**
+     * A context view of a binding and the environment it was
+     * created with.
+     */
+    private static final class ContextView
+    {
+
+
+        /**
+         * The context.
+         */
+        final Context    _context;
+
+
+        /**
+         * The environment of the context.
+         */
+        final Hashtable  _env;
+
+
+        ContextView( Context context, Hashtable env )
+        {
+            _context = context;
+            _env = env;
+        }
+
+
+    }
+
+
+    /**
+     * An object created from a reference, recorded together with the
+     * reference so it is only returned while the reference is bound.
+     * A null object records that the reference factory does not share
+     * its objects.
+     */
+    private static final class SharedObject
+    {
+
+
+        /**
+         * The reference.
+         */
+        final Reference  _reference;
+
+
+        /**
+         * The object created from the reference.
+         */
+        final Object     _object;
+
+
+        SharedObject( Reference reference, Object object )
+        {
+            _reference = reference;
+            _object = object;
+        }
+
+
+    }
+
+
+    /**
+     * The composite names resolved from a binding, valid for one
+     * version of the binding.
+     */
+    private static final class ResolvedCache
+    {
+
+
+        /**
+         * The version of the binding.
+         */
+        final int      _version;
+
+
+        /**
+         * Maps names to {@link ResolvedName}. Not modified once
+         * the cache is created.
+         */
+        final HashMap  _names;
+
+
+        ResolvedCache( int version, HashMap names )
+        {
+            _version = version;
+            _names = names;
         }
 
 
@@ -440,6 +1282,9 @@ public final class MemoryBinding
     /**
      * Naming enumeration supporting {@link NamClassPair} and {@link Binding},
      * created based of a {@link MemoryBinding}.
+     * <p>
+     * The enumeration walks the hash table as it was when the enumeration
+     * was created, one entry at a time, without copying the bindings.
      *
      * @author <a href="arkin@intalio.com">Assaf Arkin</a>
      * @version $Revision: 1.11 $ $Date: 2001/09/17 16:45:09 $
@@ -464,6 +1309,12 @@ public final class MemoryBinding
         private int             _index;
 
 
+        /**
+         * The hash table being enumerated.
+         */
+        private final BindingEntry[] _table;
+
+
         /**
          * True to return an enumeration of {@link NameClassPair},
          * false to return an enumeration of {@link Binding}
@@ -509,7 +1360,8 @@ public final class MemoryBinding
             _context = context;
             _contextClassName = nameOnly ? context.getClass().getName() : null;
             _nameOnly = nameOnly;
-            _index = _hashTable.length;
+            _table = _hashTable;
+            _index = _table.length;
         }
 
 
@@ -587,65 +1439,62 @@ public final class MemoryBinding
             BindingEntry  entry;
             Object        value;
             
-            entry = nextEntry();
-
-            if ( null == entry ) {
-                return false;    
-            }
-
             // the variable _nextName is set last in every clause so that
-            // it wont have to be reset to null when making recursive calls.
+            // it wont have to be reset to null when skipping an entry.
             // This is done because the test in #hasMore relys on testing
             // _nextName for null
 
-            value = entry._value;
-            if ( value instanceof MemoryBinding ) {
-                if ( _nameOnly ) {
-                    _nextClassName = _contextClassName;
-                } else {
+            while ( null != ( entry = nextEntry() ) ) {
+                value = entry._value;
+                if ( value instanceof MemoryBinding ) {
+                    if ( _nameOnly ) {
+                        _nextClassName = _contextClassName;
+                    } else {
+                        try {
+                            // If another context, must use lookup to create a duplicate.
+                            _nextValue = _context.lookup( entry._name );
+                            _nextClassName = _nextValue.getClass().getName();
+                        } catch ( NamingException except ) {
+                            // Skip this entry and go immediately to next one.
+                            continue;
+                        }    
+                    }
+                    _nextName = entry._name;
+                } else if ( ( value instanceof LinkRef ) ) {
                     try {
-                        // If another context, must use lookup to create a duplicate.
+                        // Need to resolve the link.
                         _nextValue = _context.lookup( entry._name );
-                        _nextClassName = _nextValue.getClass().getName();
+                        _nextClassName = ( null == _nextValue ) ? null : _nextValue.getClass().getName();
                     } catch ( NamingException except ) {
                         // Skip this entry and go immediately to next one.
-                        return internalHasMore();
-                    }    
-                }
-                _nextName = entry._name;
-            } else if ( ( value instanceof LinkRef ) ) {
-                try {
-                    // Need to resolve the link.
-                    _nextValue = _context.lookup( entry._name );
-                    _nextClassName = ( null == _nextValue ) ? null : _nextValue.getClass().getName();
-                } catch ( NamingException except ) {
-                    // Skip this entry and go immediately to next one.
-                    return internalHasMore();
-                }
-                if ( _nameOnly ) {
-                    _nextValue = null;
-                }
-                _nextName = entry._name;
-            } else if ( value instanceof Reference ) {
-                if ( !_nameOnly ) {
-                    try {
-                        _nextValue = NamingManager.getObjectInstance( value, new CompositeName( entry._name ), _context, null );
-                    } catch ( Exception except ) {
-                        // Skip this entry and go immediately to next one.
-                        return internalHasMore();
+                        continue;
                     }
-                }
-                _nextClassName = ( ( Reference ) value ).getClassName();
-                _nextName = entry._name;
-                
-            } else {
-                if ( !_nameOnly ) {
-                    _nextValue = value;
-                }
-                _nextClassName = ( null == value ) ? null : value.getClass().getName();
-                _nextName = entry._name;
-            } 
-            return true;
+                    if ( _nameOnly ) {
+                        _nextValue = null;
+                    }
+                    _nextName = entry._name;
+                } else if ( value instanceof Reference ) {
+                    if ( !_nameOnly ) {
+                        try {
+                            _nextValue = NamingManager.getObjectInstance( value, new CompositeName( entry._name ), _context, null );
+                        } catch ( Exception except ) {
+                            // Skip this entry and go immediately to next one.
+                            continue;
+                        }
+                    }
+                    _nextClassName = ( ( Reference ) value ).getClassName();
+                    _nextName = entry._name;
+                    
+                } else {
+                    if ( !_nameOnly ) {
+                        _nextValue = value;
+                    }
+                    _nextClassName = ( null == value ) ? null : value.getClass().getName();
+                    _nextName = entry._name;
+                } 
+                return true;
+            }
+            return false;
         }
         
         
@@ -660,7 +1509,7 @@ public final class MemoryBinding
                 _entry = entry._next;
                 return entry;
             }
-            table = _hashTable;
+            table = _table;
             index = _index;
             while ( index > 0 ) {
                 entry = table[ --index ];
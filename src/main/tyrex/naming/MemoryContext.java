@@ -48,6 +48,7 @@ package tyrex.naming;
 
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Enumeration;
 import javax.naming.Context;
@@ -66,6 +67,8 @@ import javax.naming.OperationNotSupportedException;
 import javax.naming.InvalidNameException;
 import javax.naming.NameAlreadyBoundException;
 import javax.naming.ContextNotEmptyException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
 import javax.naming.spi.NamingManager;
 
 
@@ -94,7 +97,7 @@ import javax.naming.spi.NamingManager;
  * @see MemoryContextFactory
  */
 public class MemoryContext
-    implements Context
+    implements EventContext
 {
 
 
@@ -152,6 +155,24 @@ public class MemoryContext
     private boolean             _readOnly;
 
 
+    /**
+     * True if this context is a view returned from looking up a
+     * subcontext. Views are shared by all callers that look up the
+     * same bindings with the same environment, so their environment
+     * cannot be changed and closing them has no effect. Naming
+     * listeners registered through a view are kept until they are
+     * removed.
+     */
+    private final boolean       _view;
+
+
+    /**
+     * The bindings with which naming listeners have been registered
+     * through this context. Created when the first listener is added.
+     */
+    private ArrayList           _listeners;
+
+
     /**
      * Construct a new context with the specified environment
      * attributes. The environment property {@link Context.PROVIDER_URL}
@@ -194,6 +215,7 @@ public class MemoryContext
            }
         } else
             _bindings = new MemoryBinding();
+        _view = false;
     }
 
 
@@ -202,12 +224,24 @@ public class MemoryContext
      * environment attributes.
      */
     MemoryContext( MemoryBinding bindings, Hashtable env )
+    {
+        this( bindings, env, false );
+    }
+
+
+    /**
+     * Construct a new context with the specified bindings and
+     * environment attributes. If <tt>view</tt> is true, the
+     * context's environment cannot be changed.
+     */
+    private MemoryContext( MemoryBinding bindings, Hashtable env, boolean view )
     {
         Enumeration enum;
         String      name;
         Object      value;
 
         _bindings = bindings;
+        _view = view;
 
         // Use addToEnvironment to duplicate the environment variables.
         // This takes care of setting certain flags appropriately.
@@ -232,8 +266,9 @@ public class MemoryContext
     public Object lookup( String name )
         throws NamingException
     {
-        Object object;
-        String link;
+        Object                     object;
+        String                     link;
+        MemoryBinding.ResolvedName resolved;
 
         // This is a simple case optimization of the composite name lookup.
         // It only applies if we're looking for a simple name that is
@@ -255,11 +290,11 @@ public class MemoryContext
                 // If we found a subcontext, we must return a new context
                 // to represent it and keep the environment set for this
                 // context (e.g. read-only).
-                return new MemoryContext( (MemoryBinding) object, _env );
+                return getView( (MemoryBinding) object );
             } else if ( object instanceof Reference ) {
                 // Reconstruct a reference.
                 try {
-                    return NamingManager.getObjectInstance( object, new CompositeName( name ), this, _env );
+                    return getObjectInstance( _bindings, name, (Reference) object );
                 } catch ( Exception except ) {
                     throw new NamingException( except.toString() );
                 }
@@ -267,8 +302,25 @@ public class MemoryContext
                 // Simplest case, just return the bound object.
                 return object;
             }
-        } else
+        }
+
+        // Composite names that are reachable through memory bindings
+        // are resolved once and cached by the bindings, avoiding the
+        // need to parse the name and walk each subcontext.
+        resolved = _bindings.resolve( name );
+        if ( resolved == null || resolved._value instanceof LinkRef )
             return internalLookup( new CompositeName( name ), true );
+        object = resolved._value;
+        if ( object instanceof MemoryBinding )
+            return getView( (MemoryBinding) object );
+        else if ( object instanceof Reference ) {
+            try {
+                return getObjectInstance( resolved._bindings, resolved._name, (Reference) object );
+            } catch ( Exception except ) {
+                throw new NamingException( except.getMessage() );
+            }
+        } else
+            return object;
     }
 
 
@@ -318,7 +370,7 @@ public class MemoryContext
             while ( ! name.isEmpty() && name.get( 0 ).length() == 0 )
                 name = name.getSuffix( 1 );
             if ( name.isEmpty() )
-                return new MemoryContext( bindings, _env );
+                return getView( bindings );
             
             // Simple is the first part of the name for a composite name,
             // for looking up the subcontext, or the last part of the
@@ -361,12 +413,11 @@ public class MemoryContext
                     // If we found a subcontext, we must return a new context
                     // to represent it and keep the environment set for this
                     // context (e.g. read-only).
-                    return new MemoryContext( (MemoryBinding) object, _env );
+                    return getView( (MemoryBinding) object );
               } else if ( object instanceof Reference ) {
                   // Reconstruct a reference
                   try {
-                      return NamingManager.getObjectInstance( object, name,
-                                                              new MemoryContext( bindings, _env ), _env );
+                      return getObjectInstance( bindings, simple, (Reference) object );
                   } catch ( Exception except ) {
                       throw new NamingException( except.getMessage() );
                   }
@@ -379,6 +430,57 @@ public class MemoryContext
     }
 
 
+    /**
+     * Creates the object for a reference bound in the specified
+     * bindings. If the reference factory implements {@link
+     * SharedObjectFactory}, the object is created once and returned
+     * from all subsequent lookups, until the name is rebound.
+     *
+     * @param bindings The bindings holding the reference
+     * @param name The name of the reference in these bindings
+     * @param reference The reference
+     * @return The object created from the reference
+     * @throws Exception The object factory reported an error
+     */
+    private Object getObjectInstance( MemoryBinding bindings, String name, Reference reference )
+        throws Exception
+    {
+        Object object;
+
+        object = bindings.getShared( name, reference );
+        if ( object != null )
+            return object;
+        object = NamingManager.getObjectInstance( reference, new CompositeName( name ),
+                                                  bindings == _bindings ? this : getView( bindings ),
+                                                  _env );
+        bindings.setShared( name, reference, object );
+        return object;
+    }
+
+
+    /**
+     * Returns a context for the specified bindings with the same
+     * environment as this context. The context is an immutable view
+     * that is created once and held by the bindings, so repeated
+     * lookups of a subcontext return the same context.
+     *
+     * @param bindings The bindings
+     * @return A context view of the bindings
+     */
+    private Context getView( MemoryBinding bindings )
+    {
+        Context       context;
+        MemoryContext view;
+
+        context = bindings.getView( MemoryContext.class, _env );
+        if ( context != null )
+            return context;
+        view = new MemoryContext( bindings, _env, true );
+        bindings.addView( view, view._env );
+        return view;
+    }
+
+
     //---------//
     // Binding //
     //---------//
@@ -627,14 +729,13 @@ public class MemoryContext
             if ( bindings.get( simple ) != null )
                 throw new NameAlreadyBoundException( simple + " already bound, use rebind to override" );
             if ( oldName.size() == 1 ) {
-                object = bindings.remove( oldName.get( 0 ) );
-                if ( object == null )
+                if ( bindings.rename( oldName.get( 0 ), simple ) == null )
                     throw new NameNotFoundException( oldName.get( 0 ) + " not found" );
             } else {
                 object = lookup( oldName );
                 unbind( oldName );
+                bindings.put( simple, object );
             }
-            bindings.put( simple, object );
         }
     }
 
@@ -994,6 +1095,53 @@ public class MemoryContext
     }
     
 
+    //--------//
+    // Events //
+    //--------//
+
+
+    public void addNamingListener( String target, int scope, NamingListener listener )
+        throws NamingException
+    {
+        addNamingListener( new CompositeName( target ), scope, listener );
+    }
+
+
+    public void addNamingListener( Name target, int scope, NamingListener listener )
+        throws NamingException
+    {
+        MemoryBinding bindings;
+
+        bindings = _bindings.addListener( target, scope, listener, this );
+        synchronized ( this ) {
+            if ( _listeners == null )
+                _listeners = new ArrayList();
+            if ( ! _listeners.contains( bindings ) )
+                _listeners.add( bindings );
+        }
+    }
+
+
+    public synchronized void removeNamingListener( NamingListener listener )
+    {
+        MemoryBinding bindings;
+
+        if ( _listeners == null )
+            return;
+        for ( int i = _listeners.size() ; i-- > 0 ; ) {
+            bindings = (MemoryBinding) _listeners.get( i );
+            if ( ! bindings.removeListener( listener, this ) )
+                _listeners.remove( i );
+        }
+    }
+
+
+    public boolean targetMustExist()
+    {
+        return true;
+    }
+
+
     //-------------//
     // Environment //
     //-------------//
@@ -1004,6 +1152,8 @@ public class MemoryContext
     {
         boolean readOnly;
 
+        if ( _view )
+            throw new OperationNotSupportedException( "Context environment cannot be changed" );
         if ( name.equals( ReadOnly ) ) {
             readOnly = value.toString().equalsIgnoreCase( "true" );
             if ( _readOnly && ! readOnly )
@@ -1015,18 +1165,32 @@ public class MemoryContext
 
     public Hashtable getEnvironment()
     {
+        if ( _view )
+            return (Hashtable) _env.clone();
         return _env;
     }
 
 
     public Object removeFromEnvironment( String name )
+        throws NamingException
     {
+        if ( _view )
+            throw new OperationNotSupportedException( "Context environment cannot be changed" );
         return _env.remove( name );
     }
 
 
     public void close()
     {
+        if ( _view )
+            return;
+        synchronized ( this ) {
+            if ( _listeners != null ) {
+                for ( int i = _listeners.size() ; i-- > 0 ; )
+                    ( (MemoryBinding) _listeners.get( i ) ).removeListeners( this );
+                _listeners = null;
+            }
+        }
         _env.clear();
     }
 
@@ -0,0 +1,515 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.naming;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import javax.naming.BinaryRefAddr;
+import javax.naming.LinkRef;
+import javax.naming.NamingException;
+import javax.naming.RefAddr;
+import javax.naming.Reference;
+import javax.naming.Referenceable;
+import javax.naming.StringRefAddr;
+
+
+/**
+ * Writes a tree of {@link MemoryBinding} to a snapshot file, and
+ * restores the bindings from that file.
+ * <p>
+ * Restoring a snapshot is much faster than building the same
+ * namespace by binding one name at a time. The file is memory
+ * mapped and read in one pass, names are not parsed, and the
+ * bindings are put directly into the tree.
+ * <p>
+ * A snapshot holds subcontexts, links, references and serializable
+ * objects. Referenceable objects are stored as their reference, and
+ * references made only of string and binary addresses are stored
+ * without using Java serialization. Objects that are neither
+ * referenceable nor serializable cannot be stored in a snapshot.
+ * <p>
+ * The snapshot is written from the bindings as they change, so a
+ * consistent snapshot is only obtained if the bindings do not change
+ * while being written.
+ *
+ * @see MemoryBinding
+ */
+public final class NamespaceSnapshot
+{
+
+
+    /**
+     * Identifies a snapshot file.
+     */
+    private static final int   MAGIC          = 0x54594e53;
+
+
+    /**
+     * The version of the snapshot file format.
+     */
+    private static final int   VERSION        = 1;
+
+
+    /**
+     * Entry type for a subcontext.
+     */
+    private static final byte  TYPE_CONTEXT   = 1;
+
+
+    /**
+     * Entry type for a {@link LinkRef}.
+     */
+    private static final byte  TYPE_LINK      = 2;
+
+
+    /**
+     * Entry type for a {@link Reference}.
+     */
+    private static final byte  TYPE_REFERENCE = 3;
+
+
+    /**
+     * Entry type for a serialized object.
+     */
+    private static final byte  TYPE_OBJECT    = 4;
+
+
+    /**
+     * Address type for a {@link StringRefAddr}.
+     */
+    private static final byte  ADDR_STRING    = 1;
+
+
+    /**
+     * Address type for a {@link BinaryRefAddr}.
+     */
+    private static final byte  ADDR_BINARY    = 2;
+
+
+    /**
+     * Address type for a serialized {@link RefAddr}.
+     */
+    private static final byte  ADDR_OBJECT    = 3;
+
+
+    private NamespaceSnapshot()
+    {
+    }
+
+
+    /**
+     * Writes a snapshot of the bindings and all their subcontexts
+     * to the specified file. The snapshot is written aside and then
+     * renamed over the file, so an existing snapshot is not lost if
+     * writing fails.
+     *
+     * @param bindings The bindings
+     * @param file The snapshot file
+     * @throws NamingException A bound object cannot be stored in
+     *   a snapshot
+     * @throws IOException An error occured writing the file
+     */
+    public static void write( MemoryBinding bindings, File file )
+        throws NamingException, IOException
+    {
+        File             temp;
+        DataOutputStream output;
+        boolean          written;
+
+        if ( bindings == null )
+            throw new IllegalArgumentException( "Argument bindings is null" );
+        if ( file == null )
+            throw new IllegalArgumentException( "Argument file is null" );
+        temp = new File( file.getPath() + ".tmp" );
+        output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+        written = false;
+        try {
+            output.writeInt( MAGIC );
+            output.writeInt( VERSION );
+            writeBindings( output, bindings );
+            output.close();
+            written = true;
+        } finally {
+            if ( ! written ) {
+                try {
+                    output.close();
+                } catch ( IOException except ) { }
+                temp.delete();
+            }
+        }
+        // Rename replaces the file in one step where the platform
+        // allows it, otherwise the old file must be removed first.
+        if ( ! temp.renameTo( file ) ) {
+            if ( ! file.delete() || ! temp.renameTo( file ) ) {
+                temp.delete();
+                throw new IOException( "Cannot replace namespace snapshot " + file );
+            }
+        }
+    }
+
+
+    /**
+     * Restores the bindings from the specified snapshot file. The
+     * snapshot is merged into the bindings: subcontexts that already
+     * exist are kept and restored into, other names are rebound.
+     *
+     * @param file The snapshot file
+     * @param bindings The bindings
+     * @throws IOException An error occured reading the file, or the
+     *   file is not a snapshot
+     */
+    public static void read( File file, MemoryBinding bindings )
+        throws IOException
+    {
+        FileInputStream input;
+        FileChannel     channel;
+        ByteBuffer      buffer;
+
+        if ( file == null )
+            throw new IllegalArgumentException( "Argument file is null" );
+        if ( bindings == null )
+            throw new IllegalArgumentException( "Argument bindings is null" );
+        input = new FileInputStream( file );
+        try {
+            channel = input.getChannel();
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        } finally {
+            input.close();
+        }
+        try {
+            if ( buffer.getInt() != MAGIC )
+                throw new IOException( file + " is not a namespace snapshot" );
+            if ( buffer.getInt() != VERSION )
+                throw new IOException( file + " is a namespace snapshot of an unsupported version" );
+            readBindings( buffer, bindings );
+        } catch ( BufferUnderflowException except ) {
+            throw new IOException( file + " is truncated" );
+        }
+    }
+
+
+    private static void writeBindings( DataOutputStream output, MemoryBinding bindings )
+        throws NamingException, IOException
+    {
+        String[] names;
+        Object[] values;
+        Object   value;
+        int      count;
+
+        // Names may be unbound while writing, so the count is only
+        // known after the values have been obtained.
+        names = bindings.getNames();
+        values = new Object[ names.length ];
+        count = 0;
+        for ( int i = 0 ; i < names.length ; ++i ) {
+            value = bindings.get( names[ i ] );
+            if ( value instanceof Referenceable )
+                value = ( (Referenceable) value ).getReference();
+            if ( value != null ) {
+                names[ count ] = names[ i ];
+                values[ count ] = value;
+                ++count;
+            }
+        }
+        output.writeInt( count );
+        for ( int i = 0 ; i < count ; ++i ) {
+            value = values[ i ];
+            writeString( output, names[ i ] );
+            if ( value instanceof MemoryBinding ) {
+                output.writeByte( TYPE_CONTEXT );
+                writeBindings( output, (MemoryBinding) value );
+            } else if ( value instanceof LinkRef ) {
+                output.writeByte( TYPE_LINK );
+                writeString( output, ( (LinkRef) value ).getLinkName() );
+            } else if ( value.getClass() == Reference.class ) {
+                output.writeByte( TYPE_REFERENCE );
+                writeReference( output, (Reference) value );
+            } else if ( value instanceof Serializable ) {
+                output.writeByte( TYPE_OBJECT );
+                writeObject( output, value );
+            } else
+                throw new NamingException( "Object bound to " + names[ i ] + " in " + bindings.getName() +
+                                           " cannot be stored in a snapshot" );
+        }
+    }
+
+
+    private static void writeReference( DataOutputStream output, Reference reference )
+        throws IOException
+    {
+        Enumeration addrs;
+        RefAddr     addr;
+
+        writeString( output, reference.getClassName() );
+        writeString( output, reference.getFactoryClassName() );
+        writeString( output, reference.getFactoryClassLocation() );
+        output.writeInt( reference.size() );
+        addrs = reference.getAll();
+        while ( addrs.hasMoreElements() ) {
+            addr = (RefAddr) addrs.nextElement();
+            if ( addr.getClass() == StringRefAddr.class ) {
+                output.writeByte( ADDR_STRING );
+                writeString( output, addr.getType() );
+                writeString( output, (String) addr.getContent() );
+            } else if ( addr.getClass() == BinaryRefAddr.class ) {
+                output.writeByte( ADDR_BINARY );
+                writeString( output, addr.getType() );
+                writeBytes( output, (byte[]) addr.getContent() );
+            } else {
+                output.writeByte( ADDR_OBJECT );
+                writeObject( output, addr );
+            }
+        }
+    }
+
+
+    private static void writeObject( DataOutputStream output, Object object )
+        throws IOException
+    {
+        ByteArrayOutputStream bytes;
+        ObjectOutputStream    stream;
+
+        bytes = new ByteArrayOutputStream();
+        stream = new ObjectOutputStream( bytes );
+        stream.writeObject( object );
+        stream.close();
+        writeBytes( output, bytes.toByteArray() );
+    }
+
+
+    private static void writeString( DataOutputStream output, String value )
+        throws IOException
+    {
+        if ( value == null )
+            output.writeInt( -1 );
+        else
+            writeBytes( output, value.getBytes( "UTF-8" ) );
+    }
+
+
+    private static void writeBytes( DataOutputStream output, byte[] bytes )
+        throws IOException
+    {
+        output.writeInt( bytes.length );
+        output.write( bytes );
+    }
+
+
+    private static void readBindings( ByteBuffer buffer, MemoryBinding bindings )
+        throws IOException
+    {
+        int           count;
+        String        name;
+        byte          type;
+        Object        value;
+        MemoryBinding subcontext;
+
+        count = buffer.getInt();
+        for ( int i = 0 ; i < count ; ++i ) {
+            name = readString( buffer );
+            if ( name == null )
+                throw new IOException( "Missing entry name in snapshot" );
+            type = buffer.get();
+            switch ( type ) {
+            case TYPE_CONTEXT:
+                value = bindings.get( name );
+                if ( value instanceof MemoryBinding )
+                    readBindings( buffer, (MemoryBinding) value );
+                else {
+                    // A new subcontext is populated before it is bound,
+                    // so lookups never see it partially restored.
+                    subcontext = new MemoryBinding();
+                    readBindings( buffer, subcontext );
+                    bindings.put( name, subcontext );
+                }
+                break;
+            case TYPE_LINK:
+                bindings.put( name, new LinkRef( readString( buffer ) ) );
+                break;
+            case TYPE_REFERENCE:
+                bindings.put( name, readReference( buffer ) );
+                break;
+            case TYPE_OBJECT:
+                bindings.put( name, readObject( buffer ) );
+                break;
+            default:
+                throw new IOException( "Unknown entry type " + type + " for " + name + " in snapshot" );
+            }
+        }
+    }
+
+
+    private static Reference readReference( ByteBuffer buffer )
+        throws IOException
+    {
+        Reference reference;
+        int       count;
+        byte      type;
+
+        reference = new Reference( readString( buffer ), readString( buffer ), readString( buffer ) );
+        count = buffer.getInt();
+        for ( int i = 0 ; i < count ; ++i ) {
+            type = buffer.get();
+            switch ( type ) {
+            case ADDR_STRING:
+                reference.add( new StringRefAddr( readString( buffer ), readString( buffer ) ) );
+                break;
+            case ADDR_BINARY:
+                reference.add( new BinaryRefAddr( readString( buffer ), readBytes( buffer ) ) );
+                break;
+            case ADDR_OBJECT:
+                reference.add( (RefAddr) readObject( buffer ) );
+                break;
+            default:
+                throw new IOException( "Unknown address type " + type + " in snapshot" );
+            }
+        }
+        return reference;
+    }
+
+
+    private static Object readObject( ByteBuffer buffer )
+        throws IOException
+    {
+        ObjectInputStream stream;
+
+        stream = new ContextObjectInputStream( new ByteArrayInputStream( readBytes( buffer ) ) );
+        try {
+            return stream.readObject();
+        } catch ( ClassNotFoundException except ) {
+            throw new IOException( "Cannot restore object from snapshot: " + except.getMessage() );
+        } finally {
+            stream.close();
+        }
+    }
+
+
+    private static String readString( ByteBuffer buffer )
+        throws IOException
+    {
+        int length;
+
+        length = buffer.getInt();
+        if ( length < 0 )
+            return null;
+        return new String( readBytes( buffer, length ), "UTF-8" );
+    }
+
+
+    private static byte[] readBytes( ByteBuffer buffer )
+        throws IOException
+    {
+        return readBytes( buffer, buffer.getInt() );
+    }
+
+
+    private static byte[] readBytes( ByteBuffer buffer, int length )
+        throws IOException
+    {
+        byte[] bytes;
+
+        // A corrupt length must not allocate more than the file holds.
+        if ( length < 0 || length > buffer.remaining() )
+            throw new IOException( "Invalid entry length " + length + " in snapshot" );
+        bytes = new byte[ length ];
+        buffer.get( bytes );
+        return bytes;
+    }
+
+
+    /**
+     * Object input stream that loads classes from the thread's
+     * context class loader, so objects bound by an application can
+     * be restored.
+     */
+    private static final class ContextObjectInputStream
+        extends ObjectInputStream
+    {
+
+
+        ContextObjectInputStream( InputStream input )
+            throws IOException
+        {
+            super( input );
+        }
+
+
+        protected Class resolveClass( ObjectStreamClass desc )
+            throws IOException, ClassNotFoundException
+        {
+            ClassLoader loader;
+
+            loader = Thread.currentThread().getContextClassLoader();
+            if ( loader == null )
+                return super.resolveClass( desc );
+            try {
+                return Class.forName( desc.getName(), false, loader );
+            } catch ( ClassNotFoundException except ) {
+                return super.resolveClass( desc );
+            }
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.naming;
+
+
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingListener;
+import tyrex.services.DaemonMaster;
+import tyrex.util.logging.Logger;
+
+
+/**
+ * Dispatches naming events to naming listeners from a background
+ * thread, so changes to the bindings are not delayed by listeners.
+ * Events are delivered in the order in which they were fired.
+ * <p>
+ * The background thread is started when the first event is fired.
+ *
+ * @see MemoryBinding
+ */
+final class NamingEventDispatcher
+    implements Runnable
+{
+
+
+    /**
+     * The dispatcher, created when the first event is fired.
+     */
+    private static NamingEventDispatcher  _instance;
+
+
+    /**
+     * The first event waiting to be dispatched.
+     */
+    private PendingEvent                  _first;
+
+
+    /**
+     * The last event waiting to be dispatched.
+     */
+    private PendingEvent                  _last;
+
+
+    private NamingEventDispatcher()
+    {
+    }
+
+
+    /**
+     * Dispatches the event to the listener from the background
+     * thread. Returns immediately.
+     *
+     * @param event The naming event
+     * @param listener The naming listener
+     */
+    static void dispatch( NamingEvent event, NamingListener listener )
+    {
+        NamingEventDispatcher dispatcher;
+        PendingEvent          pending;
+
+        synchronized ( NamingEventDispatcher.class ) {
+            if ( _instance == null ) {
+                _instance = new NamingEventDispatcher();
+                DaemonMaster.addDaemon( _instance, "Naming Event Dispatcher" );
+            }
+            dispatcher = _instance;
+        }
+        pending = new PendingEvent( event, listener );
+        synchronized ( dispatcher ) {
+            if ( dispatcher._last == null )
+                dispatcher._first = pending;
+            else
+                dispatcher._last._next = pending;
+            dispatcher._last = pending;
+            dispatcher.notify();
+        }
+    }
+
+
+    public void run()
+    {
+        PendingEvent pending;
+
+        while ( true ) {
+            synchronized ( this ) {
+                while ( _first == null ) {
+                    try {
+                        wait();
+                    } catch ( InterruptedException except ) {
+                        return;
+                    }
+                }
+                pending = _first;
+                _first = pending._next;
+                if ( _first == null )
+                    _last = null;
+            }
+            try {
+                pending._event.dispatch( pending._listener );
+            } catch ( Throwable thrw ) {
+                Logger.tyrex.error( "Naming listener " + pending._listener + " reported an error", thrw );
+            }
+        }
+    }
+
+
+    /**
+     * An event waiting to be dispatched.
+     */
+    private static final class PendingEvent
+    {
+
+
+        /**
+         * The naming event.
+         */
+        final NamingEvent     _event;
+
+
+        /**
+         * The naming listener.
+         */
+        final NamingListener  _listener;
+
+
+        /**
+         * The next event waiting to be dispatched.
+         */
+        PendingEvent          _next;
+
+
+        PendingEvent( NamingEvent event, NamingListener listener )
+        {
+            _event = event;
+            _listener = listener;
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,252 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+/**
+ * Creates a number of connections on behalf of a connection pool,
+ * using a bounded number of threads.
+ * <p>
+ * A connection pool uses the filler to create its initial connections
+ * and to restore the minimum pool size after connections have been
+ * discarded. The pool implements {@link #create create} to open a
+ * single connection and add it to the pool. The filler calls that
+ * method once for each connection it was asked to create, and stops
+ * early if a connection could not be created, or the pool reports it
+ * cannot take more connections.
+ * <p>
+ * The filler can either block the caller until all connections have
+ * been created ({@link #fill fill}), or create the connections in the
+ * background ({@link #start start}).
+ *
+ * @see PoolLimits#getPrefillThreads
+ */
+public abstract class PoolFiller
+    implements Runnable
+{
+
+
+    /**
+     * The name used for the filler threads.
+     */
+    private final String    _name;
+
+
+    /**
+     * The number of connections not yet handed to a filler thread.
+     */
+    private int             _remaining;
+
+
+    /**
+     * The number of filler threads still running.
+     */
+    private int             _active;
+
+
+    /**
+     * The first error reported when creating a connection, or null.
+     */
+    private Exception       _error;
+
+
+    /**
+     * Constructs a new filler that will create the specified number
+     * of connections.
+     *
+     * @param name The name used for the filler threads
+     * @param count The number of connections to create
+     */
+    protected PoolFiller( String name, int count )
+    {
+        if ( name == null )
+            throw new IllegalArgumentException( "Argument name is null" );
+        _name = name;
+        _remaining = ( count < 0 ? 0 : count );
+    }
+
+
+    /**
+     * Creates all the connections and returns once they have been
+     * created. If <tt>concurrency</tt> is larger than one, up to that
+     * many connections are created at the same time. Otherwise, all
+     * connections are created in the calling thread.
+     * <p>
+     * Returns the first error reported when creating a connection, or
+     * null if all connections were created.
+     *
+     * @param concurrency The maximum number of threads to use
+     * @return The first error, or null
+     */
+    public Exception fill( int concurrency )
+    {
+        if ( concurrency <= 1 ) {
+            synchronized ( this ) {
+                ++_active;
+            }
+            run();
+        } else
+            start( concurrency );
+        synchronized ( this ) {
+            while ( _active > 0 ) {
+                try {
+                    wait();
+                } catch ( InterruptedException except ) {
+                    // Stop handing out connections. The filler threads
+                    // complete the connections they have started.
+                    _remaining = 0;
+                }
+            }
+            return _error;
+        }
+    }
+
+
+    /**
+     * Starts creating the connections in the background and returns
+     * immediately. Up to <tt>concurrency</tt> connections are created
+     * at the same time.
+     *
+     * @param concurrency The maximum number of threads to use
+     */
+    public void start( int concurrency )
+    {
+        Thread thread;
+        int    threads;
+
+        synchronized ( this ) {
+            threads = ( concurrency < 1 ? 1 : concurrency );
+            if ( threads > _remaining )
+                threads = _remaining;
+            _active += threads;
+        }
+        for ( int i = 0 ; i < threads ; ++i ) {
+            thread = new Thread( this, _name + " Filler-" + i );
+            thread.setDaemon( true );
+            thread.start();
+        }
+    }
+
+
+    /**
+     * Returns true if the filler is still creating connections.
+     *
+     * @return True if the filler is still creating connections
+     */
+    public synchronized boolean isActive()
+    {
+        return ( _active > 0 );
+    }
+
+
+    /**
+     * Called by each filler thread. Keeps creating connections until
+     * all connections have been created, the pool cannot take more
+     * connections, or an error occured.
+     */
+    public void run()
+    {
+        try {
+            while ( true ) {
+                synchronized ( this ) {
+                    if ( _remaining == 0 )
+                        return;
+                    --_remaining;
+                }
+                try {
+                    if ( ! create() ) {
+                        synchronized ( this ) {
+                            _remaining = 0;
+                        }
+                        return;
+                    }
+                } catch ( Exception except ) {
+                    synchronized ( this ) {
+                        _remaining = 0;
+                        if ( _error != null )
+                            return;
+                        _error = except;
+                    }
+                    failed( except );
+                    return;
+                }
+            }
+        } finally {
+            synchronized ( this ) {
+                --_active;
+                notifyAll();
+            }
+        }
+    }
+
+
+    /**
+     * Called to create a single connection and add it to the pool.
+     * This method is called concurrently from all filler threads and
+     * must not hold the pool lock while opening the connection.
+     * <p>
+     * Returns false if the pool cannot take more connections, for
+     * example if it has reached its maximum size or has been destroyed.
+     *
+     * @return True if a connection has been added to the pool
+     * @throws Exception An error occured while creating the connection
+     */
+    protected abstract boolean create()
+        throws Exception;
+
+
+    /**
+     * Called with the first error reported when creating a connection.
+     * The default implementation does nothing.
+     *
+     * @param except The error
+     */
+    protected void failed( Exception except )
+    {
+    }
+
+
+}
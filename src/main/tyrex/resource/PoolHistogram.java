@@ -0,0 +1,395 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+/**
+ * Records the distribution of durations measured by a connection pool,
+ * such as the time waiting for a connection or the time a connection
+ * is used by the application.
+ * <p>
+ * Durations are recorded in milliseconds into buckets of increasing
+ * width. Durations of up to eight milliseconds have a bucket each,
+ * longer durations are recorded into eight buckets for each power of
+ * two, so percentiles are reported with an error of no more than
+ * one eighth of the value.
+ * <p>
+ * The histogram is striped: each thread records into one of several
+ * stripes, each protected by its own lock, so recording a duration
+ * never contends with the connection pool or with reading the
+ * histogram. Reading the histogram combines all the stripes.
+ * <p>
+ * This object is thread-safe. A histogram returned by {@link #snapshot
+ * snapshot} is a copy that is not affected by further recording.
+ *
+ * @see PoolMetrics
+ */
+public final class PoolHistogram
+{
+
+
+    /**
+     * The number of stripes. Must be a power of two.
+     */
+    private static final int  STRIPES = 4;
+
+
+    /**
+     * The number of buckets for each power of two, and the number of
+     * buckets for the shortest durations.
+     */
+    private static final int  SUB_BUCKETS = 8;
+
+
+    /**
+     * The number of bits required to represent {@link #SUB_BUCKETS}.
+     */
+    private static final int  SUB_BITS = 3;
+
+
+    /**
+     * The number of buckets. The last bucket records all durations
+     * of 2^32 milliseconds or longer.
+     */
+    private static final int  BUCKETS = SUB_BUCKETS + ( 32 - SUB_BITS ) * SUB_BUCKETS + 1;
+
+
+    /**
+     * The stripes.
+     */
+    private final Stripe[]    _stripes;
+
+
+    /**
+     * Constructs a new histogram.
+     */
+    public PoolHistogram()
+    {
+        this( STRIPES );
+    }
+
+
+    private PoolHistogram( int stripes )
+    {
+        _stripes = new Stripe[ stripes ];
+        for ( int i = 0 ; i < stripes ; ++i )
+            _stripes[ i ] = new Stripe();
+    }
+
+
+    /**
+     * Records a duration.
+     *
+     * @param ms The duration in milliseconds
+     */
+    public void record( long ms )
+    {
+        Stripe stripe;
+
+        if ( ms < 0 )
+            ms = 0;
+        stripe = _stripes[ System.identityHashCode( Thread.currentThread() ) & ( _stripes.length - 1 ) ];
+        synchronized ( stripe ) {
+            ++stripe._counts[ bucket( ms ) ];
+            ++stripe._count;
+            stripe._total += ms;
+            if ( ms > stripe._maximum )
+                stripe._maximum = ms;
+        }
+    }
+
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return The number of durations recorded
+     */
+    public long getCount()
+    {
+        long count;
+
+        count = 0;
+        for ( int i = 0 ; i < _stripes.length ; ++i ) {
+            synchronized ( _stripes[ i ] ) {
+                count += _stripes[ i ]._count;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the sum of all durations recorded (in milliseconds).
+     *
+     * @return The sum of all durations recorded
+     */
+    public long getTotal()
+    {
+        long total;
+
+        total = 0;
+        for ( int i = 0 ; i < _stripes.length ; ++i ) {
+            synchronized ( _stripes[ i ] ) {
+                total += _stripes[ i ]._total;
+            }
+        }
+        return total;
+    }
+
+
+    /**
+     * Returns the longest duration recorded (in milliseconds).
+     *
+     * @return The longest duration recorded
+     */
+    public long getMaximum()
+    {
+        long maximum;
+
+        maximum = 0;
+        for ( int i = 0 ; i < _stripes.length ; ++i ) {
+            synchronized ( _stripes[ i ] ) {
+                if ( _stripes[ i ]._maximum > maximum )
+                    maximum = _stripes[ i ]._maximum;
+            }
+        }
+        return maximum;
+    }
+
+
+    /**
+     * Returns the average duration (in milliseconds), or zero if
+     * no durations were recorded.
+     *
+     * @return The average duration
+     */
+    public float getAverage()
+    {
+        return snapshot().getAverage0();
+    }
+
+
+    /**
+     * Returns the duration at the specified percentile (in milliseconds).
+     * For example, <tt>getPercentile( 99 )</tt> returns a duration no
+     * shorter than 99% of the recorded durations. Returns zero if no
+     * durations were recorded.
+     *
+     * @param percent The percentile, between 0 and 100
+     * @return The duration at the specified percentile
+     */
+    public long getPercentile( double percent )
+    {
+        return snapshot().getPercentile0( percent );
+    }
+
+
+    /**
+     * Returns a copy of this histogram. The copy is not affected by
+     * durations recorded afterwards, and reading it does not require
+     * combining the stripes.
+     *
+     * @return A copy of this histogram
+     */
+    public PoolHistogram snapshot()
+    {
+        PoolHistogram copy;
+        Stripe        merged;
+        Stripe        stripe;
+
+        copy = new PoolHistogram( 1 );
+        merged = copy._stripes[ 0 ];
+        for ( int i = 0 ; i < _stripes.length ; ++i ) {
+            stripe = _stripes[ i ];
+            synchronized ( stripe ) {
+                for ( int j = 0 ; j < BUCKETS ; ++j )
+                    merged._counts[ j ] += stripe._counts[ j ];
+                merged._count += stripe._count;
+                merged._total += stripe._total;
+                if ( stripe._maximum > merged._maximum )
+                    merged._maximum = stripe._maximum;
+            }
+        }
+        return copy;
+    }
+
+
+    /**
+     * Called to reset this histogram.
+     */
+    public void reset()
+    {
+        Stripe stripe;
+
+        for ( int i = 0 ; i < _stripes.length ; ++i ) {
+            stripe = _stripes[ i ];
+            synchronized ( stripe ) {
+                for ( int j = 0 ; j < BUCKETS ; ++j )
+                    stripe._counts[ j ] = 0;
+                stripe._count = 0;
+                stripe._total = 0;
+                stripe._maximum = 0;
+            }
+        }
+    }
+
+
+    public String toString()
+    {
+        PoolHistogram copy;
+
+        copy = snapshot();
+        return "count " + copy._stripes[ 0 ]._count + " avg " + copy.getAverage0() +
+            "ms p50 " + copy.getPercentile0( 50 ) + "ms p99 " + copy.getPercentile0( 99 ) +
+            "ms max " + copy._stripes[ 0 ]._maximum + "ms";
+    }
+
+
+    /**
+     * Returns the average duration of a single stripe histogram.
+     */
+    private float getAverage0()
+    {
+        Stripe stripe;
+
+        stripe = _stripes[ 0 ];
+        if ( stripe._count == 0 )
+            return 0;
+        return (float) stripe._total / (float) stripe._count;
+    }
+
+
+    /**
+     * Returns the percentile of a single stripe histogram. Reports
+     * the highest duration in the bucket holding the percentile, but
+     * never more than the longest duration recorded.
+     */
+    private long getPercentile0( double percent )
+    {
+        Stripe stripe;
+        long   rank;
+        long   count;
+
+        stripe = _stripes[ 0 ];
+        if ( stripe._count == 0 )
+            return 0;
+        if ( percent < 0 )
+            percent = 0;
+        else if ( percent > 100 )
+            percent = 100;
+        rank = (long) Math.ceil( stripe._count * percent / 100 );
+        if ( rank < 1 )
+            rank = 1;
+        count = 0;
+        for ( int i = 0 ; i < BUCKETS ; ++i ) {
+            count += stripe._counts[ i ];
+            if ( count >= rank )
+                return Math.min( highest( i ), stripe._maximum );
+        }
+        return stripe._maximum;
+    }
+
+
+    /**
+     * Returns the bucket for recording the duration.
+     */
+    private static int bucket( long ms )
+    {
+        int exponent;
+
+        if ( ms < SUB_BUCKETS )
+            return (int) ms;
+        exponent = 0;
+        while ( ( ms >> exponent ) >= SUB_BUCKETS * 2 )
+            ++exponent;
+        if ( exponent > 31 - SUB_BITS )
+            return BUCKETS - 1;
+        return SUB_BUCKETS + exponent * SUB_BUCKETS + (int) ( ms >> exponent ) - SUB_BUCKETS;
+    }
+
+
+    /**
+     * Returns the highest duration recorded in the bucket.
+     */
+    private static long highest( int bucket )
+    {
+        int exponent;
+        int sub;
+
+        if ( bucket < SUB_BUCKETS )
+            return bucket;
+        if ( bucket == BUCKETS - 1 )
+            return Long.MAX_VALUE;
+        exponent = ( bucket - SUB_BUCKETS ) / SUB_BUCKETS;
+        sub = ( bucket - SUB_BUCKETS ) % SUB_BUCKETS;
+        return ( (long) ( SUB_BUCKETS + sub + 1 ) << exponent ) - 1;
+    }
+
+
+    /**
+     * A single stripe of the histogram. All fields are protected by
+     * the stripe's lock.
+     */
+    private static final class Stripe
+    {
+
+
+        final int[]  _counts = new int[ BUCKETS ];
+
+
+        long         _count;
+
+
+        long         _total;
+
+
+        long         _maximum;
+
+
+    }
+
+
+}
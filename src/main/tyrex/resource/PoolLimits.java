@@ -46,6 +46,9 @@
 package tyrex.resource;
 
 
+import java.util.Random;
+
+
 /**
  * Represents limits placed on a connection pool. The limits are
  * read from the configuration file and apply to the connection pool.
@@ -57,9 +60,27 @@ package tyrex.resource;
  * <li><tt>minimum</tt> The minimum number of connections that are
  * always available in the pool.</li>
  * <li><tt>initial</tt> The initial connection pool size.</li>
+ * <li><tt>prefillThreads</tt> The number of connections opened at the
+ * same time when filling the pool.</li>
+ * <li><tt>prefillAsync</tt> True to fill the pool in the background.</li>
  * <li><tt>maxRetain</tt> The maximum time to retain an unused
  * connection, specified in seconds, zero if connections are
  * retained forever.</li>
+ * <li><tt>maxLifetime</tt> The maximum time to keep a connection open,
+ * whether used or not, specified in seconds, zero if connections are
+ * kept open forever.</li>
+ * <li><tt>lifetimeJitter</tt> The percentage by which the maximum
+ * lifetime of each connection is randomly shortened.</li>
+ * <li><tt>adaptive</tt> True to adapt the pool size to the observed
+ * load.</li>
+ * <li><tt>leakTimeout</tt> The time after which a connection still in
+ * use is reported as a possible leak, specified in seconds, zero to
+ * not detect leaks.</li>
+ * <li><tt>leakSampling</tt> Record where a connection was obtained for
+ * one in every so many connections, zero to never record it.</li>
+ * <li><tt>leakReclaim</tt> True to reclaim leaked connections.</li>
+ * <li><tt>lazyEnlist</tt> True to enlist connections in the transaction
+ * when first used, instead of when obtained from the pool.</li>
  * <li><tt>timeout</tt> The timeout when attempting to open a new
  * connection, specified in seconds, zero to give up immediately.</li>
  * <li><tt>trace</tt> True to log connection usage information.</li>
@@ -106,6 +127,19 @@ public final class PoolLimits
     private int           _initial = 0;
 
 
+    /**
+     * The number of connections opened at the same time when filling
+     * the pool.
+     */
+    private int           _prefillThreads = 1;
+
+
+    /**
+     * True to fill the pool in the background.
+     */
+    private boolean       _prefillAsync = false;
+
+
     /**
      * The maximum time to retain an unused connection (in seconds),
      * or zero.
@@ -113,6 +147,56 @@ public final class PoolLimits
     private int           _maxRetain = NO_LIMIT;
 
 
+    /**
+     * The maximum time to keep a connection open (in seconds), or zero.
+     */
+    private int           _maxLifetime = NO_LIMIT;
+
+
+    /**
+     * The percentage by which the maximum lifetime is randomly shortened.
+     */
+    private int           _lifetimeJitter = 10;
+
+
+    /**
+     * Used to randomly shorten the lifetime of connections.
+     */
+    private final Random  _random = new Random();
+
+
+    /**
+     * True to adapt the pool size to the observed load.
+     */
+    private boolean       _adaptive = false;
+
+
+    /**
+     * The time after which a connection in use is reported as a
+     * possible leak (in seconds), or zero.
+     */
+    private int           _leakTimeout = NO_LIMIT;
+
+
+    /**
+     * Record where a connection was obtained for one in every so
+     * many connections, or zero.
+     */
+    private int           _leakSampling = 10;
+
+
+    /**
+     * True to reclaim leaked connections.
+     */
+    private boolean       _leakReclaim = false;
+
+
+    /**
+     * True to enlist connections when first used.
+     */
+    private boolean       _lazyEnlist = false;
+
+
     /**
      * The timeout when attempting to open a new connection (in seconds),
      * or zero.
@@ -170,8 +254,9 @@ public final class PoolLimits
      * below this threshold.
      * <p>
      * This threshold can be used to determine the number of connections that
-     * are always available in the pool. However, the connection pool will not
-     * attempt to create that number of connections directly.
+     * are always available in the pool. If the pool size falls below this
+     * threshold, because connections have been discarded or expired, the
+     * connection pool will create new connections in the background.
      *
      * @param minimum The minimum number of connections required
      */
@@ -223,6 +308,67 @@ public final class PoolLimits
     }
 
 
+    /**
+     * Sets the number of connections opened at the same time when filling
+     * the pool. The pool is filled when it is created, up to the initial
+     * size, and when it falls below the minimum size.
+     * <p>
+     * If this value is one, connections are opened one after the other.
+     * A higher value reduces the time it takes to fill the pool when
+     * opening a connection is slow.
+     *
+     * @param threads The number of connections opened at the same time
+     */
+    public void setPrefillThreads( int threads )
+    {
+        if ( threads < 1 )
+            threads = 1;
+        _prefillThreads = threads;
+    }
+
+
+    /**
+     * Returns the number of connections opened at the same time when
+     * filling the pool.
+     *
+     * @return The number of connections opened at the same time
+     */
+    public int getPrefillThreads()
+    {
+        return _prefillThreads;
+    }
+
+
+    /**
+     * Sets the background fill flag. If this value is true, the
+     * connection pool becomes available as soon as a single connection
+     * has been opened, and the remaining initial connections are opened
+     * in the background.
+     * <p>
+     * If this value is false, the connection pool is not available
+     * until all the initial connections have been opened, and an error
+     * opening any of them is reported when the pool is created.
+     *
+     * @param async True to fill the pool in the background
+     */
+    public void setPrefillAsync( boolean async )
+    {
+        _prefillAsync = async;
+    }
+
+
+    /**
+     * Returns the background fill flag. If this value is true, the
+     * initial connections are opened in the background.
+     *
+     * @return True to fill the pool in the background
+     */
+    public boolean getPrefillAsync()
+    {
+        return _prefillAsync;
+    }
+
+
     /**
      * Sets the maximum time to retain an unused connection. This is the longest
      * duration an unusued connection will be retained in the pool, specified
@@ -258,6 +404,256 @@ public final class PoolLimits
     }
 
 
+    /**
+     * Sets the maximum time to keep a connection open. This is the longest
+     * duration a connection will be kept open, whether it is used or not,
+     * specified in seconds.
+     * <p>
+     * If this number is not zero, the connection pool will release
+     * connections that have been open for that amount of time. A connection
+     * that is in use is released when the application returns it to the
+     * pool. Unlike {@link #getMaxRetain getMaxRetain}, connections are
+     * released even if the pool size falls below {@link #getMinimum
+     * getMinimum}, and new connections are opened in their place.
+     *
+     * @param seconds The maximum time to keep a connection open (in seconds),
+     * or zero
+     */
+    public void setMaxLifetime( int seconds )
+    {
+        if ( seconds < 0 )
+            seconds = 0;
+        _maxLifetime = seconds;
+    }
+
+
+    /**
+     * Returns the maximum time to keep a connection open. This is the longest
+     * duration a connection will be kept open, whether it is used or not,
+     * specified in seconds.
+     *
+     * @return The maximum time to keep a connection open (in seconds),
+     * or zero
+     */
+    public int getMaxLifetime()
+    {
+        return _maxLifetime;
+    }
+
+
+    /**
+     * Sets the lifetime jitter. The maximum lifetime of each connection is
+     * shortened by a random amount, up to this percentage of {@link
+     * #getMaxLifetime getMaxLifetime}. Connections that were opened at the
+     * same time are then not all released at the same time. The default
+     * is ten percent.
+     *
+     * @param percent The lifetime jitter, between zero and one hundred
+     */
+    public void setLifetimeJitter( int percent )
+    {
+        if ( percent < 0 )
+            percent = 0;
+        else if ( percent > 100 )
+            percent = 100;
+        _lifetimeJitter = percent;
+    }
+
+
+    /**
+     * Returns the lifetime jitter. The maximum lifetime of each connection
+     * is shortened by a random amount, up to this percentage.
+     *
+     * @return The lifetime jitter, between zero and one hundred
+     */
+    public int getLifetimeJitter()
+    {
+        return _lifetimeJitter;
+    }
+
+
+    /**
+     * Returns the lifetime of a new connection, in milliseconds, or zero if
+     * connections are kept open forever. The lifetime is the maximum lifetime
+     * shortened by a random amount up to the lifetime jitter. The connection
+     * pool calls this method once for each connection it opens.
+     *
+     * @return The lifetime of a new connection (in milliseconds), or zero
+     */
+    public long newLifetime()
+    {
+        long lifetime;
+        int  jitter;
+
+        lifetime = _maxLifetime * 1000L;
+        jitter = _lifetimeJitter;
+        if ( lifetime > 0 && jitter > 0 )
+            lifetime -= (long) ( lifetime * jitter / 100 * _random.nextDouble() );
+        return lifetime;
+    }
+
+
+    /**
+     * Sets the adaptive sizing flag. If this value is true, the connection
+     * pool adapts the number of connections it keeps open to the observed
+     * load, within the minimum and maximum limits.
+     * <p>
+     * The pool grows when the application has to wait for connections,
+     * or uses more connections than the pool keeps open, and shrinks
+     * after the load has been low for a while. This flag must be set
+     * before the connection pool is created.
+     *
+     * @param adaptive True to adapt the pool size to the observed load
+     * @see PoolSizer
+     */
+    public void setAdaptive( boolean adaptive )
+    {
+        _adaptive = adaptive;
+    }
+
+
+    /**
+     * Returns the adaptive sizing flag. If this value is true, the
+     * connection pool adapts the number of connections it keeps open
+     * to the observed load.
+     *
+     * @return True to adapt the pool size to the observed load
+     */
+    public boolean getAdaptive()
+    {
+        return _adaptive;
+    }
+
+
+    /**
+     * Sets the leak timeout. A connection that has been used by the
+     * application for longer than this duration, specified in seconds,
+     * is reported as a possible leak. If this value is zero, leaks are
+     * not detected.
+     * <p>
+     * The connection pool checks for leaks in the background, and
+     * reports each leaked connection once, together with the stack
+     * trace of the code that obtained it, if recorded. See {@link
+     * #setLeakSampling setLeakSampling}. This value must be set before
+     * the connection pool is created.
+     *
+     * @param seconds The leak timeout (in seconds), or zero
+     */
+    public void setLeakTimeout( int seconds )
+    {
+        if ( seconds < 0 )
+            seconds = 0;
+        _leakTimeout = seconds;
+    }
+
+
+    /**
+     * Returns the leak timeout. A connection that has been used by the
+     * application for longer than this duration, specified in seconds,
+     * is reported as a possible leak.
+     *
+     * @return The leak timeout (in seconds), or zero
+     */
+    public int getLeakTimeout()
+    {
+        return _leakTimeout;
+    }
+
+
+    /**
+     * Sets the leak sampling rate. When leak detection is enabled, the
+     * connection pool records the stack trace of the code that obtained
+     * a connection for one in every so many connections, so a leaked
+     * connection can be traced back to the application. Recording the
+     * stack trace is relatively expensive, so by default only one in
+     * every ten connections is recorded. Use one to record every
+     * connection, or zero to never record.
+     *
+     * @param sampling Record one in every so many connections, or zero
+     */
+    public void setLeakSampling( int sampling )
+    {
+        if ( sampling < 0 )
+            sampling = 0;
+        _leakSampling = sampling;
+    }
+
+
+    /**
+     * Returns the leak sampling rate. The connection pool records the
+     * stack trace of the code that obtained a connection for one in
+     * every so many connections.
+     *
+     * @return Record one in every so many connections, or zero
+     */
+    public int getLeakSampling()
+    {
+        return _leakSampling;
+    }
+
+
+    /**
+     * Sets the leak reclaim flag. If this value is true, a connection
+     * used for longer than the leak timeout is closed and removed from
+     * the pool, allowing a new connection to be opened in its place.
+     * The application can no longer use a reclaimed connection.
+     *
+     * @param reclaim True to reclaim leaked connections
+     */
+    public void setLeakReclaim( boolean reclaim )
+    {
+        _leakReclaim = reclaim;
+    }
+
+
+    /**
+     * Returns the leak reclaim flag. If this value is true, a connection
+     * used for longer than the leak timeout is closed and removed from
+     * the pool.
+     *
+     * @return True to reclaim leaked connections
+     */
+    public boolean getLeakReclaim()
+    {
+        return _leakReclaim;
+    }
+
+
+    /**
+     * Sets the lazy enlistment flag. If this value is true, a connection
+     * obtained from the pool is enlisted in the transaction only when the
+     * application first uses it, for example to create a statement. A
+     * connection that is obtained but never used does not take part in
+     * the transaction, reducing the work of committing the transaction.
+     * <p>
+     * JDBC connections are enlisted when the application first calls any
+     * method of the connection. Connectors must request enlistment when
+     * the connection is first used, see {@link
+     * tyrex.resource.jca.LazyEnlistableConnectionManager}. Connections
+     * of connectors that do not support lazy enlistment are enlisted
+     * when obtained from the pool.
+     *
+     * @param lazyEnlist True to enlist connections when first used
+     */
+    public void setLazyEnlist( boolean lazyEnlist )
+    {
+        _lazyEnlist = lazyEnlist;
+    }
+
+
+    /**
+     * Returns the lazy enlistment flag. If this value is true, a connection
+     * obtained from the pool is enlisted in the transaction only when the
+     * application first uses it.
+     *
+     * @return True to enlist connections when first used
+     */
+    public boolean getLazyEnlist()
+    {
+        return _lazyEnlist;
+    }
+
+
     /**
      * Sets the timeout when attempting to open a new connection. This is the longest
      * duration to wait for a new connection to be available when the pool has reached
@@ -53,67 +53,110 @@ package tyrex.resource;
  * such information as the accumulated number of connections created and
  * used, the average time a connection is used by the application or held
  * in the pool, etc.
+ * <p>
+ * The distribution of the time waiting for a connection, using a
+ * connection, creating a connection and validating a connection are
+ * recorded in histograms, for example {@link #getWaitTime getWaitTime}.
+ * <p>
+ * Metrics are recorded into striped counters and histograms, and none
+ * of the methods of this object synchronize on it, so reading the
+ * metrics never blocks the connection pool. Use {@link #getSnapshot
+ * getSnapshot} to obtain all the metrics at once.
  *
  * @author <a href="arkin@intalio.com">Assaf Arkin</a>
- * @version $Revision: 1.5 $
+ * @version $Revision: 1.6 $
  */
 public class PoolMetrics
 {
 
 
     /**
-     * The accumulated time client connections have been used (ms).
+     * The time spent waiting for a connection, one sample for each
+     * client connection obtained from the pool (ms).
      */
-    private long     _accumUsedTime;
+    private final PoolHistogram   _waitTime = new PoolHistogram();
+
 
-    
     /**
-     * The accumulated time client connections have been unused (ms).
+     * The time client connections have been used (ms).
      */
-    private long     _accumUnusedTime;
+    private final PoolHistogram   _holdTime = new PoolHistogram();
 
 
     /**
-     * The accumulated count of managed connections created.
+     * The time client connections have been unused (ms).
      */
-    private int      _accumCreated;
+    private final PoolHistogram   _idleTime = new PoolHistogram();
 
 
     /**
-     * The accumulated count of client connections used.
+     * The time creating managed connections (ms).
      */
-    private int      _accumUsed;
+    private final PoolHistogram   _createTime = new PoolHistogram();
 
 
     /**
-     * The accumulated count of client connections released to
-     * the pool (unused).
+     * The time validating managed connections (ms).
      */
-    private int      _accumUnused;
+    private final PoolHistogram   _validateTime = new PoolHistogram();
+
+
+    /**
+     * The accumulated count of managed connections created.
+     */
+    private final StripedCounter  _accumCreated = new StripedCounter();
 
 
     /**
      * The accumulated count of discarded managed connections.
      */
-    private int      _accumDiscarded;
+    private final StripedCounter  _accumDiscarded = new StripedCounter();
 
 
     /**
      * The accumulated count of errors in managed connections.
      */
-    private int      _accumErrors;
+    private final StripedCounter  _accumErrors = new StripedCounter();
+
+
+    /**
+     * The accumulated count of client connections that required
+     * waiting for a connection to become available.
+     */
+    private final StripedCounter  _accumWaited = new StripedCounter();
+
+
+    /**
+     * The accumulated count of connections reported as possible leaks.
+     */
+    private final StripedCounter  _accumLeaked = new StripedCounter();
+
+
+    /**
+     * The highest number of connections in use since the peak was
+     * last reset. Protected by {@link #_peakLock}.
+     */
+    private int                   _peakUsed;
+
+
+    /**
+     * Lock protecting the peak number of connections in use.
+     */
+    private final Object          _peakLock = new Object();
 
 
     /**
      * The total number of connections in the pool, both used and unused.
+     * Only changed with the pool lock held.
      */
-    protected int    _total;
+    protected volatile int        _total;
 
 
     /**
      * The number of connections available in the pool (unused).
+     * Only changed with the pool lock held.
      */
-    protected int    _available;
+    protected volatile int        _available;
 
 
     /**
@@ -126,7 +169,7 @@ public class PoolMetrics
      */
     public int getTotalCreated()
     {
-        return _accumCreated;
+        return (int) _accumCreated.get();
     }
 
 
@@ -143,7 +186,7 @@ public class PoolMetrics
      */
     public int getTotalUsed()
     {
-        return _accumUsed;
+        return (int) _holdTime.getCount();
     }
 
 
@@ -157,7 +200,7 @@ public class PoolMetrics
      */
     public int getTotalDiscarded()
     {
-        return _accumDiscarded;
+        return (int) _accumDiscarded.get();
     }
 
 
@@ -169,7 +212,7 @@ public class PoolMetrics
      */
     public int getTotalErrors()
     {
-        return _accumErrors;
+        return (int) _accumErrors.get();
     }
 
 
@@ -180,9 +223,12 @@ public class PoolMetrics
      *
      * @return The current number of managed connections in use
      */
-    public synchronized int getCurrentUsed()
+    public int getCurrentUsed()
     {
-        return _total - _available;
+        int used;
+
+        used = _total - _available;
+        return ( used < 0 ? 0 : used );
     }
 
 
@@ -207,9 +253,9 @@ public class PoolMetrics
      *
      * @return The average duration for using a connection
      */
-    public synchronized float getUsedAvgDuration()
+    public float getUsedAvgDuration()
     {
-        return ( (float) _accumUsedTime / (float) _accumUsed ) / 10000;
+        return _holdTime.getAverage() / 1000;
     }
     
 
@@ -220,9 +266,149 @@ public class PoolMetrics
      *
      * @return The average duration for holding an unused connection
      */
-    public synchronized float getUnusedAvgDuration()
+    public float getUnusedAvgDuration()
+    {
+        return _idleTime.getAverage() / 1000;
+    }
+
+
+    /**
+     * Returns the number of client connections that could not be
+     * obtained immediately. This value is incremented each time the
+     * application had to wait for a connection to become available,
+     * because the pool reached its maximum size.
+     *
+     * @return The number of client connections that required waiting
+     */
+    public int getTotalWaited()
     {
-        return ( (float) _accumUnusedTime / (float) _accumUnused ) / 10000;
+        return (int) _accumWaited.get();
+    }
+
+
+    /**
+     * Returns the number of connections reported as possible leaks.
+     * This value is incremented once for each connection used by the
+     * application for longer than the leak timeout.
+     *
+     * @return The number of connections reported as possible leaks
+     * @see PoolLimits#getLeakTimeout
+     */
+    public int getTotalLeaked()
+    {
+        return (int) _accumLeaked.get();
+    }
+
+
+    /**
+     * Returns the average duration for waiting for a connection. Returns
+     * the average number of seconds the application waited for a
+     * connection, counting only connections that required waiting.
+     *
+     * @return The average duration for waiting for a connection
+     */
+    public float getWaitAvgDuration()
+    {
+        long waited;
+
+        waited = _accumWaited.get();
+        if ( waited == 0 )
+            return 0;
+        return ( (float) _waitTime.getTotal() / (float) waited ) / 1000;
+    }
+
+
+    /**
+     * Returns the histogram of the time waiting for a connection.
+     * The histogram records one duration (in milliseconds) for each
+     * client connection obtained from the pool, zero if the connection
+     * was obtained without waiting.
+     *
+     * @return The histogram of the time waiting for a connection
+     */
+    public PoolHistogram getWaitTime()
+    {
+        return _waitTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time client connections are used by
+     * the application (in milliseconds).
+     *
+     * @return The histogram of the time using a connection
+     */
+    public PoolHistogram getHoldTime()
+    {
+        return _holdTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time connections are retained in the
+     * pool when they are not used by the application (in milliseconds).
+     *
+     * @return The histogram of the time holding an unused connection
+     */
+    public PoolHistogram getIdleTime()
+    {
+        return _idleTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time creating a new managed
+     * connection (in milliseconds).
+     *
+     * @return The histogram of the time creating a connection
+     */
+    public PoolHistogram getCreateTime()
+    {
+        return _createTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time validating a managed connection
+     * before it is used again (in milliseconds).
+     *
+     * @return The histogram of the time validating a connection
+     */
+    public PoolHistogram getValidateTime()
+    {
+        return _validateTime;
+    }
+
+
+    /**
+     * Returns the metrics of the SQL statements executed through
+     * this connection pool. Returns null if this is not a JDBC
+     * connection pool, or statement metrics are not enabled.
+     *
+     * @return The statement metrics, or null
+     */
+    public StatementMetrics getStatementMetrics()
+    {
+        return null;
+    }
+
+
+    /**
+     * Returns the highest number of managed connections in use since
+     * the peak was last reset, and resets the peak to the current
+     * number of managed connections in use.
+     *
+     * @return The highest number of managed connections in use
+     */
+    public int resetPeakUsed()
+    {
+        int peak;
+
+        synchronized ( _peakLock ) {
+            peak = _peakUsed;
+            _peakUsed = getCurrentUsed();
+        }
+        return peak;
     }
 
 
@@ -249,60 +435,89 @@ public class PoolMetrics
     }
 
 
+    /**
+     * Returns a snapshot of all the metrics. The snapshot is not
+     * affected by further use of the pool.
+     *
+     * @return A snapshot of all the metrics
+     */
+    public PoolMetricsSnapshot getSnapshot()
+    {
+        return new PoolMetricsSnapshot( this );
+    }
+
+
     /**
      * Called to reset this metrics object.
      */
-    public synchronized void reset()
+    public void reset()
     {
-        _accumUsedTime = 0;
-        _accumUnusedTime = 0;
-        _accumCreated = 0;
-        _accumUsed = 0;
-        _accumUnused = 0;
-        _accumDiscarded = 0;
-        _accumErrors = 0;
+        _waitTime.reset();
+        _holdTime.reset();
+        _idleTime.reset();
+        _createTime.reset();
+        _validateTime.reset();
+        _accumCreated.reset();
+        _accumDiscarded.reset();
+        _accumErrors.reset();
+        _accumWaited.reset();
+        _accumLeaked.reset();
+        synchronized ( _peakLock ) {
+            _peakUsed = getCurrentUsed();
+        }
     }
 
 
     /**
-     * Record a created managed connection.
+     * Record a created managed connection. Called with the pool
+     * lock held.
      */
-    protected synchronized void recordCreated()
+    protected void recordCreated()
     {
-        ++_accumCreated;
+        _accumCreated.increment();
         ++_total;
     }
 
 
     /**
-     * Record a discarded managed connection.
+     * Record a discarded managed connection. Called with the pool
+     * lock held.
      */
-    protected synchronized void recordDiscard()
+    protected void recordDiscard()
     {
-        ++_accumDiscarded;
+        _accumDiscarded.increment();
         --_total;
     }
 
 
     /**
-     * Record an error release of a managed connection.
+     * Record an error release of a managed connection. Called with
+     * the pool lock held.
      */
-    protected synchronized void recordError()
+    protected void recordError()
     {
-        ++_accumErrors;
+        _accumErrors.increment();
         --_total;
     }
 
 
+    /**
+     * Record a connection reported as a possible leak.
+     */
+    protected void recordLeak()
+    {
+        _accumLeaked.increment();
+    }
+
+
     /**
      * Record the duration for using a connection.
      *
      * @param ms The duration is milliseconds
      */
-    protected synchronized void recordUsedDuration( int ms )
+    protected void recordUsedDuration( int ms )
     {
-        ++_accumUsed;
-        _accumUsedTime += ms;
+        _holdTime.record( ms );
     }
 
 
@@ -311,10 +526,54 @@ public class PoolMetrics
      *
      * @param ms The duration is milliseconds
      */
-    protected synchronized void recordUnusedDuration( int ms )
+    protected void recordUnusedDuration( int ms )
+    {
+        _idleTime.record( ms );
+    }
+
+
+    /**
+     * Record the duration for creating a managed connection.
+     *
+     * @param ms The duration is milliseconds
+     */
+    protected void recordCreateDuration( int ms )
+    {
+        _createTime.record( ms );
+    }
+
+
+    /**
+     * Record the duration for validating a managed connection.
+     *
+     * @param ms The duration is milliseconds
+     */
+    protected void recordValidateDuration( int ms )
+    {
+        _validateTime.record( ms );
+    }
+
+
+    /**
+     * Record a client connection obtained from the pool, and the
+     * duration for waiting for it. Called after the managed connection
+     * has been reserved.
+     *
+     * @param ms The duration waiting for the connection in milliseconds,
+     * zero if the connection was obtained without waiting
+     */
+    protected void recordWaitDuration( int ms )
     {
-        ++_accumUnused;
-        _accumUnusedTime += ms;
+        int used;
+
+        _waitTime.record( ms );
+        if ( ms > 0 )
+            _accumWaited.increment();
+        used = getCurrentUsed();
+        synchronized ( _peakLock ) {
+            if ( used > _peakUsed )
+                _peakUsed = used;
+        }
     }
 
 
@@ -0,0 +1,348 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+/**
+ * A snapshot of the metrics of a connection pool.
+ * <p>
+ * The snapshot is obtained from {@link PoolMetrics#getSnapshot} and
+ * is not affected by further use of the pool. Obtaining a snapshot
+ * never blocks the connection pool, and it can be read, logged or
+ * compared with an earlier snapshot at leisure. For example,
+ * <pre>
+ * snapshot = resource.getPoolMetrics().getSnapshot();
+ * p99 = snapshot.getWaitTime().getPercentile( 99 );
+ * </pre>
+ * returns the borrow latency of 99% of the connections obtained
+ * from the pool.
+ * <p>
+ * The counts are read one after the other while the pool is in use,
+ * so they are not necessarily consistent with each other.
+ *
+ * @see PoolMetrics
+ */
+public final class PoolMetricsSnapshot
+{
+
+
+    /**
+     * The time the snapshot was taken.
+     */
+    private final long           _timeStamp;
+
+
+    /**
+     * The total number of connections in the pool.
+     */
+    private final int            _total;
+
+
+    /**
+     * The number of connections available in the pool.
+     */
+    private final int            _available;
+
+
+    /**
+     * The accumulated count of managed connections created.
+     */
+    private final int            _created;
+
+
+    /**
+     * The accumulated count of discarded managed connections.
+     */
+    private final int            _discarded;
+
+
+    /**
+     * The accumulated count of errors in managed connections.
+     */
+    private final int            _errors;
+
+
+    /**
+     * The accumulated count of client connections that required waiting.
+     */
+    private final int            _waited;
+
+
+    /**
+     * The accumulated count of connections reported as possible leaks.
+     */
+    private final int            _leaked;
+
+
+    /**
+     * The time spent waiting for a connection.
+     */
+    private final PoolHistogram  _waitTime;
+
+
+    /**
+     * The time client connections have been used.
+     */
+    private final PoolHistogram  _holdTime;
+
+
+    /**
+     * The time client connections have been unused.
+     */
+    private final PoolHistogram  _idleTime;
+
+
+    /**
+     * The time creating managed connections.
+     */
+    private final PoolHistogram  _createTime;
+
+
+    /**
+     * The time validating managed connections.
+     */
+    private final PoolHistogram  _validateTime;
+
+
+    PoolMetricsSnapshot( PoolMetrics metrics )
+    {
+        _timeStamp = System.currentTimeMillis();
+        _available = metrics.getAvailable();
+        _total = metrics.getTotal();
+        _created = metrics.getTotalCreated();
+        _discarded = metrics.getTotalDiscarded();
+        _errors = metrics.getTotalErrors();
+        _waited = metrics.getTotalWaited();
+        _leaked = metrics.getTotalLeaked();
+        _waitTime = metrics.getWaitTime().snapshot();
+        _holdTime = metrics.getHoldTime().snapshot();
+        _idleTime = metrics.getIdleTime().snapshot();
+        _createTime = metrics.getCreateTime().snapshot();
+        _validateTime = metrics.getValidateTime().snapshot();
+    }
+
+
+    /**
+     * Returns the time the snapshot was taken.
+     *
+     * @return The time the snapshot was taken (in milliseconds)
+     */
+    public long getTimeStamp()
+    {
+        return _timeStamp;
+    }
+
+
+    /**
+     * Returns the total number of connections in the pool, both used
+     * and unused.
+     *
+     * @return The total number of connections in the pool
+     */
+    public int getTotal()
+    {
+        return _total;
+    }
+
+
+    /**
+     * Returns the number of managed connections in use.
+     *
+     * @return The number of managed connections in use
+     */
+    public int getCurrentUsed()
+    {
+        return ( _total > _available ? _total - _available : 0 );
+    }
+
+
+    /**
+     * Returns the number of managed connections not in use.
+     *
+     * @return The number of unused managed connections
+     */
+    public int getCurrentUnused()
+    {
+        return _available;
+    }
+
+
+    /**
+     * Returns the number of managed connections created.
+     *
+     * @return The number of managed connections created
+     */
+    public int getTotalCreated()
+    {
+        return _created;
+    }
+
+
+    /**
+     * Returns the number of client connections used.
+     *
+     * @return The number of client connections used
+     */
+    public int getTotalUsed()
+    {
+        return (int) _holdTime.getCount();
+    }
+
+
+    /**
+     * Returns the number of managed connections discarded.
+     *
+     * @return The number of managed connections discarded
+     */
+    public int getTotalDiscarded()
+    {
+        return _discarded;
+    }
+
+
+    /**
+     * Returns the number of managed connections discarded due to an
+     * error in the connection.
+     *
+     * @return The number of erroneous connections
+     */
+    public int getTotalErrors()
+    {
+        return _errors;
+    }
+
+
+    /**
+     * Returns the number of client connections that could not be
+     * obtained immediately.
+     *
+     * @return The number of client connections that required waiting
+     */
+    public int getTotalWaited()
+    {
+        return _waited;
+    }
+
+
+    /**
+     * Returns the number of connections reported as possible leaks.
+     *
+     * @return The number of connections reported as possible leaks
+     */
+    public int getTotalLeaked()
+    {
+        return _leaked;
+    }
+
+
+    /**
+     * Returns the histogram of the time waiting for a connection.
+     *
+     * @return The histogram of the time waiting for a connection
+     * @see PoolMetrics#getWaitTime
+     */
+    public PoolHistogram getWaitTime()
+    {
+        return _waitTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time client connections are used.
+     *
+     * @return The histogram of the time using a connection
+     */
+    public PoolHistogram getHoldTime()
+    {
+        return _holdTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time connections are retained in
+     * the pool unused.
+     *
+     * @return The histogram of the time holding an unused connection
+     */
+    public PoolHistogram getIdleTime()
+    {
+        return _idleTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time creating a managed connection.
+     *
+     * @return The histogram of the time creating a connection
+     */
+    public PoolHistogram getCreateTime()
+    {
+        return _createTime;
+    }
+
+
+    /**
+     * Returns the histogram of the time validating a managed connection.
+     *
+     * @return The histogram of the time validating a connection
+     */
+    public PoolHistogram getValidateTime()
+    {
+        return _validateTime;
+    }
+
+
+    public String toString()
+    {
+        return "total " + _total + " used " + getCurrentUsed() + " created " + _created +
+            " discarded " + _discarded + " errors " + _errors + " waited " + _waited +
+            " leaked " + _leaked +
+            "\n  wait: " + _waitTime + "\n  hold: " + _holdTime +
+            "\n  create: " + _createTime + "\n  validate: " + _validateTime;
+    }
+
+
+}
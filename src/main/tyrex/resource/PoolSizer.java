@@ -0,0 +1,213 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+/**
+ * Adapts the size of a connection pool to its observed load.
+ * <p>
+ * The sizer maintains a target size, the number of connections the
+ * pool should keep open. The pool keeps at least that many connections
+ * open, opening new connections in the background, and releases
+ * unused connections above that size. The target size is always within
+ * the pool's minimum and maximum limits.
+ * <p>
+ * The pool calls {@link #adjust adjust} every {@link #INTERVAL}
+ * milliseconds from its background thread. The sizer estimates the
+ * demand for connections from the pool metrics: the peak number of
+ * connections in use during the interval, and the number of connections
+ * in use on average, calculated from the rate at which connections are
+ * used and the average duration they are used for.
+ * <p>
+ * The target size grows as soon as the demand exceeds it, or any
+ * application had to wait for a connection. It shrinks only after the
+ * demand has stayed below half the target size for {@link #SHRINK_AFTER}
+ * intervals in a row, so a short lull does not close connections that
+ * will be needed again.
+ * <p>
+ * This object is thread-safe.
+ *
+ * @see PoolLimits#getAdaptive
+ */
+public final class PoolSizer
+{
+
+
+    /**
+     * The interval between adjustments (in milliseconds).
+     */
+    public static final int  INTERVAL = 10000;
+
+
+    /**
+     * The number of consecutive intervals with low demand before
+     * the target size shrinks.
+     */
+    public static final int  SHRINK_AFTER = 3;
+
+
+    /**
+     * The current target size.
+     */
+    private int              _target;
+
+
+    /**
+     * The number of client connections used at the last adjustment.
+     */
+    private int              _lastUsed;
+
+
+    /**
+     * The number of client connections that waited at the last adjustment.
+     */
+    private int              _lastWaited;
+
+
+    /**
+     * The clock time of the last adjustment.
+     */
+    private long             _lastClock;
+
+
+    /**
+     * The number of consecutive intervals with low demand.
+     */
+    private int              _lowCount;
+
+
+    /**
+     * Constructs a new sizer.
+     *
+     * @param target The initial target size
+     * @param metrics The pool metrics
+     * @param clock The current clock time
+     */
+    public PoolSizer( int target, PoolMetrics metrics, long clock )
+    {
+        if ( metrics == null )
+            throw new IllegalArgumentException( "Argument metrics is null" );
+        _target = ( target < 0 ? 0 : target );
+        _lastUsed = metrics.getTotalUsed();
+        _lastWaited = metrics.getTotalWaited();
+        _lastClock = clock;
+    }
+
+
+    /**
+     * Returns the current target size.
+     *
+     * @return The current target size
+     */
+    public synchronized int getTarget()
+    {
+        return _target;
+    }
+
+
+    /**
+     * Called periodically to adjust the target size based on the pool
+     * metrics collected since the last adjustment. Returns the new
+     * target size.
+     *
+     * @param metrics The pool metrics
+     * @param limits The pool limits
+     * @param clock The current clock time
+     * @return The new target size
+     */
+    public synchronized int adjust( PoolMetrics metrics, PoolLimits limits, long clock )
+    {
+        int     demand;
+        int     used;
+        int     waited;
+        int     step;
+        int     minimum;
+        int     maximum;
+        double  average;
+
+        used = metrics.getTotalUsed();
+        waited = metrics.getTotalWaited();
+        demand = metrics.resetPeakUsed();
+        // The average number of connections in use is the rate at
+        // which connections are used, multiplied by the average
+        // duration they are used for.
+        if ( clock > _lastClock && used > _lastUsed ) {
+            average = ( (double) ( used - _lastUsed ) * 1000 / ( clock - _lastClock ) ) *
+                metrics.getUsedAvgDuration();
+            if ( Math.ceil( average ) > demand )
+                demand = (int) Math.ceil( average );
+        }
+
+        step = _target / 4;
+        if ( step < 1 )
+            step = 1;
+        if ( waited > _lastWaited || demand > _target ) {
+            // Grow immediately, leaving some room above the demand.
+            _target = Math.max( demand, _target ) + step;
+            _lowCount = 0;
+        } else if ( demand < _target / 2 ) {
+            // Shrink only after the demand stayed low for a while.
+            if ( ++_lowCount >= SHRINK_AFTER ) {
+                _target = Math.max( demand + step, _target - step );
+                _lowCount = 0;
+            }
+        } else
+            _lowCount = 0;
+
+        minimum = limits.getMinimum();
+        maximum = limits.getMaximum();
+        if ( _target < minimum )
+            _target = minimum;
+        if ( maximum > 0 && _target > maximum )
+            _target = maximum;
+        _lastUsed = used;
+        _lastWaited = waited;
+        _lastClock = clock;
+        return _target;
+    }
+
+
+}
@@ -0,0 +1,396 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import tyrex.util.logging.Category;
+
+
+/**
+ * Holds metrics about the SQL statements executed through a JDBC
+ * connection pool.
+ * <p>
+ * The time spent executing statements is recorded in a histogram
+ * for each distinct statement. Statements are told apart by their
+ * normalized SQL (see {@link #normalize normalize}), so statements
+ * that only differ in their literal values share a histogram. The
+ * number of rows fetched from each result set is recorded in a
+ * separate histogram, and statements that take longer than the
+ * slow statement threshold are counted and logged.
+ * <p>
+ * The statement metrics are only recorded if enabled in the data
+ * source configuration, and are obtained from {@link
+ * PoolMetrics#getStatementMetrics}. Looking up the histogram of a
+ * statement does not synchronize, and recording into a histogram
+ * only locks one of its stripes.
+ *
+ * @see PoolMetrics
+ */
+public final class StatementMetrics
+{
+
+
+    /**
+     * The maximum number of distinct statements recorded. Once
+     * reached, all other statements are recorded together under
+     * {@link #OTHER}.
+     */
+    public static final int     MAX_STATEMENTS = 256;
+
+
+    /**
+     * The key under which statements are recorded once {@link
+     * #MAX_STATEMENTS} distinct statements have been recorded.
+     */
+    public static final String  OTHER = "<other>";
+
+
+    /**
+     * The key under which batches of plain statements are recorded.
+     */
+    public static final String  BATCH = "<batch>";
+
+
+    /**
+     * Statements executing for this long or longer are logged (ms).
+     * Zero if slow statements are not logged.
+     */
+    private final int             _slowThreshold;
+
+
+    /**
+     * The category used for logging slow statements, or null.
+     */
+    private final Category        _category;
+
+
+    /**
+     * Maps normalized SQL to the histogram of execution times.
+     * Never modified once set, a new map is created when a statement
+     * is added, so lookups do not require synchronization.
+     */
+    private volatile HashMap      _executeTime = new HashMap();
+
+
+    /**
+     * The number of rows fetched from each result set.
+     */
+    private final PoolHistogram   _rowsFetched = new PoolHistogram();
+
+
+    /**
+     * The accumulated count of slow statements.
+     */
+    private final StripedCounter  _accumSlow = new StripedCounter();
+
+
+    /**
+     * Constructs a new statement metrics object.
+     *
+     * @param slowThreshold Statements executing for this long or
+     *   longer are logged (ms), zero to not log slow statements
+     * @param category The category used for logging slow statements,
+     *   or null
+     */
+    public StatementMetrics( int slowThreshold, Category category )
+    {
+        if ( slowThreshold < 0 )
+            throw new IllegalArgumentException( "Argument slowThreshold is negative" );
+        _slowThreshold = slowThreshold;
+        _category = category;
+    }
+
+
+    /**
+     * Returns the slow statement threshold (ms). Statements executing
+     * for this long or longer are counted and logged. Zero if slow
+     * statements are not logged.
+     *
+     * @return The slow statement threshold
+     */
+    public int getSlowThreshold()
+    {
+        return _slowThreshold;
+    }
+
+
+    /**
+     * Returns the accumulated number of slow statements.
+     *
+     * @return The accumulated number of slow statements
+     */
+    public int getTotalSlow()
+    {
+        return (int) _accumSlow.get();
+    }
+
+
+    /**
+     * Returns the normalized SQL of all the statements recorded so far.
+     *
+     * @return The normalized SQL of all recorded statements
+     */
+    public String[] getStatements()
+    {
+        return (String[]) _executeTime.keySet().toArray( new String[ 0 ] );
+    }
+
+
+    /**
+     * Returns the distribution of the time executing the statement
+     * (ms). The statement is normalized before it is looked up.
+     * Returns null if the statement was never executed.
+     *
+     * @param sql The SQL statement
+     * @return The histogram of execution times, or null
+     */
+    public PoolHistogram getExecuteTime( String sql )
+    {
+        if ( sql == null )
+            throw new IllegalArgumentException( "Argument sql is null" );
+        return (PoolHistogram) _executeTime.get( normalize( sql ) );
+    }
+
+
+    /**
+     * Returns the distribution of the number of rows fetched from
+     * each result set. This histogram records row counts rather
+     * than durations.
+     *
+     * @return The histogram of rows fetched
+     */
+    public PoolHistogram getRowsFetched()
+    {
+        return _rowsFetched;
+    }
+
+
+    /**
+     * Called to reset this metrics object. Forgets all the statements
+     * recorded so far.
+     */
+    public void reset()
+    {
+        synchronized ( this ) {
+            _executeTime = new HashMap();
+        }
+        _rowsFetched.reset();
+        _accumSlow.reset();
+    }
+
+
+    /**
+     * Returns the histogram into which executions of the statement
+     * are recorded, adding a new histogram if the statement was not
+     * executed before. A statement prepared once and executed many
+     * times should be looked up once.
+     *
+     * @param sql The SQL statement
+     * @return The histogram of execution times
+     */
+    public PoolHistogram lookup( String sql )
+    {
+        PoolHistogram histogram;
+        HashMap       map;
+        String        key;
+
+        if ( sql == null )
+            throw new IllegalArgumentException( "Argument sql is null" );
+        key = normalize( sql );
+        histogram = (PoolHistogram) _executeTime.get( key );
+        if ( histogram != null )
+            return histogram;
+        synchronized ( this ) {
+            histogram = (PoolHistogram) _executeTime.get( key );
+            if ( histogram == null ) {
+                if ( _executeTime.size() >= MAX_STATEMENTS ) {
+                    key = OTHER;
+                    histogram = (PoolHistogram) _executeTime.get( key );
+                }
+                if ( histogram == null ) {
+                    histogram = new PoolHistogram();
+                    map = (HashMap) _executeTime.clone();
+                    map.put( key, histogram );
+                    _executeTime = map;
+                }
+            }
+        }
+        return histogram;
+    }
+
+
+    /**
+     * Records the execution of a statement. Logs the normalized
+     * statement if it executed for longer than the slow statement
+     * threshold, so literal values are not written to the log.
+     *
+     * @param executeTime The histogram returned from {@link #lookup
+     *   lookup} for this statement
+     * @param sql The SQL statement
+     * @param started The clock time at which the statement started
+     *   executing
+     */
+    public void recordExecute( PoolHistogram executeTime, String sql, long started )
+    {
+        long elapsed;
+
+        elapsed = System.currentTimeMillis() - started;
+        executeTime.record( elapsed );
+        if ( _slowThreshold > 0 && elapsed >= _slowThreshold ) {
+            _accumSlow.increment();
+            if ( _category != null )
+                _category.warn( "Slow statement executed in " + elapsed + "ms: " + normalize( sql ) );
+        }
+    }
+
+
+    /**
+     * Records the number of rows fetched from a result set.
+     *
+     * @param rows The number of rows fetched
+     */
+    public void recordRows( int rows )
+    {
+        _rowsFetched.record( rows );
+    }
+
+
+    public String toString()
+    {
+        StringBuffer buffer;
+        HashMap      map;
+        Iterator     iter;
+        Object       key;
+
+        map = _executeTime;
+        buffer = new StringBuffer();
+        buffer.append( "rows " ).append( _rowsFetched ).append( " slow " ).append( getTotalSlow() );
+        iter = map.keySet().iterator();
+        while ( iter.hasNext() ) {
+            key = iter.next();
+            buffer.append( '\n' ).append( key ).append( ": " ).append( map.get( key ) );
+        }
+        return buffer.toString();
+    }
+
+
+    /**
+     * Returns the normalized form of an SQL statement. Runs of white
+     * space are replaced with a single space, and string and numeric
+     * literals are replaced with a question mark. Identifiers, quoted
+     * identifiers and parameter markers are retained.
+     *
+     * @param sql The SQL statement
+     * @return The normalized SQL statement
+     */
+    public static String normalize( String sql )
+    {
+        StringBuffer buffer;
+        boolean      space;
+        char         ch;
+        char         quote;
+        int          length;
+        int          start;
+        int          i;
+
+        length = sql.length();
+        buffer = new StringBuffer( length );
+        space = false;
+        i = 0;
+        while ( i < length ) {
+            ch = sql.charAt( i );
+            if ( Character.isWhitespace( ch ) ) {
+                space = ( buffer.length() > 0 );
+                ++i;
+                continue;
+            }
+            if ( space ) {
+                buffer.append( ' ' );
+                space = false;
+            }
+            if ( ch == '\'' || ch == '"' ) {
+                // String literal or quoted identifier, the quote
+                // character is escaped by doubling it.
+                quote = ch;
+                start = i;
+                for ( ++i ; i < length ; ++i ) {
+                    if ( sql.charAt( i ) == quote ) {
+                        if ( i + 1 < length && sql.charAt( i + 1 ) == quote )
+                            ++i;
+                        else
+                            break;
+                    }
+                }
+                ++i;
+                if ( quote == '\'' )
+                    buffer.append( '?' );
+                else
+                    buffer.append( sql.substring( start, Math.min( i, length ) ) );
+            } else if ( Character.isDigit( ch ) ) {
+                // Numeric literal, including decimal point and exponent.
+                while ( i < length && ( Character.isLetterOrDigit( sql.charAt( i ) ) || sql.charAt( i ) == '.' ) )
+                    ++i;
+                buffer.append( '?' );
+            } else if ( Character.isLetter( ch ) || ch == '_' ) {
+                // Identifier or keyword, may contain digits.
+                while ( i < length && ( Character.isLetterOrDigit( ch = sql.charAt( i ) ) ||
+                                        ch == '_' || ch == '$' || ch == '#' ) ) {
+                    buffer.append( ch );
+                    ++i;
+                }
+            } else {
+                buffer.append( ch );
+                ++i;
+            }
+        }
+        return buffer.toString();
+    }
+
+
+}
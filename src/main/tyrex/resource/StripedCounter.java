@@ -0,0 +1,137 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+
+/**
+ * A counter that can be incremented by many threads concurrently.
+ * <p>
+ * Each thread adds to one of several stripes, each protected by its
+ * own lock, so threads rarely contend when updating the counter.
+ * Reading the counter sums all the stripes.
+ *
+ * @see PoolMetrics
+ */
+final class StripedCounter
+{
+
+
+    /**
+     * The number of stripes. Must be a power of two.
+     */
+    private static final int  STRIPES = 4;
+
+
+    /**
+     * The stripes, each synchronized on itself.
+     */
+    private final long[][]    _stripes;
+
+
+    StripedCounter()
+    {
+        _stripes = new long[ STRIPES ][ 1 ];
+    }
+
+
+    /**
+     * Adds one to the counter.
+     */
+    void increment()
+    {
+        add( 1 );
+    }
+
+
+    /**
+     * Adds the value to the counter.
+     *
+     * @param value The value to add
+     */
+    void add( long value )
+    {
+        long[] stripe;
+
+        stripe = _stripes[ System.identityHashCode( Thread.currentThread() ) & ( STRIPES - 1 ) ];
+        synchronized ( stripe ) {
+            stripe[ 0 ] += value;
+        }
+    }
+
+
+    /**
+     * Returns the value of the counter.
+     *
+     * @return The value of the counter
+     */
+    long get()
+    {
+        long value;
+
+        value = 0;
+        for ( int i = 0 ; i < STRIPES ; ++i ) {
+            synchronized ( _stripes[ i ] ) {
+                value += _stripes[ i ][ 0 ];
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Resets the counter to zero.
+     */
+    void reset()
+    {
+        for ( int i = 0 ; i < STRIPES ; ++i ) {
+            synchronized ( _stripes[ i ] ) {
+                _stripes[ i ][ 0 ] = 0;
+            }
+        }
+    }
+
+
+}
@@ -49,6 +49,8 @@ package tyrex.resource.jca;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -63,10 +65,15 @@ import javax.resource.spi.ManagedConnection;
 import javax.resource.spi.ManagedConnectionFactory;
 import javax.resource.spi.ManagedConnectionMetaData;
 import javax.resource.spi.ResourceAllocationException;
+import javax.security.auth.Subject;
+import javax.transaction.Status;
+import javax.transaction.Transaction;
 import javax.transaction.xa.XAResource;
 
+import tyrex.resource.PoolFiller;
 import tyrex.resource.PoolLimits;
 import tyrex.resource.PoolMetrics;
+import tyrex.resource.PoolSizer;
 import tyrex.resource.Resource;
 import tyrex.services.Clock;
 import tyrex.services.DaemonMaster;
@@ -84,7 +91,8 @@ import tyrex.util.logging.LoggerPrintWriter;
  */
 final class ConnectionPool
     extends PoolMetrics
-    implements Resource, ConnectionManager, Set, ConnectionEventListener, Runnable
+    implements Resource, ConnectionManager, LazyEnlistableConnectionManager, Set,
+               ConnectionEventListener, Runnable
 {
 
 
@@ -95,6 +103,20 @@ final class ConnectionPool
     public static final int TABLE_SIZE = 131;
 
 
+    /**
+     * The time to wait before attempting to restore the minimum pool
+     * size after failing to open a connection (in milliseconds).
+     */
+    private static final int FILL_RETRY = 10000;
+
+
+    /**
+     * The maximum number of available connections offered to the
+     * connector when matching a connection.
+     */
+    private static final int MATCH_CANDIDATES = 8;
+
+
     /**
      * The connector name.
      */
@@ -107,6 +129,27 @@ final class ConnectionPool
      */
     private final PoolEntry[]             _pool;
 
+
+    /**
+     * The pool partitions, each holding the connections created for
+     * the same subject and request information. Each partition is
+     * mapped to itself.
+     */
+    private final HashMap                 _partitions = new HashMap();
+
+
+    /**
+     * The first partition with available connections, or null.
+     */
+    private PoolPartition                 _firstAvailable;
+
+
+    /**
+     * Connections shared within a transaction. Maps each {@link SharedKey}
+     * to the connection entry enlisted in that transaction.
+     */
+    private final HashMap                 _shared = new HashMap();
+
  
     /**
      * The pool limits.
@@ -162,6 +205,51 @@ final class ConnectionPool
     private boolean                       _destroyed;
 
 
+    /**
+     * The number of connections currently being opened by the pool filler.
+     */
+    private int                           _filling;
+
+
+    /**
+     * The last pool filler started, or null.
+     */
+    private Filler                        _filler;
+
+
+    /**
+     * The clock time after which the pool may attempt to restore the
+     * minimum size following an error, or zero.
+     */
+    private long                          _fillAfter;
+
+
+    /**
+     * Adapts the pool size to the observed load, or null if the pool
+     * size is not adaptive.
+     */
+    private final PoolSizer               _sizer;
+
+
+    /**
+     * The next time we expect to adapt the pool size.
+     */
+    private long                          _nextAdjust;
+
+
+    /**
+     * The next time we expect to check for leaked connections.
+     */
+    private long                          _nextLeakCheck;
+
+
+    /**
+     * The number of connections obtained from the pool, used to
+     * sample where connections are obtained.
+     */
+    private int                           _borrowCount;
+
+
     ConnectionPool( String name, PoolLimits limits, ConnectorLoader loader,
                     TyrexTransactionManager txManager, Category category )
         throws ResourceException
@@ -169,6 +257,7 @@ final class ConnectionPool
         ManagedConnection         managed = null;
         ManagedConnectionMetaData metaData;
         StringBuffer              buffer;
+        Exception                 error;
         int                       maximum;
         int                       initial;
 
@@ -214,12 +303,12 @@ final class ConnectionPool
         // connection meta data and XA resource for recovery.
         // An exception occurs if we cannot create this connection,
         // or we can't get the XA resource.
-        managed = _loader.createManagedConnection( null, null );
+        managed = createManagedConnection( null, null );
         if ( _loader._xaSupported )
             _xaResource = managed.getXAResource();
         else
             _xaResource = null;
-        allocate( managed, false );
+        allocate( managed, null, null, false );
 
         // Obtain the maximum number of connections reported by the
         // meta-data and if necessary, update the maximum number of
@@ -233,12 +322,22 @@ final class ConnectionPool
 
         // Allocate as many connection as specified for the initial size
         // (excluding the one we always create before we reach this point).
+        // The filler opens up to prefillThreads connections at a time,
+        // either before we return or in the background.
         initial = _limits.getInitial();
         if ( maximum > 0 && initial > maximum )
             initial = maximum;
-        for ( int i = initial - 1 ; i-- > 0 ; ) {
-            managed = _loader.createManagedConnection( null, null );
-            allocate( managed, false );
+        if ( initial > 1 ) {
+            _filler = new Filler( initial - 1 );
+            if ( _limits.getPrefillAsync() )
+                _filler.start( _limits.getPrefillThreads() );
+            else {
+                error = _filler.fill( _limits.getPrefillThreads() );
+                if ( error instanceof ResourceException )
+                    throw (ResourceException) error;
+                else if ( error != null )
+                    throw new ResourceException( error.toString() );
+            }
         }
         _factory = _loader.createConnectionFactory( this );
 
@@ -257,7 +356,15 @@ final class ConnectionPool
             _logWriter.println( buffer.toString() );
         }
 
-        if ( 0 != _limits.getMaxRetain() ) {
+        if ( _limits.getAdaptive() ) {
+            _sizer = new PoolSizer( Math.max( initial, _limits.getMinimum() ), this, Clock.clock() );
+            _nextAdjust = Clock.clock() + PoolSizer.INTERVAL;
+        } else
+            _sizer = null;
+
+        if ( 0 != _limits.getMaxRetain() || 0 != _limits.getMaxLifetime() ||
+             0 != _limits.getMinimum() || 0 != _limits.getLeakTimeout() ||
+             _sizer != null ) {
             DaemonMaster.addDaemon( this, "Connection Pool " + name );
         }
     }
@@ -328,6 +435,9 @@ final class ConnectionPool
             }
             _pool[ i ] = null;
         }
+        _partitions.clear();
+        _firstAvailable = null;
+        _shared.clear();
         _total = 0;
         _available = 0;
     }
@@ -340,7 +450,22 @@ final class ConnectionPool
 
         while ( true ) {
             try {
+                if ( _sizer != null && Clock.clock() >= _nextAdjust )
+                    adjust();
+                // We are notified whenever a connection is discarded,
+                // so this is where we restore the minimum pool size.
+                replenish();
                 nextExpiration = _nextExpiration;
+                if ( _fillAfter != 0 && ( nextExpiration == 0 || nextExpiration > _fillAfter ) )
+                    nextExpiration = _fillAfter;
+                if ( _sizer != null && ( nextExpiration == 0 || nextExpiration > _nextAdjust ) )
+                    nextExpiration = _nextAdjust;
+                if ( 0 != _limits.getLeakTimeout() ) {
+                    if ( Clock.clock() >= _nextLeakCheck )
+                        detectLeaks();
+                    if ( nextExpiration == 0 || nextExpiration > _nextLeakCheck )
+                        nextExpiration = _nextLeakCheck;
+                }
                 // No next expiration time, wait until notified.
                 if ( nextExpiration == 0 )
                     wait();
@@ -348,7 +473,7 @@ final class ConnectionPool
                     clock = Clock.clock();
                     // Pending expiration, attempt to expire.
                     // Otherwise, wait until next expiration time.
-                    if ( clock > nextExpiration )
+                    if ( clock >= nextExpiration )
                         expire();
                     else
                         wait( nextExpiration - clock );
@@ -371,8 +496,10 @@ final class ConnectionPool
         throws ResourceException
     {
         Object            connection;
-        XAResource        xaResource;
         PoolEntry         entry;
+        Subject           subject;
+        Transaction       tx;
+        SharedKey         key;
         
         if ( _destroyed )
             throw new ResourceException( "Connection pool has been destroyed" );
@@ -381,25 +508,51 @@ final class ConnectionPool
             throw new ResourceAllocationException( "Connector error: called allocateConnection with the wrong factory" );
         }
 
+        // Within a transaction, the connection already enlisted for the
+        // same subject and request information is shared, and we only
+        // obtain a new client connection from it.
+        subject = ThreadContext.getThreadContext().getSubject();
+        key = null;
+        if ( _loader._xaSupported ) {
+            tx = getActiveTransaction();
+            if ( tx != null ) {
+                key = new SharedKey( tx, subject, requestInfo );
+                entry = share( key );
+                if ( entry != null ) {
+                    try {
+                        return _loader.getConnection( entry._managed, subject, requestInfo );
+                    } catch ( Exception except ) {
+                        // Give up the handle we reserved. The connection
+                        // remains in use by the other handles.
+                        release( entry._managed, true );
+                        throw new ResourceAllocationException( "Error occured using connection " + entry._managed + ": " + except );
+                    }
+                }
+            }
+        }
+
         entry = allocate( requestInfo );
         // If connection supports XA resource, we need to enlist
         // it in this or any future transaction. If this fails,
         // the connection is unuseable.
-        if ( entry._xaResource != null ) {
+        // With lazy enlistment, a connector that supports it enlists
+        // the connection when first used.
+        if ( entry._xaResource != null &&
+             ! ( _limits.getLazyEnlist() && entry._managed instanceof LazyEnlistableManagedConnection ) ) {
             try {
-                _txManager.enlistResource( entry._xaResource );
-            } catch ( Exception except ) {
+                enlist( entry );
+            } catch ( ResourceException except ) {
                 release( entry._managed, false );
-                throw new ResourceAllocationException( "Error occured using connection " + entry._managed + ": " + except );
+                throw except;
             }
         }
         // Obtain the client connection and register this pool as
         // the event listener. If we failed, the connection is not
         // useable and we discard it and try again.
         try {
-            connection = _loader.getConnection( entry._managed,
-                                                ThreadContext.getThreadContext().getSubject(),
-                                                requestInfo );
+            connection = _loader.getConnection( entry._managed, subject, requestInfo );
+            if ( key != null && entry._xaResource != null )
+                shared( entry, key );
             return connection;
         } catch ( Exception except ) {
             release( entry._managed, false );
@@ -411,6 +564,155 @@ final class ConnectionPool
     }
 
 
+    //---------------------------------------------
+    // Methods defined by LazyEnlistableConnectionManager
+    //---------------------------------------------
+
+
+    public void lazyEnlist( ManagedConnection managed )
+        throws ResourceException
+    {
+        PoolEntry entry;
+        int       hashCode;
+
+        if ( managed == null )
+            throw new IllegalArgumentException( "Argument managed is null" );
+        hashCode = managed.hashCode();
+        synchronized ( this ) {
+            entry = _pool[ ( hashCode & 0x7FFFFFFF ) % _pool.length ];
+            while ( entry != null && ( entry._hashCode != hashCode ||
+                                       ! entry._managed.equals( managed ) ) )
+                entry = entry._nextEntry;
+            if ( entry == null || entry._available )
+                throw new ResourceException( "Connector error: lazyEnlist called with a connection not in use" );
+            if ( entry._enlisted )
+                return;
+        }
+        enlist( entry );
+    }
+
+
+    /**
+     * Enlists the connection's XA resource in this or any future
+     * transaction. Called when the connection is obtained from the
+     * pool, or when first used if lazy enlistment is enabled.
+     *
+     * @param entry The connection entry
+     * @throws ResourceException An error occured enlisting the connection
+     */
+    private void enlist( PoolEntry entry )
+        throws ResourceException
+    {
+        if ( entry._xaResource == null )
+            return;
+        try {
+            _txManager.enlistResource( entry._xaResource );
+        } catch ( Exception except ) {
+            throw new ResourceAllocationException( "Error occured using connection " + entry._managed + ": " + except );
+        }
+        synchronized ( this ) {
+            entry._enlisted = true;
+        }
+    }
+
+
+    /**
+     * Returns the transaction associated with the current thread, if
+     * active, or null.
+     *
+     * @return The active transaction, or null
+     */
+    private Transaction getActiveTransaction()
+    {
+        Transaction tx;
+
+        try {
+            tx = _txManager.getTransaction();
+            if ( tx != null && tx.getStatus() == Status.STATUS_ACTIVE )
+                return tx;
+        } catch ( Exception except ) {
+            // Not in a transaction we can share a connection in.
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the connection shared within a transaction, and records
+     * a new client connection for it. Returns null if no connection is
+     * shared for this transaction, subject and request information.
+     *
+     * @param key The transaction, subject and request information
+     * @return The shared connection entry, or null
+     */
+    private synchronized PoolEntry share( SharedKey key )
+    {
+        PoolEntry entry;
+
+        entry = (PoolEntry) _shared.get( key );
+        if ( entry == null || entry._available )
+            return null;
+        ++entry._handles;
+        if ( _logWriter != null )
+            _logWriter.println( "Sharing connection " + entry._managed + " in transaction " + key._tx );
+        return entry;
+    }
+
+
+    /**
+     * Records that a connection enlisted in a transaction can be shared
+     * by other client connections in the same transaction.
+     *
+     * @param entry The connection entry
+     * @param key The transaction, subject and request information
+     */
+    private synchronized void shared( PoolEntry entry, SharedKey key )
+    {
+        if ( entry._available || entry._sharedKey != null || _shared.containsKey( key ) )
+            return;
+        entry._sharedKey = key;
+        _shared.put( key, entry );
+    }
+
+
+    /**
+     * Called when a connection is released or removed from the pool,
+     * so it is no longer shared.
+     *
+     * @param entry The connection entry
+     */
+    private void unshare( PoolEntry entry )
+    {
+        entry._handles = 0;
+        if ( entry._sharedKey != null ) {
+            _shared.remove( entry._sharedKey );
+            entry._sharedKey = null;
+        }
+    }
+
+
+    /**
+     * Creates a new managed connection and records the time it took.
+     *
+     * @param subject The subject, or null
+     * @param requestInfo The connection request information, or null
+     * @return A new managed connection
+     * @throws ResourceException The connector could not create a new
+     * managed connection
+     */
+    private ManagedConnection createManagedConnection( Subject subject, ConnectionRequestInfo requestInfo )
+        throws ResourceException
+    {
+        ManagedConnection managed;
+        long              start;
+
+        start = System.currentTimeMillis();
+        managed = _loader.createManagedConnection( subject, requestInfo );
+        recordCreateDuration( (int) ( System.currentTimeMillis() - start ) );
+        return managed;
+    }
+
+
     private synchronized PoolEntry allocate( ConnectionRequestInfo requestInfo )
         throws ResourceException
     {
@@ -419,7 +721,11 @@ final class ConnectionPool
         long              clock;
         long              timeout;
         int               maximum;
+        long              waitStart = 0;
+        long              start;
+        Subject           subject;
         
+        subject = ThreadContext.getThreadContext().getSubject();
         timeout = _limits.getTimeout() * 1000;
         // We repeat this loop until we either get a connection, or we time out.
         // We will keep getting notified as connections are made available to the
@@ -429,9 +735,13 @@ final class ConnectionPool
             // If any connections are available we keep trying to match an
             // existing connection. It's possible that a matched connection
             // will not be useable, so we repeat until one (or none) is found.
+            // The connector is only offered a few candidates, so the cost of
+            // matching does not depend on the pool size.
             while ( _available > 0 ) {
-                managed = _loader.matchManagedConnections( this, ThreadContext.getThreadContext().getSubject(),
-                                                           requestInfo );
+                start = System.currentTimeMillis();
+                managed = _loader.matchManagedConnections( getCandidates( subject, requestInfo ),
+                                                           subject, requestInfo );
+                recordValidateDuration( (int) ( System.currentTimeMillis() - start ) );
                 // No matched connection, exit loop so we will attempt
                 // to create a new one.
                 if ( managed == null )
@@ -442,8 +752,16 @@ final class ConnectionPool
                 if ( entry == null ) {
                     release( managed, false );
                     _category.error( "Connector error: matchManagedConnetions returned an unavailable connection" );
-                } else
+                } else if ( entry._expires != 0 && entry._timeStamp >= entry._expires ) {
+                    // The connection reached its maximum lifetime while
+                    // idle. Discard it and match again.
+                    entry._available = true;
+                    discard( managed, true );
+                } else {
+                    borrowed( entry, waitStart );
+                    entry._handles = 1;
                     return entry;
+                }
             }
 
             // No matched connections, need to create a new one.
@@ -452,17 +770,17 @@ final class ConnectionPool
             // do not use (and cannot be matched), release it and make
             // room for a new connection to be created.
             maximum = _limits.getMaximum();
-            if ( maximum == 0 || _total < maximum ||
+            if ( maximum == 0 || _total + _filling < maximum ||
                  ( _available > 0 && discardNext() ) ) {
-                managed = _loader.createManagedConnection( ThreadContext.getThreadContext().getSubject(),
-                                                           requestInfo );
+                managed = createManagedConnection( subject, requestInfo );
                 // Need to allocate the connection. It is an error if the
                 // managed connection is already in the pool.
-                entry = allocate( managed, true );
+                entry = allocate( managed, subject, requestInfo, true );
                 if ( entry == null )
                     throw new ResourceException( "Connector error: createManagedConnetion returned an existing connection" );
-                else
-                    return entry;
+                borrowed( entry, waitStart );
+                entry._handles = 1;
+                return entry;
             }
 
             // If timeout is zero, we throw an exception. Otherwise,
@@ -473,6 +791,8 @@ final class ConnectionPool
                                                        _name + ": reached limit of " +
                                                        maximum + " connections" );
             clock = Clock.clock();
+            if ( waitStart == 0 )
+                waitStart = System.currentTimeMillis();
             try {
                 wait ( timeout );
                 timeout -= Clock.clock() - clock;
@@ -568,7 +888,7 @@ final class ConnectionPool
     private boolean append( ManagedConnection managed )
     {
         try {
-            return ( allocate( managed, false ) != null );
+            return ( allocate( managed, null, null, false ) != null );
         } catch ( ResourceException except ) {
             return false;
         }
@@ -583,11 +903,15 @@ final class ConnectionPool
      * once. If the connection already exists, this method returns null.
      *
      * @param managed The managed connection to allocate
+     * @param subject The subject the connection was created for, or null
+     * @param requestInfo The request information the connection was
+     * created for, or null
      * @param reserve True if the connection must be reserved
      * @return The connection entry
      * @throws ResourceException An error occured with the managed connection
      */
-    private synchronized PoolEntry allocate( ManagedConnection managed, boolean reserve )
+    private synchronized PoolEntry allocate( ManagedConnection managed, Subject subject,
+                                             ConnectionRequestInfo requestInfo, boolean reserve )
         throws ResourceException
     {
         PoolEntry        entry;
@@ -596,8 +920,7 @@ final class ConnectionPool
         int              index;
         XAResource       xaResource = null;
         LocalTransaction localTx = null;
-        long             nextExpiration;
-        int              maxRetain;
+        long             lifetime;
 
         if ( managed == null )
             throw new IllegalArgumentException( "Argument managed is null" );
@@ -637,31 +960,156 @@ final class ConnectionPool
             entry = next;
         }
         entry._managed.addConnectionEventListener( this );
+        entry._partition = getPartition( subject, requestInfo );
+        ++entry._partition._entries;
+        lifetime = _limits.newLifetime();
+        if ( lifetime > 0 )
+            entry._expires = entry._timeStamp + lifetime;
         // Record that a new connection has been created. This will increase
         // the total pool size. If not reserved, mark the connection as
         // available and increase the available count.
         recordCreated();
-        if ( ! reserve ) {
-            entry._available = true; 
-            _available += 1;
-        }
+        if ( ! reserve )
+            makeAvailable( entry );
         // Calculate the next expiration time based on this connection.
         // If the next expiration time is soon, we notify the background
         // thread.
-        maxRetain = _limits.getMaxRetain();
-        if ( maxRetain > 0 ) {
-            nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
-            if ( _nextExpiration == 0 || _nextExpiration > nextExpiration ) {
-                _nextExpiration = nextExpiration;
-                notifyAll();
-            }
-        }
+        schedule( entry );
         if ( _logWriter != null )
             _logWriter.println( "Allocated new connection " + entry._managed );
         return entry;
     }
 
 
+    /**
+     * Returns the partition for connections created for the subject and
+     * request information, creating a new partition if necessary.
+     *
+     * @param subject The subject, or null
+     * @param requestInfo The request information, or null
+     * @return The partition
+     */
+    private PoolPartition getPartition( Subject subject, ConnectionRequestInfo requestInfo )
+    {
+        PoolPartition partition;
+        PoolPartition existing;
+
+        partition = new PoolPartition( subject, requestInfo );
+        existing = (PoolPartition) _partitions.get( partition );
+        if ( existing != null )
+            return existing;
+        _partitions.put( partition, partition );
+        return partition;
+    }
+
+
+    /**
+     * Returns a small set of available connections the connector can
+     * match. The set holds the most recently used connections created
+     * for the same subject and request information, followed by
+     * connections created for others, up to {@link #MATCH_CANDIDATES}.
+     *
+     * @param subject The subject, or null
+     * @param requestInfo The request information, or null
+     * @return A set of available managed connections
+     */
+    private Set getCandidates( Subject subject, ConnectionRequestInfo requestInfo )
+    {
+        HashSet       candidates;
+        PoolPartition partition;
+        PoolPartition next;
+
+        candidates = new HashSet();
+        partition = (PoolPartition) _partitions.get( new PoolPartition( subject, requestInfo ) );
+        if ( partition != null )
+            partition.addCandidates( candidates, MATCH_CANDIDATES );
+        next = _firstAvailable;
+        while ( next != null && candidates.size() < MATCH_CANDIDATES ) {
+            if ( next != partition )
+                next.addCandidates( candidates, MATCH_CANDIDATES );
+            next = next._nextAvailable;
+        }
+        return candidates;
+    }
+
+
+    /**
+     * Makes a connection available, adding it to the available
+     * connections of its partition.
+     *
+     * @param entry The connection entry
+     */
+    private void makeAvailable( PoolEntry entry )
+    {
+        PoolPartition partition;
+
+        entry._available = true;
+        if ( entry._idle )
+            return;
+        partition = entry._partition;
+        if ( partition._available == 0 ) {
+            partition._prevAvailable = null;
+            partition._nextAvailable = _firstAvailable;
+            if ( _firstAvailable != null )
+                _firstAvailable._prevAvailable = partition;
+            _firstAvailable = partition;
+        }
+        partition.add( entry );
+        entry._idle = true;
+        _available += 1;
+    }
+
+
+    /**
+     * Makes a connection unavailable, removing it from the available
+     * connections of its partition.
+     *
+     * @param entry The connection entry
+     */
+    private void makeUnavailable( PoolEntry entry )
+    {
+        PoolPartition partition;
+
+        entry._available = false;
+        if ( ! entry._idle )
+            return;
+        partition = entry._partition;
+        partition.remove( entry );
+        entry._idle = false;
+        _available -= 1;
+        if ( partition._available == 0 ) {
+            if ( partition._prevAvailable == null )
+                _firstAvailable = partition._nextAvailable;
+            else
+                partition._prevAvailable._nextAvailable = partition._nextAvailable;
+            if ( partition._nextAvailable != null )
+                partition._nextAvailable._prevAvailable = partition._prevAvailable;
+            partition._nextAvailable = null;
+            partition._prevAvailable = null;
+        }
+    }
+
+
+    /**
+     * Called after a connection has been removed from the pool hash
+     * table, to remove it from its partition. The partition is removed
+     * once it holds no more connections.
+     *
+     * @param entry The connection entry
+     */
+    private void removed( PoolEntry entry )
+    {
+        boolean available;
+
+        available = entry._available;
+        makeUnavailable( entry );
+        entry._available = available;
+        unshare( entry );
+        if ( --entry._partition._entries == 0 )
+            _partitions.remove( entry._partition );
+    }
+
+
     /**
      * Reserves a connection. This method attempts to reserve a connection,
      * such that it is no longer available from the pool. If the connection
@@ -683,12 +1131,11 @@ final class ConnectionPool
         hashCode = managed.hashCode();
         index = ( hashCode & 0x7FFFFFFF ) % _pool.length;
         entry = _pool[ index ];
-        while ( entry != null && entry._hashCode != hashCode &&
-                ! entry._managed.equals( managed ) )
+        while ( entry != null && ( entry._hashCode != hashCode ||
+                                   ! entry._managed.equals( managed ) ) )
             entry = entry._nextEntry;
-        if ( entry != null && entry._available ) {
-            entry._available = false;
-            _available -= 1;
+        if ( entry != null && entry._idle ) {
+            makeUnavailable( entry );
             clock = Clock.clock();
             recordUnusedDuration( (int) ( clock - entry._timeStamp ) );
             entry._timeStamp = clock;
@@ -726,8 +1173,6 @@ final class ConnectionPool
         int       hashCode;
         int       index;
         long      clock;
-        long      nextExpiration;
-        int       maxRetain;
 
         if ( managed == null )
             return false;
@@ -742,8 +1187,8 @@ final class ConnectionPool
                 }
             } else {
                 entry = entry._nextEntry;
-                while ( entry != null && hashCode != entry._hashCode &&
-                        ! entry._managed.equals( managed ) )
+                while ( entry != null && ( hashCode != entry._hashCode ||
+                                           ! entry._managed.equals( managed ) ) )
                     entry = entry._nextEntry;
                 if ( entry == null || entry._available ) {
                     _category.error( "Connector error: Released connection " + managed + " not in pool" );
@@ -754,6 +1199,13 @@ final class ConnectionPool
             _category.error( "Connector error: Released connection " + managed + " not in pool" );
             return false;
         }
+        // A connection shared within a transaction remains in use
+        // until the application closes all its client connections.
+        if ( success && entry._handles > 1 ) {
+            --entry._handles;
+            return true;
+        }
+        unshare( entry );
         // If we reached this point, we have the connection entry
         // and the connection is not reserved. If an XA resource
         // is used, we need to delist it. If successful, we mark
@@ -765,19 +1217,20 @@ final class ConnectionPool
             recordUsedDuration( (int) ( clock - entry._timeStamp ) );
             entry._timeStamp = clock;
             entry._available = true;
-            if ( entry._xaResource != null )
+            if ( entry._xaResource != null && entry._enlisted ) {
+                entry._enlisted = false;
                 _txManager.delistResource( entry._xaResource, success ? XAResource.TMSUCCESS : XAResource.TMFAIL );
-            if ( success ) {
-                _available += 1;
+            }
+            if ( success && entry._expires != 0 && clock >= entry._expires ) {
+                // The connection reached its maximum lifetime while in
+                // use. Discard it instead of returning it to the pool.
+                discard( managed, true );
+            } else if ( success ) {
                 entry._managed.cleanup();
+                makeAvailable( entry );
 
                 // Calculate the next expiration time based on this connection.
-                maxRetain = _limits.getMaxRetain();
-                if ( maxRetain > 0 ) {
-                    nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
-                    if ( _nextExpiration == 0 || _nextExpiration > nextExpiration )
-                        _nextExpiration = nextExpiration;
-                }
+                schedule( entry );
                 // We notify any blocking thread that it can attempt to
                 // get a new connection.
                 notifyAll();
@@ -844,6 +1297,7 @@ final class ConnectionPool
         // If we reached this point, we have the connection entry
         // and the connection is not reserved. We notify the pool,
         // such that it can create a new connection available.
+        removed( entry );
         try {
             clock = Clock.clock();
             recordUnusedDuration( (int) ( clock - entry._timeStamp ) );
@@ -895,9 +1349,9 @@ final class ConnectionPool
         if ( entry == null )
             return false;
         if ( hashCode == entry._hashCode && entry._managed.equals( managed ) ) {
-            _pool[ index ] = entry._nextEntry;
             if ( ! entry._available )
                 return false;
+            _pool[ index ] = entry._nextEntry;
         } else {
             next = entry._nextEntry;
             while ( next != null ) {
@@ -917,6 +1371,7 @@ final class ConnectionPool
         // If we reached this point, we have the connection entry
         // and the connection is not reserved. We notify the pool,
         // such that it can create a new connection available.
+        removed( entry );
         try {
             clock = Clock.clock();
             recordUnusedDuration( (int) ( clock - entry._timeStamp ) );
@@ -941,9 +1396,14 @@ final class ConnectionPool
 
     /**
      * Called periodically to expire connections that have been
-     * available in the pool for longer than maxRetain seconds.
-     * This method returns the next expiration time, or zero if
-     * no connection is expected to expire soon.
+     * available in the pool for longer than maxRetain seconds, or
+     * that have reached their maximum lifetime. This method returns
+     * the next expiration time, or zero if no connection is expected
+     * to expire soon.
+     * <p>
+     * Connections are not expired for being unused if that would
+     * reduce the number of available connections below the minimum,
+     * but are always expired when they reach their maximum lifetime.
      *
      * @return The next expiration time, or zero if no connection
      * is expected to expire soon.
@@ -955,31 +1415,43 @@ final class ConnectionPool
         long       clock;
         long       oldest;
         long       nextExpiration;
+        long       expiration;
         int        maxRetain;
+        int        expirable;
 
-        // Without maxRetain we do not attempt to expire connections.
-        maxRetain = _limits.getMaxRetain();
-        if ( maxRetain == 0 )
+        // Without maxRetain or maxLifetime we do not attempt to expire
+        // connections.
+        maxRetain = _limits.getMaxRetain() * 1000;
+        if ( maxRetain == 0 && _limits.getMaxLifetime() == 0 ) {
+            _nextExpiration = 0;
             return 0;
-        maxRetain = maxRetain * 1000;
+        }
+
         // We don't enter the loop if no connection is subject to expire.
         // We know a connection is about to expire if the system clock
-        // minus max retain, is past the connection's timeStamp (true only
+        // minus max retain, is past the connection's timeStamp, or the
+        // system clock is past the connection's lifetime (true only
         // for available connections).
         clock = Clock.clock();
         if ( clock >= _nextExpiration ) {
             oldest = clock - maxRetain;
+            // The number of connections we can expire for being unused
+            // before there aren't enough connections.
+            expirable = _available - getTargetSize();
             nextExpiration = 0;
             for ( int i = _pool.length ; i-- > 0 ; ) {
                 entry = null;
                 next = _pool[ i ];
                 while ( next != null ) {
                     if ( next._available ) {
-                        if ( next._timeStamp <= oldest ) {
+                        if ( ( next._expires != 0 && next._expires <= clock ) ||
+                             ( maxRetain > 0 && expirable > 0 && next._timeStamp <= oldest ) ) {
                             if ( entry == null )
                                 _pool[ i ] = next._nextEntry;
                             else
                                 entry._nextEntry = next._nextEntry;
+                            --expirable;
+                            removed( next );
                             recordUnusedDuration( (int) ( clock - next._timeStamp ) );
                             recordDiscard();
                             try {
@@ -993,8 +1465,16 @@ final class ConnectionPool
                             }
                             next = next._nextEntry;
                         } else {
-                            if ( nextExpiration == 0 || nextExpiration > next._timeStamp  )
-                                nextExpiration = next._timeStamp;
+                            // A connection that is past maxRetain but kept for
+                            // the minimum is not expected to expire, until it
+                            // is used and returned to the pool.
+                            expiration = next._timeStamp + maxRetain;
+                            if ( maxRetain > 0 && expiration > clock &&
+                                 ( nextExpiration == 0 || nextExpiration > expiration ) )
+                                nextExpiration = expiration;
+                            if ( next._expires != 0 &&
+                                 ( nextExpiration == 0 || nextExpiration > next._expires ) )
+                                nextExpiration = next._expires;
                             entry = next;
                             next = next._nextEntry;
                         }
@@ -1004,17 +1484,206 @@ final class ConnectionPool
                     }
                 }
             }
-            // We calculate the next expiraiton time base on the timeStamp,
-            // so we need to add maxRetain to get the actual clock time.
-            if ( nextExpiration != 0 )
-                nextExpiration += maxRetain;
             _nextExpiration = nextExpiration;
+            // We notify any blocking thread that it can attempt to
+            // get a new connection.
+            notifyAll();
         }
         // If no connection was subject to expire, we return the same
         // nextExpiration.
         return _nextExpiration;
     }
-    
+
+
+    /**
+     * Calculates the next expiration time based on this connection.
+     * The connection will expire when it has been available for longer
+     * than maxRetain seconds, or when it reaches its maximum lifetime.
+     * If the next expiration time is sooner than previously expected,
+     * we notify the background thread.
+     *
+     * @param entry The connection entry
+     */
+    private void schedule( PoolEntry entry )
+    {
+        long nextExpiration = 0;
+        int  maxRetain;
+
+        maxRetain = _limits.getMaxRetain();
+        if ( maxRetain > 0 )
+            nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
+        if ( entry._expires != 0 && ( nextExpiration == 0 || nextExpiration > entry._expires ) )
+            nextExpiration = entry._expires;
+        if ( nextExpiration != 0 &&
+             ( _nextExpiration == 0 || _nextExpiration > nextExpiration ) ) {
+            _nextExpiration = nextExpiration;
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Called when a connection is obtained from the pool. Records the
+     * duration waited for the connection and, if leak detection is
+     * enabled, samples where the connection was obtained.
+     *
+     * @param entry The connection entry
+     * @param waitStart The time we started waiting, or zero
+     */
+    private void borrowed( PoolEntry entry, long waitStart )
+    {
+        int sampling;
+
+        recordWaitDuration( waitDuration( waitStart ) );
+        entry._leakReported = false;
+        entry._borrowSite = null;
+        if ( 0 != _limits.getLeakTimeout() ) {
+            // The stack trace is only converted to text if the
+            // connection is reported, so recording it is cheap.
+            sampling = _limits.getLeakSampling();
+            if ( sampling > 0 && ++_borrowCount % sampling == 0 )
+                entry._borrowSite = new Throwable( "Connection obtained by thread " +
+                                                   Thread.currentThread().getName() );
+        }
+    }
+
+
+    /**
+     * Called periodically to report connections used by the application
+     * for longer than the leak timeout as possible leaks. Each connection
+     * is reported once. If the pool reclaims leaked connections, they are
+     * discarded.
+     */
+    private synchronized void detectLeaks()
+    {
+        PoolEntry entry;
+        PoolEntry next;
+        long      clock;
+        long      timeout;
+        String    message;
+
+        clock = Clock.clock();
+        timeout = _limits.getLeakTimeout() * 1000L;
+        _nextLeakCheck = clock + Math.max( 1000, timeout / 2 );
+        for ( int i = 0 ; i < _pool.length ; ++i ) {
+            entry = _pool[ i ];
+            while ( entry != null ) {
+                next = entry._nextEntry;
+                if ( ! entry._available && clock - entry._timeStamp >= timeout ) {
+                    if ( ! entry._leakReported ) {
+                        entry._leakReported = true;
+                        recordLeak();
+                        message = "Connection " + entry._managed + " in pool " + _name + " used for " +
+                            ( ( clock - entry._timeStamp ) / 1000 ) + " seconds, possible leak";
+                        if ( entry._borrowSite != null )
+                            _category.error( message, entry._borrowSite );
+                        else
+                            _category.warn( message );
+                        if ( _logWriter != null )
+                            _logWriter.println( message );
+                    }
+                    // A connection enlisted in a transaction is reclaimed
+                    // only after the transaction completes.
+                    if ( _limits.getLeakReclaim() && ! entry._enlisted ) {
+                        recordUsedDuration( (int) ( clock - entry._timeStamp ) );
+                        entry._timeStamp = clock;
+                        entry._available = true;
+                        discard( entry._managed, false );
+                    }
+                }
+                entry = next;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of connections the pool keeps open. This is
+     * the minimum pool size, or the target size if the pool size is
+     * adaptive.
+     *
+     * @return The number of connections the pool keeps open
+     */
+    private int getTargetSize()
+    {
+        if ( _sizer != null )
+            return _sizer.getTarget();
+        return _limits.getMinimum();
+    }
+
+
+    /**
+     * Adapts the target pool size to the observed load. If the target
+     * size shrinks, releases some of the unused connections above it,
+     * a quarter of them at a time.
+     */
+    private synchronized void adjust()
+    {
+        int target;
+        int excess;
+
+        _nextAdjust = Clock.clock() + PoolSizer.INTERVAL;
+        target = _sizer.adjust( this, _limits, Clock.clock() );
+        excess = Math.min( _total - target, _available );
+        if ( excess > 0 ) {
+            excess = Math.max( 1, excess / 4 );
+            if ( _logWriter != null )
+                _logWriter.println( "Adjusted pool size to " + target + ", releasing " +
+                                    excess + " unused connections" );
+            while ( excess-- > 0 && discardNext() )
+                ;
+        }
+    }
+
+
+    /**
+     * Returns the duration waited for a connection, or zero if we did
+     * not wait. A connection we waited for is counted as having waited
+     * at least one millisecond.
+     *
+     * @param waitStart The time we started waiting, or zero
+     * @return The duration waited (in milliseconds), or zero
+     */
+    private static int waitDuration( long waitStart )
+    {
+        if ( waitStart == 0 )
+            return 0;
+        return (int) Math.max( 1, System.currentTimeMillis() - waitStart );
+    }
+
+
+    /**
+     * Restores the minimum pool size. If the pool has fallen below its
+     * minimum size, starts a filler to open the missing connections in
+     * the background. Does nothing while a previous filler is still
+     * running, or shortly after a filler failed to open a connection.
+     */
+    private synchronized void replenish()
+    {
+        int count;
+        int maximum;
+
+        if ( _destroyed )
+            return;
+        if ( _fillAfter != 0 ) {
+            if ( Clock.clock() < _fillAfter )
+                return;
+            _fillAfter = 0;
+        }
+        if ( _filler != null && _filler.isActive() )
+            return;
+        count = getTargetSize() - _total;
+        maximum = _limits.getMaximum();
+        if ( maximum > 0 && count > maximum - _total )
+            count = maximum - _total;
+        if ( count > 0 ) {
+            if ( _logWriter != null )
+                _logWriter.println( "Restoring minimum pool size with " + count + " new connections" );
+            _filler = new Filler( count );
+            _filler.start( _limits.getPrefillThreads() );
+        }
+    }
+
 
     //---------------------------------------------
     // Methods defined by java.util.Set
@@ -1262,6 +1931,61 @@ final class ConnectionPool
     }
 
 
+    /**
+     * Identifies a connection shared within a transaction by the
+     * transaction, subject and connection request information.
+     */
+    private static final class SharedKey
+    {
+
+
+        final Transaction            _tx;
+
+
+        final Subject                _subject;
+
+
+        final ConnectionRequestInfo  _requestInfo;
+
+
+        private final int            _hashCode;
+
+
+        SharedKey( Transaction tx, Subject subject, ConnectionRequestInfo requestInfo )
+        {
+            _tx = tx;
+            _subject = subject;
+            _requestInfo = requestInfo;
+            _hashCode = tx.hashCode() + ( subject == null ? 0 : subject.hashCode() ) +
+                ( requestInfo == null ? 0 : requestInfo.hashCode() );
+        }
+
+
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+
+
+        public boolean equals( Object object )
+        {
+            SharedKey other;
+
+            if ( object == this )
+                return true;
+            if ( ! ( object instanceof SharedKey ) )
+                return false;
+            other = (SharedKey) object;
+            return ( _hashCode == other._hashCode && _tx.equals( other._tx ) &&
+                     ( _subject == null ? other._subject == null : _subject.equals( other._subject ) ) &&
+                     ( _requestInfo == null ? other._requestInfo == null :
+                       _requestInfo.equals( other._requestInfo ) ) );
+        }
+
+
+    }
+
+
     /**
      * Iterator over the pool returns from the connection pool set.
      */
@@ -1344,6 +2068,71 @@ final class ConnectionPool
 
 
     }
+
+
+    /**
+     * Opens connections for the pool filler. Connections that are being
+     * opened are counted by {@link #_filling}, so they are accounted
+     * for against the maximum pool size.
+     */
+    private final class Filler
+        extends PoolFiller
+    {
+
+
+        Filler( int count )
+        {
+            super( "Connection Pool " + _name, count );
+        }
+
+
+        protected boolean create()
+            throws Exception
+        {
+            ManagedConnection managed = null;
+            int               maximum;
+
+            synchronized ( ConnectionPool.this ) {
+                maximum = _limits.getMaximum();
+                if ( _destroyed || ( maximum > 0 && _total + _filling >= maximum ) )
+                    return false;
+                ++_filling;
+            }
+            try {
+                managed = createManagedConnection( null, null );
+            } finally {
+                // Add the connection to the pool in the same step that
+                // releases its slot, so the pool never exceeds its maximum.
+                synchronized ( ConnectionPool.this ) {
+                    --_filling;
+                    if ( managed != null && ! _destroyed ) {
+                        allocate( managed, null, null, false );
+                        managed = null;
+                    }
+                    ConnectionPool.this.notifyAll();
+                }
+            }
+            // The pool was destroyed while we opened the connection.
+            if ( managed != null ) {
+                managed.destroy();
+                return false;
+            }
+            return true;
+        }
+
+
+        protected void failed( Exception except )
+        {
+            _category.error( "Error attempting to open connection by connection pool " +
+                             ConnectionPool.this, except );
+            synchronized ( ConnectionPool.this ) {
+                _fillAfter = Clock.clock() + FILL_RETRY;
+                ConnectionPool.this.notifyAll();
+            }
+        }
+
+
+    }
     
     
 }
@@ -0,0 +1,89 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jca;
+
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ManagedConnection;
+
+
+/**
+ * A connection manager that supports lazy enlistment of managed
+ * connections in transactions.
+ * <p>
+ * If lazy enlistment is enabled for the connection pool, managed
+ * connections that implement {@link LazyEnlistableManagedConnection}
+ * are not enlisted in the transaction when the application obtains a
+ * connection. Instead, the connector calls {@link #lazyEnlist
+ * lazyEnlist} when the connection is first used to perform work that
+ * must be part of the transaction. A connection that is obtained but
+ * never used does not take part in the transaction.
+ * <p>
+ * This interface follows the lazy enlistment contract introduced in
+ * version 1.5 of the Connector Architecture, for connectors written
+ * against version 1.0.
+ *
+ * @see tyrex.resource.PoolLimits#getLazyEnlist
+ */
+public interface LazyEnlistableConnectionManager
+{
+
+
+    /**
+     * Called by the connector to enlist the managed connection in the
+     * current transaction, if not already enlisted. The connector must
+     * call this method before performing any work with the connection
+     * on behalf of the application.
+     *
+     * @param managed The managed connection
+     * @throws ResourceException The managed connection is not in use,
+     * or could not be enlisted
+     */
+    public void lazyEnlist( ManagedConnection managed )
+        throws ResourceException;
+
+
+}
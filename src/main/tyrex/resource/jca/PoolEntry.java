@@ -107,6 +107,74 @@ final class PoolEntry
     protected long                     _timeStamp;
 
 
+    /**
+     * The clock time at which this connection reaches its maximum
+     * lifetime and must be released, or zero if it is kept open forever.
+     */
+    protected long                     _expires;
+
+
+
+    /**
+     * Records where the application obtained this connection, if leak
+     * detection is enabled and the connection was sampled, or null.
+     */
+    protected Throwable                _borrowSite;
+
+
+    /**
+     * True if this connection has been reported as a possible leak
+     * since the application obtained it.
+     */
+    protected boolean                  _leakReported;
+
+
+    /**
+     * The partition holding this connection.
+     */
+    protected PoolPartition            _partition;
+
+
+    /**
+     * True if this connection is held in the list of available
+     * connections of its partition.
+     */
+    protected boolean                  _idle;
+
+
+    /**
+     * The next available connection in the same partition, or null.
+     */
+    protected PoolEntry                _nextIdle;
+
+
+    /**
+     * The previous available connection in the same partition, or null.
+     */
+    protected PoolEntry                _prevIdle;
+
+
+    /**
+     * The number of client connections the application obtained from
+     * this connection and has not closed yet.
+     */
+    protected int                      _handles;
+
+
+    /**
+     * Identifies the transaction this connection is shared in, or null
+     * if not shared.
+     */
+    protected Object                   _sharedKey;
+
+
+    /**
+     * True if the pool enlisted the XA resource since the application
+     * obtained this connection, and must delist it when released.
+     */
+    protected boolean                  _enlisted;
+
+
     /**
      * Constructs a new pool entry. A new pool entry is not available by
      * default. The <tt>available</tt> variable must be set to false to
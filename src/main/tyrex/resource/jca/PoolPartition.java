@@ -0,0 +1,208 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jca;
+
+
+import java.util.Set;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.security.auth.Subject;
+
+
+/**
+ * Holds the connections in the pool that were created for the same
+ * subject and connection request information.
+ * <p>
+ * The available connections in the partition are kept in a list, the
+ * most recently released connection first. The connection pool offers
+ * the connector candidates from this list when matching a connection
+ * for the same subject and request information, so matching does not
+ * need to consider every connection in the pool.
+ * <p>
+ * Partitions are compared by subject and connection request information,
+ * so a new partition can be used as a key to find an existing one.
+ * All access is synchronized by the connection pool.
+ */
+final class PoolPartition
+{
+
+
+    /**
+     * The subject, or null.
+     */
+    protected final Subject                _subject;
+
+
+    /**
+     * The connection request information, or null.
+     */
+    protected final ConnectionRequestInfo  _requestInfo;
+
+
+    /**
+     * The hash code for this partition.
+     */
+    protected final int                    _hashCode;
+
+
+    /**
+     * The first available connection in this partition, or null.
+     */
+    protected PoolEntry                    _first;
+
+
+    /**
+     * The number of available connections in this partition.
+     */
+    protected int                          _available;
+
+
+    /**
+     * The number of connections in this partition, both used and unused.
+     */
+    protected int                          _entries;
+
+
+    /**
+     * The next partition with available connections, or null.
+     */
+    protected PoolPartition                _nextAvailable;
+
+
+    /**
+     * The previous partition with available connections, or null.
+     */
+    protected PoolPartition                _prevAvailable;
+
+
+    PoolPartition( Subject subject, ConnectionRequestInfo requestInfo )
+    {
+        _subject = subject;
+        _requestInfo = requestInfo;
+        _hashCode = ( subject == null ? 0 : subject.hashCode() ) +
+            ( requestInfo == null ? 0 : requestInfo.hashCode() );
+    }
+
+
+    /**
+     * Adds an available connection to the head of the list.
+     *
+     * @param entry The connection entry
+     */
+    void add( PoolEntry entry )
+    {
+        entry._prevIdle = null;
+        entry._nextIdle = _first;
+        if ( _first != null )
+            _first._prevIdle = entry;
+        _first = entry;
+        ++_available;
+    }
+
+
+    /**
+     * Removes an available connection from the list.
+     *
+     * @param entry The connection entry
+     */
+    void remove( PoolEntry entry )
+    {
+        if ( entry._prevIdle == null )
+            _first = entry._nextIdle;
+        else
+            entry._prevIdle._nextIdle = entry._nextIdle;
+        if ( entry._nextIdle != null )
+            entry._nextIdle._prevIdle = entry._prevIdle;
+        entry._nextIdle = null;
+        entry._prevIdle = null;
+        --_available;
+    }
+
+
+    /**
+     * Adds the available connections in this partition to the set of
+     * candidates, until the set reaches the specified size.
+     *
+     * @param candidates The set of candidates
+     * @param size The maximum number of candidates
+     */
+    void addCandidates( Set candidates, int size )
+    {
+        PoolEntry entry;
+
+        entry = _first;
+        while ( entry != null && candidates.size() < size ) {
+            candidates.add( entry._managed );
+            entry = entry._nextIdle;
+        }
+    }
+
+
+    public int hashCode()
+    {
+        return _hashCode;
+    }
+
+
+    public boolean equals( Object object )
+    {
+        PoolPartition other;
+
+        if ( object == this )
+            return true;
+        if ( ! ( object instanceof PoolPartition ) )
+            return false;
+        other = (PoolPartition) object;
+        if ( other._hashCode != _hashCode )
+            return false;
+        if ( _subject == null ? other._subject != null : ! _subject.equals( other._subject ) )
+            return false;
+        if ( _requestInfo == null ? other._requestInfo != null : ! _requestInfo.equals( other._requestInfo ) )
+            return false;
+        return true;
+    }
+
+
+}
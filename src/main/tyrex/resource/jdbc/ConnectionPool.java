@@ -62,11 +62,15 @@ import javax.sql.XAConnection;
 import javax.sql.XADataSource;
 import javax.transaction.xa.XAResource;
 
+import tyrex.resource.PoolFiller;
 import tyrex.resource.PoolLimits;
 import tyrex.resource.PoolMetrics;
+import tyrex.resource.PoolSizer;
 import tyrex.resource.Resource;
 import tyrex.resource.ResourceException;
 import tyrex.resource.ReuseOptions;
+import tyrex.resource.StatementMetrics;
+import tyrex.resource.jdbc.xa.StatementDefaults;
 import tyrex.services.Clock;
 import tyrex.services.DaemonMaster;
 import tyrex.tm.TyrexTransactionManager;
@@ -109,6 +113,13 @@ final class ConnectionPool
     public static final int TABLE_SIZE = 131;
 
 
+    /**
+     * The time to wait before attempting to restore the minimum pool
+     * size after failing to open a connection (in milliseconds).
+     */
+    private static final int FILL_RETRY = 10000;
+
+
     /**
      * The connector name.
      */
@@ -188,13 +199,75 @@ final class ConnectionPool
 	 */
 	private final int						_reuse;
 
+
+    /**
+     * The number of connections currently being opened by the pool filler.
+     */
+    private int                            _filling;
+
+
+    /**
+     * The last pool filler started, or null.
+     */
+    private Filler                         _filler;
+
+
+    /**
+     * The clock time after which the pool may attempt to restore the
+     * minimum size following an error, or zero.
+     */
+    private long                           _fillAfter;
+
+
+    /**
+     * Adapts the pool size to the observed load, or null if the pool
+     * size is not adaptive.
+     */
+    private final PoolSizer                _sizer;
+
+
+    /**
+     * The next time we expect to adapt the pool size.
+     */
+    private long                           _nextAdjust;
+
+
+    /**
+     * The next time we expect to check for leaked connections.
+     */
+    private long                           _nextLeakCheck;
+
+
+    /**
+     * The number of connections obtained from the pool, used to
+     * sample where connections are obtained.
+     */
+    private int                            _borrowCount;
+
+
+    /**
+     * The metrics of the SQL statements executed through this pool,
+     * or null if statement metrics are not recorded.
+     */
+    private final StatementMetrics         _statementMetrics;
+
+
+    /**
+     * The default properties applied to statements, or null to use
+     * the driver's defaults.
+     */
+    private final StatementDefaults        _statementDefaults;
+
+
     ConnectionPool( String name, PoolLimits limits,
                     ClassLoader loader, XADataSource xaDataSource,
                     ConnectionPoolDataSource poolDataSource,
-                    TyrexTransactionManager txManager, Category category )
+                    TyrexTransactionManager txManager, Category category,
+                    StatementMetrics statementMetrics, StatementDefaults statementDefaults )
         throws ResourceException
     {
         PooledConnection pooled = null;
+        Exception        error;
         int              maximum;
         int              initial;
 
@@ -215,6 +288,8 @@ final class ConnectionPool
         _poolDataSource = poolDataSource;
         _category = category;
         _txManager= txManager;
+        _statementMetrics = statementMetrics;
+        _statementDefaults = statementDefaults;
         
         try {
             // Clone object to prevent changes by caller from affecting the
@@ -262,12 +337,20 @@ final class ConnectionPool
             
             // Allocate as many connection as specified for the initial size
             // (excluding the one we always create before we reach this point).
+            // The filler opens up to prefillThreads connections at a time,
+            // either before we return or in the background.
             initial = _limits.getInitial();
             if ( maximum > 0 && initial > maximum )
                 initial = maximum;
-            for ( int i = initial - 1 ; i-- > 0 ; ) {
-                pooled = createPooledConnection( null, null );
-                allocate( pooled, null, null, false );
+            if ( initial > 1 ) {
+                _filler = new Filler( initial - 1 );
+                if ( _limits.getPrefillAsync() )
+                    _filler.start( _limits.getPrefillThreads() );
+                else {
+                    error = _filler.fill( _limits.getPrefillThreads() );
+                    if ( error != null )
+                        throw new ResourceException( error.toString() );
+                }
             }
         } catch ( SQLException except ) {
             throw new ResourceException( except.toString() );
@@ -277,7 +360,15 @@ final class ConnectionPool
                               " with initial size " + initial +
                               " and maximum iimit " + maximum );
 
-        if ( 0 != _limits.getMaxRetain() ) {
+        if ( _limits.getAdaptive() ) {
+            _sizer = new PoolSizer( Math.max( initial, _limits.getMinimum() ), this, Clock.clock() );
+            _nextAdjust = Clock.clock() + PoolSizer.INTERVAL;
+        } else
+            _sizer = null;
+
+        if ( 0 != _limits.getMaxRetain() || 0 != _limits.getMaxLifetime() ||
+             0 != _limits.getMinimum() || 0 != _limits.getLeakTimeout() ||
+             _sizer != null ) {
             DaemonMaster.addDaemon( this, "Connection Pool " + name );
         }
     }
@@ -289,6 +380,30 @@ final class ConnectionPool
     }
 
 
+    public StatementMetrics getStatementMetrics()
+    {
+        return _statementMetrics;
+    }
+
+
+    /**
+     * Returns the default properties applied to statements, or null
+     * to use the driver's defaults.
+     */
+    StatementDefaults getStatementDefaults()
+    {
+        return _statementDefaults;
+    }
+
+
+    public void reset()
+    {
+        super.reset();
+        if ( _statementMetrics != null )
+            _statementMetrics.reset();
+    }
+
+
     public PoolLimits getPoolLimits()
     {
         return _limits;
@@ -360,7 +475,22 @@ final class ConnectionPool
 
         while ( true ) {
             try {
+                if ( _sizer != null && Clock.clock() >= _nextAdjust )
+                    adjust();
+                // We are notified whenever a connection is discarded,
+                // so this is where we restore the minimum pool size.
+                replenish();
                 nextExpiration = _nextExpiration;
+                if ( _fillAfter != 0 && ( nextExpiration == 0 || nextExpiration > _fillAfter ) )
+                    nextExpiration = _fillAfter;
+                if ( _sizer != null && ( nextExpiration == 0 || nextExpiration > _nextAdjust ) )
+                    nextExpiration = _nextAdjust;
+                if ( 0 != _limits.getLeakTimeout() ) {
+                    if ( Clock.clock() >= _nextLeakCheck )
+                        detectLeaks();
+                    if ( nextExpiration == 0 || nextExpiration > _nextLeakCheck )
+                        nextExpiration = _nextLeakCheck;
+                }
                 // No next expiration time, wait until notified.
                 if ( nextExpiration == 0 )
                     wait();
@@ -368,7 +498,7 @@ final class ConnectionPool
                     clock = Clock.clock();
                     // Pending expiration, attempt to expire.
                     // Otherwise, wait until next expiration time.
-                    if ( clock > nextExpiration )
+                    if ( clock >= nextExpiration )
                         expire();
                     else
                         wait( nextExpiration - clock );
@@ -405,19 +535,22 @@ final class ConnectionPool
         entry = allocate( user, password );
 		// If connection supports XA resource, we need to enlist
         // it in this or any future transaction. If this fails,
-        // the connection is unuseable.
-        if ( entry._xaResource != null ) {
+        // the connection is unuseable. With lazy enlistment, the
+        // connection is enlisted when the application first uses it.
+        if ( entry._xaResource != null && ! _limits.getLazyEnlist() ) {
             try {
-				_txManager.enlistResource( entry._xaResource, entry );
-            } catch ( Exception except ) {
+                enlist( entry );
+            } catch ( SQLException except ) {
                 release( entry._pooled, false );
-                throw new SQLException( "Error occured using connection " + entry._pooled + ": " + except );
+                throw except;
             }
         }
         // Obtain the client connection and register this pool as
         // the event listener. If we failed, the connection is not
         // useable and we discard it and try again.
         try {
+            if ( entry._xaResource != null && _limits.getLazyEnlist() )
+                return new LazyConnection( this, entry, entry._pooled.getConnection() );
             return entry._pooled.getConnection();
 		} catch ( Exception except ) {
             release( entry._pooled, false );
@@ -437,6 +570,7 @@ final class ConnectionPool
         int               matchTriesLimit;
         int               matchTries;
         PooledConnection  previouslyMatched;
+        long              waitStart = 0;
         
         timeout = _limits.getTimeout() * 1000;
         // We repeat this loop until we either get a connection, or we time out.
@@ -471,9 +605,17 @@ final class ConnectionPool
                     }
                 } else {
                     if ( AVAILABLE == entry._state ) {
+                        clock = Clock.clock();
+                        if ( entry._expires != 0 && clock >= entry._expires ) {
+                            // The connection reached its maximum lifetime
+                            // while idle. Discard it and match again.
+                            entry._state = CLOSED;
+                            _available -= 1;
+                            discard( entry._pooled, true );
+                            continue;
+                        }
                         entry._state = IN_USE;
                         _available -= 1;
-                        clock = Clock.clock();
                         recordUnusedDuration( (int) ( clock - entry._timeStamp ) );
                         entry._timeStamp = clock;
                         if ( _category.isDebugEnabled() ) {
@@ -481,7 +623,7 @@ final class ConnectionPool
                                              entry._pooled + "> and xa <" +
                                              entry._xaResource + ">" );    
                         }
-                    
+                        borrowed( entry, waitStart );
                         return entry;
                     } else {
                         if ( _category.isDebugEnabled() ) {
@@ -506,7 +648,7 @@ final class ConnectionPool
             // do not use (and cannot be matched), release it and make
             // room for a new connection to be created.
             maximum = _limits.getMaximum();
-            if ( maximum == 0 || _total < maximum ||
+            if ( maximum == 0 || _total + _filling < maximum ||
                  ( _available > 0 && discardNext() ) ) {
                 pooled = createPooledConnection( user, password );
                 // Need to allocate the connection. It is an error if the
@@ -514,8 +656,8 @@ final class ConnectionPool
                 entry = allocate( pooled, user, password, true );
                 if ( entry == null )
                     throw new SQLException( "Connector error: createPooledConnetion returned an existing connection" );
-                else
-                    return entry;
+                borrowed( entry, waitStart );
+                return entry;
             }
 
             // If timeout is zero, we throw an exception. Otherwise,
@@ -525,6 +667,8 @@ final class ConnectionPool
                 throw new SQLException( "Cannot allocate new connection for " +
                                         _name + ": reached limit of " +
                                         maximum + " connections" );
+            if ( waitStart == 0 )
+                waitStart = System.currentTimeMillis();
             try {
                 if ( timeout == 0 ) {
                     wait ();    
@@ -549,28 +693,57 @@ final class ConnectionPool
     }
 
 
+    /**
+     * Enlists the connection's XA resource in this or any future
+     * transaction. Called when the connection is obtained from the
+     * pool, or when first used if lazy enlistment is enabled.
+     *
+     * @param entry The connection entry
+     * @throws SQLException An error occured enlisting the connection
+     */
+    void enlist( PoolEntry entry )
+        throws SQLException
+    {
+        if ( entry._xaResource == null )
+            return;
+        try {
+            _txManager.enlistResource( entry._xaResource, entry );
+        } catch ( Exception except ) {
+            throw new SQLException( "Error occured using connection " + entry._pooled + ": " + except );
+        }
+        synchronized ( this ) {
+            entry._enlisted = true;
+        }
+    }
+
+
     private PooledConnection createPooledConnection( String user, String password )
         throws SQLException
     {
         ClassLoader      loader;
         Thread           thread;
+        PooledConnection pooled;
+        long             start;
         
         thread = Thread.currentThread();
         loader = thread.getContextClassLoader();
         thread.setContextClassLoader( _classLoader );
+        start = System.currentTimeMillis();
         try {
             if ( _xaDataSource != null ) {
                 if ( user != null )
-                    return _xaDataSource.getXAConnection( user, password );
-                return _xaDataSource.getXAConnection();
-            } 
-            
-            if ( user != null )
-                return _poolDataSource.getPooledConnection( user, password );
-            return _poolDataSource.getPooledConnection();
+                    pooled = _xaDataSource.getXAConnection( user, password );
+                else
+                    pooled = _xaDataSource.getXAConnection();
+            } else if ( user != null )
+                pooled = _poolDataSource.getPooledConnection( user, password );
+            else
+                pooled = _poolDataSource.getPooledConnection();
         } finally {
             thread.setContextClassLoader( loader );
         }
+        recordCreateDuration( (int) ( System.currentTimeMillis() - start ) );
+        return pooled;
     }
 
 
@@ -665,8 +838,7 @@ final class ConnectionPool
         int              hashCode;
         int              index;
         XAResource       xaResource = null;
-        long             nextExpiration;
-        int              maxRetain;
+        long             lifetime;
 
         if ( pooled == null )
             throw new IllegalArgumentException( "Argument pooled is null" );
@@ -710,6 +882,9 @@ final class ConnectionPool
             entry = next;
         }
         entry._pooled.addConnectionEventListener( this );
+        lifetime = _limits.newLifetime();
+        if ( lifetime > 0 )
+            entry._expires = entry._timeStamp + lifetime;
         // Record that a new connection has been created. This will increase
         // the total pool size. If not reserved, mark the connection as
         // available and increase the available count.
@@ -721,14 +896,7 @@ final class ConnectionPool
         // Calculate the next expiration time based on this connection.
         // If the next expiration time is soon, we notify the background
         // thread.
-        maxRetain = _limits.getMaxRetain();
-        if ( maxRetain > 0 ) {
-            nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
-            if ( _nextExpiration == 0 || _nextExpiration > nextExpiration ) {
-                _nextExpiration = nextExpiration;
-                notifyAll();
-            }
-        }
+        schedule( entry );
         if ( _logWriter != null )
             _logWriter.println( "Allocated new connection " + entry._pooled );
         return entry;
@@ -780,8 +948,6 @@ final class ConnectionPool
         int       hashCode;
         int       index;
         long      clock;
-        long      nextExpiration;
-        int       maxRetain;
 
         if ( pooled == null )
             return false;
@@ -816,7 +982,8 @@ final class ConnectionPool
         // the pool that a new connection is available. Otherwise,
         // we discard the connection with an error.
         try {
-            if ( entry._xaResource != null ) {
+            if ( entry._xaResource != null && entry._enlisted ) {
+                entry._enlisted = false;
                 if ( _category.isDebugEnabled() ) {
                     _category.debug( "Delisting " + entry._xaResource + " for " + entry._pooled );    
                 }
@@ -834,12 +1001,15 @@ final class ConnectionPool
                 recordUsedDuration( (int) ( clock - entry._timeStamp ) );
                 entry._timeStamp = clock;
                 
+                // A connection that reached its maximum lifetime while
+                // in use is discarded instead of being reused.
                 if ( ! success ||
                      ( ReuseOptions.REUSE_OFF == _reuse ) ||
                      ( ( ReuseOptions.REUSE_TRANSACTION_OFF == _reuse ) &&
                        entry._enlistedInTransaction ) ||
                      ( ( ReuseOptions.REUSE_NO_TRANSACTION_OFF == _reuse ) &&
-                       !entry._enlistedInTransaction ) ) {
+                       !entry._enlistedInTransaction ) ||
+                     ( entry._expires != 0 && clock >= entry._expires ) ) {
                     if ( _category.isDebugEnabled() ) {
                         _category.debug( "Discarding " + pooled );    
                     }
@@ -855,12 +1025,7 @@ final class ConnectionPool
                     entry._enlistedInTransaction = false;
                     _available += 1;
                     // Calculate the next expiration time based on this connection.
-                    maxRetain = _limits.getMaxRetain();
-                    if ( maxRetain > 0 ) {
-                        nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
-                        if ( _nextExpiration == 0 || _nextExpiration > nextExpiration )
-                            _nextExpiration = nextExpiration;
-                    }
+                    schedule( entry );
                 }
 
                 // We notify any blocking thread that it can attempt to
@@ -923,7 +1088,7 @@ final class ConnectionPool
                 } else {
                     next = entry._nextEntry;
                     while ( next != null ) {
-                        if ( AVAILABLE == entry._state ) {
+                        if ( AVAILABLE == next._state ) {
                             entry._nextEntry = next._nextEntry;
                             entry = next;
                             break;
@@ -944,6 +1109,7 @@ final class ConnectionPool
         // If we reached this point, we have the connection entry
         // and the connection is not reserved. We notify the pool,
         // such that it can create a new connection available.
+        _available -= 1;
         try {
             clock = Clock.clock();
             recordUnusedDuration( (int) ( clock - entry._timeStamp ) );
@@ -1051,9 +1217,14 @@ final class ConnectionPool
 
     /**
      * Called periodically to expire connections that have been
-     * available in the pool for longer than maxRetain seconds.
-     * This method returns the next expiration time, or zero if
-     * no connection is expected to expire soon.
+     * available in the pool for longer than maxRetain seconds, or
+     * that have reached their maximum lifetime. This method returns
+     * the next expiration time, or zero if no connection is expected
+     * to expire soon.
+     * <p>
+     * Connections are not expired for being unused if that would
+     * reduce the number of available connections below the minimum,
+     * but are always expired when they reach their maximum lifetime.
      *
      * @return The next expiration time, or zero if no connection
      * is expected to expire soon.
@@ -1065,29 +1236,29 @@ final class ConnectionPool
         long       clock;
         long       oldest;
         long       nextExpiration;
+        long       expiration;
         int        maxRetain;
+        int        expirable;
 
-        // Without maxRetain we do not attempt to expire connections.
-        maxRetain = _limits.getMaxRetain();
-        if ( maxRetain == 0 ) {
+        // Without maxRetain or maxLifetime we do not attempt to expire
+        // connections.
+        maxRetain = _limits.getMaxRetain() * 1000;
+        if ( maxRetain == 0 && _limits.getMaxLifetime() == 0 ) {
             _nextExpiration = 0;
             return 0;
         }
 
-        // There aren't enough connections then don't expire
-        if ( _available <= _limits.getMinimum() ) {
-            _nextExpiration = 0;
-            return 0;    
-        }
-        
-        maxRetain = maxRetain * 1000;
         // We don't enter the loop if no connection is subject to expire.
         // We know a connection is about to expire if the system clock
-        // minus max retain, is past the connection's timeStamp (true only
+        // minus max retain, is past the connection's timeStamp, or the
+        // system clock is past the connection's lifetime (true only
         // for available connections).
         clock = Clock.clock();
         if ( clock >= _nextExpiration ) {
             oldest = clock - maxRetain;
+            // The number of connections we can expire for being unused
+            // before there aren't enough connections.
+            expirable = _available - getTargetSize();
             nextExpiration = 0;
             for ( int i = _pool.length ; i-- > 0 ; ) {
                 entry = null;
@@ -1095,11 +1266,14 @@ final class ConnectionPool
                 while ( next != null ) {
                     if ( ( AVAILABLE == next._state ) &&
 						 ( 0 == next._enlistCount ) ) {
-                        if ( next._timeStamp <= oldest ) {
+                        if ( ( next._expires != 0 && next._expires <= clock ) ||
+                             ( maxRetain > 0 && expirable > 0 && next._timeStamp <= oldest ) ) {
                             if ( entry == null )
                                 _pool[ i ] = next._nextEntry;
                             else
                                 entry._nextEntry = next._nextEntry;
+                            --expirable;
+                            _available -= 1;
                             recordUnusedDuration( (int) ( clock - next._timeStamp ) );
                             recordDiscard();
                             try {
@@ -1113,8 +1287,16 @@ final class ConnectionPool
                             }
                             next = next._nextEntry;
                         } else {
-                            if ( nextExpiration == 0 || nextExpiration > next._timeStamp  )
-                                nextExpiration = next._timeStamp;
+                            // A connection that is past maxRetain but kept for
+                            // the minimum is not expected to expire, until it
+                            // is used and returned to the pool.
+                            expiration = next._timeStamp + maxRetain;
+                            if ( maxRetain > 0 && expiration > clock &&
+                                 ( nextExpiration == 0 || nextExpiration > expiration ) )
+                                nextExpiration = expiration;
+                            if ( next._expires != 0 &&
+                                 ( nextExpiration == 0 || nextExpiration > next._expires ) )
+                                nextExpiration = next._expires;
                             entry = next;
                             next = next._nextEntry;
                         }
@@ -1124,11 +1306,10 @@ final class ConnectionPool
                     }
                 }
             }
-            // We calculate the next expiraiton time base on the timeStamp,
-            // so we need to add maxRetain to get the actual clock time.
-            if ( nextExpiration != 0 )
-                nextExpiration += maxRetain;
             _nextExpiration = nextExpiration;
+            // We notify any blocking thread that it can attempt to
+            // get a new connection.
+            notifyAll();
         }
         // If no connection was subject to expire, we return the same
         // nextExpiration.
@@ -1136,6 +1317,196 @@ final class ConnectionPool
     }
 
 
+    /**
+     * Calculates the next expiration time based on this connection.
+     * The connection will expire when it has been available for longer
+     * than maxRetain seconds, or when it reaches its maximum lifetime.
+     * If the next expiration time is sooner than previously expected,
+     * we notify the background thread.
+     *
+     * @param entry The connection entry
+     */
+    private void schedule( PoolEntry entry )
+    {
+        long nextExpiration = 0;
+        int  maxRetain;
+
+        maxRetain = _limits.getMaxRetain();
+        if ( maxRetain > 0 )
+            nextExpiration = entry._timeStamp + ( maxRetain * 1000 );
+        if ( entry._expires != 0 && ( nextExpiration == 0 || nextExpiration > entry._expires ) )
+            nextExpiration = entry._expires;
+        if ( nextExpiration != 0 &&
+             ( _nextExpiration == 0 || _nextExpiration > nextExpiration ) ) {
+            _nextExpiration = nextExpiration;
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Called when a connection is obtained from the pool. Records the
+     * duration waited for the connection and, if leak detection is
+     * enabled, samples where the connection was obtained.
+     *
+     * @param entry The connection entry
+     * @param waitStart The time we started waiting, or zero
+     */
+    private void borrowed( PoolEntry entry, long waitStart )
+    {
+        int sampling;
+
+        recordWaitDuration( waitDuration( waitStart ) );
+        entry._leakReported = false;
+        entry._borrowSite = null;
+        if ( 0 != _limits.getLeakTimeout() ) {
+            // The stack trace is only converted to text if the
+            // connection is reported, so recording it is cheap.
+            sampling = _limits.getLeakSampling();
+            if ( sampling > 0 && ++_borrowCount % sampling == 0 )
+                entry._borrowSite = new Throwable( "Connection obtained by thread " +
+                                                   Thread.currentThread().getName() );
+        }
+    }
+
+
+    /**
+     * Called periodically to report connections used by the application
+     * for longer than the leak timeout as possible leaks. Each connection
+     * is reported once. If the pool reclaims leaked connections, they are
+     * discarded.
+     */
+    private synchronized void detectLeaks()
+    {
+        PoolEntry entry;
+        PoolEntry next;
+        long      clock;
+        long      timeout;
+        String    message;
+
+        clock = Clock.clock();
+        timeout = _limits.getLeakTimeout() * 1000L;
+        _nextLeakCheck = clock + Math.max( 1000, timeout / 2 );
+        for ( int i = 0 ; i < _pool.length ; ++i ) {
+            entry = _pool[ i ];
+            while ( entry != null ) {
+                next = entry._nextEntry;
+                if ( IN_USE == entry._state && clock - entry._timeStamp >= timeout ) {
+                    if ( ! entry._leakReported ) {
+                        entry._leakReported = true;
+                        recordLeak();
+                        message = "Connection " + entry._pooled + " in pool " + _name + " used for " +
+                            ( ( clock - entry._timeStamp ) / 1000 ) + " seconds, possible leak";
+                        if ( entry._borrowSite != null )
+                            _category.error( message, entry._borrowSite );
+                        else
+                            _category.warn( message );
+                        if ( _logWriter != null )
+                            _logWriter.println( message );
+                    }
+                    // A connection enlisted in a transaction is reclaimed
+                    // only after the transaction completes.
+                    if ( _limits.getLeakReclaim() && 0 == entry._enlistCount ) {
+                        recordUsedDuration( (int) ( clock - entry._timeStamp ) );
+                        entry._timeStamp = clock;
+                        entry._state = CLOSED;
+                        discard( entry._pooled, false );
+                    }
+                }
+                entry = next;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of connections the pool keeps open. This is
+     * the minimum pool size, or the target size if the pool size is
+     * adaptive.
+     *
+     * @return The number of connections the pool keeps open
+     */
+    private int getTargetSize()
+    {
+        if ( _sizer != null )
+            return _sizer.getTarget();
+        return _limits.getMinimum();
+    }
+
+
+    /**
+     * Adapts the target pool size to the observed load. If the target
+     * size shrinks, releases some of the unused connections above it,
+     * a quarter of them at a time.
+     */
+    private synchronized void adjust()
+    {
+        int target;
+        int excess;
+
+        _nextAdjust = Clock.clock() + PoolSizer.INTERVAL;
+        target = _sizer.adjust( this, _limits, Clock.clock() );
+        excess = Math.min( _total - target, _available );
+        if ( excess > 0 ) {
+            excess = Math.max( 1, excess / 4 );
+            if ( _logWriter != null )
+                _logWriter.println( "Adjusted pool size to " + target + ", releasing " +
+                                    excess + " unused connections" );
+            while ( excess-- > 0 && discardNext() )
+                ;
+        }
+    }
+
+
+    /**
+     * Returns the duration waited for a connection, or zero if we did
+     * not wait. A connection we waited for is counted as having waited
+     * at least one millisecond.
+     *
+     * @param waitStart The time we started waiting, or zero
+     * @return The duration waited (in milliseconds), or zero
+     */
+    private static int waitDuration( long waitStart )
+    {
+        if ( waitStart == 0 )
+            return 0;
+        return (int) Math.max( 1, System.currentTimeMillis() - waitStart );
+    }
+
+
+    /**
+     * Restores the minimum pool size. If the pool has fallen below its
+     * minimum size, starts a filler to open the missing connections in
+     * the background. Does nothing while a previous filler is still
+     * running, or shortly after a filler failed to open a connection.
+     */
+    private synchronized void replenish()
+    {
+        int count;
+        int maximum;
+
+        if ( _destroyed )
+            return;
+        if ( _fillAfter != 0 ) {
+            if ( Clock.clock() < _fillAfter )
+                return;
+            _fillAfter = 0;
+        }
+        if ( _filler != null && _filler.isActive() )
+            return;
+        count = getTargetSize() - _total;
+        maximum = _limits.getMaximum();
+        if ( maximum > 0 && count > maximum - _total )
+            count = maximum - _total;
+        if ( count > 0 ) {
+            if ( _logWriter != null )
+                _logWriter.println( "Restoring minimum pool size with " + count + " new connections" );
+            _filler = new Filler( count );
+            _filler.start( _limits.getPrefillThreads() );
+        }
+    }
+
+
     /**
      * Returns the next available pooled connection that
      * mathces these criteria. If <tt>user</tt> is null, returns
@@ -1169,6 +1540,71 @@ final class ConnectionPool
         }
         return null;
     }
+
+
+    /**
+     * Opens connections for the pool filler. Connections that are being
+     * opened are counted by {@link #_filling}, so they are accounted
+     * for against the maximum pool size.
+     */
+    private final class Filler
+        extends PoolFiller
+    {
+
+
+        Filler( int count )
+        {
+            super( "Connection Pool " + _name, count );
+        }
+
+
+        protected boolean create()
+            throws Exception
+        {
+            PooledConnection pooled = null;
+            int              maximum;
+
+            synchronized ( ConnectionPool.this ) {
+                maximum = _limits.getMaximum();
+                if ( _destroyed || ( maximum > 0 && _total + _filling >= maximum ) )
+                    return false;
+                ++_filling;
+            }
+            try {
+                pooled = createPooledConnection( null, null );
+            } finally {
+                // Add the connection to the pool in the same step that
+                // releases its slot, so the pool never exceeds its maximum.
+                synchronized ( ConnectionPool.this ) {
+                    --_filling;
+                    if ( pooled != null && ! _destroyed ) {
+                        allocate( pooled, null, null, false );
+                        pooled = null;
+                    }
+                    ConnectionPool.this.notifyAll();
+                }
+            }
+            // The pool was destroyed while we opened the connection.
+            if ( pooled != null ) {
+                pooled.close();
+                return false;
+            }
+            return true;
+        }
+
+
+        protected void failed( Exception except )
+        {
+            _category.error( "Error attempting to open connection by connection pool " +
+                             ConnectionPool.this, except );
+            synchronized ( ConnectionPool.this ) {
+                _fillAfter = Clock.clock() + FILL_RETRY;
+                ConnectionPool.this.notifyAll();
+            }
+        }
+
+
+    }
     
     
 }
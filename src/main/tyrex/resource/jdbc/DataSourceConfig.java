@@ -67,6 +67,9 @@ import tyrex.resource.PoolMetrics;
 import tyrex.resource.Resource;
 import tyrex.resource.ResourceConfig;
 import tyrex.resource.ResourceException;
+import tyrex.resource.StatementMetrics;
+import tyrex.resource.jdbc.xa.StatementDefaults;
+import tyrex.resource.jdbc.xa.XADataSourceImpl;
 import tyrex.tm.TransactionDomain;
 import tyrex.tm.TyrexTransactionManager;
 import tyrex.util.logging.Category;
@@ -101,6 +104,51 @@ public class DataSourceConfig
     private ClassLoader             _classLoader;
 
 
+    /**
+     * The maximum number of prepared statements cached for each
+     * connection, zero if not specified.
+     */
+    private int                     _statementCache;
+
+
+    /**
+     * True if statement metrics are recorded.
+     */
+    private boolean                 _statementMetrics;
+
+
+    /**
+     * Statements executing for this long or longer are logged (ms),
+     * zero if not specified.
+     */
+    private int                     _slowStatement;
+
+
+    /**
+     * The default fetch size of statements, zero if not specified.
+     */
+    private int                     _fetchSize;
+
+
+    /**
+     * The default maximum rows of statements, zero if not specified.
+     */
+    private int                     _maxRows;
+
+
+    /**
+     * The default query timeout of statements (seconds), zero if
+     * not specified.
+     */
+    private int                     _queryTimeout;
+
+
+    /**
+     * True if statements are forward only and read only by default.
+     */
+    private boolean                 _forwardOnly;
+
+
     /**
      * Sets the name for the data source class. The data source will be
      * constructed from this class. It can implement <tt>DataSource</tt>,
@@ -125,6 +173,184 @@ public class DataSourceConfig
     }
 
 
+    /**
+     * Sets the maximum number of prepared statements cached for each
+     * connection. Prepared and callable statements closed by the
+     * application are kept open and reused when the application
+     * prepares the same statement again on the same connection.
+     * <p>
+     * Only applies to data sources that extend {@link XADataSourceImpl}.
+     * Zero leaves the data source's own setting in effect.
+     *
+     * @param size The statement cache size
+     */
+    public void setStatementCache( int size )
+    {
+        _statementCache = size;
+    }
+
+
+    /**
+     * Returns the maximum number of prepared statements cached for
+     * each connection.
+     *
+     * @return The statement cache size, zero if not specified
+     */
+    public int getStatementCache()
+    {
+        return _statementCache;
+    }
+
+
+    /**
+     * Enables statement metrics. The time executing each statement
+     * and the number of rows fetched from each result set are
+     * recorded, and available from {@link PoolMetrics#getStatementMetrics}.
+     * <p>
+     * Only applies to data sources that extend {@link XADataSourceImpl},
+     * or if the connection pool enlists connections lazily.
+     *
+     * @param metrics True to record statement metrics
+     */
+    public void setStatementMetrics( boolean metrics )
+    {
+        _statementMetrics = metrics;
+    }
+
+
+    /**
+     * Returns true if statement metrics are recorded.
+     *
+     * @return True if statement metrics are recorded
+     */
+    public boolean getStatementMetrics()
+    {
+        return _statementMetrics;
+    }
+
+
+    /**
+     * Sets the slow statement threshold. Statements executing for
+     * this long or longer are logged. Setting a threshold enables
+     * statement metrics.
+     *
+     * @param ms The slow statement threshold (ms), zero to not
+     *   log slow statements
+     */
+    public void setSlowStatement( int ms )
+    {
+        _slowStatement = ms;
+    }
+
+
+    /**
+     * Returns the slow statement threshold.
+     *
+     * @return The slow statement threshold (ms), zero if not specified
+     */
+    public int getSlowStatement()
+    {
+        return _slowStatement;
+    }
+
+
+    /**
+     * Sets the default fetch size of statements. Statements are
+     * created with this fetch size, instead of the driver's default.
+     * Some drivers accept a negative value to request streaming.
+     * <p>
+     * Statement defaults only apply to data sources that extend
+     * {@link XADataSourceImpl}, or if the connection pool enlists
+     * connections lazily.
+     *
+     * @param rows The fetch size, zero for the driver's default
+     */
+    public void setFetchSize( int rows )
+    {
+        _fetchSize = rows;
+    }
+
+
+    /**
+     * Returns the default fetch size of statements.
+     *
+     * @return The fetch size, zero if not specified
+     */
+    public int getFetchSize()
+    {
+        return _fetchSize;
+    }
+
+
+    /**
+     * Sets the default maximum number of rows returned by statements.
+     *
+     * @param rows The maximum number of rows, zero for no limit
+     */
+    public void setMaxRows( int rows )
+    {
+        _maxRows = rows;
+    }
+
+
+    /**
+     * Returns the default maximum number of rows returned by statements.
+     *
+     * @return The maximum number of rows, zero if not specified
+     */
+    public int getMaxRows()
+    {
+        return _maxRows;
+    }
+
+
+    /**
+     * Sets the default query timeout of statements.
+     *
+     * @param seconds The query timeout in seconds, zero for no timeout
+     */
+    public void setQueryTimeout( int seconds )
+    {
+        _queryTimeout = seconds;
+    }
+
+
+    /**
+     * Returns the default query timeout of statements.
+     *
+     * @return The query timeout in seconds, zero if not specified
+     */
+    public int getQueryTimeout()
+    {
+        return _queryTimeout;
+    }
+
+
+    /**
+     * Sets whether statements created without a result set type are
+     * forward only and read only. Some drivers only stream result
+     * sets of such statements.
+     *
+     * @param forwardOnly True if statements are forward only by default
+     */
+    public void setForwardOnly( boolean forwardOnly )
+    {
+        _forwardOnly = forwardOnly;
+    }
+
+
+    /**
+     * Returns true if statements created without a result set type
+     * are forward only and read only.
+     *
+     * @return True if statements are forward only by default
+     */
+    public boolean getForwardOnly()
+    {
+        return _forwardOnly;
+    }
+
+
     public Object createFactory()
         throws ResourceException
     {
@@ -206,6 +432,9 @@ public class DataSourceConfig
         String                  name;
         Object                  factory;
         TyrexTransactionManager txManager;
+        Category                category;
+        StatementMetrics        metrics;
+        StatementDefaults       defaults;
 
         name = _name;
         if ( name == null || name.trim().length() == 0 )
@@ -219,15 +448,32 @@ public class DataSourceConfig
         factory = _factory;
         if ( factory == null )
             throw new ResourceException( "No data source configured" );
+        category = Category.getInstance( Logger.resource.getName() + "." + name );
+        if ( _statementMetrics || _slowStatement > 0 )
+            metrics = new StatementMetrics( Math.max( _slowStatement, 0 ), category );
+        else
+            metrics = null;
+        if ( _fetchSize != 0 || _maxRows > 0 || _queryTimeout > 0 || _forwardOnly )
+            defaults = new StatementDefaults( _fetchSize, Math.max( _maxRows, 0 ),
+                                              Math.max( _queryTimeout, 0 ), _forwardOnly );
+        else
+            defaults = null;
+        if ( factory instanceof XADataSourceImpl ) {
+            if ( _statementCache > 0 )
+                ( (XADataSourceImpl) factory ).setStatementCacheSize( _statementCache );
+            ( (XADataSourceImpl) factory ).setStatementMetrics( metrics );
+            if ( defaults != null )
+                ( (XADataSourceImpl) factory ).setStatementDefaults( defaults );
+        }
         if ( factory instanceof XADataSource ) {
             _resource = new ConnectionPool( name, super.getLimits(), _classLoader,
                                             (XADataSource) factory, null,
-                                            txManager, Category.getInstance( Logger.resource.getName() + "." + name ) );
+                                            txManager, category, metrics, defaults );
             return _resource;
         } else if ( factory instanceof ConnectionPoolDataSource ) {
             _resource = new ConnectionPool( name, super.getLimits(), _classLoader,
                                             null, (ConnectionPoolDataSource) factory,
-                                            txManager, Category.getInstance( Logger.resource.getName() + "." + name ) );
+                                            txManager, category, metrics, defaults );
             return _resource;
         } else if ( factory instanceof DataSource ) {
             _resource = new DataSourceResource( (DataSource) factory );
@@ -0,0 +1,194 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc;
+
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import tyrex.resource.StatementMetrics;
+import tyrex.resource.jdbc.xa.StatementDefaults;
+import tyrex.resource.jdbc.xa.TyrexConnection;
+
+
+/**
+ * The application's view of a pooled connection that is enlisted in
+ * the transaction when first used.
+ * <p>
+ * The connection pool returns this connection when lazy enlistment is
+ * enabled. The connection's XA resource is enlisted the first time the
+ * application calls any method of this connection, other than closing
+ * it, so a connection that is obtained but never used does not take
+ * part in the transaction.
+ *
+ * @see tyrex.resource.PoolLimits#getLazyEnlist
+ */
+final class LazyConnection
+    extends TyrexConnection
+{
+
+
+    /**
+     * The connection pool.
+     */
+    private final ConnectionPool  _pool;
+
+
+    /**
+     * The connection pool entry.
+     */
+    private final PoolEntry       _entry;
+
+
+    /**
+     * The connection obtained from the pooled connection, or null if
+     * this connection has been closed.
+     */
+    private volatile Connection   _connection;
+
+
+    /**
+     * True if the connection has been enlisted. Volatile so the
+     * connection can be returned without synchronizing once enlisted.
+     */
+    private volatile boolean      _enlisted;
+
+
+    LazyConnection( ConnectionPool pool, PoolEntry entry, Connection connection )
+    {
+        _pool = pool;
+        _entry = entry;
+        _connection = connection;
+    }
+
+
+    /**
+     * Returns the underlying connection, enlisting it the first time
+     * it is used. Enlisting synchronizes with {@link #internalClose},
+     * so a connection closed by another thread is never enlisted.
+     */
+    protected Connection internalGetUnderlyingConnection()
+        throws SQLException
+    {
+        Connection connection;
+
+        connection = _connection;
+        if ( connection == null )
+            throw new SQLException( "The connection is closed" );
+        if ( ! _enlisted ) {
+            synchronized ( this ) {
+                connection = _connection;
+                if ( connection == null )
+                    throw new SQLException( "The connection is closed" );
+                if ( ! _enlisted ) {
+                    _pool.enlist( _entry );
+                    _enlisted = true;
+                }
+            }
+        }
+        return connection;
+    }
+
+
+    protected synchronized void internalClose()
+        throws SQLException
+    {
+        Connection connection;
+
+        // Closing the connection returns it to the pool, which
+        // delists it if it was enlisted.
+        connection = _connection;
+        if ( connection != null ) {
+            _connection = null;
+            connection.close();
+        }
+    }
+
+
+    /**
+     * Returns the statement metrics of the connection pool. Returns
+     * null if the pooled connection is itself a Tyrex connection,
+     * which records its own statements.
+     */
+    protected StatementMetrics internalGetStatementMetrics()
+    {
+        if ( _connection instanceof TyrexConnection )
+            return null;
+        return _pool.getStatementMetrics();
+    }
+
+
+    /**
+     * Returns the statement defaults of the connection pool. Returns
+     * null if the pooled connection is itself a Tyrex connection,
+     * which applies its own defaults.
+     */
+    protected StatementDefaults internalGetStatementDefaults()
+    {
+        if ( _connection instanceof TyrexConnection )
+            return null;
+        return _pool.getStatementDefaults();
+    }
+
+
+    public boolean isClosed()
+    {
+        return ( _connection == null );
+    }
+
+
+    public String toString()
+    {
+        Connection connection;
+
+        connection = _connection;
+        if ( connection == null )
+            return "LazyConnection: Connection closed";
+        return connection.toString();
+    }
+
+
+}
@@ -100,6 +100,35 @@ final class PoolEntry implements XAResourceCallback
     protected long                     _timeStamp;
 
 
+    /**
+     * The clock time at which this connection reaches its maximum
+     * lifetime and must be released, or zero if it is kept open forever.
+     */
+    protected long                     _expires;
+
+
+
+    /**
+     * Records where the application obtained this connection, if leak
+     * detection is enabled and the connection was sampled, or null.
+     */
+    protected Throwable                _borrowSite;
+
+
+    /**
+     * True if this connection has been reported as a possible leak
+     * since the application obtained it.
+     */
+    protected boolean                  _leakReported;
+
+
+    /**
+     * True if the pool enlisted the XA resource since the application
+     * obtained this connection, and must delist it when released.
+     */
+    protected boolean                  _enlisted;
+
+
     /**
      * The user name.
      */
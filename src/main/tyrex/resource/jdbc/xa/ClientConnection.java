@@ -54,6 +54,8 @@ import java.sql.SQLException;
 
 import javax.sql.XAConnection;
 
+import tyrex.resource.StatementMetrics;
+
 
 /**
  * Encapsulates an application's view of an XA/pooled connection.
@@ -80,8 +82,10 @@ final class ClientConnection
     /**
      * The pooled XA connection that created this client connection
      * and should be used to report closure and fatal errors.
+     * Null if this connection has been closed. Volatile since the
+     * connection methods check it without synchronizing.
      */
-    private XAConnectionImpl  _xaConn;
+    private volatile XAConnectionImpl  _xaConn;
 
 
     /**
@@ -134,10 +138,10 @@ final class ClientConnection
         throws SQLException
     {
         // Cannot set auto-commit inside a transaction.
-        if ( _xaConn.insideGlobalTx() )
+        if ( internalGetXAConnection().insideGlobalTx() )
             throw new SQLException( "Cannot commit/rollback a connection managed by the transaction manager" );
         try {
-            super.setAutoCommit( autoCommit );
+            internalGetUnderlyingState().setAutoCommit( autoCommit );
         } catch ( SQLException except ) {
             notifyError( except );
             throw except;
@@ -149,7 +153,79 @@ final class ClientConnection
         throws SQLException
     {
         try {
-            return super.getAutoCommit();
+            return internalGetUnderlyingState().getAutoCommit();
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public void setReadOnly( boolean readOnly )
+        throws SQLException
+    {
+        try {
+            internalGetUnderlyingState().setReadOnly( readOnly );
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public boolean isReadOnly()
+        throws SQLException
+    {
+        try {
+            return internalGetUnderlyingState().isReadOnly();
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public void setTransactionIsolation( int level )
+        throws SQLException
+    {
+        try {
+            internalGetUnderlyingState().setTransactionIsolation( level );
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public int getTransactionIsolation()
+        throws SQLException
+    {
+        try {
+            return internalGetUnderlyingState().getTransactionIsolation();
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public void setCatalog( String catalog )
+        throws SQLException
+    {
+        try {
+            internalGetUnderlyingState().setCatalog( catalog );
+        } catch ( SQLException except ) {
+            notifyError( except );
+            throw except;
+        }
+    }
+
+
+    public String getCatalog()
+        throws SQLException
+    {
+        try {
+            return internalGetUnderlyingState().getCatalog();
         } catch ( SQLException except ) {
             notifyError( except );
             throw except;
@@ -161,7 +237,7 @@ final class ClientConnection
         throws SQLException
     {
         // Cannot commit directly if we're inside a global transaction.
-        if ( _xaConn.insideGlobalTx() )
+        if ( internalGetXAConnection().insideGlobalTx() )
             throw new SQLException( "Cannot commit/rollback a connection managed by the transaction manager" );
         // Cannot commit a read-only transaction.
         if ( isReadOnly() )
@@ -181,7 +257,7 @@ final class ClientConnection
         throws SQLException
     {
         // Cannot commit directly if we're inside a global transaction.
-        if ( _xaConn.insideGlobalTx() )
+        if ( internalGetXAConnection().insideGlobalTx() )
             throw new SQLException( "Cannot commit/rollback a connection managed by the transaction manager" );
         // This only occurs if not inside a local transaction.
         try {
@@ -196,19 +272,22 @@ final class ClientConnection
     protected void internalClose()
         throws SQLException
     {
-        if ( !isClosed() ) { 
+        XAConnectionImpl xaConn;
+
+        xaConn = _xaConn;
+        if ( xaConn != null ) { 
             // Notify the XA connection that we are no longer going
             // to be used. Whether the underlying connection is released,
             // held until the transaction terminates, etc is not
             // a concern of us.
-            _xaConn.notifyClose( _clientId );
             _xaConn = null;
             _xaDataSource = null;
+            xaConn.notifyClose( _clientId );
         }
     }
 
 
-    public synchronized boolean isClosed()
+    public boolean isClosed()
     {
         // Simple way of determining if this connection is closed.
         // The actual connection is never closed, it is pooled.
@@ -257,8 +336,11 @@ final class ClientConnection
      */
     protected void notifyError( SQLException except )
     {
-        if ( _xaConn != null )
-            _xaConn.notifyError( _clientId, except );
+        XAConnectionImpl xaConn;
+
+        xaConn = _xaConn;
+        if ( xaConn != null )
+            xaConn.notifyError( _clientId, except );
     }
 
 
@@ -274,7 +356,7 @@ final class ClientConnection
         // whether we are still valid. If it tells us we're no longer
         // valid, we have little to do.
         try {
-            return _xaConn.getUnderlying( _clientId );
+            return internalGetXAConnection().getUnderlying( _clientId );
         } catch ( SQLException except ) {
             _xaConn = null;
             _xaDataSource = null;
@@ -283,6 +365,86 @@ final class ClientConnection
     }
 
 
+    /**
+     * Called to retrieve the statement cache of the underlying JDBC
+     * connection. Returns null if statements are not cached, or the
+     * underlying connection changed since it was retrieved.
+     */
+    protected StatementCache internalGetStatementCache( Connection underlying )
+        throws SQLException
+    {
+        ConnectionState state;
+
+        state = internalGetUnderlyingState();
+        return ( state.conn == underlying ) ? state.statements : null;
+    }
+
+
+    /**
+     * Called to retrieve the metrics into which statements created
+     * by this connection are recorded. Returns null if statement
+     * metrics are not recorded.
+     */
+    protected StatementMetrics internalGetStatementMetrics()
+    {
+        XADataSourceImpl xaDataSource;
+
+        xaDataSource = _xaDataSource;
+        return ( xaDataSource == null ) ? null : xaDataSource.getStatementMetrics();
+    }
+
+
+    /**
+     * Called to retrieve the default properties applied to statements
+     * created by this connection. Returns null if statements are
+     * created with the driver's defaults.
+     */
+    protected StatementDefaults internalGetStatementDefaults()
+    {
+        XADataSourceImpl xaDataSource;
+
+        xaDataSource = _xaDataSource;
+        return ( xaDataSource == null ) ? null : xaDataSource.getStatementDefaults();
+    }
+
+
+    /**
+     * Called to retrieve the underlying JDBC connection along with
+     * its known state. Connection properties are changed through the
+     * returned object, so the driver is only called when they change.
+     * Throws an SQLException if this connection has been closed.
+     */
+    private ConnectionState internalGetUnderlyingState()
+        throws SQLException
+    {
+        try {
+            return internalGetXAConnection().getUnderlyingState( _clientId );
+        } catch ( SQLException except ) {
+            _xaConn = null;
+            _xaDataSource = null;
+            throw except;
+        }
+    }
+
+
+    /**
+     * Returns the XA connection that created this connection.
+     * The field is read once, so a connection closed by another
+     * thread is reported as closed. Throws an SQLException if this
+     * connection has been closed.
+     */
+    private XAConnectionImpl internalGetXAConnection()
+        throws SQLException
+    {
+        XAConnectionImpl xaConn;
+
+        xaConn = _xaConn;
+        if ( xaConn == null )
+            throw new SQLException( "The connection is closed." );
+        return xaConn;
+    }
+
+
 }
 
 
@@ -0,0 +1,225 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * Tracks the state of an underlying JDBC connection: auto-commit,
+ * transaction isolation, read-only and catalog. The state is
+ * recorded as it is set through this object, so setting a property
+ * to the value it already holds does not call the driver. On many
+ * drivers each such call is a round trip to the database.
+ * <p>
+ * A property is unknown until it is first set or read. If the driver
+ * fails to set a property, the property becomes unknown again.
+ * The state is only accurate as long as the underlying connection
+ * is not changed directly, e.g. by executing a <tt>SET</tt> statement.
+ * <p>
+ * This object travels with the underlying connection, as it moves
+ * between XA connections, transactions and the data source's idle
+ * connections.
+ *
+ *
+ * @see XAConnectionImpl
+ * @see XADataSourceImpl
+ */
+final class ConnectionState
+{
+
+
+    /**
+     * The underlying JDBC connection.
+     */
+    final Connection          conn;
+
+
+    /**
+     * The prepared statement cache of the underlying connection,
+     * null if statements are not cached.
+     */
+    final StatementCache      statements;
+
+
+    /**
+     * The auto-commit mode, null if unknown.
+     */
+    private Boolean           _autoCommit;
+
+
+    /**
+     * The read-only mode, null if unknown.
+     */
+    private Boolean           _readOnly;
+
+
+    /**
+     * The transaction isolation level, -1 if unknown.
+     */
+    private int               _isolation = -1;
+
+
+    /**
+     * The catalog. Only valid if {@link #_catalogKnown} is true.
+     */
+    private String            _catalog;
+
+
+    /**
+     * True if the catalog is known.
+     */
+    private boolean           _catalogKnown;
+
+
+    /**
+     * Constructs the state of a newly opened connection.
+     *
+     * @param conn The underlying JDBC connection
+     * @param statementCacheSize The maximum number of prepared
+     *   statements to cache, zero to not cache statements
+     */
+    ConnectionState( Connection conn, int statementCacheSize )
+    {
+        if ( conn == null )
+            throw new IllegalArgumentException( "Argument conn is null" );
+        this.conn = conn;
+        statements = ( statementCacheSize > 0 ) ? new StatementCache( statementCacheSize ) : null;
+    }
+
+
+    synchronized void setAutoCommit( boolean autoCommit )
+        throws SQLException
+    {
+        if ( _autoCommit != null && _autoCommit.booleanValue() == autoCommit )
+            return;
+        _autoCommit = null;
+        conn.setAutoCommit( autoCommit );
+        _autoCommit = autoCommit ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+
+    synchronized boolean getAutoCommit()
+        throws SQLException
+    {
+        if ( _autoCommit == null )
+            _autoCommit = conn.getAutoCommit() ? Boolean.TRUE : Boolean.FALSE;
+        return _autoCommit.booleanValue();
+    }
+
+
+    synchronized void setReadOnly( boolean readOnly )
+        throws SQLException
+    {
+        if ( _readOnly != null && _readOnly.booleanValue() == readOnly )
+            return;
+        _readOnly = null;
+        conn.setReadOnly( readOnly );
+        _readOnly = readOnly ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+
+    synchronized boolean isReadOnly()
+        throws SQLException
+    {
+        if ( _readOnly == null )
+            _readOnly = conn.isReadOnly() ? Boolean.TRUE : Boolean.FALSE;
+        return _readOnly.booleanValue();
+    }
+
+
+    synchronized void setTransactionIsolation( int isolation )
+        throws SQLException
+    {
+        if ( _isolation == isolation )
+            return;
+        _isolation = -1;
+        conn.setTransactionIsolation( isolation );
+        _isolation = isolation;
+    }
+
+
+    synchronized int getTransactionIsolation()
+        throws SQLException
+    {
+        if ( _isolation == -1 )
+            _isolation = conn.getTransactionIsolation();
+        return _isolation;
+    }
+
+
+    synchronized void setCatalog( String catalog )
+        throws SQLException
+    {
+        if ( _catalogKnown && ( catalog == null ? _catalog == null : catalog.equals( _catalog ) ) )
+            return;
+        _catalogKnown = false;
+        conn.setCatalog( catalog );
+        _catalog = catalog;
+        _catalogKnown = true;
+    }
+
+
+    synchronized String getCatalog()
+        throws SQLException
+    {
+        if ( ! _catalogKnown ) {
+            _catalog = conn.getCatalog();
+            _catalogKnown = true;
+        }
+        return _catalog;
+    }
+
+
+    public String toString()
+    {
+        return conn.toString();
+    }
+
+
+}
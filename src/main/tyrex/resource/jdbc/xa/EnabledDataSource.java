@@ -65,7 +65,8 @@ import javax.naming.RefAddr;
 import javax.naming.Context;
 import javax.naming.Name;
 import javax.naming.NamingException;
-import javax.naming.spi.ObjectFactory;
+
+import tyrex.naming.SharedObjectFactory;
 
 
 /**
@@ -117,6 +118,9 @@ import javax.naming.spi.ObjectFactory;
  * ds = (DataSource) ctx.lookup( "/comp/jdbc/test" );
  * ds.getConnection();
  * </pre>
+ * When bound in a Tyrex naming context, the data source is
+ * reconstructed from its reference once, and the same data source
+ * is returned from all subsequent lookups.
  *
  *
  * @author <a href="arkin@intalio.com">Assaf Arkin</a>
@@ -128,7 +132,7 @@ import javax.naming.spi.ObjectFactory;
 public class EnabledDataSource
     extends XADataSourceImpl
     implements DataSource, Referenceable,
-               ObjectFactory, Serializable
+               SharedObjectFactory, Serializable
 {
 
 
@@ -570,6 +574,10 @@ public class EnabledDataSource
             ref.add( new StringRefAddr( "isolationLevel", getIsolationLevelAsString() ) );
         ref.add( new StringRefAddr( "transactionTimeout", Integer.toString( getTransactionTimeout() ) ) );
 		ref.add( new StringRefAddr( "ignoreIsolationLevel", getIgnoreIsolationLevel() ? Boolean.TRUE.toString() : Boolean.FALSE.toString() ) );
+        if ( getRecoveryLog() != null )
+            ref.add( new StringRefAddr( "recoveryLog", getRecoveryLog() ) );
+        if ( getStatementCacheSize() > 0 )
+            ref.add( new StringRefAddr( "statementCacheSize", Integer.toString( getStatementCacheSize() ) ) );
         return ref;
     }
 
@@ -617,6 +625,17 @@ public class EnabledDataSource
 				if ( addr != null ) {
                     ds.setIgnoreIsolationLevel( Boolean.valueOf( ( (String) addr.getContent() ) ).booleanValue() );
                 }
+                addr = ref.get( "statementCacheSize" );
+                if ( addr != null )
+                    ds.setStatementCacheSize( Integer.parseInt( (String) addr.getContent() ) );
+                addr = ref.get( "recoveryLog" );
+                if ( addr != null ) {
+                    try {
+                        ds.setRecoveryLog( (String) addr.getContent() );
+                    } catch ( IllegalArgumentException except ) {
+                        throw new NamingException( except.getMessage() );
+                    }
+                }
                 return ds;
             } else
                 throw new NamingException( "DataSource: Reference not constructed from class " + getClass().getName() );
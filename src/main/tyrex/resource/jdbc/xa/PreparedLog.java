@@ -0,0 +1,379 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import javax.transaction.xa.Xid;
+import tyrex.tm.xid.InvalidXidException;
+import tyrex.tm.xid.XidUtils;
+
+
+/**
+ * A durable log of prepared transaction branches, used by
+ * {@link XADataSourceImpl} to recover in-doubt branches after a
+ * restart.
+ * <p>
+ * The log is a text file with one record per line. A record is the
+ * letter <tt>P</tt> (prepared) or <tt>F</tt> (forgotten) followed by
+ * the string representation of the Xid. Prepared records are forced
+ * to disk before prepare returns. Forgotten records are not forced:
+ * if one is lost, the branch is reported again on recovery and the
+ * transaction manager completes it a second time.
+ * <p>
+ * When the log is opened, it is read and rewritten to hold only the
+ * branches still in doubt. It is rewritten again whenever most of its
+ * records refer to forgotten branches. An incomplete last record,
+ * left by a crash, is ignored.
+ * <p>
+ * Data sources that use the same file share one log, obtained from
+ * {@link #open}. The file is read and rewritten only when the log is
+ * first opened, and closed when the last data source closes it.
+ *
+ *
+ * @see XADataSourceImpl#setRecoveryLog
+ */
+final class PreparedLog
+{
+
+
+    /**
+     * Record type for a prepared branch.
+     */
+    private static final char       PREPARED = 'P';
+
+
+    /**
+     * Record type for a forgotten branch.
+     */
+    private static final char       FORGOTTEN = 'F';
+
+
+    /**
+     * The log is not rewritten until it holds at least this many
+     * records.
+     */
+    private static final int        COMPACT_THRESHOLD = 1024;
+
+
+    /**
+     * The open logs, mapped from the canonical path of their file.
+     */
+    private static final HashMap    _logs = new HashMap();
+
+
+    /**
+     * The log file.
+     */
+    private final File              _file;
+
+
+    /**
+     * The branches in doubt, mapped from their string
+     * representation to the Xid.
+     */
+    private final HashMap           _prepared = new HashMap();
+
+
+    /**
+     * The log file, open for appending. Null once closed.
+     */
+    private FileOutputStream        _output;
+
+
+    /**
+     * The number of records in the log file.
+     */
+    private int                     _records;
+
+
+    /**
+     * The number of times the log has been opened and not closed.
+     * Guarded by {@link #_logs}.
+     */
+    private int                     _references;
+
+
+    private PreparedLog( File file )
+        throws IOException
+    {
+        _file = file;
+        read();
+        compact();
+    }
+
+
+    /**
+     * Opens the log held in the file, reading all the branches in
+     * doubt. If the log is already open, returns the same log. Each
+     * call must be matched by a call to {@link #close}.
+     *
+     * @param file The log file, created if missing
+     * @return The log
+     * @throws IOException An error occured reading or writing the log
+     */
+    static PreparedLog open( File file )
+        throws IOException
+    {
+        PreparedLog log;
+
+        if ( file == null )
+            throw new IllegalArgumentException( "Argument file is null" );
+        file = file.getCanonicalFile();
+        synchronized ( _logs ) {
+            log = (PreparedLog) _logs.get( file );
+            if ( log == null ) {
+                log = new PreparedLog( file );
+                _logs.put( file, log );
+            }
+            ++log._references;
+            return log;
+        }
+    }
+
+
+    /**
+     * Records that the branch has been prepared. Does not return
+     * until the record is on disk.
+     *
+     * @param xid The transaction branch
+     * @throws IOException An error occured writing the log
+     */
+    synchronized void prepared( Xid xid )
+        throws IOException
+    {
+        String identifier;
+
+        identifier = XidUtils.toString( xid );
+        write( PREPARED, identifier, true );
+        _prepared.put( identifier, xid );
+    }
+
+
+    /**
+     * Records that the branch has been forgotten. Does nothing if
+     * the branch was never recorded as prepared.
+     *
+     * @param xid The transaction branch
+     * @throws IOException An error occured writing the log
+     */
+    synchronized void forgotten( Xid xid )
+        throws IOException
+    {
+        String identifier;
+
+        identifier = XidUtils.toString( xid );
+        if ( _prepared.remove( identifier ) == null )
+            return;
+        write( FORGOTTEN, identifier, false );
+        if ( _records > COMPACT_THRESHOLD && _records > _prepared.size() * 2 )
+            compact();
+    }
+
+
+    /**
+     * Returns true if the branch is recorded as prepared.
+     *
+     * @param xid The transaction branch
+     * @return True if the branch is in doubt
+     */
+    synchronized boolean contains( Xid xid )
+    {
+        return _prepared.containsKey( XidUtils.toString( xid ) );
+    }
+
+
+    /**
+     * Returns all the branches recorded as prepared.
+     *
+     * @return The branches in doubt
+     */
+    synchronized Xid[] getPrepared()
+    {
+        return (Xid[]) _prepared.values().toArray( new Xid[ _prepared.size() ] );
+    }
+
+
+    /**
+     * Closes the log. The file is closed once every call to
+     * {@link #open} has been matched by a call to this method.
+     */
+    void close()
+    {
+        synchronized ( _logs ) {
+            if ( _references == 0 )
+                return;
+            --_references;
+            if ( _references > 0 )
+                return;
+            _logs.remove( _file );
+            synchronized ( this ) {
+                closeOutput();
+            }
+        }
+    }
+
+
+    public String toString()
+    {
+        return _file.toString();
+    }
+
+
+    /**
+     * Closes the log file.
+     */
+    private void closeOutput()
+    {
+        if ( _output != null ) {
+            try {
+                _output.close();
+            } catch ( IOException except ) { }
+            _output = null;
+        }
+    }
+
+
+    /**
+     * Reads the log file, if it exists, and replays its records.
+     */
+    private void read()
+        throws IOException
+    {
+        BufferedReader reader;
+        String         line;
+        String         identifier;
+
+        if ( ! _file.exists() )
+            return;
+        reader = new BufferedReader( new InputStreamReader( new FileInputStream( _file ), "ASCII" ) );
+        try {
+            while ( ( line = reader.readLine() ) != null ) {
+                if ( line.length() < 3 || line.charAt( 1 ) != ' ' )
+                    continue;
+                identifier = line.substring( 2 );
+                if ( line.charAt( 0 ) == PREPARED ) {
+                    try {
+                        _prepared.put( identifier, XidUtils.parse( identifier ) );
+                    } catch ( InvalidXidException except ) {
+                        // An incomplete record, ignore it.
+                    }
+                } else if ( line.charAt( 0 ) == FORGOTTEN )
+                    _prepared.remove( identifier );
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    /**
+     * Rewrites the log file to hold only the branches in doubt,
+     * and reopens it for appending. The new file is written aside
+     * and then renamed over the old file.
+     */
+    private void compact()
+        throws IOException
+    {
+        File             temp;
+        FileOutputStream output;
+        Object[]         identifiers;
+
+        temp = new File( _file.getPath() + ".tmp" );
+        output = new FileOutputStream( temp );
+        try {
+            identifiers = _prepared.keySet().toArray();
+            for ( int i = 0 ; i < identifiers.length ; ++i )
+                output.write( record( PREPARED, (String) identifiers[ i ] ) );
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        closeOutput();
+        // Rename replaces the file in one step where the platform
+        // allows it, otherwise the old file must be removed first.
+        if ( ! temp.renameTo( _file ) ) {
+            if ( ! _file.delete() || ! temp.renameTo( _file ) )
+                throw new IOException( "Cannot replace recovery log " + _file );
+        }
+        _output = new FileOutputStream( _file.getPath(), true );
+        _records = identifiers.length;
+    }
+
+
+    /**
+     * Appends a record to the log file.
+     *
+     * @param type The record type
+     * @param identifier The Xid's string representation
+     * @param force True to force the record to disk
+     */
+    private void write( char type, String identifier, boolean force )
+        throws IOException
+    {
+        if ( _output == null )
+            throw new IOException( "Recovery log " + _file + " is closed" );
+        _output.write( record( type, identifier ) );
+        if ( force )
+            _output.getFD().sync();
+        ++_records;
+    }
+
+
+    private static byte[] record( char type, String identifier )
+        throws IOException
+    {
+        return ( type + " " + identifier + "\n" ).getBytes( "ASCII" );
+    }
+
+
+}
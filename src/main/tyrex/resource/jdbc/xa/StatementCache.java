@@ -0,0 +1,252 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/**
+ * Caches prepared and callable statements of an underlying JDBC
+ * connection, so the same SQL need not be prepared again each time
+ * the application asks for it.
+ * <p>
+ * Statements are cached by their SQL, result set type, concurrency
+ * and holdability, and whether they are callable. A statement is
+ * taken from the cache when the application prepares it, and
+ * returned to the cache when the application closes it. Only one
+ * idle statement is cached for each key. When the cache is full, the
+ * least recently returned statement is closed.
+ * <p>
+ * The cache travels with the underlying connection's
+ * {@link ConnectionState}. Statements are not closed when the
+ * underlying connection is closed, the driver closes them.
+ *
+ *
+ * @see ConnectionState
+ * @see TyrexPreparedStatementImpl
+ */
+final class StatementCache
+{
+
+
+    /**
+     * The maximum number of idle statements held in the cache.
+     */
+    private final int             _maximum;
+
+
+    /**
+     * The idle statements, mapped from their {@link Key}, in the
+     * order in which they were returned to the cache.
+     */
+    private final LinkedHashMap   _statements = new LinkedHashMap();
+
+
+    /**
+     * Constructs a new statement cache.
+     *
+     * @param maximum The maximum number of idle statements
+     */
+    StatementCache( int maximum )
+    {
+        if ( maximum <= 0 )
+            throw new IllegalArgumentException( "Argument maximum is zero or negative" );
+        _maximum = maximum;
+    }
+
+
+    /**
+     * Takes an idle statement out of the cache.
+     *
+     * @param key The statement key
+     * @return An idle statement, or null
+     */
+    synchronized PreparedStatement take( Key key )
+    {
+        return (PreparedStatement) _statements.remove( key );
+    }
+
+
+    /**
+     * Returns a statement to the cache. The statement's parameters,
+     * pending batch and warnings are cleared. The statement is closed
+     * instead, if
+     * an idle statement with the same key is already cached, or the
+     * statement cannot be cleared.
+     *
+     * @param key The statement key
+     * @param statement The statement
+     * @throws SQLException An error occured closing the statement
+     */
+    void release( Key key, PreparedStatement statement )
+        throws SQLException
+    {
+        PreparedStatement evicted;
+        Iterator          iterator;
+
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+        } catch ( SQLException except ) {
+            statement.close();
+            return;
+        }
+        evicted = null;
+        synchronized ( this ) {
+            if ( _statements.containsKey( key ) )
+                evicted = statement;
+            else {
+                _statements.put( key, statement );
+                if ( _statements.size() > _maximum ) {
+                    iterator = _statements.values().iterator();
+                    evicted = (PreparedStatement) iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        if ( evicted != null )
+            evicted.close();
+    }
+
+
+    /**
+     * Returns the number of idle statements in the cache.
+     *
+     * @return The number of idle statements
+     */
+    synchronized int size()
+    {
+        return _statements.size();
+    }
+
+
+    /**
+     * Identifies a cached statement.
+     */
+    static final class Key
+    {
+
+
+        /**
+         * The SQL statement.
+         */
+        private final String    _sql;
+
+
+        /**
+         * The result set type, -1 if not specified.
+         */
+        private final int       _type;
+
+
+        /**
+         * The result set concurrency, -1 if not specified.
+         */
+        private final int       _concurrency;
+
+
+        /**
+         * The result set holdability, -1 if not specified.
+         */
+        private final int       _holdability;
+
+
+        /**
+         * True for a callable statement.
+         */
+        private final boolean   _callable;
+
+
+        /**
+         * The hash code, computed once.
+         */
+        private final int       _hashCode;
+
+
+        Key( String sql, int type, int concurrency, int holdability, boolean callable )
+        {
+            if ( sql == null )
+                throw new IllegalArgumentException( "Argument sql is null" );
+            _sql = sql;
+            _type = type;
+            _concurrency = concurrency;
+            _holdability = holdability;
+            _callable = callable;
+            _hashCode = ( ( ( sql.hashCode() * 31 + type ) * 31 + concurrency ) * 31 + holdability ) * 2 +
+                ( callable ? 1 : 0 );
+        }
+
+
+        public boolean equals( Object object )
+        {
+            Key key;
+
+            if ( object == this )
+                return true;
+            if ( ! ( object instanceof Key ) )
+                return false;
+            key = (Key) object;
+            return ( key._hashCode == _hashCode && key._type == _type &&
+                     key._concurrency == _concurrency && key._holdability == _holdability &&
+                     key._callable == _callable && key._sql.equals( _sql ) );
+        }
+
+
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+
+
+    }
+
+
+}
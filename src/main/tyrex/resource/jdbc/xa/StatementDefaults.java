@@ -0,0 +1,176 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Default properties applied to each statement created through a
+ * data source, in place of the driver's defaults.
+ * <p>
+ * Drivers that read the entire result set into memory by default can
+ * be told to fetch a limited number of rows at a time, statements can
+ * be limited to a maximum number of rows and a query timeout, and
+ * statements created without a result set type can be made forward
+ * only and read only, which some drivers require before they stream
+ * the result set.
+ * <p>
+ * The properties are applied when the statement is created, before
+ * it is handed to the application, so the application can still
+ * change them. This object is immutable.
+ *
+ * @see TyrexStatementImpl
+ */
+public final class StatementDefaults
+    implements Serializable
+{
+
+
+    /**
+     * The fetch size, zero to use the driver's default.
+     */
+    private final int      _fetchSize;
+
+
+    /**
+     * The maximum number of rows, zero for no limit.
+     */
+    private final int      _maxRows;
+
+
+    /**
+     * The query timeout in seconds, zero for no timeout.
+     */
+    private final int      _queryTimeout;
+
+
+    /**
+     * True if statements created without a result set type are
+     * forward only and read only.
+     */
+    private final boolean  _forwardOnly;
+
+
+    /**
+     * Constructs a new set of statement defaults.
+     *
+     * @param fetchSize The fetch size, zero to use the driver's
+     *   default. Some drivers accept a negative value to request
+     *   streaming
+     * @param maxRows The maximum number of rows, zero for no limit
+     * @param queryTimeout The query timeout in seconds, zero for
+     *   no timeout
+     * @param forwardOnly True if statements created without a result
+     *   set type are forward only and read only
+     */
+    public StatementDefaults( int fetchSize, int maxRows, int queryTimeout, boolean forwardOnly )
+    {
+        if ( maxRows < 0 )
+            throw new IllegalArgumentException( "Argument maxRows is negative" );
+        if ( queryTimeout < 0 )
+            throw new IllegalArgumentException( "Argument queryTimeout is negative" );
+        _fetchSize = fetchSize;
+        _maxRows = maxRows;
+        _queryTimeout = queryTimeout;
+        _forwardOnly = forwardOnly;
+    }
+
+
+    /**
+     * Returns the fetch size.
+     *
+     * @return The fetch size, zero to use the driver's default
+     */
+    public int getFetchSize()
+    {
+        return _fetchSize;
+    }
+
+
+    /**
+     * Returns the maximum number of rows.
+     *
+     * @return The maximum number of rows, zero for no limit
+     */
+    public int getMaxRows()
+    {
+        return _maxRows;
+    }
+
+
+    /**
+     * Returns the query timeout.
+     *
+     * @return The query timeout in seconds, zero for no timeout
+     */
+    public int getQueryTimeout()
+    {
+        return _queryTimeout;
+    }
+
+
+    /**
+     * Returns true if statements created without a result set type
+     * are forward only and read only.
+     *
+     * @return True if statements are forward only by default
+     */
+    public boolean getForwardOnly()
+    {
+        return _forwardOnly;
+    }
+
+
+    public String toString()
+    {
+        return "fetchSize " + _fetchSize + " maxRows " + _maxRows +
+            " queryTimeout " + _queryTimeout + " forwardOnly " + _forwardOnly;
+    }
+
+
+}
@@ -82,20 +82,20 @@ final class TxConnection
      * and the connection is considered failed.
      */
     Connection                 conn;
-    
+
 
     /**
-     * The user name for the underlying connection.
-     * Can be null.
+     * The known state of the underlying JDBC connection. Always
+     * refers to {@link #conn}, while that variable is not null.
      */
-    String                     userName;
+    ConnectionState            state;
     
 
     /**
-     * The password for the underlying connection.
-     * Can be null.
+     * The account for which the underlying connection was opened.
+     * Used to return the connection to the right idle stack.
      */
-    String                     password;
+    String                     account;
 
     /**
      * Indicates the clock time (in ms) when the transaction should
@@ -0,0 +1,372 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+
+import java.util.ArrayList;
+import javax.transaction.xa.Xid;
+
+
+/**
+ * Maps global transaction Xids into their {@link TxConnection}.
+ * Used by {@link XADataSourceImpl} in place of a synchronized
+ * hashtable, so that XA connections working on different
+ * transactions do not contend for the same monitor.
+ * <p>
+ * The table is divided into a fixed number of segments, each
+ * guarded by its own monitor and holding its own hash table.
+ * A transaction is always looked up in the same segment, so
+ * only transactions that fall in the same segment are ever
+ * serialized. Segments grow as needed.
+ *
+ *
+ * @see TxConnection
+ */
+final class TxConnectionTable
+{
+
+
+    /**
+     * The number of segments. Must be a power of two.
+     */
+    private static final int SEGMENTS = 16;
+
+
+    /**
+     * The initial size of each segment's hash table. Must be a
+     * power of two.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+
+    /**
+     * The segments of this table.
+     */
+    private final Segment[]  _segments;
+
+
+    TxConnectionTable()
+    {
+        _segments = new Segment[ SEGMENTS ];
+        for ( int i = 0 ; i < SEGMENTS ; ++i )
+            _segments[ i ] = new Segment();
+    }
+
+
+    /**
+     * Returns the connection associated with the transaction.
+     *
+     * @param xid The transaction Xid
+     * @return The associated connection, or null
+     */
+    TxConnection get( Xid xid )
+    {
+        int hash;
+
+        hash = hash( xid );
+        return _segments[ hash & ( SEGMENTS - 1 ) ].get( xid, hash );
+    }
+
+
+    /**
+     * Associates the transaction with a connection. Returns the
+     * connection previously associated with the transaction.
+     *
+     * @param xid The transaction Xid
+     * @param txConn The connection
+     * @return The previous connection, or null
+     */
+    TxConnection put( Xid xid, TxConnection txConn )
+    {
+        int hash;
+
+        hash = hash( xid );
+        return _segments[ hash & ( SEGMENTS - 1 ) ].put( xid, hash, txConn, false );
+    }
+
+
+    /**
+     * Associates the transaction with a connection, unless the
+     * transaction is already associated with a connection.
+     *
+     * @param xid The transaction Xid
+     * @param txConn The connection
+     * @return The existing connection, or null if the transaction
+     *   is now associated with <tt>txConn</tt>
+     */
+    TxConnection putIfAbsent( Xid xid, TxConnection txConn )
+    {
+        int hash;
+
+        hash = hash( xid );
+        return _segments[ hash & ( SEGMENTS - 1 ) ].put( xid, hash, txConn, true );
+    }
+
+
+    /**
+     * Dissociates the transaction from its connection.
+     *
+     * @param xid The transaction Xid
+     * @return The connection previously associated, or null
+     */
+    TxConnection remove( Xid xid )
+    {
+        int hash;
+
+        hash = hash( xid );
+        return _segments[ hash & ( SEGMENTS - 1 ) ].remove( xid, hash, null );
+    }
+
+
+    /**
+     * Dissociates the transaction from the connection, only if the
+     * transaction is still associated with that connection.
+     *
+     * @param xid The transaction Xid
+     * @param txConn The connection
+     * @return True if the transaction was dissociated
+     */
+    boolean remove( Xid xid, TxConnection txConn )
+    {
+        int hash;
+
+        hash = hash( xid );
+        return ( _segments[ hash & ( SEGMENTS - 1 ) ].remove( xid, hash, txConn ) != null );
+    }
+
+
+    /**
+     * Returns all the connections in this table. The returned array
+     * is a copy and is not affected by later changes to the table.
+     *
+     * @return All the connections in this table
+     */
+    TxConnection[] toArray()
+    {
+        ArrayList list;
+
+        list = new ArrayList();
+        for ( int i = 0 ; i < SEGMENTS ; ++i )
+            _segments[ i ].copyInto( list );
+        return (TxConnection[]) list.toArray( new TxConnection[ list.size() ] );
+    }
+
+
+    /**
+     * Returns the hash code of the Xid, spread so that both the
+     * segment and the bucket index are well distributed.
+     */
+    private static int hash( Xid xid )
+    {
+        int hash;
+
+        hash = xid.hashCode();
+        hash ^= ( hash >>> 16 );
+        hash ^= ( hash >>> 7 );
+        return hash & 0x7FFFFFFF;
+    }
+
+
+    /**
+     * A segment of the table. All access to the segment is
+     * synchronized on the segment.
+     */
+    private static final class Segment
+    {
+
+
+        /**
+         * The hash table of this segment.
+         */
+        private Entry[]  _table = new Entry[ INITIAL_CAPACITY ];
+
+
+        /**
+         * The number of entries in this segment.
+         */
+        private int      _count;
+
+
+        synchronized TxConnection get( Xid xid, int hash )
+        {
+            Entry entry;
+
+            entry = _table[ ( hash >>> 4 ) & ( _table.length - 1 ) ];
+            while ( entry != null ) {
+                if ( entry._hash == hash && entry._xid.equals( xid ) )
+                    return entry._txConn;
+                entry = entry._next;
+            }
+            return null;
+        }
+
+
+        synchronized TxConnection put( Xid xid, int hash, TxConnection txConn, boolean onlyIfAbsent )
+        {
+            Entry        entry;
+            int          index;
+            TxConnection old;
+
+            index = ( hash >>> 4 ) & ( _table.length - 1 );
+            entry = _table[ index ];
+            while ( entry != null ) {
+                if ( entry._hash == hash && entry._xid.equals( xid ) ) {
+                    old = entry._txConn;
+                    if ( ! onlyIfAbsent )
+                        entry._txConn = txConn;
+                    return old;
+                }
+                entry = entry._next;
+            }
+            _table[ index ] = new Entry( xid, hash, txConn, _table[ index ] );
+            if ( ++_count > _table.length )
+                rehash();
+            return null;
+        }
+
+
+        synchronized TxConnection remove( Xid xid, int hash, TxConnection expected )
+        {
+            Entry entry;
+            Entry prev;
+            int   index;
+
+            index = ( hash >>> 4 ) & ( _table.length - 1 );
+            entry = _table[ index ];
+            prev = null;
+            while ( entry != null ) {
+                if ( entry._hash == hash && entry._xid.equals( xid ) ) {
+                    if ( expected != null && entry._txConn != expected )
+                        return null;
+                    if ( prev == null )
+                        _table[ index ] = entry._next;
+                    else
+                        prev._next = entry._next;
+                    --_count;
+                    return entry._txConn;
+                }
+                prev = entry;
+                entry = entry._next;
+            }
+            return null;
+        }
+
+
+        synchronized void copyInto( ArrayList list )
+        {
+            Entry entry;
+
+            for ( int i = 0 ; i < _table.length ; ++i ) {
+                entry = _table[ i ];
+                while ( entry != null ) {
+                    list.add( entry._txConn );
+                    entry = entry._next;
+                }
+            }
+        }
+
+
+        /**
+         * Doubles the size of the hash table. Called with the
+         * segment lock held.
+         */
+        private void rehash()
+        {
+            Entry[] table;
+            Entry   entry;
+            Entry   next;
+            int     index;
+
+            table = new Entry[ _table.length * 2 ];
+            for ( int i = 0 ; i < _table.length ; ++i ) {
+                entry = _table[ i ];
+                while ( entry != null ) {
+                    next = entry._next;
+                    index = ( entry._hash >>> 4 ) & ( table.length - 1 );
+                    entry._next = table[ index ];
+                    table[ index ] = entry;
+                    entry = next;
+                }
+            }
+            _table = table;
+        }
+
+
+    }
+
+
+    /**
+     * An entry in a segment's hash table.
+     */
+    private static final class Entry
+    {
+
+
+        final Xid     _xid;
+
+
+        final int     _hash;
+
+
+        TxConnection  _txConn;
+
+
+        Entry         _next;
+
+
+        Entry( Xid xid, int hash, TxConnection txConn, Entry next )
+        {
+            _xid = xid;
+            _hash = hash;
+            _txConn = txConn;
+            _next = next;
+        }
+
+
+    }
+
+
+}
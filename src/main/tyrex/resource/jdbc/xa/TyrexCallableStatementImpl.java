@@ -94,13 +94,39 @@ final class TyrexCallableStatementImpl
      * @param statement the underlying statement
      * @param connection the connection that created
      *      the statement.
+     * @param sql the SQL of the statement
      * @throws SQLException if there is a problem creating the statement
      */
     TyrexCallableStatementImpl(CallableStatement statement,
-                               TyrexConnection connection)
+                               TyrexConnection connection,
+                               String sql)
         throws SQLException
     {
-        super(statement, connection);
+        super(statement, connection, sql);
+    }
+
+
+    /**
+     * Create the TyrexCallableStatementImpl with the specified arguments.
+     *
+     * @param statement the underlying statement
+     * @param connection the connection that created
+     *      the statement.
+     * @param sql the SQL of the statement
+     * @param cache the statement cache to which the underlying
+     *      statement is returned when closed. Can be null.
+     * @param key the key of the underlying statement in the 
+     *      statement cache. Can be null.
+     * @throws SQLException if there is a problem creating the statement
+     */
+    TyrexCallableStatementImpl(CallableStatement statement,
+                               TyrexConnection connection,
+                               String sql,
+                               StatementCache cache,
+                               StatementCache.Key key)
+        throws SQLException
+    {
+        super(statement, connection, sql, cache, key);
     }
 
      /**
@@ -127,7 +153,7 @@ final class TyrexCallableStatementImpl
      * @exception SQLException if a database access error occurs
      * @see Types 
      */
-    public final synchronized void registerOutParameter(int parameterIndex, int sqlType)
+    public final void registerOutParameter(int parameterIndex, int sqlType)
         throws SQLException
     {
         getCallableStatement().registerOutParameter(parameterIndex, sqlType);
@@ -154,7 +180,7 @@ final class TyrexCallableStatementImpl
      * @exception SQLException if a database access error occurs
      * @see Types 
      */
-    public final synchronized void registerOutParameter(int parameterIndex, int sqlType, int scale)
+    public final void registerOutParameter(int parameterIndex, int sqlType, int scale)
         throws SQLException
     {
         getCallableStatement().registerOutParameter(parameterIndex, sqlType, scale);
@@ -169,7 +195,7 @@ final class TyrexCallableStatementImpl
      * <code>NULL</code>; <code>false</code> otherwise 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized boolean wasNull() 
+    public final boolean wasNull() 
         throws SQLException
     {
         return getCallableStatement().wasNull();
@@ -191,7 +217,7 @@ final class TyrexCallableStatementImpl
      * is <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized String getString(int parameterIndex) 
+    public final String getString(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getString(parameterIndex);
@@ -206,7 +232,7 @@ final class TyrexCallableStatementImpl
      * is <code>false</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized boolean getBoolean(int parameterIndex) 
+    public final boolean getBoolean(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getBoolean(parameterIndex);
@@ -221,7 +247,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized byte getByte(int parameterIndex) 
+    public final byte getByte(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getByte(parameterIndex);
@@ -236,7 +262,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized short getShort(int parameterIndex) 
+    public final short getShort(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getShort(parameterIndex);
@@ -251,7 +277,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized int getInt(int parameterIndex) 
+    public final int getInt(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getInt(parameterIndex);
@@ -266,7 +292,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized long getLong(int parameterIndex) 
+    public final long getLong(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getLong(parameterIndex);
@@ -281,7 +307,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized float getFloat(int parameterIndex) 
+    public final float getFloat(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getFloat(parameterIndex);
@@ -296,7 +322,7 @@ final class TyrexCallableStatementImpl
      * is 0.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized double getDouble(int parameterIndex) 
+    public final double getDouble(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getDouble(parameterIndex);
@@ -314,7 +340,7 @@ final class TyrexCallableStatementImpl
      * @exception SQLException if a database access error occurs
      * @deprecated
      */
-    public final synchronized BigDecimal getBigDecimal(int parameterIndex, int scale)
+    public final BigDecimal getBigDecimal(int parameterIndex, int scale)
         throws SQLException
     {
         return getCallableStatement().getBigDecimal(parameterIndex, scale);
@@ -330,7 +356,7 @@ final class TyrexCallableStatementImpl
      *  <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized byte[] getBytes(int parameterIndex) 
+    public final byte[] getBytes(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getBytes(parameterIndex);
@@ -345,7 +371,7 @@ final class TyrexCallableStatementImpl
      * is <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Date getDate(int parameterIndex) 
+    public final Date getDate(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getDate(parameterIndex);
@@ -360,7 +386,7 @@ final class TyrexCallableStatementImpl
      * is <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Time getTime(int parameterIndex) 
+    public final Time getTime(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getTime(parameterIndex);
@@ -375,7 +401,7 @@ final class TyrexCallableStatementImpl
      * is <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Timestamp getTimestamp(int parameterIndex) 
+    public final Timestamp getTimestamp(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getTimestamp(parameterIndex);
@@ -400,7 +426,7 @@ final class TyrexCallableStatementImpl
      * @exception SQLException if a database access error occurs
      * @see Types 
      */
-    public final synchronized Object getObject(int parameterIndex) 
+    public final Object getObject(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getObject(parameterIndex);
@@ -422,7 +448,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-    public final synchronized BigDecimal getBigDecimal(int parameterIndex) 
+    public final BigDecimal getBigDecimal(int parameterIndex) 
         throws SQLException
     {
         return getCallableStatement().getBigDecimal(parameterIndex);
@@ -446,7 +472,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-     public final synchronized Object  getObject(int i, Map map) 
+     public final Object  getObject(int i, Map map) 
         throws SQLException
      {
          return getCallableStatement().getObject(i, map);
@@ -465,7 +491,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-     public final synchronized Ref getRef(int i) 
+     public final Ref getRef(int i) 
         throws SQLException
      {
          return getCallableStatement().getRef(i);
@@ -483,7 +509,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-     public final synchronized Blob getBlob(int i) 
+     public final Blob getBlob(int i) 
         throws SQLException
      {
          return getCallableStatement().getBlob(i);
@@ -502,7 +528,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-     public final synchronized Clob getClob (int i) 
+     public final Clob getClob (int i) 
         throws SQLException
      {
          return getCallableStatement().getClob (i);
@@ -521,7 +547,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-     public final synchronized Array getArray(int i) 
+     public final Array getArray(int i) 
         throws SQLException
      {
          return getCallableStatement().getArray(i);
@@ -545,7 +571,7 @@ final class TyrexCallableStatementImpl
      * <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Date getDate(int parameterIndex, Calendar cal) 
+    public final Date getDate(int parameterIndex, Calendar cal) 
         throws SQLException
     {
         return getCallableStatement().getDate(parameterIndex, cal);
@@ -569,7 +595,7 @@ final class TyrexCallableStatementImpl
      * <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Time getTime(int parameterIndex, Calendar cal) 
+    public final Time getTime(int parameterIndex, Calendar cal) 
         throws SQLException
     {
         return getCallableStatement().getTime(parameterIndex, cal);
@@ -594,7 +620,7 @@ final class TyrexCallableStatementImpl
      * <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized Timestamp getTimestamp(int parameterIndex, Calendar cal) 
+    public final Timestamp getTimestamp(int parameterIndex, Calendar cal) 
         throws SQLException
     {
         return getCallableStatement().getTimestamp(parameterIndex, cal);
@@ -637,7 +663,7 @@ final class TyrexCallableStatementImpl
      * @since 1.2
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC 2.0 API</a>
      */
-    public final synchronized void registerOutParameter (int paramIndex, int sqlType, String typeName)
+    public final void registerOutParameter (int paramIndex, int sqlType, String typeName)
         throws SQLException
     {
         getCallableStatement().registerOutParameter (paramIndex, sqlType, typeName);
@@ -53,12 +53,15 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.Map;
 
+import tyrex.resource.StatementMetrics;
+
 
 /////////////////////////////////////////////////////////////////////
 // TyrexConnection
@@ -84,11 +87,11 @@ public abstract class TyrexConnection
     }
 
     
-    public synchronized Statement createStatement()
+    public Statement createStatement()
         throws SQLException
     {
         try {
-            return new TyrexStatementImpl(getUnderlyingConnection().createStatement(), this);
+            return create(-1, -1, -1);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -98,12 +101,11 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized Statement createStatement(int resultSetType, int resultSetConcurrency)
+    public Statement createStatement(int resultSetType, int resultSetConcurrency)
         throws SQLException
     {
         try {
-            return new TyrexStatementImpl(getUnderlyingConnection().createStatement(resultSetType, resultSetConcurrency),
-                                      this);
+            return create(resultSetType, resultSetConcurrency, -1);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -113,11 +115,11 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized PreparedStatement prepareStatement(String sql)
+    public PreparedStatement prepareStatement(String sql)
         throws SQLException
     {
         try {
-            return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql), this);
+            return (PreparedStatement)prepare(sql, -1, -1, -1, false);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -127,12 +129,11 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
         throws SQLException
     {
         try {
-            return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, resultSetType, resultSetConcurrency),
-                                              this);
+            return (PreparedStatement)prepare(sql, resultSetType, resultSetConcurrency, -1, false);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -142,12 +143,11 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized CallableStatement prepareCall(String sql)
+    public CallableStatement prepareCall(String sql)
         throws SQLException
     {
         try {
-            return new TyrexCallableStatementImpl(getUnderlyingConnection().prepareCall(sql),
-                                              this);
+            return (CallableStatement)prepare(sql, -1, -1, -1, true);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -157,12 +157,11 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
         throws SQLException
     {
         try {
-            return new TyrexCallableStatementImpl(getUnderlyingConnection().prepareCall(sql, resultSetType, resultSetConcurrency),
-                                              this);
+            return (CallableStatement)prepare(sql, resultSetType, resultSetConcurrency, -1, true);
         }
         catch(SQLException e) {
             notifyError(e);
@@ -172,7 +171,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized String nativeSQL(String sql)
+    public String nativeSQL(String sql)
         throws SQLException
     {
         try {
@@ -186,7 +185,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized DatabaseMetaData getMetaData()
+    public DatabaseMetaData getMetaData()
         throws SQLException
     {
         try {
@@ -200,7 +199,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void setCatalog( String catalog )
+    public void setCatalog( String catalog )
         throws SQLException
     {
         try {
@@ -214,7 +213,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized String getCatalog()
+    public String getCatalog()
         throws SQLException
     {
         try {
@@ -228,7 +227,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized SQLWarning getWarnings()
+    public SQLWarning getWarnings()
         throws SQLException
     {
         try {
@@ -242,7 +241,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void clearWarnings()
+    public void clearWarnings()
         throws SQLException
     {
         try {
@@ -256,7 +255,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized Map getTypeMap()
+    public Map getTypeMap()
         throws SQLException
     {
         try {
@@ -270,7 +269,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void setTypeMap(Map map)
+    public void setTypeMap(Map map)
         throws SQLException
     {
         try {
@@ -284,7 +283,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void setAutoCommit(boolean autoCommit)
+    public void setAutoCommit(boolean autoCommit)
         throws SQLException
     {
         try {
@@ -298,7 +297,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized boolean getAutoCommit()
+    public boolean getAutoCommit()
         throws SQLException
     {
         try {
@@ -312,7 +311,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void commit()
+    public void commit()
         throws SQLException
     {
         try {
@@ -327,7 +326,7 @@ public abstract class TyrexConnection
 
 
 
-    public synchronized void rollback()
+    public void rollback()
         throws SQLException
     {
         try {
@@ -341,7 +340,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized void setReadOnly(boolean readOnly)
+    public void setReadOnly(boolean readOnly)
         throws SQLException
     {
         try {
@@ -355,7 +354,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized boolean isReadOnly()
+    public boolean isReadOnly()
         throws SQLException
     {
         try {
@@ -369,7 +368,7 @@ public abstract class TyrexConnection
     }
     
 
-    public synchronized void setTransactionIsolation(int level)
+    public void setTransactionIsolation(int level)
         throws SQLException
     {
         try {
@@ -383,7 +382,7 @@ public abstract class TyrexConnection
     }
 
 
-    public synchronized int getTransactionIsolation()
+    public int getTransactionIsolation()
         throws SQLException
     {
         try {
@@ -444,6 +443,9 @@ public abstract class TyrexConnection
     
     /**
      * Return true if the connection is closed.
+     * <P>
+     * This method is called by every statement and result set
+     * operation, and should not synchronize on this connection.
      *
      * @return true if the connection is closed.
      */
@@ -492,6 +494,183 @@ public abstract class TyrexConnection
      */
     protected abstract Connection internalGetUnderlyingConnection()
         throws SQLException;
+
+
+    /**
+     * Return the prepared statement cache of the underlying connection.
+     * <P>
+     * The default implementation returns null, statements are not
+     * cached.
+     *
+     * @param underlying the underlying connection
+     * @return the statement cache of the underlying connection,
+     *      or null if statements are not cached.
+     * @throws SQLException if the cache cannot be retrieved.
+     */
+    protected StatementCache internalGetStatementCache(Connection underlying)
+        throws SQLException
+    {
+        return null;
+    }
+
+
+    /**
+     * Return the metrics into which statements created by this
+     * connection are recorded.
+     * <P>
+     * The default implementation returns null, statements are not
+     * recorded.
+     *
+     * @return the statement metrics, or null if statements are
+     *      not recorded.
+     */
+    protected StatementMetrics internalGetStatementMetrics()
+    {
+        return null;
+    }
+
+
+    /**
+     * Return the default properties applied to statements created by
+     * this connection.
+     * <P>
+     * The default implementation returns null, statements are
+     * created with the driver's defaults.
+     *
+     * @return the statement defaults, or null
+     */
+    protected StatementDefaults internalGetStatementDefaults()
+    {
+        return null;
+    }
+
+
+    /**
+     * Create a statement and apply the statement defaults to it.
+     * A result set type of -1 means not specified, and a holdability
+     * of -1 means not specified.
+     *
+     * @param resultSetType the result set type, or -1
+     * @param resultSetConcurrency the result set concurrency
+     * @param resultSetHoldability the result set holdability, or -1
+     * @return the statement
+     * @throws SQLException if the statement cannot be created.
+     */
+    private TyrexStatementImpl create(int resultSetType, int resultSetConcurrency,
+                                      int resultSetHoldability)
+        throws SQLException
+    {
+        Connection          underlying;
+        StatementDefaults   defaults;
+        Statement           statement;
+        TyrexStatementImpl  wrapper;
+
+        underlying = getUnderlyingConnection();
+        defaults = internalGetStatementDefaults();
+        if (-1 == resultSetType && null != defaults && defaults.getForwardOnly()) {
+            resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+            resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+        }
+        if (-1 == resultSetType)
+            statement = underlying.createStatement();
+        else if (-1 == resultSetHoldability)
+            statement = underlying.createStatement(resultSetType, resultSetConcurrency);
+        else
+            statement = underlying.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+        wrapper = new TyrexStatementImpl(statement, this);
+        if (null != defaults)
+            wrapper.applyDefaults(defaults);
+        return wrapper;
+    }
+
+
+    /**
+     * Apply the statement defaults to a newly prepared statement.
+     *
+     * @param statement the prepared statement
+     * @return the prepared statement
+     * @throws SQLException if the defaults cannot be applied.
+     */
+    private PreparedStatement withDefaults(TyrexPreparedStatementImpl statement)
+        throws SQLException
+    {
+        StatementDefaults defaults;
+
+        defaults = internalGetStatementDefaults();
+        if (null != defaults)
+            statement.applyDefaults(defaults);
+        return statement;
+    }
+
+
+    /**
+     * Prepare a statement, taking it from the statement cache of the
+     * underlying connection if possible. The returned statement is
+     * returned to the cache when closed. The statement defaults are
+     * applied to newly prepared statements.
+     *
+     * @param sql the SQL statement
+     * @param resultSetType the result set type, -1 if not specified
+     * @param resultSetConcurrency the result set concurrency, -1 if
+     *      not specified
+     * @param resultSetHoldability the result set holdability, -1 if
+     *      not specified
+     * @param callable true for a callable statement
+     * @return the prepared or callable statement
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    private TyrexPreparedStatementImpl prepare(String sql, int resultSetType, int resultSetConcurrency,
+                                               int resultSetHoldability, boolean callable)
+        throws SQLException
+    {
+        Connection                  underlying;
+        StatementCache              cache;
+        StatementCache.Key          key;
+        StatementDefaults           defaults;
+        PreparedStatement           statement;
+        TyrexPreparedStatementImpl  wrapper;
+        boolean                     cached;
+
+        underlying = getUnderlyingConnection();
+        defaults = internalGetStatementDefaults();
+        if (-1 == resultSetType && null != defaults && defaults.getForwardOnly()) {
+            resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+            resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+        }
+        cache = internalGetStatementCache(underlying);
+        key = null;
+        statement = null;
+        if (null != cache) {
+            key = new StatementCache.Key(sql, resultSetType, resultSetConcurrency, resultSetHoldability, callable);
+            statement = cache.take(key);
+        }
+        cached = (null != statement);
+        if (null == statement) {
+            if (callable) {
+                if (-1 == resultSetType)
+                    statement = underlying.prepareCall(sql);
+                else if (-1 == resultSetHoldability)
+                    statement = underlying.prepareCall(sql, resultSetType, resultSetConcurrency);
+                else
+                    statement = underlying.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            }
+            else {
+                if (-1 == resultSetType)
+                    statement = underlying.prepareStatement(sql);
+                else if (-1 == resultSetHoldability)
+                    statement = underlying.prepareStatement(sql, resultSetType, resultSetConcurrency);
+                else
+                    statement = underlying.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            }
+        }
+        wrapper = callable
+            ? new TyrexCallableStatementImpl((CallableStatement)statement, this, sql, cache, key)
+            : new TyrexPreparedStatementImpl(statement, this, sql, cache, key);
+        // A cached statement already has the defaults applied
+        if (null != defaults && ! cached)
+            wrapper.applyDefaults(defaults);
+        return wrapper;
+    }
     
 
 	/* (non-Javadoc)
@@ -499,7 +678,7 @@ public abstract class TyrexConnection
 	 */
 	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
 		try {
-			return new TyrexStatementImpl(getUnderlyingConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this);
+			return create(resultSetType, resultSetConcurrency, resultSetHoldability);
 		}
 		catch(SQLException e) {
 			notifyError(e);
@@ -527,8 +706,7 @@ public abstract class TyrexConnection
 	 */
 	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
 		try {
-			return new TyrexCallableStatementImpl(getUnderlyingConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
-											  this);
+			return (CallableStatement)prepare(sql, resultSetType, resultSetConcurrency, resultSetHoldability, true);
 		}
 		catch(SQLException e) {
 			notifyError(e);
@@ -542,7 +720,7 @@ public abstract class TyrexConnection
 	 */
 	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
 		try {
-			return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), this);
+			return (PreparedStatement)prepare(sql, resultSetType, resultSetConcurrency, resultSetHoldability, false);
 		}
 		catch(SQLException e) {
 			notifyError(e);
@@ -556,7 +734,7 @@ public abstract class TyrexConnection
 	 */
 	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
 		try {
-			return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, autoGeneratedKeys), this);
+			return withDefaults(new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, autoGeneratedKeys), this, sql));
 		}
 		catch(SQLException e) {
 			notifyError(e);
@@ -570,7 +748,7 @@ public abstract class TyrexConnection
 	 */
 	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
 		try {
-			return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, columnIndexes), this);
+			return withDefaults(new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, columnIndexes), this, sql));
 		}
 		catch(SQLException e) {
 			notifyError(e);
@@ -584,7 +762,7 @@ public abstract class TyrexConnection
 	 */
 	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
 		try {
-			return new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, columnNames), this);
+			return withDefaults(new TyrexPreparedStatementImpl(getUnderlyingConnection().prepareStatement(sql, columnNames), this, sql));
 		}
 		catch(SQLException e) {
 			notifyError(e);
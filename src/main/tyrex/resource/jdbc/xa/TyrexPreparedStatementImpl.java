@@ -92,19 +92,81 @@ class TyrexPreparedStatementImpl
 {
 
 
+    /**
+     * The statement cache to which the underlying statement is
+     * returned when closed, null if not cached.
+     */
+    private final StatementCache        _cache;
+
+
+    /**
+     * The key of the underlying statement in the statement cache,
+     * null if not cached.
+     */
+    private final StatementCache.Key    _key;
+
+
+    /**
+     * Create the TyrexPreparedStatementImpl with the specified arguments.
+     *
+     * @param statement the underlying statement
+     * @param connection the connection that created
+     *      the statement.
+     * @param sql the SQL of the statement
+     * @throws SQLException if there is a problem creating the statement
+     */
+    TyrexPreparedStatementImpl(PreparedStatement statement, 
+                                      TyrexConnection connection,
+                                      String sql)
+        throws SQLException
+    {
+        this(statement, connection, sql, null, null);
+    }
+
+
     /**
      * Create the TyrexPreparedStatementImpl with the specified arguments.
      *
      * @param statement the underlying statement
      * @param connection the connection that created
      *      the statement.
+     * @param sql the SQL of the statement
+     * @param cache the statement cache to which the underlying
+     *      statement is returned when closed. Can be null.
+     * @param key the key of the underlying statement in the 
+     *      statement cache. Can be null.
      * @throws SQLException if there is a problem creating the statement
      */
     TyrexPreparedStatementImpl(PreparedStatement statement, 
-                                      TyrexConnection connection)
+                               TyrexConnection connection,
+                               String sql,
+                               StatementCache cache,
+                               StatementCache.Key key)
         throws SQLException
     {
-        super(statement, connection);
+        super(statement, connection, sql);
+        _cache = cache;
+        _key = key;
+    }
+
+
+    /**
+     * Release the underlying statement. The statement is returned
+     * to the statement cache, unless it is not cached or the
+     * application changed its properties.
+     *
+     * @param statement the underlying statement
+     * @param modified true if the application changed the
+     *      properties of the statement
+     * @throws SQLException if there is a problem closing the statement
+     */
+    protected void releaseStatement(Statement statement, boolean modified)
+        throws SQLException
+    {
+        if (null == _cache || modified)
+            statement.close();
+        else
+            _cache.release(_key, (PreparedStatement)statement);
     }
 
 
@@ -116,13 +178,14 @@ class TyrexPreparedStatementImpl
      * query; never <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized final ResultSet executeQuery() 
+    public final ResultSet executeQuery() 
         throws SQLException
     {
         // this method is not synchronized so that
         // cancel can work
 
         PreparedStatement statement;
+        long              started;
 
         statement = getPreparedStatement();
         
@@ -132,7 +195,13 @@ class TyrexPreparedStatementImpl
         // result set. There is no way to query a result
         // set whether it is closed or not.
         closeResultSet();
-        return setResultSet(statement.executeQuery());
+        started = startExecute();
+        try {
+            return setResultSet(statement.executeQuery());
+        }
+        finally {
+            endExecute(null, started);
+        }
     }
 
     /**
@@ -146,17 +215,23 @@ class TyrexPreparedStatementImpl
      * or 0 for SQL statements that return nothing
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized int executeUpdate() 
+    public final int executeUpdate() 
         throws SQLException
     {
         // this method is not synchronized so that
         // cancel can work
 
         PreparedStatement statement;
+        long              started;
 
         statement = getPreparedStatement();
-        int result = statement.executeUpdate();
-        return result;
+        started = startExecute();
+        try {
+            return statement.executeUpdate();
+        }
+        finally {
+            endExecute(null, started);
+        }
     }
 
     /**
@@ -168,7 +243,7 @@ class TyrexPreparedStatementImpl
      * @param sqlType the SQL type code defined in <code>java.sql.Types</code>
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setNull(int parameterIndex, int sqlType) 
+    public final void setNull(int parameterIndex, int sqlType) 
         throws SQLException
     {
         getPreparedStatement().setNull(parameterIndex, sqlType);
@@ -183,7 +258,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setBoolean(int parameterIndex, boolean x) 
+    public final void setBoolean(int parameterIndex, boolean x) 
         throws SQLException
     {
         getPreparedStatement().setBoolean(parameterIndex, x);
@@ -198,7 +273,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setByte(int parameterIndex, byte x) 
+    public final void setByte(int parameterIndex, byte x) 
         throws SQLException
     {
         getPreparedStatement().setByte(parameterIndex, x);
@@ -213,7 +288,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setShort(int parameterIndex, short x) 
+    public final void setShort(int parameterIndex, short x) 
         throws SQLException
     {
         getPreparedStatement().setShort(parameterIndex, x);
@@ -228,7 +303,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setInt(int parameterIndex, int x) 
+    public final void setInt(int parameterIndex, int x) 
         throws SQLException
     {
         getPreparedStatement().setInt(parameterIndex, x);
@@ -243,7 +318,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setLong(int parameterIndex, long x) 
+    public final void setLong(int parameterIndex, long x) 
         throws SQLException
     {
         getPreparedStatement().setLong(parameterIndex, x);
@@ -258,7 +333,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setFloat(int parameterIndex, float x) 
+    public final void setFloat(int parameterIndex, float x) 
         throws SQLException
     {
         getPreparedStatement().setFloat(parameterIndex, x);
@@ -273,7 +348,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setDouble(int parameterIndex, double x) 
+    public final void setDouble(int parameterIndex, double x) 
         throws SQLException
     {
         getPreparedStatement().setDouble(parameterIndex, x);
@@ -288,7 +363,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setBigDecimal(int parameterIndex, BigDecimal x) 
+    public final void setBigDecimal(int parameterIndex, BigDecimal x) 
         throws SQLException
     {
         getPreparedStatement().setBigDecimal(parameterIndex, x);
@@ -306,7 +381,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setString(int parameterIndex, String x) 
+    public final void setString(int parameterIndex, String x) 
         throws SQLException
     {
         getPreparedStatement().setString(parameterIndex, x);
@@ -322,7 +397,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setBytes(int parameterIndex, byte x[]) 
+    public final void setBytes(int parameterIndex, byte x[]) 
         throws SQLException
     {
         getPreparedStatement().setBytes(parameterIndex, x);
@@ -337,7 +412,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setDate(int parameterIndex, Date x)
+    public final void setDate(int parameterIndex, Date x)
         throws SQLException
     {
         getPreparedStatement().setDate(parameterIndex, x);
@@ -352,7 +427,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setTime(int parameterIndex, Time x) 
+    public final void setTime(int parameterIndex, Time x) 
         throws SQLException
     {
         getPreparedStatement().setTime(parameterIndex, x);
@@ -368,7 +443,7 @@ class TyrexPreparedStatementImpl
      * @param x the parameter value 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setTimestamp(int parameterIndex, Timestamp x)
+    public final void setTimestamp(int parameterIndex, Timestamp x)
         throws SQLException
     {
         getPreparedStatement().setTimestamp(parameterIndex, x);
@@ -392,7 +467,7 @@ class TyrexPreparedStatementImpl
      * @param length the number of bytes in the stream 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setAsciiStream(int parameterIndex, InputStream x, int length)
+    public final void setAsciiStream(int parameterIndex, InputStream x, int length)
         throws SQLException
     {
         getPreparedStatement().setAsciiStream(parameterIndex, x, length);
@@ -420,7 +495,7 @@ class TyrexPreparedStatementImpl
      * @exception SQLException if a database access error occurs
      * @deprecated
      */
-    public final synchronized void setUnicodeStream(int parameterIndex, 
+    public final void setUnicodeStream(int parameterIndex, 
                                                     InputStream x, 
                                                     int length) 
         throws SQLException
@@ -445,7 +520,7 @@ class TyrexPreparedStatementImpl
      * @param length the number of bytes in the stream 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setBinaryStream(int parameterIndex, 
+    public final void setBinaryStream(int parameterIndex, 
                                                    InputStream x, 
                                                    int length) 
         throws SQLException
@@ -463,7 +538,7 @@ class TyrexPreparedStatementImpl
      *
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void clearParameters() 
+    public final void clearParameters() 
         throws SQLException
     {
         getPreparedStatement().clearParameters();
@@ -502,7 +577,7 @@ class TyrexPreparedStatementImpl
      * @exception SQLException if a database access error occurs
      * @see Types 
      */
-    public final synchronized void setObject(int parameterIndex, Object x, int targetSqlType, int scale)
+    public final void setObject(int parameterIndex, Object x, int targetSqlType, int scale)
         throws SQLException
     {
         getPreparedStatement().setObject(parameterIndex, x, targetSqlType, scale);
@@ -519,7 +594,7 @@ class TyrexPreparedStatementImpl
     *                      sent to the database
     * @exception SQLException if a database access error occurs
     */
-    public final synchronized void setObject(int parameterIndex, Object x, int targetSqlType) 
+    public final void setObject(int parameterIndex, Object x, int targetSqlType) 
         throws SQLException
     {
         getPreparedStatement().setObject(parameterIndex, x, targetSqlType);
@@ -554,7 +629,7 @@ class TyrexPreparedStatementImpl
      * @param x the object containing the input parameter value 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setObject(int parameterIndex, Object x) 
+    public final void setObject(int parameterIndex, Object x) 
         throws SQLException
     {
         getPreparedStatement().setObject(parameterIndex, x);
@@ -577,12 +652,16 @@ class TyrexPreparedStatementImpl
         // cancel can work
 
         PreparedStatement statement;
+        long              started;
 
-        synchronized (this) {
-            statement = getPreparedStatement();
+        statement = getPreparedStatement();
+        started = startExecute();
+        try {
+            return statement.execute();
+        }
+        finally {
+            endExecute(null, started);
         }
-        
-        return statement.execute();
     }
 
     //--------------------------JDBC 2.0-----------------------------
@@ -597,7 +676,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void addBatch() 
+    public final void addBatch() 
         throws SQLException
     {
         getPreparedStatement().addBatch();
@@ -624,7 +703,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setCharacterStream(int parameterIndex,
+    public final void setCharacterStream(int parameterIndex,
                                                       Reader reader,
                                                       int length) 
         throws SQLException
@@ -643,7 +722,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setRef(int i, Ref x) 
+    public final void setRef(int i, Ref x) 
         throws SQLException
     {
         getPreparedStatement().setRef(i, x);
@@ -660,7 +739,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setBlob(int i, Blob x) 
+    public final void setBlob(int i, Blob x) 
         throws SQLException
     {
         getPreparedStatement().setBlob(i, x);
@@ -677,7 +756,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setClob(int i, Clob x) 
+    public final void setClob(int i, Clob x) 
         throws SQLException
     {
         getPreparedStatement().setClob(i, x);
@@ -695,7 +774,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setArray(int i, Array x) 
+    public final void setArray(int i, Array x) 
         throws SQLException
     {
         getPreparedStatement().setArray(i, x);
@@ -711,7 +790,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized ResultSetMetaData getMetaData() 
+    public final ResultSetMetaData getMetaData() 
         throws SQLException
     {
         return getPreparedStatement().getMetaData();
@@ -736,7 +815,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setDate(int parameterIndex, Date x, Calendar cal)
+    public final void setDate(int parameterIndex, Date x, Calendar cal)
         throws SQLException
     {
         getPreparedStatement().setDate(parameterIndex, x, cal);
@@ -761,7 +840,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setTime(int parameterIndex, Time x, Calendar cal) 
+    public final void setTime(int parameterIndex, Time x, Calendar cal) 
         throws SQLException
     {
         getPreparedStatement().setTime(parameterIndex, x, cal);
@@ -786,7 +865,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setTimestamp(int parameterIndex, Timestamp x, Calendar cal)
+    public final void setTimestamp(int parameterIndex, Timestamp x, Calendar cal)
         throws SQLException
     {
         getPreparedStatement().setTimestamp(parameterIndex, x, cal);
@@ -822,7 +901,7 @@ class TyrexPreparedStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setNull(int paramIndex, int sqlType, String typeName) 
+    public final void setNull(int paramIndex, int sqlType, String typeName) 
         throws SQLException
     {
         getPreparedStatement().setNull(paramIndex, sqlType, typeName);
@@ -844,14 +923,14 @@ class TyrexPreparedStatementImpl
     /* (non-Javadoc)
 	 * @see java.sql.PreparedStatement#getParameterMetaData()
 	 */
-	public final synchronized ParameterMetaData getParameterMetaData() throws SQLException {
+	public final ParameterMetaData getParameterMetaData() throws SQLException {
 		return getPreparedStatement().getParameterMetaData();
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.PreparedStatement#setURL(int, java.net.URL)
 	 */
-	public final synchronized void setURL(int parameterIndex, URL x) throws SQLException {
+	public final void setURL(int parameterIndex, URL x) throws SQLException {
 		getPreparedStatement().setURL(parameterIndex, x);
 
 	}
@@ -70,6 +70,8 @@ import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.Map;
 
+import tyrex.resource.StatementMetrics;
+
 
 /////////////////////////////////////////////////////////////////////
 // TyrexResultSetImpl
@@ -92,16 +94,18 @@ public final class TyrexResultSetImpl
     implements ResultSet
 {
     /**
-     * The underlying result set
+     * The underlying result set. Volatile so that the accessor
+     * methods can run without holding the monitor and still see
+     * a concurrent close.
      */
-    private ResultSet _resultSet;
+    private volatile ResultSet _resultSet;
 
 
     /**
      * The wrapper statement that produced
      * this result set
      */
-    private TyrexStatementImpl _statement;
+    private volatile TyrexStatementImpl _statement;
 
 
     /**
@@ -109,7 +113,20 @@ public final class TyrexResultSetImpl
      * a {@link TyrexStatementImpl} object
      * lazily when the method {@link #getStatement} is called.
      */
-    private TyrexConnection _connection;
+    private volatile TyrexConnection _connection;
+
+
+    /**
+     * The metrics into which the number of rows fetched
+     * is recorded, or null if not recorded.
+     */
+    private final StatementMetrics _metrics;
+
+
+    /**
+     * The number of rows fetched so far.
+     */
+    private int _rows;
 
 
     /**
@@ -133,6 +150,7 @@ public final class TyrexResultSetImpl
         _resultSet = resultSet;
         _connection = connection;
         _statement = null;
+        _metrics = null;
     }
 
 
@@ -158,6 +176,7 @@ public final class TyrexResultSetImpl
         _resultSet = resultSet;
         _statement = statement;
         _connection = null;
+        _metrics = statement.getMetrics();
     }
     
 
@@ -177,12 +196,14 @@ public final class TyrexResultSetImpl
      * <code>false</code> if there are no more rows 
      * @exception SQLException if a database access error occurs
      */
-    public synchronized boolean next() 
+    public boolean next() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.next();
+        if (getOpenResultSet().next()) {
+            ++_rows;
+            return true;
+        }
+        return false;
     }
 
 
@@ -219,9 +240,9 @@ public final class TyrexResultSetImpl
         // There is no other method that potentially tries to get a lock on the
         // statement in the result set.
         // statement.resultSetIsClosed is only executed once because the thread
-        // that gets past the validateOpen method call sets the instance variables
+        // that gets past the null check sets the instance variables
         // to null and the method variable statement to the _statement.
-        // All other threads will fail on validateOpen with the method variable statement
+        // All other threads will fail on getOpenResultSet with the method variable statement
         // being set to null.
         // There is a similar situation with connection.
 
@@ -249,6 +270,9 @@ public final class TyrexResultSetImpl
             // once
             if (null != statement) {
                 statement.resultSetIsClosed(this);
+                if (null != _metrics) {
+                    _metrics.recordRows(_rows);
+                }
             }
 
         }
@@ -266,10 +290,10 @@ public final class TyrexResultSetImpl
      *         <code>NULL</code> and <code>false</code> otherwise
      * @exception SQLException if a database access error occurs
      */
-    public synchronized boolean wasNull() 
+    public boolean wasNull() 
         throws SQLException
     {
-        return _resultSet.wasNull();
+        return getOpenResultSet().wasNull();
     }
     
     //======================================================================
@@ -286,12 +310,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized String getString(int columnIndex) 
+    public String getString(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getString(columnIndex);
+        return getOpenResultSet().getString(columnIndex);
     }
 
     /**
@@ -304,12 +326,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>false</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized boolean getBoolean(int columnIndex) 
+    public boolean getBoolean(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBoolean(columnIndex);
+        return getOpenResultSet().getBoolean(columnIndex);
     }
 
     /**
@@ -322,12 +342,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized byte getByte(int columnIndex) 
+    public byte getByte(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getByte(columnIndex);
+        return getOpenResultSet().getByte(columnIndex);
     }
 
     /**
@@ -340,12 +358,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized short getShort(int columnIndex) 
+    public short getShort(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getShort(columnIndex);
+        return getOpenResultSet().getShort(columnIndex);
     }
 
     /**
@@ -358,12 +374,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized int getInt(int columnIndex) 
+    public int getInt(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getInt(columnIndex);
+        return getOpenResultSet().getInt(columnIndex);
     }
 
     /**
@@ -376,12 +390,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized long getLong(int columnIndex) 
+    public long getLong(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getLong(columnIndex);
+        return getOpenResultSet().getLong(columnIndex);
     }
 
     /**
@@ -394,12 +406,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized float getFloat(int columnIndex) 
+    public float getFloat(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getFloat(columnIndex);
+        return getOpenResultSet().getFloat(columnIndex);
     }
 
     /**
@@ -412,12 +422,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized double getDouble(int columnIndex) 
+    public double getDouble(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDouble(columnIndex);
+        return getOpenResultSet().getDouble(columnIndex);
     }
 
     /**
@@ -432,12 +440,10 @@ public final class TyrexResultSetImpl
      * @exception SQLException if a database access error occurs
      * @deprecated
      */
-    public synchronized BigDecimal getBigDecimal(int columnIndex, int scale) 
+    public BigDecimal getBigDecimal(int columnIndex, int scale) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBigDecimal(columnIndex, scale);
+        return getOpenResultSet().getBigDecimal(columnIndex, scale);
     }
 
     /**
@@ -451,12 +457,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized byte[] getBytes(int columnIndex) 
+    public byte[] getBytes(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBytes(columnIndex);
+        return getOpenResultSet().getBytes(columnIndex);
     }
 
     /**
@@ -469,12 +473,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Date getDate(int columnIndex) 
+    public Date getDate(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDate(columnIndex);
+        return getOpenResultSet().getDate(columnIndex);
     }
 
     /**
@@ -487,12 +489,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Time getTime(int columnIndex) 
+    public Time getTime(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTime(columnIndex);
+        return getOpenResultSet().getTime(columnIndex);
     }
 
     /**
@@ -505,12 +505,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Timestamp getTimestamp(int columnIndex) 
+    public Timestamp getTimestamp(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTimestamp(columnIndex);
+        return getOpenResultSet().getTimestamp(columnIndex);
     }
 
     /**
@@ -536,12 +534,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized InputStream getAsciiStream(int columnIndex) 
+    public InputStream getAsciiStream(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getAsciiStream(columnIndex);
+        return getOpenResultSet().getAsciiStream(columnIndex);
     }
 
     /**
@@ -571,12 +567,10 @@ public final class TyrexResultSetImpl
      * @deprecated use <code>getCharacterStream</code> in place of 
      *              <code>getUnicodeStream</code>
      */
-    public synchronized InputStream getUnicodeStream(int columnIndex) 
+    public InputStream getUnicodeStream(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getUnicodeStream(columnIndex);
+        return getOpenResultSet().getUnicodeStream(columnIndex);
     }
 
     /**
@@ -600,12 +594,10 @@ public final class TyrexResultSetImpl
      * if the value is SQL <code>NULL</code>, the value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized InputStream getBinaryStream(int columnIndex)
+    public InputStream getBinaryStream(int columnIndex)
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBinaryStream(columnIndex);
+        return getOpenResultSet().getBinaryStream(columnIndex);
     }
 
 
@@ -623,12 +615,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized String getString(String columnName) 
+    public String getString(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getString(columnName);
+        return getOpenResultSet().getString(columnName);
     }
 
     /**
@@ -641,12 +631,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>false</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized boolean getBoolean(String columnName) 
+    public boolean getBoolean(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBoolean(columnName);
+        return getOpenResultSet().getBoolean(columnName);
     }
 
     /**
@@ -659,12 +647,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized byte getByte(String columnName) 
+    public byte getByte(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getByte(columnName);
+        return getOpenResultSet().getByte(columnName);
     }
 
     /**
@@ -677,12 +663,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized short getShort(String columnName) 
+    public short getShort(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getShort(columnName);
+        return getOpenResultSet().getShort(columnName);
     }
 
     /**
@@ -695,12 +679,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized int getInt(String columnName) 
+    public int getInt(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getInt(columnName);
+        return getOpenResultSet().getInt(columnName);
     }
 
     /**
@@ -713,12 +695,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized long getLong(String columnName) 
+    public long getLong(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getLong(columnName);
+        return getOpenResultSet().getLong(columnName);
     }
 
     /**
@@ -731,12 +711,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized float getFloat(String columnName) 
+    public float getFloat(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getFloat(columnName);
+        return getOpenResultSet().getFloat(columnName);
     }
 
     /**
@@ -749,12 +727,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>0</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized double getDouble(String columnName) 
+    public double getDouble(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDouble(columnName);
+        return getOpenResultSet().getDouble(columnName);
     }
 
     /**
@@ -769,12 +745,10 @@ public final class TyrexResultSetImpl
      * @exception SQLException if a database access error occurs
      * @deprecated
      */
-    public synchronized BigDecimal getBigDecimal(String columnName, int scale) 
+    public BigDecimal getBigDecimal(String columnName, int scale) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBigDecimal(columnName, scale);
+        return getOpenResultSet().getBigDecimal(columnName, scale);
     }
 
     /**
@@ -788,12 +762,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized byte[] getBytes(String columnName) 
+    public byte[] getBytes(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBytes(columnName);
+        return getOpenResultSet().getBytes(columnName);
     }
 
     /**
@@ -806,12 +778,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Date getDate(String columnName) 
+    public Date getDate(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDate(columnName);
+        return getOpenResultSet().getDate(columnName);
     }
 
     /**
@@ -825,12 +795,10 @@ public final class TyrexResultSetImpl
      * the value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Time getTime(String columnName) 
+    public Time getTime(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTime(columnName);
+        return getOpenResultSet().getTime(columnName);
     }
 
     /**
@@ -843,12 +811,10 @@ public final class TyrexResultSetImpl
      * value returned is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Timestamp getTimestamp(String columnName) 
+    public Timestamp getTimestamp(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTimestamp(columnName);
+        return getOpenResultSet().getTimestamp(columnName);
     }
 
     /**
@@ -873,12 +839,10 @@ public final class TyrexResultSetImpl
      * the value returned is <code>null</code>.
      * @exception SQLException if a database access error occurs
      */
-    public synchronized InputStream getAsciiStream(String columnName) 
+    public InputStream getAsciiStream(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getAsciiStream(columnName);
+        return getOpenResultSet().getAsciiStream(columnName);
     }
 
     /**
@@ -906,12 +870,10 @@ public final class TyrexResultSetImpl
      * @exception SQLException if a database access error occurs
      * @deprecated
      */
-    public synchronized InputStream getUnicodeStream(String columnName) 
+    public InputStream getUnicodeStream(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getUnicodeStream(columnName);
+        return getOpenResultSet().getUnicodeStream(columnName);
     }
 
     /**
@@ -935,13 +897,10 @@ public final class TyrexResultSetImpl
      * if the value is SQL <code>NULL</code>, the result is <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized InputStream getBinaryStream(String columnName)
+    public InputStream getBinaryStream(String columnName)
         throws SQLException
     {
-        validateOpen();
-
-
-        return _resultSet.getBinaryStream(columnName);
+        return getOpenResultSet().getBinaryStream(columnName);
     }
 
 
@@ -968,12 +927,10 @@ public final class TyrexResultSetImpl
      * @return the first <code>SQLWarning</code> object reported or <code>null</code>
      * @exception SQLException if a database access error occurs
      */
-    public synchronized SQLWarning getWarnings() 
+    public SQLWarning getWarnings() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getWarnings();
+        return getOpenResultSet().getWarnings();
     }
 
     /**
@@ -984,12 +941,10 @@ public final class TyrexResultSetImpl
      *
      * @exception SQLException if a database access error occurs
      */
-    public synchronized void clearWarnings() 
+    public void clearWarnings() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.clearWarnings();
+        getOpenResultSet().clearWarnings();
     }
 
     /**
@@ -1015,12 +970,10 @@ public final class TyrexResultSetImpl
      * @return the SQL name for this <code>ResultSet</code> object's cursor
      * @exception SQLException if a database access error occurs
      */
-    public synchronized String getCursorName() 
+    public String getCursorName() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getCursorName();
+        return getOpenResultSet().getCursorName();
     }
 
     /**
@@ -1030,12 +983,10 @@ public final class TyrexResultSetImpl
      * @return the description of this <code>ResultSet</code> object's columns
      * @exception SQLException if a database access error occurs
      */
-    public synchronized ResultSetMetaData getMetaData() 
+    public ResultSetMetaData getMetaData() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getMetaData();
+        return getOpenResultSet().getMetaData();
     }
 
     /**
@@ -1063,12 +1014,10 @@ public final class TyrexResultSetImpl
      * @return a <code>java.lang.Object</code> holding the column value  
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Object getObject(int columnIndex) 
+    public Object getObject(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getObject(columnIndex);
+        return getOpenResultSet().getObject(columnIndex);
     }
 
     /**
@@ -1096,12 +1045,10 @@ public final class TyrexResultSetImpl
      * @return a <code>java.lang.Object</code> holding the column value  
      * @exception SQLException if a database access error occurs
      */
-    public synchronized Object getObject(String columnName) 
+    public Object getObject(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getObject(columnName);
+        return getOpenResultSet().getObject(columnName);
     }
 
     //----------------------------------------------------------------
@@ -1114,12 +1061,10 @@ public final class TyrexResultSetImpl
      * @return the column index of the given column name
      * @exception SQLException if a database access error occurs
      */
-    public synchronized int findColumn(String columnName) 
+    public int findColumn(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.findColumn(columnName);
+        return getOpenResultSet().findColumn(columnName);
     }
 
 
@@ -1141,12 +1086,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Reader getCharacterStream(int columnIndex) 
+    public Reader getCharacterStream(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getCharacterStream(columnIndex);
+        return getOpenResultSet().getCharacterStream(columnIndex);
     }
 
     /**
@@ -1163,12 +1106,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Reader getCharacterStream(String columnName) 
+    public Reader getCharacterStream(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getCharacterStream(columnName);
+        return getOpenResultSet().getCharacterStream(columnName);
     }
 
     /**
@@ -1185,12 +1126,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized BigDecimal getBigDecimal(int columnIndex) 
+    public BigDecimal getBigDecimal(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBigDecimal(columnIndex);
+        return getOpenResultSet().getBigDecimal(columnIndex);
     }
 
     /**
@@ -1208,12 +1147,10 @@ public final class TyrexResultSetImpl
      *      2.0 API</a>
      *
      */
-    public synchronized BigDecimal getBigDecimal(String columnName) 
+    public BigDecimal getBigDecimal(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBigDecimal(columnName);
+        return getOpenResultSet().getBigDecimal(columnName);
     }
 
     //---------------------------------------------------------------------
@@ -1232,12 +1169,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean isBeforeFirst() 
+    public boolean isBeforeFirst() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.isBeforeFirst();
+        return getOpenResultSet().isBeforeFirst();
     }
       
     /**
@@ -1252,12 +1187,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean isAfterLast() 
+    public boolean isAfterLast() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.isAfterLast();
+        return getOpenResultSet().isAfterLast();
     }
  
     /**
@@ -1271,12 +1204,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean isFirst() 
+    public boolean isFirst() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.isFirst();
+        return getOpenResultSet().isFirst();
     }
  
     /**
@@ -1294,12 +1225,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean isLast() 
+    public boolean isLast() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.isLast();
+        return getOpenResultSet().isLast();
     }
 
     /**
@@ -1313,12 +1242,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void beforeFirst() 
+    public void beforeFirst() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.beforeFirst();
+        getOpenResultSet().beforeFirst();
     }
 
     /**
@@ -1331,12 +1258,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void afterLast() 
+    public void afterLast() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.afterLast();
+        getOpenResultSet().afterLast();
     }
 
     /**
@@ -1351,12 +1276,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean first() 
+    public boolean first() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.first();
+        return getOpenResultSet().first();
     }
 
     /**
@@ -1371,12 +1294,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean last() 
+    public boolean last() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.last();
+        return getOpenResultSet().last();
     }
 
     /**
@@ -1389,12 +1310,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized int getRow() 
+    public int getRow() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getRow();
+        return getOpenResultSet().getRow();
     }
 
     /**
@@ -1430,12 +1349,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean absolute(int row) 
+    public boolean absolute(int row) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.absolute(row);
+        return getOpenResultSet().absolute(row);
     }
 
     /**
@@ -1461,12 +1378,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean relative(int rows) 
+    public boolean relative(int rows) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.relative(rows);
+        return getOpenResultSet().relative(rows);
     }
 
     /**
@@ -1485,12 +1400,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean previous() 
+    public boolean previous() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.previous();
+        return getOpenResultSet().previous();
     }
 
     //---------------------------------------------------------------------
@@ -1513,12 +1426,10 @@ public final class TyrexResultSetImpl
      *      2.0 API</a>
      * @see Statement#setFetchDirection
      */
-    public synchronized void setFetchDirection(int direction) 
+    public void setFetchDirection(int direction) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.setFetchDirection(direction);
+        getOpenResultSet().setFetchDirection(direction);
     }
 
     /**
@@ -1531,12 +1442,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized int getFetchDirection() 
+    public int getFetchDirection() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getFetchDirection();
+        return getOpenResultSet().getFetchDirection();
     }
 
     /**
@@ -1556,12 +1465,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void setFetchSize(int rows) 
+    public void setFetchSize(int rows) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.setFetchSize(rows);
+        getOpenResultSet().setFetchSize(rows);
     }
 
     /**
@@ -1575,12 +1482,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized int getFetchSize() 
+    public int getFetchSize() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getFetchSize();
+        return getOpenResultSet().getFetchSize();
     }
 
     /**
@@ -1596,12 +1501,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized int getType() 
+    public int getType() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getType();
+        return getOpenResultSet().getType();
     }
 
     /**
@@ -1616,12 +1519,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized int getConcurrency() 
+    public int getConcurrency() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getConcurrency();
+        return getOpenResultSet().getConcurrency();
     }
 
     //---------------------------------------------------------------------
@@ -1641,12 +1542,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean rowUpdated() 
+    public boolean rowUpdated() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.rowUpdated();
+        return getOpenResultSet().rowUpdated();
     }
 
     /**
@@ -1663,12 +1562,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean rowInserted() 
+    public boolean rowInserted() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.rowInserted();
+        return getOpenResultSet().rowInserted();
     }
    
     /**
@@ -1686,12 +1583,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized boolean rowDeleted() 
+    public boolean rowDeleted() 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.rowDeleted();
+        return getOpenResultSet().rowDeleted();
     }
 
     /**
@@ -1708,12 +1603,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateNull(int columnIndex) 
+    public void updateNull(int columnIndex) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateNull(columnIndex);
+        getOpenResultSet().updateNull(columnIndex);
     }
 
     /**
@@ -1730,12 +1623,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBoolean(int columnIndex, boolean x) 
+    public void updateBoolean(int columnIndex, boolean x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBoolean(columnIndex, x);
+        getOpenResultSet().updateBoolean(columnIndex, x);
     }
 
     /**
@@ -1753,12 +1644,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateByte(int columnIndex, byte x) 
+    public void updateByte(int columnIndex, byte x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateByte(columnIndex, x);
+        getOpenResultSet().updateByte(columnIndex, x);
     }
 
     /**
@@ -1775,12 +1664,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateShort(int columnIndex, short x) 
+    public void updateShort(int columnIndex, short x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateShort(columnIndex, x);
+        getOpenResultSet().updateShort(columnIndex, x);
     }
 
     /**
@@ -1797,12 +1684,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateInt(int columnIndex, int x) 
+    public void updateInt(int columnIndex, int x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateInt(columnIndex, x);
+        getOpenResultSet().updateInt(columnIndex, x);
     }
 
     /**
@@ -1819,12 +1704,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateLong(int columnIndex, long x) 
+    public void updateLong(int columnIndex, long x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateLong(columnIndex, x);
+        getOpenResultSet().updateLong(columnIndex, x);
     }
 
     /**
@@ -1841,12 +1724,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateFloat(int columnIndex, float x) 
+    public void updateFloat(int columnIndex, float x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateFloat(columnIndex, x);
+        getOpenResultSet().updateFloat(columnIndex, x);
     }
 
     /**
@@ -1863,12 +1744,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateDouble(int columnIndex, double x) 
+    public void updateDouble(int columnIndex, double x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateDouble(columnIndex, x);
+        getOpenResultSet().updateDouble(columnIndex, x);
     }
 
     /**
@@ -1886,12 +1765,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBigDecimal(int columnIndex, BigDecimal x) 
+    public void updateBigDecimal(int columnIndex, BigDecimal x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBigDecimal(columnIndex, x);
+        getOpenResultSet().updateBigDecimal(columnIndex, x);
     }
 
     /**
@@ -1908,12 +1785,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateString(int columnIndex, String x) 
+    public void updateString(int columnIndex, String x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateString(columnIndex, x);
+        getOpenResultSet().updateString(columnIndex, x);
     }
 
     /**
@@ -1930,12 +1805,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBytes(int columnIndex, byte x[]) 
+    public void updateBytes(int columnIndex, byte x[]) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBytes(columnIndex, x);
+        getOpenResultSet().updateBytes(columnIndex, x);
     }
 
     /**
@@ -1952,12 +1825,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateDate(int columnIndex, Date x) 
+    public void updateDate(int columnIndex, Date x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateDate(columnIndex, x);
+        getOpenResultSet().updateDate(columnIndex, x);
     }
 
     /**
@@ -1974,12 +1845,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateTime(int columnIndex, Time x) 
+    public void updateTime(int columnIndex, Time x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateTime(columnIndex, x);
+        getOpenResultSet().updateTime(columnIndex, x);
     }
 
     /**
@@ -1997,12 +1866,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateTimestamp(int columnIndex, Timestamp x)
+    public void updateTimestamp(int columnIndex, Timestamp x)
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateTimestamp(columnIndex, x);
+        getOpenResultSet().updateTimestamp(columnIndex, x);
     }
 
     /** 
@@ -2020,14 +1887,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateAsciiStream(int columnIndex, 
+    public void updateAsciiStream(int columnIndex, 
                                                InputStream x, 
                                                int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateAsciiStream(columnIndex, x, length);
+        getOpenResultSet().updateAsciiStream(columnIndex, x, length);
     }
 
     /** 
@@ -2045,14 +1910,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBinaryStream(int columnIndex, 
+    public void updateBinaryStream(int columnIndex, 
                                                 InputStream x,
                                                 int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBinaryStream(columnIndex, x ,length);
+        getOpenResultSet().updateBinaryStream(columnIndex, x ,length);
     }
 
     /**
@@ -2070,14 +1933,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateCharacterStream(int columnIndex,
+    public void updateCharacterStream(int columnIndex,
                                                    Reader x,
                                                    int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateCharacterStream(columnIndex, x, length);
+        getOpenResultSet().updateCharacterStream(columnIndex, x, length);
     }
 
     /**
@@ -2098,12 +1959,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateObject(int columnIndex, Object x, int scale)
+    public void updateObject(int columnIndex, Object x, int scale)
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateObject(columnIndex, x, scale);
+        getOpenResultSet().updateObject(columnIndex, x, scale);
     }
 
     /**
@@ -2120,12 +1979,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateObject(int columnIndex, Object x) 
+    public void updateObject(int columnIndex, Object x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateObject(columnIndex, x);
+        getOpenResultSet().updateObject(columnIndex, x);
     }
 
     /**
@@ -2141,12 +1998,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateNull(String columnName) 
+    public void updateNull(String columnName) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateNull(columnName);
+        getOpenResultSet().updateNull(columnName);
     }
 
     /**
@@ -2163,12 +2018,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBoolean(String columnName, boolean x) 
+    public void updateBoolean(String columnName, boolean x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBoolean(columnName, x);
+        getOpenResultSet().updateBoolean(columnName, x);
     }
 
     /**
@@ -2185,12 +2038,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateByte(String columnName, byte x) 
+    public void updateByte(String columnName, byte x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateByte(columnName, x);
+        getOpenResultSet().updateByte(columnName, x);
     }
 
     /**
@@ -2207,12 +2058,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateShort(String columnName, short x) 
+    public void updateShort(String columnName, short x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateShort(columnName, x);
+        getOpenResultSet().updateShort(columnName, x);
     }
 
     /**
@@ -2229,12 +2078,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateInt(String columnName, int x) 
+    public void updateInt(String columnName, int x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateInt(columnName, x);
+        getOpenResultSet().updateInt(columnName, x);
     }
 
     /**
@@ -2251,12 +2098,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateLong(String columnName, long x) 
+    public void updateLong(String columnName, long x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateLong(columnName, x);
+        getOpenResultSet().updateLong(columnName, x);
     }
 
     /**
@@ -2273,12 +2118,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateFloat(String columnName, float x) 
+    public void updateFloat(String columnName, float x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateFloat(columnName, x);
+        getOpenResultSet().updateFloat(columnName, x);
     }
 
     /**
@@ -2295,12 +2138,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateDouble(String columnName, double x) 
+    public void updateDouble(String columnName, double x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateDouble(columnName, x);
+        getOpenResultSet().updateDouble(columnName, x);
     }
 
     /**
@@ -2318,12 +2159,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBigDecimal(String columnName, BigDecimal x) 
+    public void updateBigDecimal(String columnName, BigDecimal x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBigDecimal(columnName, x);
+        getOpenResultSet().updateBigDecimal(columnName, x);
     }
 
     /**
@@ -2340,12 +2179,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateString(String columnName, String x) 
+    public void updateString(String columnName, String x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateString(columnName, x);
+        getOpenResultSet().updateString(columnName, x);
     }
 
     /**
@@ -2371,12 +2208,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBytes(String columnName, byte x[]) 
+    public void updateBytes(String columnName, byte x[]) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBytes(columnName, x);
+        getOpenResultSet().updateBytes(columnName, x);
     }
 
     /**
@@ -2393,12 +2228,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateDate(String columnName, Date x) 
+    public void updateDate(String columnName, Date x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateDate(columnName, x);
+        getOpenResultSet().updateDate(columnName, x);
     }
 
     /**
@@ -2415,12 +2248,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateTime(String columnName, Time x) 
+    public void updateTime(String columnName, Time x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateTime(columnName, x);
+        getOpenResultSet().updateTime(columnName, x);
     }
 
     /**
@@ -2438,12 +2269,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateTimestamp(String columnName, Timestamp x)
+    public void updateTimestamp(String columnName, Timestamp x)
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateTimestamp(columnName, x);
+        getOpenResultSet().updateTimestamp(columnName, x);
     }
 
     /** 
@@ -2461,14 +2290,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateAsciiStream(String columnName,
+    public void updateAsciiStream(String columnName,
                                                InputStream x, 
                                                int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateAsciiStream(columnName, x, length);
+        getOpenResultSet().updateAsciiStream(columnName, x, length);
     }
 
     /** 
@@ -2486,14 +2313,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateBinaryStream(String columnName, 
+    public void updateBinaryStream(String columnName, 
                                                 InputStream x,
                                                 int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateBinaryStream(columnName, x, length);
+        getOpenResultSet().updateBinaryStream(columnName, x, length);
     }
 
     /**
@@ -2511,14 +2336,12 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateCharacterStream(String columnName,
+    public void updateCharacterStream(String columnName,
                                                    Reader reader,
                                                    int length) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateCharacterStream(columnName, reader, length);
+        getOpenResultSet().updateCharacterStream(columnName, reader, length);
     }
 
     /**
@@ -2539,12 +2362,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateObject(String columnName, Object x, int scale)
+    public void updateObject(String columnName, Object x, int scale)
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateObject(columnName, x, scale);
+        getOpenResultSet().updateObject(columnName, x, scale);
     }
 
     /**
@@ -2561,12 +2382,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateObject(String columnName, Object x) 
+    public void updateObject(String columnName, Object x) 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateObject(columnName, x);
+        getOpenResultSet().updateObject(columnName, x);
     }
 
     /**
@@ -2582,12 +2401,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void insertRow() 
+    public void insertRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.insertRow();
+        getOpenResultSet().insertRow();
     }
 
     /**
@@ -2601,12 +2418,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void updateRow() 
+    public void updateRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.updateRow();
+        getOpenResultSet().updateRow();
     }
 
     /**
@@ -2620,12 +2435,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void deleteRow() 
+    public void deleteRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.deleteRow();
+        getOpenResultSet().deleteRow();
     }
 
     /**
@@ -2655,12 +2468,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void refreshRow() 
+    public void refreshRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.refreshRow();
+        getOpenResultSet().refreshRow();
     }
 
     /**
@@ -2679,12 +2490,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void cancelRowUpdates() 
+    public void cancelRowUpdates() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.cancelRowUpdates();
+        getOpenResultSet().cancelRowUpdates();
     }
 
     /**
@@ -2710,12 +2519,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void moveToInsertRow() 
+    public void moveToInsertRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.moveToInsertRow();
+        getOpenResultSet().moveToInsertRow();
     }
 
     /**
@@ -2729,12 +2536,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized void moveToCurrentRow() 
+    public void moveToCurrentRow() 
         throws SQLException
     {
-        validateOpen();
-
-        _resultSet.moveToCurrentRow();
+        getOpenResultSet().moveToCurrentRow();
     }
 
     /**
@@ -2755,13 +2560,14 @@ public final class TyrexResultSetImpl
     public synchronized Statement getStatement() 
         throws SQLException
     {
+        ResultSet resultSet;
         Statement statement;
 
-        validateOpen();
+        resultSet = getOpenResultSet();
 
         if (null == _statement) {
             // get the statement
-            statement = _resultSet.getStatement();
+            statement = resultSet.getStatement();
 
             if (null == statement) {
                 //throw new SQLException("The result set does not have a statement associated with it.");    
@@ -2793,12 +2599,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Object getObject(int i, Map map) 
+    public Object getObject(int i, Map map) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getObject(i, map);
+        return getOpenResultSet().getObject(i, map);
     }
 
     /**
@@ -2812,12 +2616,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Ref getRef(int i) 
+    public Ref getRef(int i) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getRef(i);
+        return getOpenResultSet().getRef(i);
     }
 
     /**
@@ -2832,12 +2634,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Blob getBlob(int i) 
+    public Blob getBlob(int i) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBlob(i);
+        return getOpenResultSet().getBlob(i);
     }
 
     /**
@@ -2852,12 +2652,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Clob getClob(int i) 
+    public Clob getClob(int i) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getClob(i);
+        return getOpenResultSet().getClob(i);
     }
 
     /**
@@ -2872,12 +2670,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Array getArray(int i) 
+    public Array getArray(int i) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getArray(i);
+        return getOpenResultSet().getArray(i);
     }
 
     /**
@@ -2895,12 +2691,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Object getObject(String colName, Map map) 
+    public Object getObject(String colName, Map map) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getObject(colName, map);
+        return getOpenResultSet().getObject(colName, map);
     }
 
     /**
@@ -2915,12 +2709,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Ref getRef(String colName) 
+    public Ref getRef(String colName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getRef(colName);
+        return getOpenResultSet().getRef(colName);
     }
 
     /**
@@ -2935,12 +2727,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Blob getBlob(String colName) 
+    public Blob getBlob(String colName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getBlob(colName);
+        return getOpenResultSet().getBlob(colName);
     }
 
     /**
@@ -2955,12 +2745,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Clob getClob(String colName) 
+    public Clob getClob(String colName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getClob(colName);
+        return getOpenResultSet().getClob(colName);
     }
 
     /**
@@ -2975,12 +2763,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Array getArray(String colName) 
+    public Array getArray(String colName) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getArray(colName);
+        return getOpenResultSet().getArray(colName);
     }
 
     /**
@@ -3002,12 +2788,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Date getDate(int columnIndex, Calendar cal) 
+    public Date getDate(int columnIndex, Calendar cal) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDate(columnIndex, cal);
+        return getOpenResultSet().getDate(columnIndex, cal);
     }
 
     /**
@@ -3029,12 +2813,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Date getDate(String columnName, Calendar cal) 
+    public Date getDate(String columnName, Calendar cal) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getDate(columnName, cal);
+        return getOpenResultSet().getDate(columnName, cal);
     }
 
     /**
@@ -3056,12 +2838,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Time getTime(int columnIndex, Calendar cal) 
+    public Time getTime(int columnIndex, Calendar cal) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTime(columnIndex, cal);
+        return getOpenResultSet().getTime(columnIndex, cal);
     }
 
     /**
@@ -3084,12 +2864,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Time getTime(String columnName, Calendar cal) 
+    public Time getTime(String columnName, Calendar cal) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTime(columnName, cal);
+        return getOpenResultSet().getTime(columnName, cal);
     }
 
     /**
@@ -3111,12 +2889,10 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Timestamp getTimestamp(int columnIndex, Calendar cal) 
+    public Timestamp getTimestamp(int columnIndex, Calendar cal) 
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTimestamp(columnIndex, cal);
+        return getOpenResultSet().getTimestamp(columnIndex, cal);
     }
 
     /**
@@ -3138,29 +2914,41 @@ public final class TyrexResultSetImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public synchronized Timestamp getTimestamp(String columnName, Calendar cal)
+    public Timestamp getTimestamp(String columnName, Calendar cal)
         throws SQLException
     {
-        validateOpen();
-
-        return _resultSet.getTimestamp(columnName, cal);
+        return getOpenResultSet().getTimestamp(columnName, cal);
     }
 
 
     /**
-     * Validate that the result set is open
+     * Validate that the result set is open and return the
+     * underlying result set.
+     * <p>
+     * This method does not synchronize on this instance. Each
+     * field is read once, so a result set closed by another
+     * thread is reported as closed rather than failing half way.
      *
+     * @return the underlying result set
      * @throws SQLException if the result set is closed
      */
-    private void validateOpen()
+    private ResultSet getOpenResultSet()
         throws SQLException
     {
-        if (_connection == null && _statement == null)
+        ResultSet          resultSet;
+        TyrexStatementImpl statement;
+        TyrexConnection    connection;
+
+        resultSet = _resultSet;
+        statement = _statement;
+        connection = _connection;
+        if (resultSet == null || (connection == null && statement == null))
             throw new SQLException("The result set is closed.");    
-        if (_connection != null && _connection.isClosed() )
+        if (connection != null && connection.isClosed() )
             throw new SQLException("The result set is closed.");    
-        if (_statement != null )
-            _statement.getStatement();
+        if (statement != null )
+            statement.getStatement();
+        return resultSet;
     }
 
     /**
@@ -3176,27 +2964,21 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#getURL(int)
 	 */
 	public URL getURL(int columnIndex) throws SQLException {
-		validateOpen();
-
-		return _resultSet.getURL(columnIndex);
+		return getOpenResultSet().getURL(columnIndex);
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.ResultSet#getURL(java.lang.String)
 	 */
 	public URL getURL(String columnName) throws SQLException {
-		validateOpen();
-
-		return _resultSet.getURL(columnName);
+		return getOpenResultSet().getURL(columnName);
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.ResultSet#updateArray(int, java.sql.Array)
 	 */
 	public void updateArray(int columnIndex, Array x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateArray(columnIndex, x);
+		getOpenResultSet().updateArray(columnIndex, x);
 
 	}
 
@@ -3204,9 +2986,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateArray(java.lang.String, java.sql.Array)
 	 */
 	public void updateArray(String columnName, Array x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateArray(columnName, x);
+		getOpenResultSet().updateArray(columnName, x);
 
 	}
 
@@ -3214,9 +2994,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateBlob(int, java.sql.Blob)
 	 */
 	public void updateBlob(int columnIndex, Blob x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateBlob(columnIndex, x);
+		getOpenResultSet().updateBlob(columnIndex, x);
 
 	}
 
@@ -3224,9 +3002,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateBlob(java.lang.String, java.sql.Blob)
 	 */
 	public void updateBlob(String columnName, Blob x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateBlob(columnName, x);
+		getOpenResultSet().updateBlob(columnName, x);
 
 	}
 
@@ -3234,9 +3010,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateClob(int, java.sql.Clob)
 	 */
 	public void updateClob(int columnIndex, Clob x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateClob(columnIndex, x);
+		getOpenResultSet().updateClob(columnIndex, x);
 
 	}
 
@@ -3244,9 +3018,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateClob(java.lang.String, java.sql.Clob)
 	 */
 	public void updateClob(String columnName, Clob x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateClob(columnName, x);
+		getOpenResultSet().updateClob(columnName, x);
 
 	}
 
@@ -3254,9 +3026,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateRef(int, java.sql.Ref)
 	 */
 	public void updateRef(int columnIndex, Ref x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateRef(columnIndex, x);
+		getOpenResultSet().updateRef(columnIndex, x);
 
 	}
 
@@ -3264,9 +3034,7 @@ public final class TyrexResultSetImpl
 	 * @see java.sql.ResultSet#updateRef(java.lang.String, java.sql.Ref)
 	 */
 	public void updateRef(String columnName, Ref x) throws SQLException {
-		validateOpen();
-
-		_resultSet.updateRef(columnName, x);
+		getOpenResultSet().updateRef(columnName, x);
 
 	}
 }
@@ -56,6 +56,9 @@ import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 
+import tyrex.resource.PoolHistogram;
+import tyrex.resource.StatementMetrics;
+
 
 /////////////////////////////////////////////////////////////////////
 // TyrexStatementImpl
@@ -78,20 +81,51 @@ class TyrexStatementImpl
 {
     /**
      * The connection that created the statement.
+     * <p>
+     * The state fields are volatile so that the statement
+     * methods can run without holding the monitor while
+     * cancel and close are called from other threads.
      */
-    private TyrexConnection      _connection;
+    private volatile TyrexConnection      _connection;
 
 
     /**
      * The underlying statement
      */
-    private Statement           _statement;
+    private volatile Statement           _statement;
 
 
     /**
      * The current result set
      */
-    private TyrexResultSetImpl _resultSet;
+    private volatile TyrexResultSetImpl _resultSet;
+
+
+    /**
+     * True if the application changed the properties of the
+     * underlying statement, e.g. the maximum rows or fetch size.
+     */
+    private boolean _modified;
+
+
+    /**
+     * The metrics into which executions of the statement are
+     * recorded, or null if statements are not recorded.
+     */
+    private final StatementMetrics _metrics;
+
+
+    /**
+     * The SQL of a prepared statement, or null.
+     */
+    private final String _sql;
+
+
+    /**
+     * The histogram into which executions of a prepared
+     * statement are recorded, or null.
+     */
+    private final PoolHistogram _executeTime;
 
 
     /**
@@ -104,6 +138,23 @@ class TyrexStatementImpl
      */
     TyrexStatementImpl(Statement statement, TyrexConnection connection)
         throws SQLException
+    {
+        this(statement, connection, null);
+    }
+
+
+    /**
+     * Create the TyrexStatementImpl with the specified arguments.
+     *
+     * @param statement the underlying statement
+     * @param connection the connection that created
+     *      the statement.
+     * @param sql the SQL of a prepared statement, null for a
+     *      plain statement.
+     * @throws SQLException if there is a problem creating the statement
+     */
+    TyrexStatementImpl(Statement statement, TyrexConnection connection, String sql)
+        throws SQLException
     {
         if (null == statement) {
             throw new IllegalArgumentException("The argument 'statement' is null.");
@@ -115,6 +166,9 @@ class TyrexStatementImpl
 
         _connection = connection;
         _statement = statement;
+        _sql = sql;
+        _metrics = connection.internalGetStatementMetrics();
+        _executeTime = (null == _metrics || null == sql) ? null : _metrics.lookup(sql);
     }
 
     /**
@@ -125,13 +179,14 @@ class TyrexStatementImpl
      * given query; never <code>null</code> 
      * @exception SQLException if a database access error occurs
      */
-    public synchronized final ResultSet executeQuery(String sql) 
+    public final ResultSet executeQuery(String sql) 
         throws SQLException
     {
         // this method is not synchronized so that
         // cancel can work
 
         Statement statement;
+        long      started;
 
         statement = getStatement();
         // close the existing result set before getting
@@ -140,7 +195,13 @@ class TyrexStatementImpl
         // result set. There is no way to query a result
         // set whether it is closed or not.
         closeResultSet();
-        return setResultSet(statement.executeQuery(sql));
+        started = startExecute();
+        try {
+            return setResultSet(statement.executeQuery(sql));
+        }
+        finally {
+            endExecute(sql, started);
+        }
     }
 
 
@@ -160,7 +221,7 @@ class TyrexStatementImpl
      * @return the  result set to be returned as the result of a query. 
      * @see #closeResultSet
      */
-    protected synchronized ResultSet setResultSet(ResultSet resultSet)
+    protected ResultSet setResultSet(ResultSet resultSet)
     {
         _resultSet = null == resultSet 
                         ? null 
@@ -175,9 +236,6 @@ class TyrexStatementImpl
     /**
      * Close the existing result set associated with the statement.
      * If there is no existing result set nothing is done. 
-     * <p>
-     * This method assumes that the calling method
-     * synchronizes on this instance.
      * <P>
      * Any exceptions caused by closing the result set are ignored.
      */
@@ -185,11 +243,11 @@ class TyrexStatementImpl
     {
         ResultSet resultSet;
 
-        if (null != _resultSet) {
+        resultSet = _resultSet;
+        if (null != resultSet) {
             try {    
                 // set the instance variable _resultSet
                 // to null before calling close
-                resultSet = _resultSet;
                 _resultSet = null;
 
                 resultSet.close();
@@ -219,12 +277,16 @@ class TyrexStatementImpl
         // cancel can work
 
         Statement statement;
+        long      started;
 
-        synchronized (this) {
-            statement = getStatement();
+        statement = getStatement();
+        started = startExecute();
+        try {
+            return statement.executeUpdate(sql);
+        }
+        finally {
+            endExecute(sql, started);
         }
-        
-        return statement.executeUpdate(sql);
     }
 
     /**
@@ -252,7 +314,10 @@ class TyrexStatementImpl
      * Any existing result sets are closed as well.
      * <P>
      * This method assumes that the calling methods are synchronized
-     * on the statement
+     * on the statement. The fields are cleared before the underlying
+     * statement is released, so other threads calling into the
+     * statement fail with an SQL exception instead of using a
+     * released statement.
      *
      * @throws SQLException if the statement is already closed or if there
      *      is a problem closing the underlying statement.
@@ -260,21 +325,35 @@ class TyrexStatementImpl
     private void internalClose() 
         throws SQLException
     {
-        if (null == _statement) {
+        Statement statement;
+
+        statement = _statement;
+        if (null == statement) {
             throw new SQLException("The statement is already closed");    
         }
+        _statement = null;
+        _connection = null;
 
         // close any existing result set
         closeResultSet();
 
-        try {
-            _statement.close();    
-        }
-        finally {
-            _statement = null;
-            _connection = null;
+        releaseStatement(statement, _modified);
+    }
 
-        }
+    /**
+     * Release the underlying statement when this statement is
+     * closed. The default implementation closes the underlying
+     * statement.
+     *
+     * @param statement the underlying statement
+     * @param modified true if the application changed the
+     *      properties of the statement
+     * @throws SQLException if there is a problem closing the statement
+     */
+    protected void releaseStatement(Statement statement, boolean modified)
+        throws SQLException
+    {
+        statement.close();
     }
 
     //----------------------------------------------------------------------
@@ -292,7 +371,7 @@ class TyrexStatementImpl
      * @return the current max column size limit; zero means unlimited 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized int getMaxFieldSize() 
+    public final int getMaxFieldSize() 
         throws SQLException
     {
         return getStatement().getMaxFieldSize();
@@ -311,10 +390,11 @@ class TyrexStatementImpl
      * @param max the new max column size limit; zero means unlimited 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setMaxFieldSize(int max) 
+    public final void setMaxFieldSize(int max) 
         throws SQLException
     {
         getStatement().setMaxFieldSize(max);
+        _modified = true;
     }
 
     /**
@@ -325,7 +405,7 @@ class TyrexStatementImpl
      * @return the current max row limit; zero means unlimited
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized int getMaxRows() 
+    public final int getMaxRows() 
         throws SQLException
     {
         return getStatement().getMaxRows();
@@ -340,10 +420,11 @@ class TyrexStatementImpl
      * @param max the new max rows limit; zero means unlimited 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setMaxRows(int max) 
+    public final void setMaxRows(int max) 
         throws SQLException
     {
         getStatement().setMaxRows(max);
+        _modified = true;
     }
 
     /**
@@ -358,10 +439,11 @@ class TyrexStatementImpl
      * @param enable <code>true</code> to enable; <code>false</code> to disable
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setEscapeProcessing(boolean enable) 
+    public final void setEscapeProcessing(boolean enable) 
         throws SQLException
     {
         getStatement().setEscapeProcessing(enable);
+        _modified = true;
     }
 
     /**
@@ -372,7 +454,7 @@ class TyrexStatementImpl
      * @return the current query timeout limit in seconds; zero means unlimited 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized int getQueryTimeout() 
+    public final int getQueryTimeout() 
         throws SQLException
     {
         return getStatement().getQueryTimeout();
@@ -387,10 +469,11 @@ class TyrexStatementImpl
      * unlimited 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setQueryTimeout(int seconds) 
+    public final void setQueryTimeout(int seconds) 
         throws SQLException
     {
         getStatement().setQueryTimeout(seconds);
+        _modified = true;
     }
 
     /**
@@ -401,7 +484,7 @@ class TyrexStatementImpl
      *
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void cancel() 
+    public final void cancel() 
         throws SQLException
     {
         getStatement().cancel();
@@ -422,7 +505,7 @@ class TyrexStatementImpl
      * @return the first <code>SQLWarning</code> object or <code>null</code> 
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized SQLWarning getWarnings() 
+    public final SQLWarning getWarnings() 
         throws SQLException
     {
         return getStatement().getWarnings();
@@ -437,7 +520,7 @@ class TyrexStatementImpl
      *
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void clearWarnings() 
+    public final void clearWarnings() 
         throws SQLException
     {
         getStatement().clearWarnings();
@@ -464,10 +547,11 @@ class TyrexStatementImpl
      *             a connection
      * @exception SQLException if a database access error occurs
      */
-    public final synchronized void setCursorName(String name) 
+    public final void setCursorName(String name) 
         throws SQLException
     {
         getStatement().setCursorName(name);
+        _modified = true;
     }
 
     //----------------------- Multiple Results --------------------------
@@ -503,12 +587,16 @@ class TyrexStatementImpl
         // cancel can work
 
         Statement statement;
+        long      started;
 
-        synchronized (this) {
-            statement = getStatement();
+        statement = getStatement();
+        started = startExecute();
+        try {
+            return statement.execute(sql);
+        }
+        finally {
+            endExecute(sql, started);
         }
-        
-        return statement.execute(sql);
     }
 
     /**
@@ -525,19 +613,14 @@ class TyrexStatementImpl
     {
         Statement statement;
 
-        synchronized (this){
-            statement = getStatement();
+        statement = getStatement();
 
-            // close the existing result set before getting
-            // the new one just in case the underlying
-            // statement does not close its underlying
-            // result set. There is no way to query a result
-            // set whether it is closed or not.
-            closeResultSet();
-        }
-        
-        // the call to statement.getResultSet is not synchronized so that
-        // cancel can be called.
+        // close the existing result set before getting
+        // the new one just in case the underlying
+        // statement does not close its underlying
+        // result set. There is no way to query a result
+        // set whether it is closed or not.
+        closeResultSet();
         
         return setResultSet(statement.getResultSet());
     }
@@ -552,7 +635,7 @@ class TyrexStatementImpl
      * @exception SQLException if a database access error occurs
      * @see #execute 
      */
-    public final synchronized int getUpdateCount() 
+    public final int getUpdateCount() 
         throws SQLException
     {
         return getStatement().getUpdateCount();
@@ -574,7 +657,7 @@ class TyrexStatementImpl
      * @exception SQLException if a database access error occurs
      * @see #execute 
      */
-    public final synchronized boolean getMoreResults() 
+    public final boolean getMoreResults() 
         throws SQLException
     {
         return getStatement().getMoreResults();
@@ -603,10 +686,11 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setFetchDirection(int direction) 
+    public final void setFetchDirection(int direction) 
         throws SQLException
     {
         getStatement().setFetchDirection(direction);
+        _modified = true;
     }
 
     /**
@@ -624,7 +708,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized int getFetchDirection() 
+    public final int getFetchDirection() 
         throws SQLException
     {
         return getStatement().getFetchDirection();
@@ -644,10 +728,11 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void setFetchSize(int rows) 
+    public final void setFetchSize(int rows) 
         throws SQLException
     {
         getStatement().setFetchSize(rows);
+        _modified = true;
     }
   
     /**
@@ -664,7 +749,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized int getFetchSize() 
+    public final int getFetchSize() 
         throws SQLException
     {
         return getStatement().getFetchSize();
@@ -680,7 +765,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized int getResultSetConcurrency() 
+    public final int getResultSetConcurrency() 
         throws SQLException
     {
         return getStatement().getResultSetConcurrency();
@@ -697,7 +782,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized int getResultSetType()  
+    public final int getResultSetType()  
         throws SQLException
     {
         return getStatement().getResultSetType();
@@ -715,7 +800,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void addBatch( String sql ) 
+    public final void addBatch( String sql ) 
         throws SQLException
     {
         getStatement().addBatch(sql);
@@ -731,7 +816,7 @@ class TyrexStatementImpl
      * @see <a href="package-summary.html#2.0 API">What Is in the JDBC
      *      2.0 API</a>
      */
-    public final synchronized void clearBatch() 
+    public final void clearBatch() 
         throws SQLException
     {
         getStatement().clearBatch();
@@ -794,12 +879,16 @@ class TyrexStatementImpl
         // cancel can work
 
         Statement statement;
+        long      started;
 
-        synchronized (this) {
-            statement = getStatement();
+        statement = getStatement();
+        started = startExecute();
+        try {
+            return statement.executeBatch();
+        }
+        finally {
+            endExecute(null, started);
         }
-        
-        return statement.executeBatch();
     }
 
     /**
@@ -831,8 +920,9 @@ class TyrexStatementImpl
     /**
      * Return the statement.
      * <p>
-     * This method assumes that the calling method
-     * synchronizes on this instance.
+     * This method does not synchronize on this instance.
+     * Each field is read once, so a statement closed by another
+     * thread is reported as closed.
      *
      * @return the statement.
      * @throws SQLException if either the statement or
@@ -841,9 +931,106 @@ class TyrexStatementImpl
     protected final Statement getStatement()
         throws SQLException
     {
-        if ( _connection.isClosed())
+        Statement       statement;
+        TyrexConnection connection;
+
+        statement = _statement;
+        connection = _connection;
+        if ( statement == null || connection == null || connection.isClosed())
             throw new SQLException("The statement has been closed.");
-        return _statement;
+        return statement;
+    }
+
+
+    /**
+     * Apply the data source's default properties to the underlying
+     * statement. Called when the underlying statement is created,
+     * before the statement is returned to the application. The
+     * statement is not marked as modified, so it can still be cached.
+     * <p>
+     * If the defaults cannot be applied the statement is closed.
+     *
+     * @param defaults the statement defaults
+     * @throws SQLException if the defaults cannot be applied
+     */
+    final void applyDefaults(StatementDefaults defaults)
+        throws SQLException
+    {
+        Statement statement;
+
+        statement = getStatement();
+        try {
+            if (0 != defaults.getFetchSize()) {
+                statement.setFetchSize(defaults.getFetchSize());
+            }
+            if (0 != defaults.getMaxRows()) {
+                statement.setMaxRows(defaults.getMaxRows());
+            }
+            if (0 != defaults.getQueryTimeout()) {
+                statement.setQueryTimeout(defaults.getQueryTimeout());
+            }
+        }
+        catch (SQLException e) {
+            _modified = true;
+            try {
+                close();
+            }
+            catch (SQLException except) {
+                // ignore, report the original exception
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Return the metrics into which executions of the statement
+     * and result sets are recorded.
+     *
+     * @return the statement metrics, or null if statements
+     *      are not recorded.
+     */
+    final StatementMetrics getMetrics()
+    {
+        return _metrics;
+    }
+
+
+    /**
+     * Return the clock time at which a statement starts executing,
+     * to be passed to {@link #endExecute}. Returns zero if statements
+     * are not recorded.
+     *
+     * @return the start time, or zero
+     */
+    protected final long startExecute()
+    {
+        return (null == _metrics) ? 0 : System.currentTimeMillis();
+    }
+
+
+    /**
+     * Record the execution of a statement started at the
+     * specified time. Does nothing if statements are not recorded.
+     *
+     * @param sql the SQL executed, or null for the SQL of
+     *      the prepared statement or a batch
+     * @param started the value returned from {@link #startExecute}
+     */
+    protected final void endExecute(String sql, long started)
+    {
+        if (0 == started) {
+            return;
+        }
+        if (null != sql) {
+            _metrics.recordExecute(_metrics.lookup(sql), sql, started);
+        }
+        else if (null != _executeTime) {
+            _metrics.recordExecute(_executeTime, _sql, started);
+        }
+        else {
+            _metrics.recordExecute(_metrics.lookup(StatementMetrics.BATCH), StatementMetrics.BATCH, started);
+        }
     }
 
 
@@ -852,7 +1039,7 @@ class TyrexStatementImpl
      *
      * @param resultSet the result set
      */
-    synchronized final void resultSetIsClosed(TyrexResultSetImpl resultSet)
+    final void resultSetIsClosed(TyrexResultSetImpl resultSet)
     {
         if (resultSet == _resultSet) {
             _resultSet = null;    
@@ -862,63 +1049,123 @@ class TyrexStatementImpl
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#executeUpdate(java.lang.String, int[])
 	 */
-	public final synchronized int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
-		return getStatement().executeUpdate(sql, columnIndexes);
+	public final int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.executeUpdate(sql, columnIndexes);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#executeUpdate(java.lang.String, java.lang.String[])
 	 */
-	public final synchronized int executeUpdate(String sql, String[] columnNames) throws SQLException {
-		return getStatement().executeUpdate(sql, columnNames);
+	public final int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.executeUpdate(sql, columnNames);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#execute(java.lang.String, int)
 	 */
-	public final synchronized boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
-		return getStatement().execute(sql, autoGeneratedKeys);
+	public final boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.execute(sql, autoGeneratedKeys);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#execute(java.lang.String, int[])
 	 */
-	public final synchronized boolean execute(String sql, int[] columnIndexes) throws SQLException {
-		return getStatement().execute(sql, columnIndexes);
+	public final boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.execute(sql, columnIndexes);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#execute(java.lang.String, java.lang.String[])
 	 */
-	public final synchronized boolean execute(String sql, String[] columnNames) throws SQLException {
-		return getStatement().execute(sql, columnNames);
+	public final boolean execute(String sql, String[] columnNames) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.execute(sql, columnNames);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#executeUpdate(java.lang.String, int)
 	 */
-	public final synchronized int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-		return getStatement().executeUpdate(sql, autoGeneratedKeys);
+	public final int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		Statement statement;
+		long      started;
+
+		statement = getStatement();
+		started = startExecute();
+		try {
+			return statement.executeUpdate(sql, autoGeneratedKeys);
+		}
+		finally {
+			endExecute(sql, started);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#getGeneratedKeys()
 	 */
-	public final synchronized ResultSet getGeneratedKeys() throws SQLException {
+	public final ResultSet getGeneratedKeys() throws SQLException {
 		return getStatement().getGeneratedKeys();
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#getMoreResults(int)
 	 */
-	public final synchronized boolean getMoreResults(int current) throws SQLException {
+	public final boolean getMoreResults(int current) throws SQLException {
 		return getStatement().getMoreResults(current);
 	}
 
 	/* (non-Javadoc)
 	 * @see java.sql.Statement#getResultSetHoldability()
 	 */
-	public final synchronized int getResultSetHoldability() throws SQLException {
+	public final int getResultSetHoldability() throws SQLException {
 		return getStatement().getResultSetHoldability();
 	}
 
@@ -49,6 +49,7 @@
 package tyrex.resource.jdbc.xa;
 
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -93,9 +94,10 @@ public final class XAConnectionImpl
      * in which case {@link #getUnderlying} will return a new
      * connection and set this variable. This variable is mutually
      * exclusive with {@link #_txConn} and is always null for
-     * connections inside a transaction.
+     * connections inside a transaction. The connection is held
+     * along with its known state.
      */
-    Connection                          _underlying;
+    ConnectionState                     _underlying;
 
 
     /**
@@ -146,6 +148,14 @@ public final class XAConnectionImpl
      */
     private String                      _password;
 
+
+    /**
+     * The account for the underlying connection, as returned by
+     * {@link XADataSourceImpl#getAccount}.
+     */
+    private final String                _account;
+
+
     /**
      * This is an identifier we hand to the client connection when we
      * create it. When the client connection asks for the underlying
@@ -168,6 +178,28 @@ public final class XAConnectionImpl
     private int                       _txTimeout;  
 
 
+    /**
+     * The transactions returned by the recovery scan in progress,
+     * null if no scan is in progress.
+     */
+    private Xid[]                     _recoverScan;
+
+
+    /**
+     * The index of the next transaction the recovery scan in
+     * progress will return.
+     */
+    private int                       _recoverNext;
+
+
+    /**
+     * The maximum number of transactions returned by each call
+     * to {@link #recover}, unless the call both starts and ends
+     * the scan.
+     */
+    private static final int          RECOVER_PAGE = 64;
+
+
     /**
      * Construct a new XA/pooled connection with the underlying JDBC
      * connection suitable for this driver only. This is a one to one
@@ -186,7 +218,7 @@ public final class XAConnectionImpl
      *      Can be null.
      */
     XAConnectionImpl( XADataSourceImpl resManager,
-                      Connection underlying,
+                      ConnectionState underlying,
                       String userName,
                       String password )
         throws SQLException
@@ -195,6 +227,7 @@ public final class XAConnectionImpl
         _resManager = resManager;
         _userName = userName;
         _password = password;
+        _account = resManager.getAccount( userName, password );
         _txTimeout = resManager.getTransactionTimeout();
         getUnderlying( _clientId );
     }
@@ -221,8 +254,8 @@ public final class XAConnectionImpl
         // transactions, we just kill the connection.
         try {
             if ( _underlying != null ) {
-                _underlying.commit();
-                _underlying.close();
+                _underlying.conn.commit();
+                _underlying.conn.close();
             } else if ( _txConn != null ) {
                 try {
                     end( _txConn.xid, TMSUCCESS );
@@ -285,7 +318,7 @@ public final class XAConnectionImpl
         if ( _underlying != null ) {
             try {
                 if ( !_underlying.getAutoCommit() ) {
-                    _underlying.commit();
+                    _underlying.conn.commit();
                 }
             } catch ( SQLException except ) {
                 ConnectionEvent event;
@@ -338,7 +371,7 @@ public final class XAConnectionImpl
         // start were called properly.
         if ( _underlying != null ) {
             try {
-                _underlying.commit();
+                _underlying.conn.commit();
             } catch ( SQLException except ) {
                 if ( _listener != null ) {
                     event = new ConnectionEvent( this, except );
@@ -382,8 +415,8 @@ public final class XAConnectionImpl
         // whether the error is critical, we just return. If the connection
         // is two phase commit, but the error is not critical, we return.
         if ( _underlying != null ) {
-            if ( ! ( _underlying instanceof TwoPhaseConnection ) ||
-                 ! ( (TwoPhaseConnection) _underlying ).isCriticalError( except ) )
+            if ( ! ( _underlying.conn instanceof TwoPhaseConnection ) ||
+                 ! ( (TwoPhaseConnection) _underlying.conn ).isCriticalError( except ) )
                 return;
         }
         
@@ -401,7 +434,7 @@ public final class XAConnectionImpl
         ++_clientId;
         if ( _underlying != null ) {
             try {
-                _underlying.close();
+                _underlying.conn.close();
             } catch ( SQLException e2 ) {
                 // Ignore that, we know there's an error.
             }
@@ -445,119 +478,144 @@ public final class XAConnectionImpl
     public synchronized void start( Xid xid, int flags )
         throws XAException
     {   
+        TxConnection txConn;
+
         // General checks.
         if ( xid == null )
             throw new XAException( XAException.XAER_INVAL );
         if ( _txConn != null )
             throw new XAException( XAException.XAER_OUTSIDE );
 
-        synchronized ( _resManager ) {
-            if ( flags == TMNOFLAGS ) {
-                // Starting a new transaction. First, make sure it is
-                // not shared with any other connection (need to join
-                // for that).
-                if ( _resManager.getTxConnection( xid ) != null )
-                    throw new XAException( XAException.XAER_DUPID );
-                // Create a new TxConnection to describe this
-                // connection in the context of a transaction and
-                // register it with the resource manager so it can
-                // be shared.
-                try {
-                    _txConn = new TxConnection();
-                    if ( _underlying != null ) {
-                        _txConn.conn = _underlying;
-                        _underlying = null;
-                    } 
-                  else {
-                        _txConn.conn = _resManager.newConnection( _userName, _password );
-                    }
-
-                    _txConn.xid = xid;
-                    _txConn.count = 1;
-                    _txConn.started = System.currentTimeMillis();
-                    _txConn.timeout = _txConn.started + ( _txTimeout * 1000 );
-                    _txConn.userName = _userName;
-                    _txConn.password = _password;
-                    _resManager.setTxConnection( xid, _txConn );
-                } catch ( SQLException except ) {
-                    // If error occured at this point, we can only
-                    // report it as resource manager error.
-                    if ( _resManager.getLogWriter() != null )
-                        _resManager.getLogWriter().println( "XAConnection: failed to begin a transaction: " + except );
-                    throw new XAException( XAException.XAER_RMERR );
+        // No lock is held on the resource manager. A new TxConnection
+        // is fully set up before it is registered and becomes visible
+        // to other connections, and a joined TxConnection is only
+        // updated while synchronized on it.
+        if ( flags == TMNOFLAGS ) {
+            // Starting a new transaction. First, make sure it is
+            // not shared with any other connection (need to join
+            // for that).
+            if ( _resManager.getTxConnection( xid ) != null )
+                throw new XAException( XAException.XAER_DUPID );
+            // Create a new TxConnection to describe this
+            // connection in the context of a transaction.
+            try {
+                txConn = new TxConnection();
+                if ( _underlying != null ) {
+                    txConn.state = _underlying;
+                    _underlying = null;
+                } 
+                else {
+                    txConn.state = _resManager.newConnection( _account, _userName, _password );
                 }
-                
+                txConn.conn = txConn.state.conn;
+
+                txConn.xid = xid;
+                txConn.count = 1;
+                txConn.started = System.currentTimeMillis();
+                txConn.timeout = txConn.started + ( _txTimeout * 1000 );
+                txConn.account = _account;
+            } catch ( SQLException except ) {
+                // If error occured at this point, we can only
+                // report it as resource manager error.
+                if ( _resManager.getLogWriter() != null )
+                    _resManager.getLogWriter().println( "XAConnection: failed to begin a transaction: " + except );
+                throw new XAException( XAException.XAER_RMERR );
+            }
+            
+            // The known state of the connection saves a round trip
+            // to the database for each property already set, e.g. by
+            // the previous transaction on this connection.
+            try {
+                txConn.state.setAutoCommit( false );
                 try {
-                    _txConn.conn.setAutoCommit( false );
-                    try {
-                        // NOTE: Some JDBC drivers do not cache isolation levels so the method #getTransactionIsolation
-                        // is expensive and can use up resources. The Cloudspace 3.5, Sybase 5.2 drivers suffers from this.
-                        
-                        //if ( _resManager.getIsolationLevel() != _txConn.conn.getTransactionIsolation() )
-						if ( !_resManager.getIgnoreIsolationLevel() ) {
-							_txConn.conn.setTransactionIsolation( _resManager.getIsolationLevel() );
-						}
-                    } catch ( SQLException e ) {
-                        // The underlying driver might not support this
-                        // isolation level that we use by default.
-                        
-                        // See NOTE above why the code below is commented out
-                        // We'll hope for the best in this case :-).
-                        /*
-                          // not wrapping the call to conn getTransactionIsolation in a
-                          // try-catch block because if we can't determine the isolation level
-                          // then it can be TRANSACTION_NONE and what's the point of continuing.
-                          int isolationLevel = _txConn.conn.getTransactionIsolation();
-                          // if transactions are not supported abort
-                          if ( isolationLevel == Connection.TRANSACTION_NONE ) {
-                          if ( _resManager.getLogWriter() != null )
-                          _resManager.getLogWriter().println( "XAConnection <" + 
-                          toString() + 
-                          ">: does not support transactions." );
-                          throw new XAException( XAException.XAER_RMERR );    
-                          }
-                          else*/ if ( _resManager.getLogWriter() != null ) {
-                              _resManager.getLogWriter().println( "XAConnection <" + 
-                                                                  toString() +
-                                                                  ">: cannot set isolation level.");
-                          }
+                    // NOTE: Some JDBC drivers do not cache isolation levels so the method #getTransactionIsolation
+                    // is expensive and can use up resources. The Cloudspace 3.5, Sybase 5.2 drivers suffers from this.
+                    
+                    //if ( _resManager.getIsolationLevel() != txConn.conn.getTransactionIsolation() )
+                    if ( !_resManager.getIgnoreIsolationLevel() ) {
+                        txConn.state.setTransactionIsolation( _resManager.getIsolationLevel() );
                     }
-                    if ( _txConn.conn instanceof TwoPhaseConnection )
-                        ( (TwoPhaseConnection) _txConn.conn ).enableSQLTransactions( false );
-                } catch ( SQLException except ) {
+                } catch ( SQLException e ) {
+                    // The underlying driver might not support this
+                    // isolation level that we use by default.
                     
-                    // If error occured at this point, we can only
-                    // report it as resource manager error.
-                    if ( _resManager.getLogWriter() != null )
-                        _resManager.getLogWriter().println( "XAConnection: failed to begin a transaction: " + except );
-                    throw new XAException( XAException.XAER_RMERR );
+                    // See NOTE above why the code below is commented out
+                    // We'll hope for the best in this case :-).
+                    /*
+                      // not wrapping the call to conn getTransactionIsolation in a
+                      // try-catch block because if we can't determine the isolation level
+                      // then it can be TRANSACTION_NONE and what's the point of continuing.
+                      int isolationLevel = txConn.conn.getTransactionIsolation();
+                      // if transactions are not supported abort
+                      if ( isolationLevel == Connection.TRANSACTION_NONE ) {
+                      if ( _resManager.getLogWriter() != null )
+                      _resManager.getLogWriter().println( "XAConnection <" + 
+                      toString() + 
+                      ">: does not support transactions." );
+                      throw new XAException( XAException.XAER_RMERR );    
+                      }
+                      else*/ if ( _resManager.getLogWriter() != null ) {
+                          _resManager.getLogWriter().println( "XAConnection <" + 
+                                                              toString() +
+                                                              ">: cannot set isolation level.");
+                      }
                 }
-            } else if ( flags == TMJOIN || flags == TMRESUME ) {
-                // We are joining another transaction with an
-                // existing TxConnection.
-                _txConn = _resManager.getTxConnection( xid );
-                if ( _txConn == null )
+                if ( txConn.conn instanceof TwoPhaseConnection )
+                    ( (TwoPhaseConnection) txConn.conn ).enableSQLTransactions( false );
+            } catch ( SQLException except ) {
+                try {
+                    txConn.conn.close();
+                } catch ( SQLException e ) { }
+                // If error occured at this point, we can only
+                // report it as resource manager error.
+                if ( _resManager.getLogWriter() != null )
+                    _resManager.getLogWriter().println( "XAConnection: failed to begin a transaction: " + except );
+                throw new XAException( XAException.XAER_RMERR );
+            }
+
+            // Register the connection with the resource manager so it
+            // can be shared. Another connection might have started
+            // the same transaction since we last checked.
+            if ( _resManager.addTxConnection( xid, txConn ) != null ) {
+                if ( txConn.conn instanceof TwoPhaseConnection )
+                    ( (TwoPhaseConnection) txConn.conn ).enableSQLTransactions( true );
+                releaseConnection( txConn.state );
+                throw new XAException( XAException.XAER_DUPID );
+            }
+            _txConn = txConn;
+        } else if ( flags == TMJOIN || flags == TMRESUME ) {
+            // We are joining another transaction with an
+            // existing TxConnection. The connection is shared
+            // without synchronizing on the resource manager.
+            txConn = _resManager.getTxConnection( xid );
+            if ( txConn == null )
+                throw new XAException( XAException.XAER_INVAL );
+            
+            synchronized ( txConn ) {
+                // The transaction might have been forgotten since
+                // we looked it up.
+                if ( txConn.xid == null )
                     throw new XAException( XAException.XAER_INVAL );
-                
                 // Update the number of XAConnections sharing this
                 // transaction connection.
-                if ( flags == TMRESUME && _txConn.count == 0 ) 
+                if ( flags == TMRESUME && txConn.count == 0 ) 
                     throw new XAException( XAException.XAER_PROTO );
                 if ( flags == TMJOIN )
-                    ++_txConn.count;
-                
-                // If we already have an underlying connection (as we can
-                // expect to), we should release that underlying connection
-                // and make it available to the resource manager.
-                if ( _underlying != null ) {
-                    // this should not happen
-                    releaseConnection( _underlying );
-                    _underlying = null;
-                }
-            } else
-                // No other flags supported in start().
-                throw new XAException( XAException.XAER_INVAL );
-        }
+                    ++txConn.count;
+            }
+            _txConn = txConn;
+            
+            // If we already have an underlying connection (as we can
+            // expect to), we should release that underlying connection
+            // and make it available to the resource manager.
+            if ( _underlying != null ) {
+                // this should not happen
+                releaseConnection( _underlying );
+                _underlying = null;
+            }
+        } else
+            // No other flags supported in start().
+            throw new XAException( XAException.XAER_INVAL );
     }
 
 
@@ -572,7 +630,9 @@ public final class XAConnectionImpl
         if ( _txConn == null )
             throw new XAException( XAException.XAER_PROTO );
         
-        synchronized ( _resManager ) {
+        // Other connections sharing the transaction, and the timeout
+        // daemon, synchronize on the same TxConnection.
+        synchronized ( _txConn ) {
             if ( flags == TMSUCCESS || flags == TMFAIL) {
                 // We are now leaving a transaction we started or
                 // joined before. We can expect any of prepare/
@@ -596,7 +656,7 @@ public final class XAConnectionImpl
                         if ( _txConn.conn instanceof TwoPhaseConnection )
                             ( (TwoPhaseConnection) _txConn.conn ).enableSQLTransactions( true );
                         _txConn.conn.rollback();
-                        releaseConnection( _txConn.conn );
+                        releaseConnection( _txConn.state );
                     } catch ( SQLException except ) {
                         // There is a problem with the underlying
                         // connection, but it was not added to the poll.
@@ -620,11 +680,11 @@ public final class XAConnectionImpl
     /**
      * Release the specified connection to the resource manager
      *
-     * @param connection the connection to release
+     * @param state the connection to release
      */
-    private void releaseConnection( Connection connection )
+    private void releaseConnection( ConnectionState state )
     {
-        _resManager.releaseConnection( connection, _userName, _password );
+        _resManager.releaseConnection( state, _account );
     }
 
     public synchronized void forget( Xid xid )
@@ -635,19 +695,21 @@ public final class XAConnectionImpl
         // General checks.
         if ( xid == null )
             throw new XAException( XAException.XAER_INVAL );
-        synchronized ( _resManager ) {
-            // We have to forget about the transaction, meaning the
-            // transaction no longer exists for this or any other
-            // connection. We might be called multiple times.
-            txConn = _resManager.setTxConnection( xid, null );
-            if ( txConn != null ) {
+        // We have to forget about the transaction, meaning the
+        // transaction no longer exists for this or any other
+        // connection. We might be called multiple times.
+        txConn = _resManager.setTxConnection( xid, null );
+        if ( txConn != null ) {
+            synchronized ( txConn ) {
                 if ( txConn.conn != null ) {
-                    releaseConnection( txConn.conn );
+                    releaseConnection( txConn.state );
                     txConn.conn = null;
                 }
                 txConn.xid = null;
             }
         }
+        // The transaction is no longer in doubt.
+        _resManager.forgotten( xid );
     }
 
 
@@ -660,12 +722,13 @@ public final class XAConnectionImpl
         if ( xid == null )
             throw new XAException( XAException.XAER_INVAL );
 
-        synchronized ( _resManager ) {
-            // Technically, prepare may be called for any connection,
-            // not just this one.
-            txConn = _resManager.getTxConnection( xid );
-            if ( txConn == null )
-                throw new XAException( XAException.XAER_NOTA );
+        // Technically, prepare may be called for any connection,
+        // not just this one.
+        txConn = _resManager.getTxConnection( xid );
+        if ( txConn == null )
+            throw new XAException( XAException.XAER_NOTA );
+
+        synchronized ( txConn ) {
             
             // This is an error and should never happen. All other
             // parties in the transaction should have left it before.
@@ -689,9 +752,10 @@ public final class XAConnectionImpl
                     // whether it's commiting or read-only. If a rollback
                     // exception happens, we report it.
                     try {
-                        if ( ( (TwoPhaseConnection) txConn.conn ).prepare() )
+                        if ( ( (TwoPhaseConnection) txConn.conn ).prepare() ) {
+                            logPrepared( xid );
                             return XA_OK;
-                        else {
+                        } else {
                             txConn.readOnly = true;
                             return XA_RDONLY;
                         }
@@ -701,10 +765,11 @@ public final class XAConnectionImpl
                 } else {
                     // For standard connection we cannot prepare, we can
                     // only guess if it's read only.
-                    if ( txConn.conn.isReadOnly() ) {
+                    if ( txConn.state.isReadOnly() ) {
                         txConn.readOnly = true;
                         return XA_RDONLY;
                     }
+                    logPrepared( xid );
                     return XA_OK;
                 }
             } catch ( SQLException except ) {
@@ -722,12 +787,55 @@ public final class XAConnectionImpl
     }
 
 
-    public Xid[] recover( int flags )
+    /**
+     * Records the prepared transaction in the resource manager's
+     * recovery log, if one is used.
+     *
+     * @param xid The transaction Xid
+     * @throws XAException The transaction could not be recorded
+     */
+    private void logPrepared( Xid xid )
+        throws XAException
+    {
+        try {
+            _resManager.prepared( xid );
+        } catch ( IOException except ) {
+            if ( _resManager.getLogWriter() != null )
+                _resManager.getLogWriter().println( "XAConnection: failed to record a prepared transaction: " + except );
+            throw new XAException( XAException.XAER_RMERR );
+        }
+    }
+
+
+    public synchronized Xid[] recover( int flags )
         throws XAException
     {
-        synchronized ( _resManager ) {
+        Xid[] page;
+        int   count;
+
+        if ( ( flags & ~( TMSTARTRSCAN | TMENDRSCAN ) ) != 0 )
+            throw new XAException( XAException.XAER_INVAL );
+        // A scan returns the transactions in doubt when it started,
+        // at most RECOVER_PAGE at a time, until it returns none.
+        // A call that starts and ends the scan cannot continue it,
+        // and returns them all.
+        if ( ( flags & ( TMSTARTRSCAN | TMENDRSCAN ) ) == ( TMSTARTRSCAN | TMENDRSCAN ) ) {
+            _recoverScan = null;
             return _resManager.getTxRecover();
         }
+        if ( ( flags & TMSTARTRSCAN ) != 0 ) {
+            _recoverScan = _resManager.getTxRecover();
+            _recoverNext = 0;
+        } else if ( _recoverScan == null )
+            throw new XAException( XAException.XAER_INVAL );
+
+        count = Math.min( RECOVER_PAGE, _recoverScan.length - _recoverNext );
+        page = new Xid[ count ];
+        System.arraycopy( _recoverScan, _recoverNext, page, 0, count );
+        _recoverNext += count;
+        if ( ( flags & TMENDRSCAN ) != 0 )
+            _recoverScan = null;
+        return page;
     }
 
 
@@ -740,12 +848,18 @@ public final class XAConnectionImpl
         if ( xid == null )
             throw new XAException( XAException.XAER_INVAL );
         
-        synchronized ( _resManager ) {
-            // Technically, commit may be called for any connection,
-            // not just this one.
-            txConn = _resManager.getTxConnection( xid );
-            if ( txConn == null )
-                throw new XAException( XAException.XAER_NOTA );
+        // Technically, commit may be called for any connection,
+        // not just this one.
+        txConn = _resManager.getTxConnection( xid );
+        if ( txConn == null ) {
+            // A transaction recovered from the log lost its underlying
+            // connection, and with it all its work.
+            if ( _resManager.isRecovered( xid ) )
+                throw new XAException( XAException.XA_HEURRB );
+            throw new XAException( XAException.XAER_NOTA );
+        }
+
+        synchronized ( txConn ) {
             
             // If the transaction failed, we have to force
             // a rollback.
@@ -796,12 +910,20 @@ public final class XAConnectionImpl
         if ( xid == null )
             throw new XAException( XAException.XAER_INVAL );
 
-        synchronized ( _resManager ) {
-            // Technically, rollback may be called for any connection,
-            // not just this one.
-            txConn = _resManager.getTxConnection( xid );
-            if ( txConn == null )
-                throw new XAException( XAException.XAER_NOTA );
+        // Technically, rollback may be called for any connection,
+        // not just this one.
+        txConn = _resManager.getTxConnection( xid );
+        if ( txConn == null ) {
+            // A transaction recovered from the log has already rolled
+            // back, when it lost its underlying connection.
+            if ( _resManager.isRecovered( xid ) ) {
+                _resManager.forgotten( xid );
+                return;
+            }
+            throw new XAException( XAException.XAER_NOTA );
+        }
+
+        synchronized ( txConn ) {
             // If connection has been prepared and is read-only,
             // nothing to do at this stage. If connection has
             // been terminated any other way, nothing to do
@@ -891,6 +1013,24 @@ public final class XAConnectionImpl
     Connection getUnderlying( int clientId )
         throws SQLException
     {
+        return getUnderlyingState( clientId ).conn;
+    }
+
+
+    /**
+     * Called to obtain the underlying connection along with its known
+     * state. {@link ClientConnection} changes the auto-commit,
+     * isolation, read-only and catalog properties through the returned
+     * object, so they are only sent to the driver when they change.
+     *
+     * @param clientId The {@link ClientConnection} identifier
+     * @see #getUnderlying
+     */
+    ConnectionState getUnderlyingState( int clientId )
+        throws SQLException
+    {
+        TxConnection txConn;
+
         // If we were notified of the client closing, or have been
         // requested to have a new client connection since then,
         // the client id will not match to that of the caller.
@@ -898,15 +1038,16 @@ public final class XAConnectionImpl
         if ( clientId != _clientId )
             throw new SQLException( "This application connection has been closed" );
         
-        if ( _txConn != null ) {
-            if ( _txConn.timedOut )
+        txConn = _txConn;
+        if ( txConn != null ) {
+            if ( txConn.timedOut )
                 throw new SQLException( "The transaction has timed out and has been rolledback and closed" );
-            if ( _txConn.conn == null )
+            if ( txConn.conn == null )
                 throw new SQLException( "The transaction has been terminated and this connection has been closed" );
-            return _txConn.conn;
+            return txConn.state;
         }
         if ( _underlying == null ) {
-            _underlying = _resManager.newConnection( _userName, _password );
+            _underlying = _resManager.newConnection( _account, _userName, _password );
             _underlying.setAutoCommit( true );
         }
         return _underlying;
@@ -48,13 +48,15 @@
 package tyrex.resource.jdbc.xa;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Vector;
-import java.util.Enumeration;
+import tyrex.tm.xid.XidUtils;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -64,6 +66,7 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.XAConnection;
 import javax.sql.XADataSource;
 import javax.transaction.xa.Xid;
+import tyrex.resource.StatementMetrics;
 import tyrex.services.Clock;
 import tyrex.util.BackgroundThread;
 import tyrex.util.logging.Logger;
@@ -87,18 +90,30 @@ public abstract class XADataSourceImpl
 
     /**
      * Maps underlying JDBC connections into global transaction Xids.
+     * The table is segmented, so XA connections working on different
+     * transactions rarely contend for the same lock.
      */
-    private transient Hashtable _txConnections = new Hashtable();
+    private transient TxConnectionTable _txConnections = new TxConnectionTable();
 
 
     /**
-     * This is a list of free underlying JDBC connections. 
-     * XA connections are used in the same transaction, the second
-     * one will make its underlying JDBC connection available to
-     * the pool. This is not a real connection pool, only a marginal
-     * efficiency solution for dealing with shared transactions.
+     * These are the free underlying JDBC connections, indexed by
+     * account. Each value is a stack ({@link ArrayList}) of the
+     * connections opened for that account, the most recently
+     * released on top. If two XA connections are used in the same
+     * transaction, the second one will make its underlying JDBC
+     * connection available to the pool. This is not a real connection
+     * pool, only a marginal efficiency solution for dealing with
+     * shared transactions.
      */
-    private transient ArrayList     _pool = new ArrayList();
+    private transient HashMap       _pool = new HashMap();
+
+
+    /**
+     * The number of connections held in all the stacks of
+     * {@link #_pool}.
+     */
+    private transient int           _poolSize;
 
 
     /**
@@ -121,6 +136,42 @@ public abstract class XADataSourceImpl
     private float               _pruneFactor = DEFAULT_PRUNE_FACTOR;
 
 
+    /**
+     * The name of the recovery log file, null if prepared
+     * transactions are not recorded.
+     */
+    private String              _recoveryLog;
+
+
+    /**
+     * The recovery log, null if prepared transactions are not
+     * recorded, or the log has not been opened since this data
+     * source was deserialized.
+     */
+    private transient volatile PreparedLog _preparedLog;
+
+
+    /**
+     * The maximum number of prepared statements cached for each
+     * underlying connection, zero if statements are not cached.
+     */
+    private int                 _statementCacheSize;
+
+
+    /**
+     * The metrics of the statements executed through connections
+     * of this data source, null if statement metrics are not recorded.
+     */
+    private transient volatile StatementMetrics _statementMetrics;
+
+
+    /**
+     * The default properties applied to statements, null to use the
+     * driver's defaults.
+     */
+    private volatile StatementDefaults _statementDefaults;
+
+
     /**
      * The default prune factor for reducing the size of pooled
      * connections - 10%.
@@ -222,7 +273,7 @@ public abstract class XADataSourceImpl
     {
         // Construct a new pooled connection and an underlying JDBC
         // connection to go along with it.
-        return new XAConnectionImpl( this, newConnection( user, password ),
+        return new XAConnectionImpl( this, newConnection( getAccount( user, password ), user, password ),
                                      user, password );
     }
 
@@ -279,7 +330,7 @@ public abstract class XADataSourceImpl
      */
     TxConnection getTxConnection( Xid xid )
     {
-        return (TxConnection) _txConnections.get( xid );
+        return _txConnections.get( xid );
     }
 
 
@@ -293,9 +344,24 @@ public abstract class XADataSourceImpl
     TxConnection setTxConnection( Xid xid, TxConnection txConn )
     {
         if ( txConn == null )
-            return (TxConnection) _txConnections.remove( xid );
+            return _txConnections.remove( xid );
         else
-            return (TxConnection) _txConnections.put( xid, txConn );
+            return _txConnections.put( xid, txConn );
+    }
+
+
+    /**
+     * Associates the global transaction with an underlying connection,
+     * unless it is already associated with another connection.
+     *
+     * @param xid The transaction Xid
+     * @param txConn The connection to associate
+     * @return The connection already associated with that transaction,
+     *   or null if the transaction is now associated with <tt>txConn</tt>
+     */
+    TxConnection addTxConnection( Xid xid, TxConnection txConn )
+    {
+        return _txConnections.putIfAbsent( xid, txConn );
     }
 
 
@@ -305,18 +371,24 @@ public abstract class XADataSourceImpl
      * it will no longer use it's own connection and make it available
      * to newly created connections.
      *
-     * @param conn An open connection that is no longer in use
-     * @param userName the user name for the connection
-     * @param password the password for the connection
+     * @param state An open connection that is no longer in use
+     * @param account The account for which the connection was opened,
+     *   see {@link #getAccount}
      */
-    void releaseConnection( Connection conn, String userName, String password )
+    void releaseConnection( ConnectionState state, String account )
     {
-        if (null != conn) {
-            // make sure the connection has no work
-            synchronized ( _pool ) {
-                _pool.add( new ConnectionEntry( conn,
-                                                getAccount( userName, password ) ) );
+        ArrayList stack;
+
+        if ( state == null )
+            return;
+        synchronized ( _pool ) {
+            stack = (ArrayList) _pool.get( account );
+            if ( stack == null ) {
+                stack = new ArrayList();
+                _pool.put( account, stack );
             }
+            stack.add( state );
+            ++_poolSize;
         }
     }
 
@@ -327,13 +399,14 @@ public abstract class XADataSourceImpl
      * Given the user and password used to open the account,
      * we get a unique account identifier that combines the two.
      * The returned account can be encrypted for added security.
+     * XA connections obtain their account once, when created.
      * 
      * @param user The user name for creating the connection
      * @param password The password for creating the connection
      * @return A unique account name matching the user name
      *   and password, null if <tt>user</tt> is null
      */
-    private String getAccount( String user, String password )
+    String getAccount( String user, String password )
     {
         if ( user == null )
             return "";
@@ -352,61 +425,135 @@ public abstract class XADataSourceImpl
      * that lost it's underlying connection when joining a
      * transaction and is now asked to produce a new connection.
      *
+     * @param account The account, see {@link #getAccount}
      * @param userName the userName
      * @param password the password
-     * @return An open connection ready for use
+     * @return An open connection ready for use, along with its
+     *   known state
      * @throws SQLException An error occured trying to open
      *   a connection
      */
-    Connection newConnection( String userName, String password )
+    ConnectionState newConnection( String account, String userName, String password )
         throws SQLException
     {
-        Connection connection;
+        ConnectionState state;
+        ArrayList       stack;
+
+        state = null;
         synchronized ( _pool ) {
-            // Check in the pool first.
-            if ( ! _pool.isEmpty() ) {
-                String account = getAccount( userName, password );
-                ConnectionEntry entry;
-                
-                for ( Iterator i = _pool.iterator(); i.hasNext(); ) {
-                    entry = ( ConnectionEntry )i.next();
-                    if ( entry._account.equals( account )) {
-                        i.remove();
-						if ( !_ignoreIsolationLevel ) {
-							entry._connection.setTransactionIsolation( _isolationLevel );
-						}
-                        return entry._connection;
-                    }
-                }
+            // Check in the pool first, reusing the connection
+            // most recently released for this account.
+            stack = (ArrayList) _pool.get( account );
+            if ( stack != null && ! stack.isEmpty() ) {
+                state = (ConnectionState) stack.remove( stack.size() - 1 );
+                --_poolSize;
             }
         }
-        connection = getConnection( userName, password );
+        if ( state == null )
+            state = new ConnectionState( getConnection( userName, password ), _statementCacheSize );
+        // The driver is only called if the connection is not
+        // already at this isolation level.
 		if ( !_ignoreIsolationLevel ) {
-			connection.setTransactionIsolation( _isolationLevel );
+			state.setTransactionIsolation( _isolationLevel );
 		}
-        return connection;
+        return state;
     }
     
     
     /**
-     * XXX Not fully implemented yet and no code to really
-     *   test it.
+     * Returns all the transactions that have been prepared but not
+     * yet committed or rolled back. These are the transactions
+     * currently prepared, and if a recovery log is used, the
+     * transactions recorded as prepared before a restart.
+     *
+     * @return The transactions in doubt
      */
     Xid[] getTxRecover()
     {
-        Vector     list;
-        Enumeration  enum;
-        TxConnection txConn;
+        ArrayList      list;
+        HashSet        identifiers;
+        TxConnection[] txConns;
+        TxConnection   txConn;
+        PreparedLog    log;
+        Xid[]          logged;
         
-        list = new Vector();
-        enum = _txConnections.elements();
-        while ( enum.hasMoreElements() ) {
-            txConn = (TxConnection) enum.nextElement();
-            if ( txConn.conn != null && txConn.prepared )
+        list = new ArrayList();
+        identifiers = new HashSet();
+        txConns = _txConnections.toArray();
+        for ( int i = 0 ; i < txConns.length ; ++i ) {
+            txConn = txConns[ i ];
+            if ( txConn.conn != null && txConn.prepared && txConn.xid != null ) {
                 list.add( txConn.xid );
+                identifiers.add( XidUtils.toString( txConn.xid ) );
+            }
+        }
+        log = getPreparedLog();
+        if ( log != null ) {
+            logged = log.getPrepared();
+            for ( int i = 0 ; i < logged.length ; ++i )
+                if ( identifiers.add( XidUtils.toString( logged[ i ] ) ) )
+                    list.add( logged[ i ] );
         }
         return (Xid[]) list.toArray( new Xid[ list.size() ] );
     }
+
+
+    /**
+     * Records a prepared transaction in the recovery log, if one is
+     * used. Does not return until the record is on disk.
+     *
+     * @param xid The transaction Xid
+     * @throws IOException An error occured writing the recovery log
+     */
+    void prepared( Xid xid )
+        throws IOException
+    {
+        PreparedLog log;
+
+        log = openPreparedLog();
+        if ( log != null )
+            log.prepared( xid );
+    }
+
+
+    /**
+     * Records in the recovery log, if one is used, that a prepared
+     * transaction has been completed.
+     *
+     * @param xid The transaction Xid
+     */
+    void forgotten( Xid xid )
+    {
+        PreparedLog log;
+
+        log = getPreparedLog();
+        if ( log != null ) {
+            try {
+                log.forgotten( xid );
+            } catch ( IOException except ) {
+                // The transaction will be reported again on recovery.
+                Logger.resource.error( "DataSource " + toString() +
+                                       ": Error writing recovery log " + log, except );
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if the transaction is known only from the recovery
+     * log. The transaction was prepared before a restart, and its
+     * underlying connection has since been lost.
+     *
+     * @param xid The transaction Xid
+     * @return True if the transaction is only known from the log
+     */
+    boolean isRecovered( Xid xid )
+    {
+        PreparedLog log;
+
+        log = getPreparedLog();
+        return ( log != null && _txConnections.get( xid ) == null && log.contains( xid ) );
+    }
     
 
 	/**
@@ -526,16 +673,194 @@ public abstract class XADataSourceImpl
         
         _pruneFactor = pruneFactor;
     }
+
+
+    /**
+     * Returns the maximum number of prepared statements cached for
+     * each underlying connection.
+     *
+     * @return The statement cache size, zero if statements are
+     *   not cached
+     */
+    public final int getStatementCacheSize()
+    {
+        return _statementCacheSize;
+    }
+
+
+    /**
+     * Sets the maximum number of prepared statements cached for each
+     * underlying connection. Prepared and callable statements closed
+     * by the application are kept open and handed out again when the
+     * application prepares the same statement on the same underlying
+     * connection. Applies to connections opened after this call.
+     *
+     * @param size The statement cache size, zero to not cache
+     *   statements
+     */
+    public final void setStatementCacheSize( int size )
+    {
+        if ( size < 0 )
+            throw new IllegalArgumentException( "The argument 'size' is negative." );
+        _statementCacheSize = size;
+    }
+
+
+    /**
+     * Returns the metrics of the statements executed through
+     * connections of this data source.
+     *
+     * @return The statement metrics, null if statement metrics
+     *   are not recorded
+     */
+    public final StatementMetrics getStatementMetrics()
+    {
+        return _statementMetrics;
+    }
+
+
+    /**
+     * Sets the metrics into which the statements executed through
+     * connections of this data source are recorded. The connection
+     * pool sets this when statement metrics are enabled for the
+     * data source.
+     *
+     * @param metrics The statement metrics, null to not record
+     *   statement metrics
+     */
+    public final void setStatementMetrics( StatementMetrics metrics )
+    {
+        _statementMetrics = metrics;
+    }
+
+
+    /**
+     * Returns the default properties applied to statements created
+     * through connections of this data source.
+     *
+     * @return The statement defaults, null if statements are created
+     *   with the driver's defaults
+     */
+    public final StatementDefaults getStatementDefaults()
+    {
+        return _statementDefaults;
+    }
+
+
+    /**
+     * Sets the default properties applied to statements created
+     * through connections of this data source, such as the fetch size
+     * and query timeout.
+     *
+     * @param defaults The statement defaults, null to create statements
+     *   with the driver's defaults
+     */
+    public final void setStatementDefaults( StatementDefaults defaults )
+    {
+        _statementDefaults = defaults;
+    }
+
+
+    /**
+     * Returns the name of the recovery log file.
+     *
+     * @return The name of the recovery log file, null if
+     *   prepared transactions are not recorded
+     */
+    public final String getRecoveryLog()
+    {
+        return _recoveryLog;
+    }
+
+
+    /**
+     * Sets the name of the recovery log file. Prepared transactions
+     * are recorded in this file, so they can be reported as in-doubt
+     * during recovery after a restart. The file is created if it does
+     * not exist. Use null to not record prepared transactions.
+     * Data sources that name the same file share one open log.
+     * <p>
+     * An underlying connection that is lost, e.g. when the server
+     * stops, rolls back its work. A transaction recovered from the
+     * log that is asked to commit will report a heuristic rollback.
+     *
+     * @param fileName The name of the recovery log file, or null
+     * @throws IllegalArgumentException The recovery log cannot
+     *   be opened
+     */
+    public final synchronized void setRecoveryLog( String fileName )
+    {
+        if ( _preparedLog != null ) {
+            _preparedLog.close();
+            _preparedLog = null;
+        }
+        _recoveryLog = fileName;
+        if ( fileName != null ) {
+            try {
+                _preparedLog = PreparedLog.open( new File( fileName ) );
+            } catch ( IOException except ) {
+                Logger.resource.error( "DataSource " + toString() +
+                                       ": Error opening recovery log " + fileName, except );
+                throw new IllegalArgumentException( "Cannot open recovery log " + fileName + ": " + except );
+            }
+        }
+    }
+
+
+    /**
+     * Returns the recovery log, opening it if this data source has
+     * been deserialized since it was set. Returns null if prepared
+     * transactions are not recorded, or if the log cannot be opened,
+     * in which case the error is logged.
+     *
+     * @return The recovery log, or null
+     */
+    private PreparedLog getPreparedLog()
+    {
+        try {
+            return openPreparedLog();
+        } catch ( IOException except ) {
+            Logger.resource.error( "DataSource " + toString() +
+                                   ": Error opening recovery log " + _recoveryLog, except );
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the recovery log, opening it if this data source has
+     * been deserialized since it was set.
+     *
+     * @return The recovery log, null if prepared transactions
+     *   are not recorded
+     * @throws IOException The recovery log cannot be opened
+     */
+    private PreparedLog openPreparedLog()
+        throws IOException
+    {
+        PreparedLog log;
+
+        log = _preparedLog;
+        if ( log != null || _recoveryLog == null )
+            return log;
+        synchronized ( this ) {
+            if ( _preparedLog == null && _recoveryLog != null )
+                _preparedLog = PreparedLog.open( new File( _recoveryLog ) );
+            return _preparedLog;
+        }
+    }
     
     
     public void run()
     {
-        Enumeration  enum;
-        int          reduce;
-        long         timeout;
-        TxConnection txConn;
-        Iterator     iterator;
-        int          size;
+        int            reduce;
+        long           timeout;
+        TxConnection[] txConns;
+        TxConnection   txConn;
+        Iterator       iterator;
+        ArrayList      stack;
+        ArrayList      closing;
+        int            size;
         
         //while ( true ) {
         
@@ -548,59 +873,69 @@ public abstract class XADataSourceImpl
           }
         */
         if (_pruneFactor > 0) {
+            closing = null;
             synchronized ( _pool ) {
-                try {
-                    // Check to see if there are any pooled connections
-                    // we can release. We release some of the pooled
-                    // connections each time, so in a heavy loaded
-                    // environment we don't get to release that many, but
-                    // as load goes down we do. These are not actually
-                    // pooled connections, but connections that happen to
-                    // get in and out of a transaction, not that many.
-                    size = _pool.size();
-                    reduce = (1 == _pruneFactor ? size : size - (int)( size * _pruneFactor )) - 1;
-                    if ( reduce >= 0 && size > reduce ) {
-                        if ( getLogWriter() != null )
-                            getLogWriter().println( "DataSource " + toString() +
-                                                    ": Reducing internal connection pool size from " +
-                                                    size + " to " + reduce );
-                        
-                        iterator = _pool.iterator();
-                        
-                        do {
-                            try {
-                                ( (ConnectionEntry ) iterator.next( ) )._connection.close();
-                            } catch ( SQLException except ) { }
+                // Check to see if there are any pooled connections
+                // we can release. We release some of the pooled
+                // connections each time, so in a heavy loaded
+                // environment we don't get to release that many, but
+                // as load goes down we do. These are not actually
+                // pooled connections, but connections that happen to
+                // get in and out of a transaction, not that many.
+                size = _poolSize;
+                reduce = (1 == _pruneFactor ? size : size - (int)( size * _pruneFactor )) - 1;
+                if ( reduce >= 0 && size > reduce ) {
+                    if ( getLogWriter() != null )
+                        getLogWriter().println( "DataSource " + toString() +
+                                                ": Reducing internal connection pool size from " +
+                                                size + " to " + reduce );
+                    // Take the least recently released connections
+                    // from the bottom of each stack. They are closed
+                    // after we let go of the pool.
+                    closing = new ArrayList( size - reduce );
+                    iterator = _pool.values().iterator();
+                    while ( size > reduce && iterator.hasNext() ) {
+                        stack = (ArrayList) iterator.next();
+                        while ( size > reduce && ! stack.isEmpty() ) {
+                            closing.add( stack.remove( 0 ) );
+                            --size;
+                        }
+                        if ( stack.isEmpty() )
                             iterator.remove();
-                        } while ( --size > reduce  );
                     }
-                } catch ( Exception except ) { }
+                    _poolSize = size;
+                }
+            }
+            if ( closing != null ) {
+                for ( int i = 0 ; i < closing.size() ; ++i ) {
+                    try {
+                        ( (ConnectionState) closing.get( i ) ).conn.close();
+                    } catch ( Exception except ) { }
+                }
             }
         }
         
         // Look for all connections inside a transaction that
         // should have timed out by now.
         timeout = Clock.clock();
-        enum = _txConnections.elements();
-        while ( enum.hasMoreElements() ) {
-            txConn = (TxConnection) enum.nextElement();
+        txConns = _txConnections.toArray();
+        for ( int i = 0 ; i < txConns.length ; ++i ) {
+            txConn = txConns[ i ];
             // If the transaction timed out, we roll it back and
             // invalidate it, but do not remove it from the transaction
             // list yet. We wait for the next iteration, minimizing the
             // chance of a NOTA exception.
             if ( txConn.conn == null ) {
-                _txConnections.remove( txConn.xid );
-                // Chose not to use an iterator so we must
-                // re-enumerate the list after removing
-                // an element from it.
-                enum = _txConnections.elements();
+                if ( txConn.xid != null )
+                    _txConnections.remove( txConn.xid, txConn );
             } else if ( txConn.timeout < timeout ) {
                 
                 try {
                     Connection underlying;
                     
-                    //TODO FIX THIS
-                    synchronized ( this ) {
+                    // Lock the transaction against XA connections
+                    // that are working on it.
+                    synchronized ( txConn ) {
                         if ( txConn.conn == null )
                             continue;
                         if ( getLogWriter() != null )
@@ -620,7 +955,7 @@ public abstract class XADataSourceImpl
                         // underlying connection to the pool.
                         try {
                             underlying.rollback();
-                            releaseConnection( underlying, txConn.userName, txConn.password );
+                            releaseConnection( txConn.state, txConn.account );
                         } catch ( SQLException except ) {
                             if ( getLogWriter() != null )
                                 getLogWriter().println( "DataSource " + toString() +
@@ -640,18 +975,19 @@ public abstract class XADataSourceImpl
     
     public void debug( PrintWriter writer )
     {
-        Enumeration enum;
-        Iterator  iterator;
-        TxConnection txConn;
-        StringBuffer buffer;
+        TxConnection[] txConns;
+        Iterator       iterator;
+        ArrayList      stack;
+        TxConnection   txConn;
+        StringBuffer   buffer;
        
         writer.println( "Debug info for XADataSource:" );
-        enum = _txConnections.elements();
-        if ( ! enum.hasMoreElements() )
+        txConns = _txConnections.toArray();
+        if ( txConns.length == 0 )
             writer.println( "Empty" );
-        while ( enum.hasMoreElements() ) {
+        for ( int i = 0 ; i < txConns.length ; ++i ) {
             buffer = new StringBuffer();
-            txConn = (TxConnection) enum.nextElement();
+            txConn = txConns[ i ];
             buffer.append( "TxConnection " );
             if ( txConn.xid != null )
                 buffer.append( txConn.xid );
@@ -666,61 +1002,14 @@ public abstract class XADataSourceImpl
                 buffer.append( " read-only" );
             writer.println( buffer.toString() );
         }
-        iterator = _pool.iterator();
-        while ( iterator.hasNext() )
-            writer.println( "Pooled underlying: " + iterator.next().toString() );
-    }
-    
-    
-    /**
-     * Object to hold a connection and its user name
-     * and password. This object is immutable.
-     */
-    private static class ConnectionEntry
-    {
-
-
-        /**
-         * The account
-         */
-        private final String _account;
-        
-        
-        /**
-         * The connection
-         */
-        private final Connection _connection;
-        
-        
-        /**
-         * Create the ConnectionEntry with the specified
-         * arguments
-         *
-         * @param connection the connection
-         * @param userName the userName
-         * @param password the password
-         */
-        private ConnectionEntry( Connection connection, 
-                                 String account )
-        {
-            _connection = connection;
-            _account = account;
-        }
-        
-        
-        /**
-         * Return the printed representation
-         * of the connection entry.
-         *
-         * @return the printed representation
-         * of the connection entry.
-         */
-        public String toString()
-        {
-            return _connection.toString();
+        synchronized ( _pool ) {
+            iterator = _pool.values().iterator();
+            while ( iterator.hasNext() ) {
+                stack = (ArrayList) iterator.next();
+                for ( int i = 0 ; i < stack.size() ; ++i )
+                    writer.println( "Pooled underlying: " + stack.get( i ).toString() );
+            }
         }
-
-
     }
 
 
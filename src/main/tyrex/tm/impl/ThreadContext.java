@@ -97,6 +97,15 @@ public class ThreadContext
     private static ThreadEntry[]        _table;
 
 
+    /**
+     * Holds the bindings of the thread context associated with each
+     * thread. Set when a thread context is associated with or
+     * dissociated from the current thread, so the JNDI ENC can be
+     * found without looking up the thread in the table.
+     */
+    private static final ThreadLocal    _bindingSlot = new ThreadLocal();
+
+
     /**
      * Determines the size of the hash table. This must be a prime
      * value and within range of the average number of threads we
@@ -208,6 +217,7 @@ public class ThreadContext
 
         if ( context == null )
             throw new IllegalArgumentException( "Argument context is null" );
+        _bindingSlot.set( context._bindings );
         synchronized ( _table ) {
             thread = Thread.currentThread();
             index = ( thread.hashCode() & 0x7FFFFFFF ) % _table.length;
@@ -262,6 +272,7 @@ public class ThreadContext
                     previous._nextEntry = entry._nextEntry;
                     _table[ index ] = previous;
                 }
+                setBindingSlot( previous );
                 return entry._context;
             }
             next = entry._nextEntry;
@@ -274,6 +285,7 @@ public class ThreadContext
                         previous._nextEntry = next._nextEntry;
                         entry._nextEntry = previous;
                     }
+                    setBindingSlot( previous );
                     return next._context;
                 }
                 entry = next;
@@ -293,6 +305,10 @@ public class ThreadContext
         if ( thread == null )
             throw new IllegalArgumentException( "Argument thread is null" );
 
+        // The binding slot of another thread cannot be cleared, but
+        // that thread is no longer used.
+        if ( thread == Thread.currentThread() )
+            _bindingSlot.set( null );
         synchronized ( _table ) {
             index = ( thread.hashCode() & 0x7FFFFFFF ) % _table.length;
             entry = _table[ index ];
@@ -315,6 +331,43 @@ public class ThreadContext
     }
 
 
+    /**
+     * Returns the JNDI ENC bindings of the thread context associated
+     * with the current thread. This is equivalent to calling {@link
+     * #getMemoryBinding} on the context returned from {@link
+     * #getThreadContext()}, but only looks up the thread in the table
+     * if no thread context has been associated with it.
+     *
+     * @return The JNDI ENC bindings for the current thread
+     */
+    public static MemoryBinding getCurrentMemoryBinding()
+    {
+        MemoryBinding bindings;
+
+        bindings = (MemoryBinding) _bindingSlot.get();
+        if ( bindings == null ) {
+            bindings = getThreadContext()._bindings;
+            _bindingSlot.set( bindings );
+        }
+        return bindings;
+    }
+
+
+    /**
+     * Sets the binding slot of the current thread after a thread
+     * context has been dissociated from it.
+     *
+     * @param previous The entry of the restored thread context, or null
+     */
+    private static void setBindingSlot( ThreadEntry previous )
+    {
+        if ( previous == null )
+            _bindingSlot.set( null );
+        else
+            _bindingSlot.set( previous._context._bindings );
+    }
+
+
     public Context getEnvContext()
     {
         return _bindings.getContext();
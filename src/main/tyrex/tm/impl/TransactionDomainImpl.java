@@ -52,6 +52,8 @@ package tyrex.tm.impl;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
@@ -173,6 +175,15 @@ public class TransactionDomainImpl
     private Field                          _bqualField;
 
 
+    /**
+     * Transactions imported from OTS propagation contexts, keyed by
+     * the remote transaction identifier. Access is synchronized on
+     * the map itself, so a request for a transaction that has already
+     * been imported does not contend for the domain lock.
+     */
+    private final HashMap                  _imported = new HashMap();
+
+
 
     /**
      * The default timeout for all transactions, in seconds.
@@ -725,8 +736,8 @@ public class TransactionDomainImpl
         int             index;
         long            timeout;
         otid_t          otid;
-        Class           otidClass;
         int             bqualLength;
+        ImportKey       key;
 
         if ( pgContext == null )
             throw new IllegalArgumentException( "Argument pgContext is null" );
@@ -737,33 +748,16 @@ public class TransactionDomainImpl
             throw new SystemException( "Transaction domain not active" );
 
         otid = pgContext.current.otid;
-        otidClass = otid.getClass();
-        if ( _bqualField == null ) {
-            try {
-                // Get the otid_t field for OTS
-                _bqualField = otidClass.getField( "bqual_length" );
-            } catch ( NoSuchFieldException except ) {
-                try {
-                    // Get the otid_t field for JTS
-                    _bqualField = otidClass.getField( "bequal_length" );
-                } catch ( NoSuchFieldException except2 ) {
-                    throw new NestedSystemException( except2 );
-                } catch ( SecurityException except2 ) { 
-                    throw new NestedSystemException( except2 );
-                } 
-            } catch ( SecurityException except ) { 
-                throw new NestedSystemException( except );
-            }
-        }
+        bqualLength = getBqualLength( otid );
 
-        // Get the bqual field length using introspection.
-        try {
-            bqualLength = _bqualField.getInt( otid );
-        } catch ( IllegalAccessException except ) {
-            throw new NestedSystemException( except );
-        } catch ( IllegalArgumentException except ) {
-            throw new NestedSystemException( except );
+        // Fast path: the transaction has already been imported.
+        key = new ImportKey( otid.formatID, otid.tid, bqualLength );
+        synchronized ( _imported ) {
+            newTx = (TransactionImpl) _imported.get( key );
         }
+        if ( newTx != null )
+            return newTx;
+
         global = new byte[ bqualLength ];
         for ( int i = bqualLength ; i-- > 0 ; )
             global[ i ] = otid.tid[ i ];
@@ -818,6 +812,9 @@ public class TransactionDomainImpl
             }
             ++_txCount;
             ++_active;
+            synchronized ( _imported ) {
+                _imported.put( key, newTx );
+            }
             
             // If this transaction times out before any other transaction,
             // need to wakeup the background thread so it can update its
@@ -831,6 +828,83 @@ public class TransactionDomainImpl
     }
 
 
+    /**
+     * Returns the transaction previously imported from the OTS
+     * propagation context, or null if the transaction has not been
+     * imported, or has since been forgotten. This method does not
+     * synchronize on the domain and does not create a new transaction.
+     *
+     * @param pgContext The OTS propagation context
+     * @return The imported transaction, or null
+     * @throws SystemException The transaction domain is not active,
+     *   or the propagation context is invalid
+     * @see #recreateTransaction
+     */
+    protected TransactionImpl findImportedTransaction( PropagationContext pgContext )
+        throws SystemException
+    {
+        otid_t    otid;
+        ImportKey key;
+
+        if ( pgContext == null )
+            throw new IllegalArgumentException( "Argument pgContext is null" );
+        if ( _state != ACTIVE )
+            throw new SystemException( "Transaction domain not active" );
+        if ( pgContext.current == null || pgContext.current.otid == null )
+            return null;
+        otid = pgContext.current.otid;
+        key = new ImportKey( otid.formatID, otid.tid, getBqualLength( otid ) );
+        synchronized ( _imported ) {
+            return (TransactionImpl) _imported.get( key );
+        }
+    }
+
+
+    /**
+     * Returns the length of the global transaction identifier in the
+     * OTS transaction identifier. The member variable is named
+     * differently in the Sun JTS and OMG OTS IDLs, so it is accessed
+     * using introspection.
+     *
+     * @param otid The OTS transaction identifier
+     * @return The length of the global transaction identifier
+     * @throws SystemException The member variable cannot be accessed
+     */
+    private int getBqualLength( otid_t otid )
+        throws SystemException
+    {
+        Class otidClass;
+
+        if ( _bqualField == null ) {
+            otidClass = otid.getClass();
+            try {
+                // Get the otid_t field for OTS
+                _bqualField = otidClass.getField( "bqual_length" );
+            } catch ( NoSuchFieldException except ) {
+                try {
+                    // Get the otid_t field for JTS
+                    _bqualField = otidClass.getField( "bequal_length" );
+                } catch ( NoSuchFieldException except2 ) {
+                    throw new NestedSystemException( except2 );
+                } catch ( SecurityException except2 ) { 
+                    throw new NestedSystemException( except2 );
+                } 
+            } catch ( SecurityException except ) { 
+                throw new NestedSystemException( except );
+            }
+        }
+
+        // Get the bqual field length using introspection.
+        try {
+            return _bqualField.getInt( otid );
+        } catch ( IllegalAccessException except ) {
+            throw new NestedSystemException( except );
+        } catch ( IllegalArgumentException except ) {
+            throw new NestedSystemException( except );
+        }
+    }
+
+
     /**
      * Called by {@link TransactionImpl#forget forget} to forget about
      * the transaction once it has been commited/rolledback.
@@ -858,9 +932,24 @@ public class TransactionDomainImpl
         Thread[]        threads;
         Thread          thread;
         ThreadContext   context;
+        PropagationContext pgContext;
+        otid_t          otid;
+        ImportKey       key;
 
         if ( tx == null )
             throw new IllegalArgumentException( "Argument tx is null" );
+        pgContext = tx.getPropagationContext();
+        if ( pgContext != null && pgContext.current != null && pgContext.current.otid != null ) {
+            otid = pgContext.current.otid;
+            try {
+                key = new ImportKey( otid.formatID, otid.tid, getBqualLength( otid ) );
+                synchronized ( _imported ) {
+                    _imported.remove( key );
+                }
+            } catch ( SystemException except ) {
+                // Cannot happen, the same otid was used to import the transaction.
+            }
+        }
         xid = tx._xid;
         hashCode = tx._hashCode;
         index = ( hashCode & 0x7FFFFFFF ) % _hashTable.length;
@@ -1442,7 +1531,7 @@ public class TransactionDomainImpl
 
         for ( int i = resources.length ; i-- > 0 ; ) {
             try {
-                xids = resources[ i ].recover( XAResource.TMSTARTRSCAN );
+                xids = recoverXids( resources[ i ] );
             } catch ( XAException except ) {
                 recoveryError( new RecoveryException( "Resource manager " + resources[ i ] +
                                                       " failed to recover: " + Util.getXAException( except ) ) );
@@ -1499,6 +1588,67 @@ public class TransactionDomainImpl
     }
 
 
+    /**
+     * Returns all the transaction branches the resource manager reports
+     * as in doubt. Resource managers that return their branches in pages
+     * are scanned until they return no more branches, or only branches
+     * already returned. The scan is always ended once started.
+     *
+     * @param resource The XA resource
+     * @return The transaction branches in doubt
+     * @throws XAException The resource manager failed to start the scan
+     */
+    private Xid[] recoverXids( XAResource resource )
+        throws XAException
+    {
+        Xid[]     xids;
+        ArrayList list;
+        HashSet   seen;
+
+        xids = resource.recover( XAResource.TMSTARTRSCAN );
+        list = new ArrayList();
+        seen = new HashSet();
+        try {
+            while ( addXids( list, seen, xids ) )
+                xids = resource.recover( XAResource.TMNOFLAGS );
+        } catch ( XAException except ) {
+            // Resource managers that return all their branches at
+            // once need not support continuing the scan.
+            _category.warn( "Resource manager " + resource + " failed to continue recovery scan: " +
+                            Util.getXAException( except ) );
+        } finally {
+            try {
+                addXids( list, seen, resource.recover( XAResource.TMENDRSCAN ) );
+            } catch ( XAException except ) { }
+        }
+        return (Xid[]) list.toArray( new Xid[ list.size() ] );
+    }
+
+
+    /**
+     * Adds the transaction branches not already seen to the list.
+     *
+     * @param list The list of branches
+     * @param seen The string representation of the branches seen
+     * @param xids The branches returned by the resource manager,
+     *   may be null
+     * @return True if any branch was added
+     */
+    private static boolean addXids( ArrayList list, HashSet seen, Xid[] xids )
+    {
+        boolean added;
+
+        added = false;
+        if ( xids != null )
+            for ( int j = 0 ; j < xids.length ; ++j )
+                if ( xids[ j ] != null && seen.add( XidUtils.toString( xids[ j ] ) ) ) {
+                    list.add( xids[ j ] );
+                    added = true;
+                }
+        return added;
+    }
+
+
     /**
      * Records a recovery exception.
      *
@@ -1548,4 +1698,66 @@ public class TransactionDomainImpl
     }
 
 
+    /**
+     * Key for an imported transaction. Compares the format identifier
+     * and the leading global transaction identifier bytes of the OTS
+     * transaction identifier, without copying them.
+     */
+    private static final class ImportKey
+    {
+
+
+        private final int     _formatId;
+
+
+        private final byte[]  _global;
+
+
+        private final int     _length;
+
+
+        private final int     _hashCode;
+
+
+        ImportKey( int formatId, byte[] global, int length )
+        {
+            int hashCode;
+
+            _formatId = formatId;
+            _global = global;
+            _length = length;
+            hashCode = formatId;
+            for ( int i = 0 ; i < length ; ++i )
+                hashCode = hashCode * 31 + global[ i ];
+            _hashCode = hashCode;
+        }
+
+
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+
+
+        public boolean equals( Object object )
+        {
+            ImportKey key;
+
+            if ( object == this )
+                return true;
+            if ( ! ( object instanceof ImportKey ) )
+                return false;
+            key = (ImportKey) object;
+            if ( key._hashCode != _hashCode || key._formatId != _formatId || key._length != _length )
+                return false;
+            for ( int i = _length ; i-- > 0 ; )
+                if ( key._global[ i ] != _global[ i ] )
+                    return false;
+            return true;
+        }
+
+
+    }
+
+
 }
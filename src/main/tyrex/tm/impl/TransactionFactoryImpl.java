@@ -157,6 +157,11 @@ public final class TransactionFactoryImpl
         Control         control;
         
         try {
+            // Fast path: the transaction has already been imported
+            // and its control connected to the ORB.
+            tx = _txDomain.findImportedTransaction( pgContext );
+            if ( tx != null )
+                return tx.getControl();
             tx = _txDomain.recreateTransaction( pgContext );
             control = tx.getControl();
             if ( _txDomain._orb != null )
@@ -45,6 +45,7 @@
 
 package tyrex;
 
+import tyrex.corba.CorbaSuite;
 import tyrex.naming.NamingSuite;
 import tyrex.resource.ResourceUnit;
 import tyrex.services.ServicesSuite;
@@ -121,6 +122,7 @@ public class Unit
     public static TestSuite suite()
     {
         TestSuite suite = new TestSuite("Tyrex Unit Test Harness");
+        suite.addTest(CorbaSuite.suite());
         suite.addTest(NamingSuite.suite());
         suite.addTest(ResourceUnit.suite());
         suite.addTest(ServicesSuite.suite());
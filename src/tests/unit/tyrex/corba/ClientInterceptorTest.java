@@ -0,0 +1,327 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.corba;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.ORB;
+import org.omg.CosTransactions.PropagationContext;
+import org.omg.CosTransactions.PropagationContextHelper;
+import org.omg.CosTransactions.TransIdentity;
+import org.omg.CosTransactions.otid_t;
+import org.omg.IOP.Codec;
+import org.omg.IOP.CodecFactory;
+import org.omg.IOP.ServiceContext;
+import org.omg.IOP.TransactionService;
+import org.omg.PortableInterceptor.ClientRequestInfo;
+import org.omg.PortableInterceptor.ORBInitInfo;
+
+
+/**
+ * Tests for the propagation contexts encoded by {@link ClientInterceptor}.
+ */
+
+public class ClientInterceptorTest extends TestCase
+{
+    public ClientInterceptorTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Send two requests with the same propagation context, and a
+     * third with an equal propagation context whose transaction
+     * identifier is held in a different array.</p>
+     *
+     * @result The propagation context is encoded once, and the same
+     * encoded context is added to all three requests. The codec is
+     * created once.
+     */
+
+    public void testEncodeOnce()
+        throws Exception
+    {
+        TestInfo           info = new TestInfo();
+        ClientInterceptor  interceptor = new ClientInterceptor(info.getInfo(), 0);
+        PropagationContext pgContext;
+        byte[]             data;
+
+        pgContext = newContext(1, new byte[] {1, 2, 3, 4}, 4, 10);
+        data = send(interceptor, pgContext);
+        assertEquals("Encoded", 1, info.getEncoded());
+        assert("Same context", send(interceptor, pgContext) == data);
+        assert("Equal context", send(interceptor, newContext(1, new byte[] {1, 2, 3, 4}, 4, 10)) == data);
+        assertEquals("Encoded once", 1, info.getEncoded());
+        assertEquals("Codec created once", 1, info.getCodecs());
+    }
+
+
+    /**
+     * <p>Send requests with propagation contexts that differ from the
+     * first in the transaction identifier, branch qualifier length,
+     * format identifier or timeout.</p>
+     *
+     * @result Each different propagation context is encoded again, and
+     * the first propagation context is still encoded once.
+     */
+
+    public void testEncodeDifferent()
+        throws Exception
+    {
+        TestInfo          info = new TestInfo();
+        ClientInterceptor interceptor = new ClientInterceptor(info.getInfo(), 0);
+        byte[]            data;
+
+        data = send(interceptor, newContext(1, new byte[] {1, 2, 3, 4}, 4, 10));
+        assert("Different tid", send(interceptor, newContext(1, new byte[] {1, 2, 3, 5}, 4, 10)) != data);
+        assert("Different length", send(interceptor, newContext(1, new byte[] {1, 2, 3, 4}, 2, 10)) != data);
+        assert("Different format", send(interceptor, newContext(2, new byte[] {1, 2, 3, 4}, 4, 10)) != data);
+        assert("Different timeout", send(interceptor, newContext(1, new byte[] {1, 2, 3, 4}, 4, 20)) != data);
+        assertEquals("Encoded", 5, info.getEncoded());
+        assert("Still encoded", send(interceptor, newContext(1, new byte[] {1, 2, 3, 4}, 4, 10)) == data);
+        assertEquals("Encoded once", 5, info.getEncoded());
+    }
+
+
+    /**
+     * <p>Send a request with no propagation context in the slot.</p>
+     *
+     * @result No service context is added to the request, and nothing
+     * is encoded.
+     */
+
+    public void testNoContext()
+        throws Exception
+    {
+        TestInfo          info = new TestInfo();
+        ClientInterceptor interceptor = new ClientInterceptor(info.getInfo(), 0);
+
+        assert("No context", send(interceptor, null) == null);
+        assertEquals("Encoded", 0, info.getEncoded());
+    }
+
+
+    /**
+     * Sends a request with the propagation context in the slot and
+     * returns the context data added to the request, or null if no
+     * service context was added.
+     */
+    private static byte[] send(ClientInterceptor interceptor, PropagationContext pgContext)
+        throws Exception
+    {
+        TestRequest request;
+        Any         any;
+
+        any = ORB.init().create_any();
+        if (pgContext != null)
+        {
+            PropagationContextHelper.insert(any, pgContext);
+        }
+        request = new TestRequest(any);
+        interceptor.send_request(request.getRequest());
+        if (request.getContext() == null)
+        {
+            return null;
+        }
+        assertEquals("Context id", TransactionService.value, request.getContext().context_id);
+        return request.getContext().context_data;
+    }
+
+
+    /**
+     * Returns a propagation context for the OTS transaction identifier.
+     */
+    private static PropagationContext newContext(int formatID, byte[] tid, int bqualLength, int timeout)
+    {
+        TransIdentity current;
+
+        current = new TransIdentity(null, null, new otid_t(formatID, bqualLength, tid));
+        return new PropagationContext(timeout, current, new TransIdentity[0], ORB.init().create_any());
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        return new TestSuite(ClientInterceptorTest.class);
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * The interceptor's initialization information. Counts the codecs
+     * created and the values they encode. Each encoded value is a new
+     * byte array.
+     */
+    private static class TestInfo
+        implements InvocationHandler
+    {
+        private final ORBInitInfo _info;
+
+
+        private int _codecs;
+
+
+        private int _encoded;
+
+
+        TestInfo()
+        {
+            _info = (ORBInitInfo) newProxy(ORBInitInfo.class, this);
+        }
+
+
+        ORBInitInfo getInfo()
+        {
+            return _info;
+        }
+
+
+        synchronized int getCodecs()
+        {
+            return _codecs;
+        }
+
+
+        synchronized int getEncoded()
+        {
+            return _encoded;
+        }
+
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+        {
+            if (method.getName().equals("codec_factory"))
+            {
+                return newProxy(CodecFactory.class, this);
+            }
+            if (method.getName().equals("create_codec"))
+            {
+                ++_codecs;
+                return newProxy(Codec.class, this);
+            }
+            if (method.getName().equals("encode_value"))
+            {
+                ++_encoded;
+                return new byte[] {(byte) _encoded};
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+
+    /**
+     * A client request holding the slot value. Records the service
+     * context added to the request.
+     */
+    private static class TestRequest
+        implements InvocationHandler
+    {
+        private final ClientRequestInfo _request;
+
+
+        private final Any _slot;
+
+
+        private ServiceContext _context;
+
+
+        TestRequest(Any slot)
+        {
+            _slot = slot;
+            _request = (ClientRequestInfo) newProxy(ClientRequestInfo.class, this);
+        }
+
+
+        ClientRequestInfo getRequest()
+        {
+            return _request;
+        }
+
+
+        ServiceContext getContext()
+        {
+            return _context;
+        }
+
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            if (method.getName().equals("get_slot"))
+            {
+                return _slot;
+            }
+            if (method.getName().equals("add_request_service_context"))
+            {
+                _context = (ServiceContext) args[0];
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+
+    /**
+     * Returns a proxy implementing the interface.
+     */
+    private static Object newProxy(Class type, InvocationHandler handler)
+    {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, handler);
+    }
+}
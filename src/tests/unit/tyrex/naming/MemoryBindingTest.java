@@ -0,0 +1,833 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.naming;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.Reference;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+import javax.naming.event.ObjectChangeListener;
+import javax.naming.spi.ObjectFactory;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link MemoryBinding}.
+ */
+
+public class MemoryBindingTest extends TestCase
+{
+    public MemoryBindingTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Look up names while other threads rebind, bind and unbind
+     * names in the same binding.</p>
+     *
+     * @result Lookups never miss a name that stays bound, and only
+     * see values that were bound to the name.
+     */
+
+    public void testConcurrentGetPut()
+        throws Exception
+    {
+        final MemoryBinding bindings = new MemoryBinding();
+        final String[]      failure = new String[1];
+        final boolean[]     done = new boolean[1];
+        Thread[]            readers = new Thread[4];
+        Thread[]            writers = new Thread[2];
+
+        for (int i = 0; i < 100; ++i)
+        {
+            bindings.put("stable" + i, "value" + i);
+        }
+        for (int i = 0; i < writers.length; ++i)
+        {
+            final String prefix = "writer" + i + ".";
+
+            writers[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 2000; ++j)
+                    {
+                        bindings.put(prefix + (j % 50), prefix + j);
+                        bindings.put("stable" + (j % 100), "value" + (j % 100));
+                        if (j % 3 == 0)
+                        {
+                            bindings.remove(prefix + ((j + 25) % 50));
+                        }
+                    }
+                }
+            };
+        }
+        for (int i = 0; i < readers.length; ++i)
+        {
+            readers[i] = new Thread()
+            {
+                public void run()
+                {
+                    Object value;
+
+                    while (! isDone(done))
+                    {
+                        for (int j = 0; j < 100; ++j)
+                        {
+                            if (! ("value" + j).equals(bindings.get("stable" + j)))
+                            {
+                                failure[0] = "Lookup of stable" + j + " failed";
+                            }
+                        }
+                        for (int j = 0; j < 50; ++j)
+                        {
+                            value = bindings.get("writer0." + j);
+                            if (value != null && ! ((String) value).startsWith("writer0."))
+                            {
+                                failure[0] = "Unexpected value " + value;
+                            }
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        runAll(writers);
+        synchronized (done)
+        {
+            done[0] = true;
+        }
+        for (int i = 0; i < readers.length; ++i)
+        {
+            readers[i].join();
+        }
+        assertNull(failure[0]);
+    }
+
+
+    /**
+     * <p>Several threads bind and unbind their own names in the same
+     * binding at the same time.</p>
+     *
+     * @result Every name bound and not unbound is found, and no other
+     * name is listed.
+     */
+
+    public void testConcurrentPutRemove()
+        throws Exception
+    {
+        final MemoryBinding bindings = new MemoryBinding();
+        Thread[]            threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            final String prefix = "thread" + i + ".";
+
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 500; ++j)
+                    {
+                        bindings.put(prefix + j, prefix + j);
+                    }
+                    for (int j = 0; j < 500; j += 2)
+                    {
+                        bindings.remove(prefix + j);
+                    }
+                }
+            };
+        }
+        runAll(threads);
+        assertEquals(threads.length * 250, bindings.getNames().length);
+        for (int i = 0; i < threads.length; ++i)
+        {
+            for (int j = 0; j < 500; ++j)
+            {
+                if (j % 2 == 0)
+                {
+                    assertNull(bindings.get("thread" + i + "." + j));
+                }
+                else
+                {
+                    assertEquals("thread" + i + "." + j, bindings.get("thread" + i + "." + j));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * <p>Bind many more names than the initial capacity, then unbind
+     * half of them.</p>
+     *
+     * @result The table grows and every name remains bound to its
+     * value.
+     */
+
+    public void testGrowth()
+        throws Exception
+    {
+        MemoryBinding bindings = new MemoryBinding();
+        int           count = MemoryBinding.INITIAL_CAPACITY * 1000;
+
+        for (int i = 0; i < count; ++i)
+        {
+            bindings.put("name" + i, new Integer(i));
+        }
+        assertEquals(count, bindings.getNames().length);
+        for (int i = 0; i < count; ++i)
+        {
+            assertEquals(new Integer(i), bindings.get("name" + i));
+        }
+        for (int i = 0; i < count; i += 2)
+        {
+            assertEquals(new Integer(i), bindings.remove("name" + i));
+        }
+        assertEquals(count / 2, bindings.getNames().length);
+        for (int i = 1; i < count; i += 2)
+        {
+            assertEquals(new Integer(i), bindings.get("name" + i));
+        }
+    }
+
+
+    /**
+     * <p>Look up names while another thread grows the table.</p>
+     *
+     * @result Names bound before the table grew are found while it is
+     * being rehashed.
+     */
+
+    public void testLookupDuringRehash()
+        throws Exception
+    {
+        final MemoryBinding bindings = new MemoryBinding();
+        final String[]      failure = new String[1];
+        final boolean[]     done = new boolean[1];
+        Thread[]            readers = new Thread[4];
+        Thread[]            writer = new Thread[1];
+
+        for (int i = 0; i < 5; ++i)
+        {
+            bindings.put("early" + i, "early" + i);
+        }
+        writer[0] = new Thread()
+        {
+            public void run()
+            {
+                for (int i = 0; i < 20000; ++i)
+                {
+                    bindings.put("late" + i, "late" + i);
+                }
+            }
+        };
+        for (int i = 0; i < readers.length; ++i)
+        {
+            readers[i] = new Thread()
+            {
+                public void run()
+                {
+                    while (! isDone(done))
+                    {
+                        for (int j = 0; j < 5; ++j)
+                        {
+                            if (bindings.get("early" + j) == null)
+                            {
+                                failure[0] = "Lookup of early" + j + " failed";
+                            }
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        runAll(writer);
+        synchronized (done)
+        {
+            done[0] = true;
+        }
+        for (int i = 0; i < readers.length; ++i)
+        {
+            readers[i].join();
+        }
+        assertNull(failure[0]);
+        assertEquals(20005, bindings.getNames().length);
+    }
+
+
+    /**
+     * <p>Resolve a composite name twice, then change the binding it
+     * resolves to.</p>
+     *
+     * @result The name is resolved once and cached, and resolved again
+     * after the subcontext changes.
+     */
+
+    public void testResolve()
+        throws Exception
+    {
+        MemoryBinding              root = new MemoryBinding();
+        MemoryBinding              sub = new MemoryBinding();
+        MemoryBinding.ResolvedName resolved;
+
+        root.put("a", sub);
+        sub.put("b", "one");
+        resolved = root.resolve("a/b");
+        assertNotNull(resolved);
+        assert("Bindings", resolved._bindings == sub);
+        assertEquals("b", resolved._name);
+        assertEquals("one", resolved._value);
+        assert("Cached", root.resolve("a/b") == resolved);
+
+        sub.put("b", "two");
+        assertEquals("two", root.resolve("a/b")._value);
+        sub.remove("b");
+        assertNull(root.resolve("a/b"));
+        assertNull(root.resolve("a/c"));
+        assertNull(root.resolve("x/b"));
+        assertNull(root.resolve("a/"));
+    }
+
+
+    /**
+     * <p>Resolve a name through a subcontext that is then bound under
+     * another context, and change the subcontext.</p>
+     *
+     * @result The name is not resolved from a stale cache, and names
+     * passing through the moved subcontext are not cached.
+     */
+
+    public void testResolveMovedBinding()
+        throws Exception
+    {
+        MemoryBinding root = new MemoryBinding();
+        MemoryBinding other = new MemoryBinding();
+        MemoryBinding sub = new MemoryBinding();
+
+        root.put("a", sub);
+        sub.put("b", "one");
+        assertEquals("one", root.resolve("a/b")._value);
+
+        other.put("alias", sub);
+        sub.put("b", "two");
+        assertEquals("two", root.resolve("a/b")._value);
+        assertEquals("two", other.resolve("alias/b")._value);
+        assert("Not cached", root.resolve("a/b") != root.resolve("a/b"));
+        sub.put("b", "three");
+        assertEquals("three", root.resolve("a/b")._value);
+        assertEquals("three", other.resolve("alias/b")._value);
+    }
+
+
+    /**
+     * <p>Look up a reference whose factory shares its objects, then
+     * rebind the reference.</p>
+     *
+     * @result The factory is called once for each bound reference,
+     * and all lookups return the same object until the name is
+     * rebound.
+     */
+
+    public void testSharedReference()
+        throws Exception
+    {
+        MemoryContext ctx = new MemoryContext(null);
+        Context       sub = ctx.createSubcontext("sub");
+        Object        object;
+
+        SharedFactory.reset();
+        ctx.bind("ref", new Reference(Object.class.getName(), SharedFactory.class.getName(), null));
+        object = ctx.lookup("ref");
+        assertNotNull(object);
+        assert("Shared object", ctx.lookup("ref") == object);
+        assertEquals(1, SharedFactory.getCreated());
+
+        ctx.rebind("ref", new Reference(Object.class.getName(), SharedFactory.class.getName(), null));
+        assert("New object", ctx.lookup("ref") != object);
+        assertEquals(2, SharedFactory.getCreated());
+
+        sub.bind("ref", new Reference(Object.class.getName(), SharedFactory.class.getName(), null));
+        object = ctx.lookup("sub/ref");
+        assert("Shared object", ctx.lookup("sub/ref") == object);
+        assert("Shared object", sub.lookup("ref") == object);
+        assertEquals(3, SharedFactory.getCreated());
+    }
+
+
+    /**
+     * <p>Look up a reference whose factory does not share its
+     * objects.</p>
+     *
+     * @result The factory is called for each lookup.
+     */
+
+    public void testUnsharedReference()
+        throws Exception
+    {
+        MemoryContext ctx = new MemoryContext(null);
+
+        UnsharedFactory.reset();
+        ctx.bind("ref", new Reference(Object.class.getName(), UnsharedFactory.class.getName(), null));
+        assert("New object", ctx.lookup("ref") != ctx.lookup("ref"));
+        assertEquals(2, UnsharedFactory.getCreated());
+    }
+
+
+    /**
+     * <p>Look up the same subcontext several times, through contexts
+     * with the same and with different environments.</p>
+     *
+     * @result The same view is returned for the same environment, and
+     * a new view once the subcontext is recreated.
+     */
+
+    public void testContextViews()
+        throws Exception
+    {
+        MemoryContext ctx = new MemoryContext(null);
+        Hashtable     env = new Hashtable();
+        Context       view;
+
+        ctx.createSubcontext("sub").createSubcontext("inner");
+        view = (Context) ctx.lookup("sub");
+        assert("Same view", ctx.lookup("sub") == view);
+        assert("Same view", ctx.lookup(new CompositeName("sub")) == view);
+        assert("Same view", ctx.lookup("sub/inner") == view.lookup("inner"));
+
+        env.put(MemoryContext.ReadOnly, "true");
+        assert("Other environment", new MemoryContext(ctx.getBindings(), env).lookup("sub") != view);
+        assert("Other class", new EnvContext(ctx.getBindings(), null).lookup("sub") != view);
+        assert("Same EnvContext view",
+               new EnvContext(ctx.getBindings(), null).lookup("sub")
+               == new EnvContext(ctx.getBindings(), null).lookup("sub"));
+
+        ctx.destroySubcontext("sub/inner");
+        ctx.destroySubcontext("sub");
+        ctx.createSubcontext("sub");
+        assert("New view", ctx.lookup("sub") != view);
+    }
+
+
+    /**
+     * <p>Change the environment of a view and close it.</p>
+     *
+     * @result The environment cannot be changed, and closing the view
+     * has no effect.
+     */
+
+    public void testImmutableView()
+        throws Exception
+    {
+        MemoryContext ctx = new MemoryContext(null);
+        EventContext  view;
+        Hashtable     env;
+
+        ctx.createSubcontext("sub").bind("name", "value");
+        view = (EventContext) ctx.lookup("sub");
+        try
+        {
+            view.addToEnvironment("name", "value");
+            fail("Expected OperationNotSupportedException");
+        }
+        catch (OperationNotSupportedException except)
+        {
+        }
+        try
+        {
+            view.removeFromEnvironment("name");
+            fail("Expected OperationNotSupportedException");
+        }
+        catch (OperationNotSupportedException except)
+        {
+        }
+        env = view.getEnvironment();
+        env.put("name", "value");
+        assertNull(view.getEnvironment().get("name"));
+        view.close();
+        assertEquals("value", ((Context) ctx.lookup("sub")).lookup("name"));
+    }
+
+
+    /**
+     * <p>Bind, rebind, rename and unbind names in a context with a
+     * listener for one level.</p>
+     *
+     * @result The listener is notified of each change in order, with
+     * the names and values involved.
+     */
+
+    public void testNamespaceEvents()
+        throws Exception
+    {
+        MemoryContext     ctx = new MemoryContext(null);
+        RecordingListener listener = new RecordingListener();
+        NamingEvent       event;
+
+        ctx.addNamingListener("", EventContext.ONELEVEL_SCOPE, listener);
+        ctx.bind("a", "one");
+        ctx.rebind("a", "two");
+        ctx.rename("a", "b");
+        ctx.unbind("b");
+        listener.waitFor(4);
+
+        event = listener.getEvent(0);
+        assertEquals(NamingEvent.OBJECT_ADDED, event.getType());
+        assert("Source", event.getEventContext() == ctx);
+        assertEquals("a", event.getNewBinding().getName());
+        assertEquals("one", event.getNewBinding().getObject());
+        event = listener.getEvent(1);
+        assertEquals(NamingEvent.OBJECT_CHANGED, event.getType());
+        assertEquals("one", event.getOldBinding().getObject());
+        assertEquals("two", event.getNewBinding().getObject());
+        event = listener.getEvent(2);
+        assertEquals(NamingEvent.OBJECT_RENAMED, event.getType());
+        assertEquals("a", event.getOldBinding().getName());
+        assertEquals("b", event.getNewBinding().getName());
+        event = listener.getEvent(3);
+        assertEquals(NamingEvent.OBJECT_REMOVED, event.getType());
+        assertEquals("b", event.getOldBinding().getName());
+        assertNull(event.getNewBinding());
+        ctx.close();
+    }
+
+
+    /**
+     * <p>Change names in a subcontext, with listeners for a single
+     * object and for the subtree.</p>
+     *
+     * @result The object listener is only notified of changes to its
+     * object, the subtree listener of all changes, named relative to
+     * the context.
+     */
+
+    public void testListenerScope()
+        throws Exception
+    {
+        MemoryContext     ctx = new MemoryContext(null);
+        RecordingListener object = new RecordingListener();
+        RecordingListener subtree = new RecordingListener();
+
+        ctx.createSubcontext("sub").bind("x", "one");
+        ctx.addNamingListener("sub/x", EventContext.OBJECT_SCOPE, object);
+        ctx.addNamingListener("", EventContext.SUBTREE_SCOPE, subtree);
+        ctx.bind("sub/y", "one");
+        ctx.rebind("sub/x", "two");
+        subtree.waitFor(2);
+        object.waitFor(1);
+
+        assertEquals("sub/y", subtree.getEvent(0).getNewBinding().getName());
+        assertEquals("sub/x", subtree.getEvent(1).getNewBinding().getName());
+        assertEquals(1, object.getCount());
+        assertEquals(NamingEvent.OBJECT_CHANGED, object.getEvent(0).getType());
+        assertEquals("sub/x", object.getEvent(0).getNewBinding().getName());
+        ctx.close();
+    }
+
+
+    /**
+     * <p>Remove a listener, and close a context with a listener
+     * registered through it, then change the bindings.</p>
+     *
+     * @result Neither listener is notified, while a listener of
+     * another context sharing the bindings is.
+     */
+
+    public void testRemoveListener()
+        throws Exception
+    {
+        MemoryContext     ctx = new MemoryContext(null);
+        MemoryContext     removed = new MemoryContext(ctx.getBindings(), null);
+        MemoryContext     closed = new MemoryContext(ctx.getBindings(), null);
+        RecordingListener control = new RecordingListener();
+        RecordingListener removedListener = new RecordingListener();
+        RecordingListener closedListener = new RecordingListener();
+
+        ctx.addNamingListener("", EventContext.ONELEVEL_SCOPE, control);
+        removed.addNamingListener("", EventContext.ONELEVEL_SCOPE, removedListener);
+        closed.addNamingListener("", EventContext.ONELEVEL_SCOPE, closedListener);
+        removed.removeNamingListener(removedListener);
+        closed.close();
+        ctx.bind("a", "one");
+        control.waitFor(1);
+        // Events are dispatched in order, so any event for the removed
+        // listeners would have been delivered by now
+        ctx.unbind("a");
+        control.waitFor(2);
+        assertEquals(0, removedListener.getCount());
+        assertEquals(0, closedListener.getCount());
+        ctx.close();
+    }
+
+
+    /**
+     * <p>Register listeners through subcontexts obtained from lookup,
+     * of a memory context and of an environment context, and close
+     * the subcontexts. Remove the listeners and change the bindings
+     * again.</p>
+     *
+     * @result The listeners are notified of changes while registered,
+     * even after the subcontexts are closed, and not once removed.
+     */
+
+    public void testViewListener()
+        throws Exception
+    {
+        MemoryContext     ctx = new MemoryContext(null);
+        EventContext      view;
+        EventContext      envView;
+        RecordingListener listener = new RecordingListener();
+        RecordingListener envListener = new RecordingListener();
+        RecordingListener control = new RecordingListener();
+
+        ctx.createSubcontext("comp").createSubcontext("env");
+        view = (EventContext) ctx.lookup("comp/env");
+        envView = (EventContext) new EnvContext(ctx.getBindings(), null).lookup("comp/env");
+        view.addNamingListener("", EventContext.ONELEVEL_SCOPE, listener);
+        envView.addNamingListener("", EventContext.ONELEVEL_SCOPE, envListener);
+        ctx.addNamingListener("", EventContext.SUBTREE_SCOPE, control);
+        view.close();
+        envView.close();
+        ctx.bind("comp/env/a", "one");
+        listener.waitFor(1);
+        envListener.waitFor(1);
+        assertEquals("a", listener.getEvent(0).getNewBinding().getName());
+        assert("Source", listener.getEvent(0).getEventContext() == view);
+        assertEquals("a", envListener.getEvent(0).getNewBinding().getName());
+
+        view.removeNamingListener(listener);
+        envView.removeNamingListener(envListener);
+        ctx.unbind("comp/env/a");
+        control.waitFor(2);
+        // Events are dispatched in order, so any event for the removed
+        // listeners would have been delivered by now
+        assertEquals(1, listener.getCount());
+        assertEquals(1, envListener.getCount());
+        ctx.close();
+    }
+
+
+    private static boolean isDone(boolean[] done)
+    {
+        synchronized (done)
+        {
+            return done[0];
+        }
+    }
+
+
+    /**
+     * Starts all the threads and waits for them to complete.
+     */
+    private static void runAll(Thread[] threads)
+        throws InterruptedException
+    {
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(MemoryBindingTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * An object factory that shares its objects, and counts the
+     * objects it creates.
+     */
+    public static class SharedFactory
+        implements SharedObjectFactory
+    {
+        private static int _created;
+
+        public Object getObjectInstance(Object obj, Name name, Context ctx, Hashtable env)
+        {
+            synchronized (SharedFactory.class)
+            {
+                ++_created;
+            }
+            return new Object();
+        }
+
+        static synchronized int getCreated()
+        {
+            return _created;
+        }
+
+        static synchronized void reset()
+        {
+            _created = 0;
+        }
+    }
+
+
+    /**
+     * An object factory that does not share its objects, and counts
+     * the objects it creates.
+     */
+    public static class UnsharedFactory
+        implements ObjectFactory
+    {
+        private static int _created;
+
+        public Object getObjectInstance(Object obj, Name name, Context ctx, Hashtable env)
+        {
+            synchronized (UnsharedFactory.class)
+            {
+                ++_created;
+            }
+            return new Object();
+        }
+
+        static synchronized int getCreated()
+        {
+            return _created;
+        }
+
+        static synchronized void reset()
+        {
+            _created = 0;
+        }
+    }
+
+
+    /**
+     * A naming listener that records the events it is notified of.
+     */
+    private static class RecordingListener
+        implements NamespaceChangeListener, ObjectChangeListener
+    {
+        private final ArrayList _events = new ArrayList();
+
+        public void objectAdded(NamingEvent event)
+        {
+            record(event);
+        }
+
+        public void objectRemoved(NamingEvent event)
+        {
+            record(event);
+        }
+
+        public void objectRenamed(NamingEvent event)
+        {
+            record(event);
+        }
+
+        public void objectChanged(NamingEvent event)
+        {
+            record(event);
+        }
+
+        public void namingExceptionThrown(NamingExceptionEvent event)
+        {
+        }
+
+        private synchronized void record(NamingEvent event)
+        {
+            _events.add(event);
+            notifyAll();
+        }
+
+        synchronized int getCount()
+        {
+            return _events.size();
+        }
+
+        synchronized NamingEvent getEvent(int index)
+        {
+            return (NamingEvent) _events.get(index);
+        }
+
+        /**
+         * Waits until at least the specified number of events have
+         * been recorded, failing after five seconds.
+         */
+        synchronized void waitFor(int count)
+            throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (_events.size() < count)
+            {
+                if (System.currentTimeMillis() >= deadline)
+                {
+                    fail("Expected " + count + " events, received " + _events.size());
+                }
+                wait(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.naming;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.naming.BinaryRefAddr;
+import javax.naming.LinkRef;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link NamespaceSnapshot}.
+ */
+
+public class NamespaceSnapshotTest extends TestCase
+{
+    private File _file;
+
+
+    public NamespaceSnapshotTest(String name)
+    {
+        super(name);
+    }
+
+
+    public void setUp()
+        throws Exception
+    {
+        _file = File.createTempFile("tyrex", ".snapshot");
+    }
+
+
+    public void tearDown()
+    {
+        _file.delete();
+        new File(_file.getPath() + ".tmp").delete();
+    }
+
+
+    /**
+     * <p>Write a snapshot of bindings holding subcontexts, links,
+     * references and serializable objects, and read it into new
+     * bindings.</p>
+     *
+     * @result The restored bindings hold equal values under the same
+     * names.
+     */
+
+    public void testRoundTrip()
+        throws Exception
+    {
+        MemoryBinding bindings = new MemoryBinding();
+        MemoryBinding sub = new MemoryBinding();
+        MemoryBinding restored = new MemoryBinding();
+        MemoryBinding restoredSub;
+        Reference     reference;
+        Reference     restoredReference;
+
+        reference = new Reference("javax.sql.DataSource", "tyrex.Factory", null);
+        reference.add(new StringRefAddr("url", "jdbc:test"));
+        reference.add(new BinaryRefAddr("key", new byte[] { 1, 2, 3 }));
+        bindings.put("string", "value");
+        bindings.put("integer", new Integer(42));
+        bindings.put("link", new LinkRef("java:comp/env/string"));
+        bindings.put("sub", sub);
+        sub.put("reference", reference);
+        sub.put("inner", new MemoryBinding());
+
+        NamespaceSnapshot.write(bindings, _file);
+        assert("Temporary file removed", ! new File(_file.getPath() + ".tmp").exists());
+        NamespaceSnapshot.read(_file, restored);
+
+        assertEquals(4, restored.getNames().length);
+        assertEquals("value", restored.get("string"));
+        assertEquals(new Integer(42), restored.get("integer"));
+        assertEquals("java:comp/env/string", ((LinkRef) restored.get("link")).getLinkName());
+        restoredSub = (MemoryBinding) restored.get("sub");
+        assertNotNull(restoredSub);
+        assertEquals("sub", restoredSub.getName());
+        assert("Empty subcontext", ((MemoryBinding) restoredSub.get("inner")).isEmpty());
+        restoredReference = (Reference) restoredSub.get("reference");
+        assertEquals(reference, restoredReference);
+        assertEquals("tyrex.Factory", restoredReference.getFactoryClassName());
+    }
+
+
+    /**
+     * <p>Read a snapshot into bindings that already hold some of its
+     * names.</p>
+     *
+     * @result Existing subcontexts are kept and restored into, other
+     * names are rebound, and names not in the snapshot are kept.
+     */
+
+    public void testMerge()
+        throws Exception
+    {
+        MemoryBinding bindings = new MemoryBinding();
+        MemoryBinding sub = new MemoryBinding();
+        MemoryBinding target = new MemoryBinding();
+        MemoryBinding existing = new MemoryBinding();
+
+        bindings.put("sub", sub);
+        sub.put("name", "new");
+        bindings.put("other", "new");
+        NamespaceSnapshot.write(bindings, _file);
+
+        target.put("sub", existing);
+        existing.put("kept", "old");
+        target.put("other", "old");
+        NamespaceSnapshot.read(_file, target);
+        assert("Subcontext kept", target.get("sub") == existing);
+        assertEquals("new", existing.get("name"));
+        assertEquals("old", existing.get("kept"));
+        assertEquals("new", target.get("other"));
+    }
+
+
+    /**
+     * <p>Write a snapshot of bindings holding an object that cannot be
+     * stored, over an existing snapshot.</p>
+     *
+     * @result A NamingException is thrown and the existing snapshot
+     * is kept.
+     */
+
+    public void testFailedWrite()
+        throws Exception
+    {
+        MemoryBinding bindings = new MemoryBinding();
+        MemoryBinding restored = new MemoryBinding();
+
+        bindings.put("name", "value");
+        NamespaceSnapshot.write(bindings, _file);
+        bindings.put("object", new Object());
+        try
+        {
+            NamespaceSnapshot.write(bindings, _file);
+            fail("Expected NamingException");
+        }
+        catch (NamingException except)
+        {
+        }
+        assert("Temporary file removed", ! new File(_file.getPath() + ".tmp").exists());
+        NamespaceSnapshot.read(_file, restored);
+        assertEquals("value", restored.get("name"));
+        assertNull(restored.get("object"));
+    }
+
+
+    /**
+     * <p>Read a file that is not a snapshot.</p>
+     *
+     * @result An IOException is thrown.
+     */
+
+    public void testNotSnapshot()
+        throws Exception
+    {
+        FileOutputStream output = new FileOutputStream(_file);
+
+        output.write("not a snapshot".getBytes());
+        output.close();
+        try
+        {
+            NamespaceSnapshot.read(_file, new MemoryBinding());
+            fail("Expected IOException");
+        }
+        catch (IOException except)
+        {
+        }
+    }
+
+
+    /**
+     * <p>Read a snapshot whose first name has a length larger than
+     * the file.</p>
+     *
+     * @result An IOException is thrown.
+     */
+
+    public void testCorruptLength()
+        throws Exception
+    {
+        MemoryBinding    bindings = new MemoryBinding();
+        RandomAccessFile file;
+
+        bindings.put("name", "value");
+        NamespaceSnapshot.write(bindings, _file);
+        // The first name's length follows the magic number, the
+        // version and the number of names.
+        file = new RandomAccessFile(_file, "rw");
+        file.seek(12);
+        file.writeInt(Integer.MAX_VALUE);
+        file.close();
+        try
+        {
+            NamespaceSnapshot.read(_file, new MemoryBinding());
+            fail("Expected IOException");
+        }
+        catch (IOException except)
+        {
+        }
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(NamespaceSnapshotTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
@@ -66,7 +66,9 @@ public class NamingSuite
     {
         TestSuite suite = new TestSuite("NamingSuite test harness");
         suite.addTest(EnvContextTest.suite());
+        suite.addTest(MemoryBindingTest.suite());
         suite.addTest(MemoryContextTest.suite());
+        suite.addTest(NamespaceSnapshotTest.suite());
         return suite;
     }
 
@@ -0,0 +1,273 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link PoolFiller}.
+ */
+
+public class PoolFillerTest extends TestCase
+{
+    public PoolFillerTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Fill a number of connections using several threads.</p>
+     *
+     * @result The filler returns no error once all the connections
+     * have been created, and is no longer active.
+     */
+
+    public void testFill()
+        throws Exception
+    {
+        CountingFiller filler = new CountingFiller(10, 10, 0);
+
+        assertNull(filler.fill(4));
+        assertEquals(10, filler.getCreated());
+        assert("Filler still active", !filler.isActive());
+
+        filler = new CountingFiller(5, 5, 0);
+        assertNull(filler.fill(1));
+        assertEquals(5, filler.getCreated());
+    }
+
+
+    /**
+     * <p>Fill more connections than the pool can take.</p>
+     *
+     * @result The filler stops as soon as the pool reports it cannot
+     * take more connections, without reporting an error.
+     */
+
+    public void testFillStopsWhenFull()
+        throws Exception
+    {
+        CountingFiller filler = new CountingFiller(10, 3, 0);
+
+        assertNull(filler.fill(1));
+        assertEquals(3, filler.getCreated());
+        assertEquals(4, filler.getCalls());
+    }
+
+
+    /**
+     * <p>Fill connections when creating a connection fails.</p>
+     *
+     * @result The filler stops, returns the error and reports it
+     * exactly once.
+     */
+
+    public void testFillReportsError()
+        throws Exception
+    {
+        CountingFiller filler = new CountingFiller(10, 2, 0);
+        Exception      error;
+
+        filler._fail = true;
+        error = filler.fill(3);
+        assertNotNull(error);
+        assertEquals("Pool failure", error.getMessage());
+        assertEquals(1, filler.getFailed());
+        assertEquals(2, filler.getCreated());
+    }
+
+
+    /**
+     * <p>Fill connections that take a while to create.</p>
+     *
+     * @result No more connections than the concurrency are created
+     * at the same time.
+     */
+
+    public void testConcurrency()
+        throws Exception
+    {
+        CountingFiller filler = new CountingFiller(12, 12, 20);
+
+        assertNull(filler.fill(3));
+        assertEquals(12, filler.getCreated());
+        assert("Too many concurrent threads: " + filler.getMaxConcurrent(),
+               filler.getMaxConcurrent() <= 3);
+    }
+
+
+    /**
+     * <p>Start filling connections in the background.</p>
+     *
+     * @result The call returns immediately, and all connections are
+     * created shortly after.
+     */
+
+    public void testStart()
+        throws Exception
+    {
+        CountingFiller filler = new CountingFiller(6, 6, 10);
+
+        filler.start(2);
+        for (int i = 0; i < 100 && filler.isActive(); ++i)
+        {
+            Thread.sleep(50);
+        }
+        assert("Filler still active", !filler.isActive());
+        assertEquals(6, filler.getCreated());
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PoolFillerTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * A filler that counts the connections it creates. The pool
+     * can take a limited number of connections, after which creating
+     * a connection returns false, or fails if requested.
+     */
+    private static class CountingFiller
+        extends PoolFiller
+    {
+        private final int _capacity;
+
+        private final long _delay;
+
+        private boolean _fail;
+
+        private int _calls;
+
+        private int _started;
+
+        private int _created;
+
+        private int _failed;
+
+        private int _concurrent;
+
+        private int _maxConcurrent;
+
+        CountingFiller(int count, int capacity, long delay)
+        {
+            super("Test", count);
+            _capacity = capacity;
+            _delay = delay;
+        }
+
+        protected boolean create()
+            throws Exception
+        {
+            synchronized (this)
+            {
+                ++_calls;
+                if (_started >= _capacity)
+                {
+                    if (_fail)
+                    {
+                        throw new Exception("Pool failure");
+                    }
+                    return false;
+                }
+                ++_started;
+                ++_concurrent;
+                if (_concurrent > _maxConcurrent)
+                {
+                    _maxConcurrent = _concurrent;
+                }
+            }
+            if (_delay > 0)
+            {
+                Thread.sleep(_delay);
+            }
+            synchronized (this)
+            {
+                --_concurrent;
+                ++_created;
+            }
+            return true;
+        }
+
+        protected synchronized void failed(Exception except)
+        {
+            ++_failed;
+        }
+
+        synchronized int getCalls()
+        {
+            return _calls;
+        }
+
+        synchronized int getCreated()
+        {
+            return _created;
+        }
+
+        synchronized int getFailed()
+        {
+            return _failed;
+        }
+
+        synchronized int getMaxConcurrent()
+        {
+            return _maxConcurrent;
+        }
+    }
+}
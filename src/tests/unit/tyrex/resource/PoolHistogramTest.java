@@ -0,0 +1,294 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link PoolHistogram}.
+ */
+
+public class PoolHistogramTest extends TestCase
+{
+    public PoolHistogramTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Read an empty histogram.</p>
+     *
+     * @result All values are zero.
+     */
+
+    public void testEmpty()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertEquals(0, histogram.getMaximum());
+        assertEquals(0, histogram.getPercentile(50));
+        assert("Average", histogram.getAverage() == 0);
+    }
+
+
+    /**
+     * <p>Record the durations 1 to 100 once each.</p>
+     *
+     * @result The count, total, average and maximum are exact, and
+     * each percentile is no shorter than the exact duration and
+     * within one eighth of it.
+     */
+
+    public void testUniform()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+        long          value;
+
+        for (int i = 1; i <= 100; ++i)
+        {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotal());
+        assertEquals(100, histogram.getMaximum());
+        assert("Average", histogram.getAverage() == 50.5f);
+        for (int percent = 1; percent <= 100; ++percent)
+        {
+            value = histogram.getPercentile(percent);
+            assert("p" + percent + " " + value + " too short", value >= percent);
+            assert("p" + percent + " " + value + " too long", value <= percent + percent / 8);
+        }
+        assertEquals(100, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(100, histogram.getPercentile(200));
+        assertEquals(1, histogram.getPercentile(-5));
+    }
+
+
+    /**
+     * <p>Record 990 short durations and 10 long ones.</p>
+     *
+     * @result The median reports the short duration and the 99th
+     * percentile the long one.
+     */
+
+    public void testLongTail()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+
+        for (int i = 0; i < 990; ++i)
+        {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; ++i)
+        {
+            histogram.record(5000);
+        }
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(3, histogram.getPercentile(99));
+        assertEquals(5000, histogram.getPercentile(99.1));
+        assertEquals(5000, histogram.getMaximum());
+    }
+
+
+    /**
+     * <p>Record each duration alone, for durations around each power
+     * of two and bucket boundary up to 2^32 milliseconds.</p>
+     *
+     * @result Durations below eight milliseconds are reported exactly,
+     * and longer durations with an error of no more than one eighth,
+     * never shorter than the duration recorded.
+     */
+
+    public void testBucketBoundaries()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+        long          base;
+        long          value;
+        long          reported;
+
+        for (int i = 0; i < 8; ++i)
+        {
+            histogram.reset();
+            histogram.record(i);
+            assertEquals(i, histogram.getPercentile(50));
+        }
+        for (int shift = 3; shift < 32; ++shift)
+        {
+            for (int sub = 0; sub < 8; ++sub)
+            {
+                base = (8L + sub) << (shift - 3);
+                for (long delta = -1; delta <= 1; ++delta)
+                {
+                    value = base + delta;
+                    // The percentile never reports more than the
+                    // maximum, so record a longer duration to see
+                    // the bucket's highest value.
+                    histogram.reset();
+                    histogram.record(value);
+                    histogram.record(value * 2);
+                    reported = histogram.getPercentile(50);
+                    assert(value + " reported as " + reported, reported >= value);
+                    assert(value + " reported as " + reported, reported - value <= value / 8);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * <p>Record durations that are negative, and longer than
+     * 2^32 milliseconds.</p>
+     *
+     * @result Negative durations are recorded as zero. Long durations
+     * are recorded, and reported as the maximum.
+     */
+
+    public void testOutOfRange()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+        long          longest = 1L << 40;
+
+        histogram.record(-10);
+        assertEquals(0, histogram.getPercentile(100));
+        assertEquals(0, histogram.getTotal());
+        histogram.record(longest);
+        assertEquals(longest, histogram.getPercentile(100));
+        assertEquals(longest, histogram.getMaximum());
+    }
+
+
+    /**
+     * <p>Take a snapshot, record more durations, then reset the
+     * histogram.</p>
+     *
+     * @result The snapshot keeps the values at the time it was taken,
+     * and the reset histogram reports no durations.
+     */
+
+    public void testSnapshotAndReset()
+    {
+        PoolHistogram histogram = new PoolHistogram();
+        PoolHistogram snapshot;
+
+        histogram.record(10);
+        histogram.record(20);
+        snapshot = histogram.snapshot();
+        histogram.record(1000);
+        assertEquals(2, snapshot.getCount());
+        assertEquals(30, snapshot.getTotal());
+        assertEquals(20, snapshot.getMaximum());
+        assertEquals(3, histogram.getCount());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertEquals(0, histogram.getMaximum());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(2, snapshot.getCount());
+        histogram.record(5);
+        assertEquals(5, histogram.getPercentile(99));
+    }
+
+
+    /**
+     * <p>Record durations from several threads at the same time.</p>
+     *
+     * @result Every duration is counted.
+     */
+
+    public void testConcurrentRecord()
+        throws Exception
+    {
+        final PoolHistogram histogram = new PoolHistogram();
+        Thread[]            threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 10000; ++j)
+                    {
+                        histogram.record(j % 100);
+                    }
+                }
+            };
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+        assertEquals(threads.length * 10000, histogram.getCount());
+        assertEquals(threads.length * 100 * 4950, histogram.getTotal());
+        assertEquals(99, histogram.getMaximum());
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PoolHistogramTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
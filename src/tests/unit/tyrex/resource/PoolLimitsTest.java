@@ -0,0 +1,161 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for the connection lifetime in {@link PoolLimits}.
+ */
+
+public class PoolLimitsTest extends TestCase
+{
+    public PoolLimitsTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Calculate the lifetime of new connections without a
+     * maximum lifetime, and without jitter.</p>
+     *
+     * @result Without a maximum lifetime connections are kept open
+     * forever. Without jitter every connection has the maximum
+     * lifetime.
+     */
+
+    public void testLifetimeWithoutJitter()
+        throws Exception
+    {
+        PoolLimits limits = new PoolLimits();
+
+        assertEquals(0, limits.getMaxLifetime());
+        assertEquals(0, limits.newLifetime());
+        limits.setMaxLifetime(60);
+        limits.setLifetimeJitter(0);
+        for (int i = 0; i < 10; ++i)
+        {
+            assertEquals(60000, limits.newLifetime());
+        }
+    }
+
+
+    /**
+     * <p>Calculate the lifetime of new connections with jitter.</p>
+     *
+     * @result Every lifetime is shortened by at most the jitter
+     * percentage, and not all lifetimes are the same.
+     */
+
+    public void testLifetimeWithJitter()
+        throws Exception
+    {
+        PoolLimits limits = new PoolLimits();
+        long       lifetime;
+        long       first;
+        boolean    different = false;
+
+        limits.setMaxLifetime(100);
+        limits.setLifetimeJitter(20);
+        first = limits.newLifetime();
+        for (int i = 0; i < 100; ++i)
+        {
+            lifetime = limits.newLifetime();
+            assert("Lifetime too long: " + lifetime, lifetime <= 100000);
+            assert("Lifetime too short: " + lifetime, lifetime >= 80000);
+            if (lifetime != first)
+            {
+                different = true;
+            }
+        }
+        assert("All lifetimes are the same", different);
+    }
+
+
+    /**
+     * <p>Set out of range values for the lifetime and jitter.</p>
+     *
+     * @result Negative lifetimes are treated as zero, and the jitter
+     * is kept between zero and one hundred percent.
+     */
+
+    public void testLifetimeLimits()
+        throws Exception
+    {
+        PoolLimits limits = new PoolLimits();
+
+        assertEquals(10, limits.getLifetimeJitter());
+        limits.setMaxLifetime(-5);
+        assertEquals(0, limits.getMaxLifetime());
+        limits.setLifetimeJitter(-1);
+        assertEquals(0, limits.getLifetimeJitter());
+        limits.setLifetimeJitter(150);
+        assertEquals(100, limits.getLifetimeJitter());
+        limits.setMaxLifetime(10);
+        for (int i = 0; i < 20; ++i)
+        {
+            assert("Negative lifetime", limits.newLifetime() >= 0);
+        }
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PoolLimitsTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link PoolMetricsSnapshot}.
+ */
+
+public class PoolMetricsSnapshotTest extends TestCase
+{
+    public PoolMetricsSnapshotTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Record pool activity, take a snapshot, then record more
+     * activity.</p>
+     *
+     * @result The snapshot reports the counters and histograms at the
+     * time it was taken. The metrics report all the activity.
+     */
+
+    public void testSnapshot()
+    {
+        TestMetrics         metrics = new TestMetrics();
+        PoolMetricsSnapshot snapshot;
+
+        metrics.recordCreated();
+        metrics.recordCreated();
+        metrics.recordCreated();
+        metrics.setAvailable(1);
+        metrics.recordWaitDuration(0);
+        metrics.recordWaitDuration(40);
+        metrics.recordUsedDuration(100);
+        metrics.recordUnusedDuration(7);
+        metrics.recordCreateDuration(12);
+        metrics.recordValidateDuration(2);
+        metrics.recordLeak();
+        metrics.recordDiscard();
+        metrics.recordError();
+        snapshot = metrics.getSnapshot();
+
+        metrics.recordCreated();
+        metrics.recordWaitDuration(500);
+        metrics.recordUsedDuration(100);
+        metrics.recordLeak();
+
+        assertEquals(1, snapshot.getTotal());
+        assertEquals(0, snapshot.getCurrentUsed());
+        assertEquals(1, snapshot.getCurrentUnused());
+        assertEquals(3, snapshot.getTotalCreated());
+        assertEquals(1, snapshot.getTotalUsed());
+        assertEquals(1, snapshot.getTotalDiscarded());
+        assertEquals(1, snapshot.getTotalErrors());
+        assertEquals(1, snapshot.getTotalWaited());
+        assertEquals(1, snapshot.getTotalLeaked());
+        assertEquals(2, snapshot.getWaitTime().getCount());
+        assertEquals(40, snapshot.getWaitTime().getMaximum());
+        assertEquals(100, snapshot.getHoldTime().getTotal());
+        assertEquals(7, snapshot.getIdleTime().getTotal());
+        assertEquals(12, snapshot.getCreateTime().getTotal());
+        assertEquals(2, snapshot.getValidateTime().getTotal());
+        assert("Time stamp", snapshot.getTimeStamp() <= System.currentTimeMillis());
+
+        assertEquals(4, metrics.getTotalCreated());
+        assertEquals(2, metrics.getTotalUsed());
+        assertEquals(2, metrics.getTotalWaited());
+        assertEquals(2, metrics.getTotalLeaked());
+        assertEquals(500, metrics.getWaitTime().getMaximum());
+    }
+
+
+    /**
+     * <p>Reset the metrics after taking a snapshot.</p>
+     *
+     * @result The counters and histograms of the metrics are zero,
+     * and the snapshot is not changed.
+     */
+
+    public void testReset()
+    {
+        TestMetrics         metrics = new TestMetrics();
+        PoolMetricsSnapshot snapshot;
+
+        metrics.recordCreated();
+        metrics.recordWaitDuration(10);
+        metrics.recordUsedDuration(20);
+        metrics.recordLeak();
+        metrics.recordDiscard();
+        snapshot = metrics.getSnapshot();
+        metrics.reset();
+
+        assertEquals(0, metrics.getTotalCreated());
+        assertEquals(0, metrics.getTotalUsed());
+        assertEquals(0, metrics.getTotalWaited());
+        assertEquals(0, metrics.getTotalLeaked());
+        assertEquals(0, metrics.getTotalDiscarded());
+        assertEquals(0, metrics.getWaitTime().getCount());
+        assertEquals(0, metrics.getHoldTime().getCount());
+
+        assertEquals(1, snapshot.getTotalCreated());
+        assertEquals(1, snapshot.getTotalUsed());
+        assertEquals(1, snapshot.getTotalWaited());
+        assertEquals(1, snapshot.getTotalLeaked());
+        assertEquals(10, snapshot.getWaitTime().getTotal());
+    }
+
+
+    /**
+     * <p>Record pool activity from several threads at the same
+     * time.</p>
+     *
+     * @result Every event is counted.
+     */
+
+    public void testConcurrentCounters()
+        throws Exception
+    {
+        final TestMetrics metrics = new TestMetrics();
+        Thread[]          threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 10000; ++j)
+                    {
+                        metrics.recordLeak();
+                        metrics.recordWaitDuration(1);
+                    }
+                }
+            };
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+        assertEquals(threads.length * 10000, metrics.getTotalLeaked());
+        assertEquals(threads.length * 10000, metrics.getSnapshot().getTotalWaited());
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PoolMetricsSnapshotTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * Pool metrics whose number of available connections can be set.
+     */
+    private static class TestMetrics
+        extends PoolMetrics
+    {
+        void setAvailable(int available)
+        {
+            _available = available;
+        }
+    }
+}
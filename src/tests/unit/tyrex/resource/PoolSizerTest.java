@@ -0,0 +1,212 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link PoolSizer}.
+ */
+
+public class PoolSizerTest extends TestCase
+{
+    public PoolSizerTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Adjust the target size after an application had to wait for
+     * a connection.</p>
+     *
+     * @result The target size grows immediately.
+     */
+
+    public void testGrowOnWait()
+        throws Exception
+    {
+        TestMetrics metrics = new TestMetrics();
+        PoolSizer   sizer = new PoolSizer(2, metrics, 0);
+
+        metrics.setUsed(2, 2);
+        metrics.recordWaitDuration(5);
+        assertEquals(3, sizer.adjust(metrics, newLimits(0, 10), PoolSizer.INTERVAL));
+        assertEquals(3, sizer.getTarget());
+    }
+
+
+    /**
+     * <p>Adjust the target size after the number of connections in use
+     * peaked above it.</p>
+     *
+     * @result The target size grows above the peak.
+     */
+
+    public void testGrowOnPeak()
+        throws Exception
+    {
+        TestMetrics metrics = new TestMetrics();
+        PoolSizer   sizer = new PoolSizer(4, metrics, 0);
+
+        metrics.setUsed(8, 8);
+        metrics.recordWaitDuration(0);
+        metrics.setUsed(8, 0);
+        assertEquals(9, sizer.adjust(metrics, newLimits(0, 20), PoolSizer.INTERVAL));
+    }
+
+
+    /**
+     * <p>Adjust the target size after connections have been used at a
+     * steady rate.</p>
+     *
+     * @result The demand is estimated from the rate and the average
+     * duration connections are used for, and the target size grows
+     * above it.
+     */
+
+    public void testGrowOnAverage()
+        throws Exception
+    {
+        TestMetrics metrics = new TestMetrics();
+        PoolSizer   sizer = new PoolSizer(2, metrics, 0);
+
+        // 100 uses of one second each in ten seconds is an
+        // average of ten connections in use.
+        for (int i = 0; i < 100; ++i)
+        {
+            metrics.recordUsedDuration(1000);
+        }
+        assertEquals(11, sizer.adjust(metrics, newLimits(0, 20), 10000));
+    }
+
+
+    /**
+     * <p>Adjust the target size while the demand stays low.</p>
+     *
+     * @result The target size shrinks only after the demand stayed
+     * low for {@link PoolSizer#SHRINK_AFTER} intervals in a row.
+     */
+
+    public void testShrinkAfterLowDemand()
+        throws Exception
+    {
+        TestMetrics metrics = new TestMetrics();
+        PoolSizer   sizer = new PoolSizer(8, metrics, 0);
+        PoolLimits  limits = newLimits(0, 20);
+        long        clock = 0;
+
+        for (int i = 1; i < PoolSizer.SHRINK_AFTER; ++i)
+        {
+            clock += PoolSizer.INTERVAL;
+            assertEquals(8, sizer.adjust(metrics, limits, clock));
+        }
+        clock += PoolSizer.INTERVAL;
+        assertEquals(6, sizer.adjust(metrics, limits, clock));
+    }
+
+
+    /**
+     * <p>Adjust the target size beyond the pool limits.</p>
+     *
+     * @result The target size never falls below the minimum, or
+     * grows above the maximum.
+     */
+
+    public void testLimits()
+        throws Exception
+    {
+        TestMetrics metrics = new TestMetrics();
+        PoolSizer   sizer = new PoolSizer(2, metrics, 0);
+        PoolLimits  limits = newLimits(4, 6);
+
+        assertEquals(4, sizer.adjust(metrics, limits, PoolSizer.INTERVAL));
+        metrics.setUsed(20, 20);
+        metrics.recordWaitDuration(10);
+        assertEquals(6, sizer.adjust(metrics, limits, 2 * PoolSizer.INTERVAL));
+    }
+
+
+    private static PoolLimits newLimits(int minimum, int maximum)
+    {
+        PoolLimits limits = new PoolLimits();
+
+        limits.setMinimum(minimum);
+        limits.setMaximum(maximum);
+        return limits;
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PoolSizerTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * Pool metrics that can be changed directly by the test.
+     */
+    private static class TestMetrics
+        extends PoolMetrics
+    {
+        void setUsed(int total, int used)
+        {
+            _total = total;
+            _available = total - used;
+        }
+    }
+}
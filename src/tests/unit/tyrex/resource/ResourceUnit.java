@@ -46,6 +46,7 @@
 
 package tyrex.resource;
 
+import tyrex.resource.jca.ResourceJcaUnit;
 import tyrex.resource.jdbc.ResourceJdbcUnit;
 
 import junit.framework.TestSuite;
@@ -67,6 +68,13 @@ public class ResourceUnit
     public static TestSuite suite()
     {
         TestSuite suite = new TestSuite("ResourceUnit test harness");
+        suite.addTest(PoolFillerTest.suite());
+        suite.addTest(PoolHistogramTest.suite());
+        suite.addTest(PoolLimitsTest.suite());
+        suite.addTest(PoolMetricsSnapshotTest.suite());
+        suite.addTest(PoolSizerTest.suite());
+        suite.addTest(StatementMetricsTest.suite());
+        suite.addTest(ResourceJcaUnit.suite());
         suite.addTest(ResourceJdbcUnit.suite());
         return suite;
     }
@@ -0,0 +1,188 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link StatementMetrics}.
+ */
+
+public class StatementMetricsTest extends TestCase
+{
+    public StatementMetricsTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Normalize statements with extra white space.</p>
+     *
+     * @result Runs of white space become a single space, leading and
+     * trailing white space is removed.
+     */
+
+    public void testNormalizeWhiteSpace()
+    {
+        assertEquals("select a from t",
+                     StatementMetrics.normalize("  select\ta\n  from   t \r\n"));
+        assertEquals("", StatementMetrics.normalize(" \t "));
+    }
+
+
+    /**
+     * <p>Normalize statements with string and numeric literals.</p>
+     *
+     * @result Literals are replaced with a question mark, including
+     * strings with escaped quotes and unterminated strings.
+     */
+
+    public void testNormalizeLiterals()
+    {
+        assertEquals("select * from t where a = ? and b = ? and c = ?",
+                     StatementMetrics.normalize("select * from t where a = 'it''s' and b = 12.5e3 and c = ?"));
+        assertEquals("update t set a=-?,b=? where c in (?, ?)",
+                     StatementMetrics.normalize("update t set a=-1,b='x' where c in (1,  2)"));
+        assertEquals("select ?", StatementMetrics.normalize("select 'abc"));
+    }
+
+
+    /**
+     * <p>Normalize statements with identifiers that contain digits
+     * and quoted identifiers.</p>
+     *
+     * @result Identifiers and quoted identifiers are retained.
+     */
+
+    public void testNormalizeIdentifiers()
+    {
+        assertEquals("select col_1, \"Col 2\" from t1 where x$1 = ?",
+                     StatementMetrics.normalize("select col_1, \"Col 2\" from t1 where x$1 = 42"));
+    }
+
+
+    /**
+     * <p>Look up statements that differ only in literals and white
+     * space.</p>
+     *
+     * @result The same histogram is returned for all of them.
+     */
+
+    public void testLookup()
+    {
+        StatementMetrics metrics = new StatementMetrics(0, null);
+        PoolHistogram    histogram;
+
+        histogram = metrics.lookup("select a from t where b = 1");
+        assert("Same histogram", metrics.lookup("select a  from t where b = 2") == histogram);
+        assert("Same histogram", metrics.getExecuteTime("select a from t where b = 'x'") == histogram);
+        assert("Other histogram", metrics.lookup("select b from t where b = 1") != histogram);
+        assertEquals(2, metrics.getStatements().length);
+    }
+
+
+    /**
+     * <p>Look up more distinct statements than are recorded.</p>
+     *
+     * @result Statements beyond the limit share a single histogram.
+     */
+
+    public void testLookupLimit()
+    {
+        StatementMetrics metrics = new StatementMetrics(0, null);
+        PoolHistogram    other;
+
+        for (int i = 0; i < StatementMetrics.MAX_STATEMENTS; ++i)
+        {
+            metrics.lookup("select c" + i + " from t");
+        }
+        other = metrics.lookup("select x from t");
+        assert("Shared histogram", metrics.lookup("select y from t") == other);
+        assert("Shared histogram", metrics.getExecuteTime(StatementMetrics.OTHER) == other);
+        assertEquals(StatementMetrics.MAX_STATEMENTS + 1, metrics.getStatements().length);
+    }
+
+
+    /**
+     * <p>Record a fast and a slow execution.</p>
+     *
+     * @result Both executions are recorded, only the slow one is
+     * counted as slow.
+     */
+
+    public void testRecordExecute()
+    {
+        StatementMetrics metrics = new StatementMetrics(1000, null);
+        PoolHistogram    histogram = metrics.lookup("select 1");
+        long             now = System.currentTimeMillis();
+
+        metrics.recordExecute(histogram, "select 1", now);
+        assertEquals(0, metrics.getTotalSlow());
+        metrics.recordExecute(histogram, "select 1", now - 2000);
+        assertEquals(1, metrics.getTotalSlow());
+        assertEquals(2, histogram.getCount());
+        metrics.reset();
+        assertEquals(0, metrics.getTotalSlow());
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(StatementMetricsTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
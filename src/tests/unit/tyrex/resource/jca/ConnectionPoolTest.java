@@ -0,0 +1,1194 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jca;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Vector;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ConnectionEvent;
+import javax.resource.spi.ConnectionEventListener;
+import javax.resource.spi.ConnectionManager;
+import javax.resource.spi.ConnectionRequestInfo;
+import javax.resource.spi.LocalTransaction;
+import javax.resource.spi.ManagedConnection;
+import javax.resource.spi.ManagedConnectionFactory;
+import javax.resource.spi.ManagedConnectionMetaData;
+import javax.security.auth.Subject;
+import javax.security.auth.x500.X500Principal;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+import tyrex.resource.PoolLimits;
+import tyrex.tm.TyrexTransactionManager;
+import tyrex.tm.impl.ThreadContext;
+import tyrex.util.logging.Category;
+import tyrex.util.logging.Logger;
+
+
+/**
+ * Tests for matching, sharing within a transaction, lazy enlistment
+ * and the leak detection of {@link ConnectionPool}.
+ */
+
+public class ConnectionPoolTest extends TestCase
+{
+    public ConnectionPoolTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Release twelve connections, then obtain a connection for
+     * different request information.</p>
+     *
+     * @result The connector is offered no more than eight of the
+     * thirteen available connections. None of them matches, and the
+     * pool creates a new connection.
+     */
+
+    public void testMatchCandidatesBound()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle[]               handles = new Handle[12];
+        Handle                 handle;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i] = allocate(pool, factory, null, new TestRequestInfo("other"));
+            }
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i].close();
+            }
+            assertEquals(13, pool.getAvailable());
+            handle = allocate(pool, factory, null, new TestRequestInfo("new"));
+            assertEquals(8, factory.getCandidates().size());
+            assert("Matched a connection", handle.getManaged().matches(null, new TestRequestInfo("new")));
+            assertEquals(14, pool.getTotal());
+            assertEquals(13, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Release one connection created for some request information,
+     * followed by twelve connections created for other request
+     * information, then obtain a connection for the first request
+     * information.</p>
+     *
+     * @result The connector is offered the connection created for the
+     * same request information, although it was not the most recently
+     * released, and the pool reuses it.
+     */
+
+    public void testPartitionByRequestInfo()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle[]               handles = new Handle[12];
+        Handle                 first;
+        Handle                 handle;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            first = allocate(pool, factory, null, new TestRequestInfo("first"));
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i] = allocate(pool, factory, null, new TestRequestInfo("other"));
+            }
+            first.close();
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i].close();
+            }
+            handle = allocate(pool, factory, null, new TestRequestInfo("first"));
+            assert("Not offered", factory.getCandidates().contains(first.getManaged()));
+            assert("Not reused", handle.getManaged() == first.getManaged());
+            assertEquals(14, pool.getTotal());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Release one connection created for a subject, followed by
+     * twelve connections created for another subject, then obtain a
+     * connection for the first subject.</p>
+     *
+     * @result The connector is offered the connection created for the
+     * same subject, although it was not the most recently released,
+     * and the pool reuses it.
+     */
+
+    public void testPartitionBySubject()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle[]               handles = new Handle[12];
+        Handle                 first;
+        Handle                 handle;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            first = allocate(pool, factory, newSubject("CN=first"), null);
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i] = allocate(pool, factory, newSubject("CN=other"), null);
+            }
+            first.close();
+            for (int i = 0; i < handles.length; ++i)
+            {
+                handles[i].close();
+            }
+            handle = allocate(pool, factory, newSubject("CN=first"), null);
+            assert("Not offered", factory.getCandidates().contains(first.getManaged()));
+            assert("Not reused", handle.getManaged() == first.getManaged());
+            assertEquals(14, pool.getTotal());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Obtain two connections within a transaction, close one and
+     * obtain a third, then close the remaining two.</p>
+     *
+     * @result All three client connections share the same managed
+     * connection, which is enlisted once. It is delisted and returned
+     * to the pool only when the last client connection is closed.
+     */
+
+    public void testSharedHandles()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle                 first;
+        Handle                 second;
+        Handle                 third;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            txManager.setTransaction(txManager.newTransaction());
+            first = allocate(pool, factory, null, null);
+            second = allocate(pool, factory, null, null);
+            assert("Not shared", first.getManaged() == second.getManaged());
+            assertEquals(1, txManager.getEnlisted());
+            assertEquals(0, pool.getAvailable());
+
+            first.close();
+            assertEquals(0, txManager.getDelisted());
+            assertEquals(0, pool.getAvailable());
+            third = allocate(pool, factory, null, null);
+            assert("Not shared", third.getManaged() == second.getManaged());
+            assertEquals(1, txManager.getEnlisted());
+
+            second.close();
+            assertEquals(0, txManager.getDelisted());
+            assertEquals(0, pool.getAvailable());
+            third.close();
+            assertEquals(1, txManager.getDelisted());
+            assertEquals(XAResource.TMSUCCESS, txManager.getDelistFlag());
+            assertEquals(1, pool.getAvailable());
+            assertEquals(1, pool.getTotal());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Obtain two connections within a transaction, and have one of
+     * them report an error.</p>
+     *
+     * @result The shared managed connection is delisted with a failure
+     * and destroyed, although the other client connection was not
+     * closed. A connection obtained next in the same transaction is a
+     * new one.
+     */
+
+    public void testSharedHandleError()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle                 first;
+        Handle                 second;
+        Handle                 third;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            txManager.setTransaction(txManager.newTransaction());
+            first = allocate(pool, factory, null, null);
+            second = allocate(pool, factory, null, null);
+            assert("Not shared", first.getManaged() == second.getManaged());
+
+            first.fail();
+            assert("Not destroyed", first.getManaged().isDestroyed());
+            assertEquals(1, txManager.getDelisted());
+            assertEquals(XAResource.TMFAIL, txManager.getDelistFlag());
+            assertEquals(0, pool.getTotal());
+
+            third = allocate(pool, factory, null, null);
+            assert("Shared a destroyed connection", third.getManaged() != first.getManaged());
+            assertEquals(2, txManager.getEnlisted());
+            third.close();
+            assertEquals(2, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Obtain and close a connection in one transaction, obtain the
+     * same managed connection in a second transaction, then obtain a
+     * connection in the first transaction.</p>
+     *
+     * @result The managed connection is no longer shared in the first
+     * transaction once closed, so the last connection is a new one.
+     */
+
+    public void testUnshareOnLastClose()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Transaction            tx;
+        Handle                 first;
+        Handle                 second;
+        Handle                 third;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            tx = txManager.newTransaction();
+            txManager.setTransaction(tx);
+            first = allocate(pool, factory, null, null);
+            first.close();
+
+            txManager.setTransaction(txManager.newTransaction());
+            second = allocate(pool, factory, null, null);
+            assert("Not reused", second.getManaged() == first.getManaged());
+
+            txManager.setTransaction(tx);
+            third = allocate(pool, factory, null, null);
+            assert("Shared outside the transaction", third.getManaged() != second.getManaged());
+            assertEquals(3, txManager.getEnlisted());
+            assertEquals(2, pool.getTotal());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Obtain two connections outside a transaction.</p>
+     *
+     * @result The connections are not shared.
+     */
+
+    public void testNoSharingWithoutTransaction()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        ConnectionPool         pool;
+        Handle                 first;
+        Handle                 second;
+
+        pool = newPool(loader, new PoolLimits(), txManager);
+        try
+        {
+            first = allocate(pool, factory, null, null);
+            second = allocate(pool, factory, null, null);
+            assert("Shared", first.getManaged() != second.getManaged());
+            assertEquals(2, pool.getTotal());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, obtain a connection within a
+     * transaction and close it without using it.</p>
+     *
+     * @result The connection is never enlisted or delisted.
+     */
+
+    public void testLazyEnlistNeverUsed()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+        Handle                 handle;
+
+        factory.setLazy(true);
+        limits.setLazyEnlist(true);
+        pool = newPool(loader, limits, txManager);
+        try
+        {
+            txManager.setTransaction(txManager.newTransaction());
+            handle = allocate(pool, factory, null, null);
+            assertEquals(0, txManager.getEnlisted());
+            handle.close();
+            assertEquals(0, txManager.getEnlisted());
+            assertEquals(0, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, obtain a connection within a
+     * transaction and have the connector ask to enlist it twice.</p>
+     *
+     * @result The connection is enlisted once, and delisted once when
+     * closed. Asking to enlist a connection not in use fails.
+     */
+
+    public void testLazyEnlistOnce()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+        Handle                 handle;
+
+        factory.setLazy(true);
+        limits.setLazyEnlist(true);
+        pool = newPool(loader, limits, txManager);
+        try
+        {
+            txManager.setTransaction(txManager.newTransaction());
+            handle = allocate(pool, factory, null, null);
+            pool.lazyEnlist(handle.getManaged());
+            pool.lazyEnlist(handle.getManaged());
+            assertEquals(1, txManager.getEnlisted());
+            handle.close();
+            assertEquals(1, txManager.getDelisted());
+            try
+            {
+                pool.lazyEnlist(handle.getManaged());
+                fail("Enlisted a connection not in use");
+            }
+            catch (ResourceException except)
+            {
+                // Expected.
+            }
+            assertEquals(1, txManager.getEnlisted());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, obtain a connection from a connector
+     * that does not support it.</p>
+     *
+     * @result The connection is enlisted when obtained.
+     */
+
+    public void testLazyEnlistNotSupported()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+
+        limits.setLazyEnlist(true);
+        pool = newPool(loader, limits, txManager);
+        try
+        {
+            txManager.setTransaction(txManager.newTransaction());
+            allocate(pool, factory, null, null);
+            assertEquals(1, txManager.getEnlisted());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold a connection for longer than the leak timeout, without
+     * sampling where connections are obtained.</p>
+     *
+     * @result The connection is reported once as a warning, without a
+     * stack trace, however many times the pool checks for leaks.
+     */
+
+    public void testLeakReportedOnce()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        LogRecorder            log = new LogRecorder("tyrex.test.jca.leakReportedOnce");
+        ConnectionPool         pool;
+        Handle                 handle;
+
+        limits.setLeakTimeout(1);
+        pool = newPool(loader, limits, txManager, log.getCategory());
+        try
+        {
+            handle = (Handle) pool.allocateConnection(loader.getConfigFactory(), null);
+            waitForLeaks(pool, 1);
+            // The pool checks for leaks every second.
+            Thread.sleep(2500);
+            assertEquals(1, pool.getTotalLeaked());
+            assertEquals(1, log.size());
+            assertEquals(Level.WARN, log.getEvent(0).getLevel());
+            assert("Reported without the leak",
+                   log.getEvent(0).getRenderedMessage().indexOf("possible leak") > 0);
+            assert("Reported with a stack trace",
+                   log.getEvent(0).getThrowableInformation() == null);
+            assert("Reclaimed", ! handle.getManaged().isDestroyed());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold two connections for longer than the leak timeout,
+     * sampling every second connection obtained.</p>
+     *
+     * @result The sampled connection is reported as an error with the
+     * stack trace of the thread that obtained it, the other one as a
+     * warning without a stack trace.
+     */
+
+    public void testLeakSampling()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        LogRecorder            log = new LogRecorder("tyrex.test.jca.leakSampling");
+        ConnectionPool         pool;
+        LoggingEvent           event;
+        int                    sampled = 0;
+
+        limits.setLeakTimeout(1);
+        limits.setLeakSampling(2);
+        pool = newPool(loader, limits, txManager, log.getCategory());
+        try
+        {
+            pool.allocateConnection(loader.getConfigFactory(), null);
+            pool.allocateConnection(loader.getConfigFactory(), null);
+            waitForLeaks(pool, 2);
+            assertEquals(2, log.size());
+            for (int i = 0; i < 2; ++i)
+            {
+                event = log.getEvent(i);
+                if (event.getThrowableInformation() != null)
+                {
+                    ++sampled;
+                    assertEquals(Level.ERROR, event.getLevel());
+                    assertEquals("Connection obtained by thread " + Thread.currentThread().getName(),
+                                 event.getThrowableInformation().getThrowable().getMessage());
+                }
+                else
+                {
+                    assertEquals(Level.WARN, event.getLevel());
+                }
+            }
+            assertEquals(1, sampled);
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold two lazily enlisted connections for longer than the leak
+     * timeout, with the pool reclaiming leaked connections. Only one
+     * of them has been enlisted.</p>
+     *
+     * @result Both connections are reported. The connection that was
+     * never enlisted is destroyed. The enlisted connection is kept
+     * until the application closes it, and is then delisted.
+     */
+
+    public void testLeakReclaim()
+        throws Exception
+    {
+        ConnectorLoader        loader = newLoader();
+        TestFactory            factory = (TestFactory) loader.getConfigFactory();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        LogRecorder            log = new LogRecorder("tyrex.test.jca.leakReclaim");
+        ConnectionPool         pool;
+        Handle                 unused;
+        Handle                 enlisted;
+
+        factory.setLazy(true);
+        limits.setLazyEnlist(true);
+        limits.setLeakTimeout(1);
+        limits.setLeakReclaim(true);
+        pool = newPool(loader, limits, txManager, log.getCategory());
+        try
+        {
+            unused = (Handle) pool.allocateConnection(factory, null);
+            enlisted = (Handle) pool.allocateConnection(factory, null);
+            pool.lazyEnlist(enlisted.getManaged());
+            assertEquals(1, txManager.getEnlisted());
+            waitForLeaks(pool, 2);
+            for (int i = 0; i < 100 && ! unused.getManaged().isDestroyed(); ++i)
+            {
+                Thread.sleep(50);
+            }
+            assert("Not reclaimed", unused.getManaged().isDestroyed());
+            // Give the pool another chance to reclaim the enlisted
+            // connection.
+            Thread.sleep(1500);
+            assert("Reclaimed while enlisted", ! enlisted.getManaged().isDestroyed());
+            assertEquals(1, pool.getTotal());
+            assertEquals(0, txManager.getDelisted());
+            enlisted.close();
+            assertEquals(1, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    private static void waitForLeaks(ConnectionPool pool, int leaks)
+        throws Exception
+    {
+        for (int i = 0; i < 100 && pool.getTotalLeaked() < leaks; ++i)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(leaks, pool.getTotalLeaked());
+    }
+
+
+    /**
+     * Obtains a connection from the pool on behalf of a subject.
+     */
+    private static Handle allocate(ConnectionPool pool, ManagedConnectionFactory factory,
+                                   Subject subject, ConnectionRequestInfo requestInfo)
+        throws Exception
+    {
+        ThreadContext.setThreadContext(new ThreadContext(subject));
+        try
+        {
+            return (Handle) pool.allocateConnection(factory, requestInfo);
+        }
+        finally
+        {
+            ThreadContext.unsetThreadContext();
+        }
+    }
+
+
+    private static Subject newSubject(String name)
+    {
+        Set principals = new HashSet();
+
+        principals.add(new X500Principal(name));
+        return new Subject(false, principals, new HashSet(), new HashSet());
+    }
+
+
+    private static ConnectorLoader newLoader()
+        throws Exception
+    {
+        return new ConnectorLoader(ConnectionPoolTest.class.getClassLoader(),
+                                   TestFactory.class.getName(), Object.class.getName(),
+                                   Handle.class.getName(), true, false);
+    }
+
+
+    private static ConnectionPool newPool(ConnectorLoader loader, PoolLimits limits,
+                                          TestTransactionManager txManager)
+        throws Exception
+    {
+        return newPool(loader, limits, txManager, Logger.resource);
+    }
+
+
+    private static ConnectionPool newPool(ConnectorLoader loader, PoolLimits limits,
+                                          TestTransactionManager txManager, Category category)
+        throws Exception
+    {
+        return new ConnectionPool("test", limits, loader,
+                                  txManager.getTransactionManager(), category);
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(ConnectionPoolTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * Returns null, zero or false from every method, except for the
+     * methods defined by Object.
+     */
+    private static class NullHandler
+        implements InvocationHandler
+    {
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            Class type = method.getReturnType();
+
+            if (method.getName().equals("hashCode") && args == null)
+            {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            if (method.getName().equals("equals") && args != null && args.length == 1)
+            {
+                return new Boolean(proxy == args[0]);
+            }
+            if (method.getName().equals("toString") && args == null)
+            {
+                return "Proxy@" + System.identityHashCode(proxy);
+            }
+            if (type == Boolean.TYPE)
+            {
+                return Boolean.FALSE;
+            }
+            if (type == Integer.TYPE)
+            {
+                return new Integer(0);
+            }
+            if (type == Long.TYPE)
+            {
+                return new Long(0);
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * A transaction manager that counts the resources enlisted and
+     * delisted by the pool. The current transaction is set by the
+     * test.
+     */
+    private static class TestTransactionManager
+        extends NullHandler
+    {
+        private Transaction _tx;
+
+        private int _enlisted;
+
+        private int _delisted;
+
+        private int _delistFlag;
+
+        TyrexTransactionManager getTransactionManager()
+        {
+            return (TyrexTransactionManager) Proxy.newProxyInstance(
+                TyrexTransactionManager.class.getClassLoader(),
+                new Class[] { TyrexTransactionManager.class }, this);
+        }
+
+        /**
+         * Returns a new transaction. The status of the transaction is
+         * zero, which is active.
+         */
+        Transaction newTransaction()
+        {
+            return (Transaction) Proxy.newProxyInstance(
+                Transaction.class.getClassLoader(),
+                new Class[] { Transaction.class }, new NullHandler());
+        }
+
+        synchronized void setTransaction(Transaction tx)
+        {
+            _tx = tx;
+        }
+
+        synchronized int getEnlisted()
+        {
+            return _enlisted;
+        }
+
+        synchronized int getDelisted()
+        {
+            return _delisted;
+        }
+
+        synchronized int getDelistFlag()
+        {
+            return _delistFlag;
+        }
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            if (method.getName().equals("getTransaction"))
+            {
+                return _tx;
+            }
+            if (method.getName().equals("enlistResource"))
+            {
+                ++_enlisted;
+                return null;
+            }
+            if (method.getName().equals("delistResource"))
+            {
+                ++_delisted;
+                _delistFlag = ((Integer) args[1]).intValue();
+                return null;
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+
+
+    /**
+     * A managed connection factory that creates test connections, and
+     * matches the first candidate created for the same subject and
+     * request information. Records the candidates it was offered.
+     */
+    public static class TestFactory
+        implements ManagedConnectionFactory
+    {
+        private boolean _lazy;
+
+        private Set _candidates;
+
+        public TestFactory()
+        {
+        }
+
+        synchronized void setLazy(boolean lazy)
+        {
+            _lazy = lazy;
+        }
+
+        synchronized Set getCandidates()
+        {
+            return _candidates;
+        }
+
+        public Object createConnectionFactory(ConnectionManager manager)
+        {
+            return new Object();
+        }
+
+        public Object createConnectionFactory()
+        {
+            return new Object();
+        }
+
+        public synchronized ManagedConnection createManagedConnection(Subject subject,
+                                                                      ConnectionRequestInfo requestInfo)
+        {
+            if (_lazy)
+            {
+                return new LazyTestConnection(subject, requestInfo);
+            }
+            return new TestConnection(subject, requestInfo);
+        }
+
+        public synchronized ManagedConnection matchManagedConnections(Set set, Subject subject,
+                                                                      ConnectionRequestInfo requestInfo)
+        {
+            Iterator       iterator;
+            TestConnection managed;
+
+            _candidates = set;
+            iterator = set.iterator();
+            while (iterator.hasNext())
+            {
+                managed = (TestConnection) iterator.next();
+                if (managed.matches(subject, requestInfo))
+                {
+                    return managed;
+                }
+            }
+            return null;
+        }
+
+        public void setLogWriter(PrintWriter writer)
+        {
+        }
+
+        public PrintWriter getLogWriter()
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * A managed connection created for a subject and request
+     * information, that hands out {@link Handle} client connections.
+     */
+    private static class TestConnection
+        implements ManagedConnection
+    {
+        private final Subject _subject;
+
+        private final ConnectionRequestInfo _requestInfo;
+
+        private final XAResource _xaResource;
+
+        private final Vector _listeners = new Vector();
+
+        private boolean _destroyed;
+
+        TestConnection(Subject subject, ConnectionRequestInfo requestInfo)
+        {
+            _subject = subject;
+            _requestInfo = requestInfo;
+            _xaResource = (XAResource) Proxy.newProxyInstance(
+                XAResource.class.getClassLoader(),
+                new Class[] { XAResource.class }, new NullHandler());
+        }
+
+        boolean matches(Subject subject, ConnectionRequestInfo requestInfo)
+        {
+            return (_subject == null ? subject == null : _subject.equals(subject)) &&
+                (_requestInfo == null ? requestInfo == null : _requestInfo.equals(requestInfo));
+        }
+
+        synchronized boolean isDestroyed()
+        {
+            return _destroyed;
+        }
+
+        /**
+         * Notifies the listeners of an event caused by a client
+         * connection.
+         */
+        void fireEvent(int id, Handle handle)
+        {
+            ConnectionEvent event;
+            Object[]        listeners;
+
+            event = new ConnectionEvent(this, id);
+            event.setConnectionHandle(handle);
+            listeners = _listeners.toArray();
+            for (int i = 0; i < listeners.length; ++i)
+            {
+                if (id == ConnectionEvent.CONNECTION_CLOSED)
+                {
+                    ((ConnectionEventListener) listeners[i]).connectionClosed(event);
+                }
+                else
+                {
+                    ((ConnectionEventListener) listeners[i]).connectionErrorOccurred(event);
+                }
+            }
+        }
+
+        public Object getConnection(Subject subject, ConnectionRequestInfo requestInfo)
+        {
+            return new Handle(this);
+        }
+
+        public synchronized void destroy()
+        {
+            _destroyed = true;
+        }
+
+        public void cleanup()
+        {
+        }
+
+        public void associateConnection(Object connection)
+        {
+        }
+
+        public void addConnectionEventListener(ConnectionEventListener listener)
+        {
+            _listeners.addElement(listener);
+        }
+
+        public void removeConnectionEventListener(ConnectionEventListener listener)
+        {
+            _listeners.removeElement(listener);
+        }
+
+        public XAResource getXAResource()
+        {
+            return _xaResource;
+        }
+
+        public LocalTransaction getLocalTransaction()
+        {
+            return null;
+        }
+
+        public ManagedConnectionMetaData getMetaData()
+        {
+            return (ManagedConnectionMetaData) Proxy.newProxyInstance(
+                ManagedConnectionMetaData.class.getClassLoader(),
+                new Class[] { ManagedConnectionMetaData.class }, new NullHandler());
+        }
+
+        public void setLogWriter(PrintWriter writer)
+        {
+        }
+
+        public PrintWriter getLogWriter()
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * A managed connection that supports lazy enlistment.
+     */
+    private static class LazyTestConnection
+        extends TestConnection
+        implements LazyEnlistableManagedConnection
+    {
+        LazyTestConnection(Subject subject, ConnectionRequestInfo requestInfo)
+        {
+            super(subject, requestInfo);
+        }
+    }
+
+
+    /**
+     * Connection request information that is equal to any other
+     * with the same name.
+     */
+    private static class TestRequestInfo
+        implements ConnectionRequestInfo
+    {
+        private final String _name;
+
+        TestRequestInfo(String name)
+        {
+            _name = name;
+        }
+
+        public boolean equals(Object object)
+        {
+            return (object instanceof TestRequestInfo) &&
+                _name.equals(((TestRequestInfo) object)._name);
+        }
+
+        public int hashCode()
+        {
+            return _name.hashCode();
+        }
+    }
+
+
+    /**
+     * The client connection, which the application closes or which
+     * reports an error.
+     */
+    public static class Handle
+    {
+        private final TestConnection _managed;
+
+        Handle(TestConnection managed)
+        {
+            _managed = managed;
+        }
+
+        TestConnection getManaged()
+        {
+            return _managed;
+        }
+
+        void close()
+        {
+            _managed.fireEvent(ConnectionEvent.CONNECTION_CLOSED, this);
+        }
+
+        void fail()
+        {
+            _managed.fireEvent(ConnectionEvent.CONNECTION_ERROR_OCCURRED, this);
+        }
+    }
+
+
+    /**
+     * Records the warnings and errors logged to a category, instead
+     * of writing them out.
+     */
+    private static class LogRecorder
+        extends AppenderSkeleton
+    {
+        private final Vector _events = new Vector();
+
+        private final Category _category;
+
+        LogRecorder(String name)
+        {
+            org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(name);
+
+            logger.setAdditivity(false);
+            logger.setLevel(Level.WARN);
+            logger.addAppender(this);
+            _category = Category.getInstance(name);
+        }
+
+        Category getCategory()
+        {
+            return _category;
+        }
+
+        int size()
+        {
+            return _events.size();
+        }
+
+        LoggingEvent getEvent(int index)
+        {
+            return (LoggingEvent) _events.elementAt(index);
+        }
+
+        protected void append(LoggingEvent event)
+        {
+            _events.addElement(event);
+        }
+
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+
+        public void close()
+        {
+        }
+    }
+}
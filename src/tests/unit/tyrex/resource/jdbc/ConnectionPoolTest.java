@@ -0,0 +1,773 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Vector;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAResource;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+import tyrex.resource.PoolLimits;
+import tyrex.tm.TyrexTransactionManager;
+import tyrex.util.logging.Category;
+import tyrex.util.logging.Logger;
+
+
+/**
+ * Tests for the initial and minimum size, the leak detection and the
+ * lazy enlistment of {@link ConnectionPool}.
+ */
+
+public class ConnectionPoolTest extends TestCase
+{
+    public ConnectionPoolTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Create a pool with an initial size, filled by several
+     * threads.</p>
+     *
+     * @result The pool opens exactly the initial number of connections
+     * before the constructor returns, and closes all of them when
+     * destroyed.
+     */
+
+    public void testInitialSize()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        ConnectionPool pool;
+
+        limits.setInitial(5);
+        limits.setPrefillThreads(3);
+        pool = newPool(ds, limits);
+        try
+        {
+            assertEquals(5, pool.getTotal());
+            assertEquals(5, pool.getAvailable());
+            assertEquals(5, ds.getOpened());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+        assertEquals(5, ds.getClosed());
+    }
+
+
+    /**
+     * <p>Create a pool with an initial size above its maximum.</p>
+     *
+     * @result The pool opens no more than the maximum number of
+     * connections.
+     */
+
+    public void testInitialSizeAboveMaximum()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        ConnectionPool pool;
+
+        limits.setMaximum(4);
+        limits.setInitial(10);
+        limits.setPrefillThreads(4);
+        pool = newPool(ds, limits);
+        try
+        {
+            assertEquals(4, pool.getTotal());
+            assertEquals(4, ds.getOpened());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Create a pool with a minimum size larger than its initial
+     * size.</p>
+     *
+     * @result The pool opens connections in the background until it
+     * reaches the minimum size.
+     */
+
+    public void testMinimumSize()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        ConnectionPool pool;
+
+        limits.setInitial(1);
+        limits.setMinimum(3);
+        limits.setPrefillThreads(2);
+        pool = newPool(ds, limits);
+        try
+        {
+            for (int i = 0; i < 100 && pool.getTotal() < 3; ++i)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(3, pool.getTotal());
+            Thread.sleep(100);
+            assertEquals(3, ds.getOpened());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold a connection for longer than the leak timeout, without
+     * sampling where connections are obtained.</p>
+     *
+     * @result The connection is reported once as a warning, without a
+     * stack trace, however many times the pool checks for leaks.
+     */
+
+    public void testLeakReportedOnce()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        LogRecorder    log = new LogRecorder("tyrex.test.jdbc.leakReportedOnce");
+        ConnectionPool pool;
+
+        limits.setLeakTimeout(1);
+        pool = newPool(ds, limits, log.getCategory());
+        try
+        {
+            pool.getConnection();
+            waitForLeaks(pool, 1);
+            // The pool checks for leaks every second.
+            Thread.sleep(2500);
+            assertEquals(1, pool.getTotalLeaked());
+            assertEquals(1, log.size());
+            assertEquals(Level.WARN, log.getEvent(0).getLevel());
+            assert("Reported without the leak",
+                   log.getEvent(0).getRenderedMessage().indexOf("possible leak") > 0);
+            assert("Reported with a stack trace",
+                   log.getEvent(0).getThrowableInformation() == null);
+            assertEquals(1, pool.getTotal());
+            assertEquals(0, ds.getClosed());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold two connections for longer than the leak timeout,
+     * sampling every second connection obtained.</p>
+     *
+     * @result The sampled connection is reported as an error with the
+     * stack trace of the thread that obtained it, the other one as a
+     * warning without a stack trace.
+     */
+
+    public void testLeakSampling()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        LogRecorder    log = new LogRecorder("tyrex.test.jdbc.leakSampling");
+        ConnectionPool pool;
+        LoggingEvent   event;
+        int            sampled = 0;
+
+        limits.setLeakTimeout(1);
+        limits.setLeakSampling(2);
+        pool = newPool(ds, limits, log.getCategory());
+        try
+        {
+            pool.getConnection();
+            pool.getConnection();
+            waitForLeaks(pool, 2);
+            assertEquals(2, log.size());
+            for (int i = 0; i < 2; ++i)
+            {
+                event = log.getEvent(i);
+                if (event.getThrowableInformation() != null)
+                {
+                    ++sampled;
+                    assertEquals(Level.ERROR, event.getLevel());
+                    assertEquals("Connection obtained by thread " + Thread.currentThread().getName(),
+                                 event.getThrowableInformation().getThrowable().getMessage());
+                }
+                else
+                {
+                    assertEquals(Level.WARN, event.getLevel());
+                }
+            }
+            assertEquals(1, sampled);
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>Hold a connection for longer than the leak timeout, with
+     * the pool reclaiming leaked connections.</p>
+     *
+     * @result The connection is reported, then closed and removed from
+     * the pool.
+     */
+
+    public void testLeakReclaim()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        PoolLimits     limits = new PoolLimits();
+        LogRecorder    log = new LogRecorder("tyrex.test.jdbc.leakReclaim");
+        ConnectionPool pool;
+
+        limits.setLeakTimeout(1);
+        limits.setLeakReclaim(true);
+        pool = newPool(ds, limits, log.getCategory());
+        try
+        {
+            pool.getConnection();
+            waitForLeaks(pool, 1);
+            for (int i = 0; i < 100 && ds.getClosed() < 1; ++i)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(1, ds.getClosed());
+            assertEquals(0, pool.getTotal());
+            assertEquals(1, log.size());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, obtain a connection and close it
+     * without using it.</p>
+     *
+     * @result The connection is never enlisted or delisted, and is
+     * returned to the pool.
+     */
+
+    public void testLazyConnectionNotUsed()
+        throws Exception
+    {
+        TestDataSource         ds = new TestDataSource();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+        Connection             connection;
+
+        limits.setLazyEnlist(true);
+        pool = newPool(ds, limits, txManager);
+        try
+        {
+            connection = pool.getConnection();
+            assertEquals(0, txManager.getEnlisted());
+            connection.close();
+            assertEquals(0, txManager.getEnlisted());
+            assertEquals(0, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, obtain a connection and use it twice.</p>
+     *
+     * @result The connection is enlisted when first used, and delisted
+     * once when closed.
+     */
+
+    public void testLazyConnectionEnlistsOnce()
+        throws Exception
+    {
+        TestDataSource         ds = new TestDataSource();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+        Connection             connection;
+
+        limits.setLazyEnlist(true);
+        pool = newPool(ds, limits, txManager);
+        try
+        {
+            connection = pool.getConnection();
+            connection.getAutoCommit();
+            assertEquals(1, txManager.getEnlisted());
+            connection.getAutoCommit();
+            assertEquals(1, txManager.getEnlisted());
+            connection.close();
+            assertEquals(1, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    /**
+     * <p>With lazy enlistment, close a connection while another thread
+     * is about to use it for the first time.</p>
+     *
+     * @result The other thread gets an SQLException, and the closed
+     * connection is never enlisted.
+     */
+
+    public void testLazyConnectionClosedByOtherThread()
+        throws Exception
+    {
+        TestDataSource         ds = new TestDataSource();
+        TestTransactionManager txManager = new TestTransactionManager();
+        PoolLimits             limits = new PoolLimits();
+        ConnectionPool         pool;
+        final Connection       connection;
+        final Vector           errors = new Vector();
+        Thread                 thread;
+
+        limits.setLazyEnlist(true);
+        pool = newPool(ds, limits, txManager);
+        try
+        {
+            connection = pool.getConnection();
+            thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        connection.getAutoCommit();
+                    }
+                    catch (Throwable except)
+                    {
+                        errors.addElement(except);
+                    }
+                }
+            };
+            // The other thread finds the connection open, and waits
+            // for this lock before enlisting it.
+            synchronized (connection)
+            {
+                thread.start();
+                Thread.sleep(200);
+                connection.close();
+            }
+            thread.join();
+            assertEquals(1, errors.size());
+            assert("Not an SQLException: " + errors.elementAt(0),
+                   errors.elementAt(0) instanceof SQLException);
+            assertEquals(0, txManager.getEnlisted());
+            assertEquals(0, txManager.getDelisted());
+            assertEquals(1, pool.getAvailable());
+        }
+        finally
+        {
+            pool.destroy();
+        }
+    }
+
+
+    private static void waitForLeaks(ConnectionPool pool, int leaks)
+        throws Exception
+    {
+        for (int i = 0; i < 100 && pool.getTotalLeaked() < leaks; ++i)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(leaks, pool.getTotalLeaked());
+    }
+
+
+    private static ConnectionPool newPool(TestDataSource ds, PoolLimits limits)
+        throws Exception
+    {
+        return newPool(ds, limits, Logger.resource);
+    }
+
+
+    private static ConnectionPool newPool(TestDataSource ds, PoolLimits limits,
+                                          Category category)
+        throws Exception
+    {
+        TyrexTransactionManager txManager;
+
+        txManager = (TyrexTransactionManager) Proxy.newProxyInstance(
+            TyrexTransactionManager.class.getClassLoader(),
+            new Class[] { TyrexTransactionManager.class },
+            new NullHandler());
+        return new ConnectionPool("test", limits, null, null, ds.getDataSource(),
+                                  txManager, category, null, null);
+    }
+
+
+    private static ConnectionPool newPool(TestDataSource ds, PoolLimits limits,
+                                          TestTransactionManager txManager)
+        throws Exception
+    {
+        return new ConnectionPool("test", limits, null, ds.getXADataSource(), null,
+                                  txManager.getTransactionManager(), Logger.resource,
+                                  null, null);
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(ConnectionPoolTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * Returns null, zero or false from every method, except for the
+     * methods defined by Object.
+     */
+    private static class NullHandler
+        implements InvocationHandler
+    {
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            Class type = method.getReturnType();
+
+            if (method.getName().equals("hashCode") && args == null)
+            {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            if (method.getName().equals("equals") && args != null && args.length == 1)
+            {
+                return new Boolean(proxy == args[0]);
+            }
+            if (method.getName().equals("toString") && args == null)
+            {
+                return "Proxy@" + System.identityHashCode(proxy);
+            }
+            if (type == Boolean.TYPE)
+            {
+                return Boolean.FALSE;
+            }
+            if (type == Integer.TYPE)
+            {
+                return new Integer(0);
+            }
+            if (type == Long.TYPE)
+            {
+                return new Long(0);
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Records the warnings and errors logged to a category, instead
+     * of writing them out.
+     */
+    private static class LogRecorder
+        extends AppenderSkeleton
+    {
+        private final Vector _events = new Vector();
+
+        private final Category _category;
+
+        LogRecorder(String name)
+        {
+            org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(name);
+
+            logger.setAdditivity(false);
+            logger.setLevel(Level.WARN);
+            logger.addAppender(this);
+            _category = Category.getInstance(name);
+        }
+
+        Category getCategory()
+        {
+            return _category;
+        }
+
+        int size()
+        {
+            return _events.size();
+        }
+
+        LoggingEvent getEvent(int index)
+        {
+            return (LoggingEvent) _events.elementAt(index);
+        }
+
+        protected void append(LoggingEvent event)
+        {
+            _events.addElement(event);
+        }
+
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+
+        public void close()
+        {
+        }
+    }
+
+
+    /**
+     * A transaction manager that counts the resources enlisted and
+     * delisted by the pool.
+     */
+    private static class TestTransactionManager
+        extends NullHandler
+    {
+        private int _enlisted;
+
+        private int _delisted;
+
+        TyrexTransactionManager getTransactionManager()
+        {
+            return (TyrexTransactionManager) Proxy.newProxyInstance(
+                TyrexTransactionManager.class.getClassLoader(),
+                new Class[] { TyrexTransactionManager.class }, this);
+        }
+
+        synchronized int getEnlisted()
+        {
+            return _enlisted;
+        }
+
+        synchronized int getDelisted()
+        {
+            return _delisted;
+        }
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            if (method.getName().equals("enlistResource"))
+            {
+                ++_enlisted;
+                return null;
+            }
+            if (method.getName().equals("delistResource"))
+            {
+                ++_delisted;
+                return null;
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+
+
+    /**
+     * A connection pool and XA data source that counts the pooled
+     * connections it opens and the ones closed by the pool. Closing
+     * a connection obtained from a pooled connection notifies the
+     * pool.
+     */
+    private static class TestDataSource
+        extends NullHandler
+    {
+        private int _opened;
+
+        private int _closed;
+
+        ConnectionPoolDataSource getDataSource()
+        {
+            return (ConnectionPoolDataSource) Proxy.newProxyInstance(
+                ConnectionPoolDataSource.class.getClassLoader(),
+                new Class[] { ConnectionPoolDataSource.class }, this);
+        }
+
+        XADataSource getXADataSource()
+        {
+            return (XADataSource) Proxy.newProxyInstance(
+                XADataSource.class.getClassLoader(),
+                new Class[] { XADataSource.class }, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            if (method.getName().equals("getPooledConnection"))
+            {
+                return newPooledConnection(PooledConnection.class);
+            }
+            if (method.getName().equals("getXAConnection"))
+            {
+                return newPooledConnection(XAConnection.class);
+            }
+            return super.invoke(proxy, method, args);
+        }
+
+        private Object newPooledConnection(Class type)
+        {
+            synchronized (this)
+            {
+                ++_opened;
+            }
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type },
+                                          new PooledHandler());
+        }
+
+        synchronized int getOpened()
+        {
+            return _opened;
+        }
+
+        synchronized int getClosed()
+        {
+            return _closed;
+        }
+
+        private class PooledHandler
+            extends NullHandler
+        {
+            private final Vector _listeners = new Vector();
+
+            private final XAResource _xaResource = (XAResource) Proxy.newProxyInstance(
+                XAResource.class.getClassLoader(),
+                new Class[] { XAResource.class }, new NullHandler());
+
+            public Object invoke(final Object pooled, Method method, Object[] args)
+                throws Throwable
+            {
+                if (method.getName().equals("close"))
+                {
+                    synchronized (TestDataSource.this)
+                    {
+                        ++_closed;
+                    }
+                    return null;
+                }
+                if (method.getName().equals("addConnectionEventListener"))
+                {
+                    _listeners.addElement(args[0]);
+                    return null;
+                }
+                if (method.getName().equals("removeConnectionEventListener"))
+                {
+                    _listeners.removeElement(args[0]);
+                    return null;
+                }
+                if (method.getName().equals("getXAResource"))
+                {
+                    return _xaResource;
+                }
+                if (method.getName().equals("getConnection"))
+                {
+                    return Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class[] { Connection.class },
+                        new NullHandler()
+                        {
+                            public Object invoke(Object proxy, Method method, Object[] args)
+                                throws Throwable
+                            {
+                                Object[] listeners;
+
+                                if (method.getName().equals("close"))
+                                {
+                                    listeners = _listeners.toArray();
+                                    for (int i = 0; i < listeners.length; ++i)
+                                    {
+                                        ((ConnectionEventListener) listeners[i]).connectionClosed(
+                                            new ConnectionEvent((PooledConnection) pooled));
+                                    }
+                                    return null;
+                                }
+                                return super.invoke(proxy, method, args);
+                            }
+                        });
+                }
+                return super.invoke(pooled, method, args);
+            }
+        }
+    }
+}
@@ -67,6 +67,7 @@ public class ResourceJdbcUnit
     public static TestSuite suite()
     {
         TestSuite suite = new TestSuite("ResourceJdbcUnit test harness");
+        suite.addTest(ConnectionPoolTest.suite());
         suite.addTest(ResourceJdbcXaSuite.suite());
         return suite;
     }
@@ -0,0 +1,220 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link ConnectionState}.
+ */
+
+public class ConnectionStateTest extends TestCase
+{
+    public ConnectionStateTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Set each property twice to the same value, then to a
+     * different value.</p>
+     *
+     * @result The driver is only called when the value changes.
+     */
+
+    public void testRedundantSetSkipped()
+        throws Exception
+    {
+        TestConnection  conn = new TestConnection();
+        ConnectionState state = new ConnectionState(conn.getConnection(), 0);
+
+        state.setAutoCommit(false);
+        state.setAutoCommit(false);
+        assertEquals(1, conn.getCalls("setAutoCommit"));
+        state.setAutoCommit(true);
+        assertEquals(2, conn.getCalls("setAutoCommit"));
+
+        state.setReadOnly(true);
+        state.setReadOnly(true);
+        assertEquals(1, conn.getCalls("setReadOnly"));
+        state.setReadOnly(false);
+        assertEquals(2, conn.getCalls("setReadOnly"));
+
+        state.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        state.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(1, conn.getCalls("setTransactionIsolation"));
+        state.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        assertEquals(2, conn.getCalls("setTransactionIsolation"));
+
+        state.setCatalog("first");
+        state.setCatalog("first");
+        assertEquals(1, conn.getCalls("setCatalog"));
+        state.setCatalog(null);
+        state.setCatalog(null);
+        assertEquals(2, conn.getCalls("setCatalog"));
+    }
+
+
+    /**
+     * <p>Read each property twice, then read it after setting it.</p>
+     *
+     * @result The driver is asked once for an unknown property, and
+     * not at all for a property that was set.
+     */
+
+    public void testGetRemembersValue()
+        throws Exception
+    {
+        TestConnection  conn = new TestConnection();
+        ConnectionState state = new ConnectionState(conn.getConnection(), 0);
+
+        assert("Auto commit", state.getAutoCommit());
+        assert("Auto commit", state.getAutoCommit());
+        assertEquals(1, conn.getCalls("getAutoCommit"));
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, state.getTransactionIsolation());
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, state.getTransactionIsolation());
+        assertEquals(1, conn.getCalls("getTransactionIsolation"));
+        assertNull(state.getCatalog());
+        assertNull(state.getCatalog());
+        assertEquals(1, conn.getCalls("getCatalog"));
+
+        state.setReadOnly(true);
+        assert("Read only", state.isReadOnly());
+        assertEquals(0, conn.getCalls("isReadOnly"));
+        // The value read from the driver saves setting it again
+        state.setAutoCommit(true);
+        assertEquals(0, conn.getCalls("setAutoCommit"));
+    }
+
+
+    /**
+     * <p>Set a property while the driver fails to set it.</p>
+     *
+     * @result The exception is thrown and the property becomes
+     * unknown, so the next set calls the driver again.
+     */
+
+    public void testFailureResetsState()
+        throws Exception
+    {
+        TestConnection  conn = new TestConnection();
+        ConnectionState state = new ConnectionState(conn.getConnection(), 0);
+
+        state.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        conn.setFailing("setTransactionIsolation", true);
+        try
+        {
+            state.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            fail("Expected SQLException");
+        }
+        catch (SQLException except)
+        {
+        }
+        conn.setFailing("setTransactionIsolation", false);
+        state.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertEquals(3, conn.getCalls("setTransactionIsolation"));
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE, state.getTransactionIsolation());
+
+        state.setAutoCommit(false);
+        conn.setFailing("setAutoCommit", true);
+        try
+        {
+            state.setAutoCommit(true);
+            fail("Expected SQLException");
+        }
+        catch (SQLException except)
+        {
+        }
+        conn.setFailing("setAutoCommit", false);
+        assert("Auto commit read from driver", ! state.getAutoCommit());
+        assertEquals(1, conn.getCalls("getAutoCommit"));
+    }
+
+
+    /**
+     * <p>Construct the state with and without a statement cache.</p>
+     *
+     * @result A statement cache is only created for a positive size.
+     */
+
+    public void testStatementCache()
+        throws Exception
+    {
+        TestConnection conn = new TestConnection();
+
+        assertNull(new ConnectionState(conn.getConnection(), 0).statements);
+        assertNotNull(new ConnectionState(conn.getConnection(), 10).statements);
+        try
+        {
+            new ConnectionState(null, 0);
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException except)
+        {
+        }
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(ConnectionStateTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
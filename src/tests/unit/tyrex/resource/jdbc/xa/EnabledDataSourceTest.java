@@ -53,8 +53,13 @@ package tyrex.resource.jdbc.xa;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.File;
 import java.io.PrintWriter;
 
+import javax.transaction.xa.Xid;
+
+import tyrex.tm.xid.XidUtils;
+
 
 /**
  *
@@ -94,6 +99,112 @@ public class EnabledDataSourceTest extends TestCase
     }
 
 
+    /**
+     * <p>Construct a data source from the reference of a data source
+     * that records prepared transactions.</p>
+     *
+     * @result The new data source uses the same recovery log and
+     * statement cache size, and recovers the recorded transactions.
+     */
+
+    public void testRecoveryLogReference()
+        throws Exception
+    {
+        File              file = File.createTempFile("tyrex", ".log");
+        EnabledDataSource ds = new EnabledDataSource();
+        EnabledDataSource copy;
+        Xid               xid = XidUtils.newGlobal();
+
+        file.delete();
+        try
+        {
+            ds.setDriverName("jdbc:test");
+            ds.setRecoveryLog(file.getPath());
+            ds.setStatementCacheSize(20);
+            ds.prepared(xid);
+            copy = (EnabledDataSource) ds.getObjectInstance(ds.getReference(), null, null, null);
+            ds.setRecoveryLog(null);
+            assertEquals(file.getPath(), copy.getRecoveryLog());
+            assertEquals(20, copy.getStatementCacheSize());
+            assertEquals(1, copy.getTxRecover().length);
+            assertEquals(XidUtils.toString(xid), XidUtils.toString(copy.getTxRecover()[0]));
+            copy.setRecoveryLog(null);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    /**
+     * <p>Use one recovery log file from two data sources, one
+     * obtained from the other's reference. Prepare branches from
+     * both, close one data source and keep preparing from the
+     * other.</p>
+     *
+     * @result Every branch still in doubt is in the log when it is
+     * opened again.
+     */
+
+    public void testSharedRecoveryLog()
+        throws Exception
+    {
+        File              file = File.createTempFile("tyrex", ".log");
+        EnabledDataSource ds = new EnabledDataSource();
+        EnabledDataSource copy;
+        Xid[]             xids = new Xid[4];
+        Xid[]             recovered;
+
+        file.delete();
+        for (int i = 0; i < xids.length; ++i)
+        {
+            xids[i] = XidUtils.newGlobal();
+        }
+        try
+        {
+            ds.setDriverName("jdbc:test");
+            ds.setRecoveryLog(file.getPath());
+            ds.prepared(xids[0]);
+            copy = (EnabledDataSource) ds.getObjectInstance(ds.getReference(), null, null, null);
+            copy.prepared(xids[1]);
+            ds.prepared(xids[2]);
+            ds.forgotten(xids[0]);
+            ds.setRecoveryLog(null);
+            copy.prepared(xids[3]);
+            copy.setRecoveryLog(null);
+
+            ds = new EnabledDataSource();
+            ds.setDriverName("jdbc:test");
+            ds.setRecoveryLog(file.getPath());
+            recovered = ds.getTxRecover();
+            ds.setRecoveryLog(null);
+            assertEquals(3, recovered.length);
+            for (int i = 1; i < xids.length; ++i)
+            {
+                assert("Recovered " + i, contains(recovered, xids[i]));
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    private static boolean contains(Xid[] xids, Xid xid)
+    {
+        for (int i = 0; i < xids.length; ++i)
+        {
+            if (XidUtils.toString(xids[i]).equals(XidUtils.toString(xid)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
     /** Adds a message in the log (except if the log is null)*/
     private void logMessage(String message)
     {
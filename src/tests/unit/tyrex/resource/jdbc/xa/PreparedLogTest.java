@@ -0,0 +1,304 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+
+import javax.transaction.xa.Xid;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import tyrex.tm.xid.XidUtils;
+
+
+/**
+ * Tests for {@link PreparedLog}.
+ */
+
+public class PreparedLogTest extends TestCase
+{
+    private File _file;
+
+
+    public PreparedLogTest(String name)
+    {
+        super(name);
+    }
+
+
+    public void setUp()
+        throws Exception
+    {
+        _file = File.createTempFile("tyrex", ".log");
+        _file.delete();
+    }
+
+
+    public void tearDown()
+    {
+        _file.delete();
+        new File(_file.getPath() + ".tmp").delete();
+    }
+
+
+    /**
+     * <p>Record prepared and forgotten branches, close the log and
+     * open it again.</p>
+     *
+     * @result Only the branches still in doubt are read back.
+     */
+
+    public void testReplay()
+        throws Exception
+    {
+        PreparedLog log = PreparedLog.open(_file);
+        Xid[]       xids = new Xid[3];
+
+        for (int i = 0; i < xids.length; ++i)
+        {
+            xids[i] = XidUtils.newGlobal();
+            log.prepared(xids[i]);
+        }
+        log.forgotten(xids[1]);
+        // Forgetting a branch that was never prepared is ignored
+        log.forgotten(XidUtils.newGlobal());
+        assert("Prepared", log.contains(xids[0]));
+        assert("Forgotten", ! log.contains(xids[1]));
+        log.close();
+
+        log = PreparedLog.open(_file);
+        try
+        {
+            assertEquals(2, log.getPrepared().length);
+            assert("Replayed", log.contains(xids[0]));
+            assert("Replayed forgotten", ! log.contains(xids[1]));
+            assert("Replayed", log.contains(xids[2]));
+        }
+        finally
+        {
+            log.close();
+        }
+        // Opening the log rewrote it with only the branches in doubt
+        assertEquals(2, countRecords());
+    }
+
+
+    /**
+     * <p>Open a log whose last record was cut short by a crash.</p>
+     *
+     * @result The incomplete record is ignored and the complete
+     * records are read.
+     */
+
+    public void testIncompleteRecord()
+        throws Exception
+    {
+        PreparedLog      log = PreparedLog.open(_file);
+        Xid              xid = XidUtils.newGlobal();
+        String           identifier;
+        FileOutputStream output;
+
+        log.prepared(xid);
+        log.close();
+        identifier = XidUtils.toString(XidUtils.newGlobal());
+        output = new FileOutputStream(_file.getPath(), true);
+        output.write(("P " + identifier.substring(0, identifier.length() / 2)).getBytes("ASCII"));
+        output.close();
+
+        log = PreparedLog.open(_file);
+        try
+        {
+            assertEquals(1, log.getPrepared().length);
+            assert("Complete record", log.contains(xid));
+        }
+        finally
+        {
+            log.close();
+        }
+    }
+
+
+    /**
+     * <p>Prepare and forget many branches.</p>
+     *
+     * @result The log is rewritten once most of its records refer to
+     * forgotten branches, and still holds the branches in doubt.
+     */
+
+    public void testCompaction()
+        throws Exception
+    {
+        PreparedLog log = PreparedLog.open(_file);
+        Xid         kept = XidUtils.newGlobal();
+        Xid         xid;
+
+        log.prepared(kept);
+        for (int i = 0; i < 2000; ++i)
+        {
+            xid = XidUtils.newGlobal();
+            log.prepared(xid);
+            log.forgotten(xid);
+        }
+        log.close();
+        assert("Log compacted", countRecords() < 2048);
+        assert("Temporary file removed", ! new File(_file.getPath() + ".tmp").exists());
+
+        log = PreparedLog.open(_file);
+        try
+        {
+            assertEquals(1, log.getPrepared().length);
+            assert("Kept", log.contains(kept));
+        }
+        finally
+        {
+            log.close();
+        }
+    }
+
+
+    /**
+     * <p>Record a branch after the log was closed.</p>
+     *
+     * @result An IOException is thrown.
+     */
+
+    public void testClosed()
+        throws Exception
+    {
+        PreparedLog log = PreparedLog.open(_file);
+
+        log.close();
+        try
+        {
+            log.prepared(XidUtils.newGlobal());
+            fail("Expected IOException");
+        }
+        catch (IOException except)
+        {
+        }
+    }
+
+
+    /**
+     * <p>Open the same file twice, close one of the logs and record
+     * a branch in the other.</p>
+     *
+     * @result Both opens return the same log, which stays open
+     * until it is closed as many times as it was opened.
+     */
+
+    public void testShared()
+        throws Exception
+    {
+        PreparedLog log = PreparedLog.open(_file);
+        PreparedLog other = PreparedLog.open(new File(_file.getParentFile(), "." + File.separator + _file.getName()));
+        Xid         xid = XidUtils.newGlobal();
+
+        assert("Same log", log == other);
+        log.close();
+        other.prepared(xid);
+        other.close();
+        try
+        {
+            other.prepared(XidUtils.newGlobal());
+            fail("Expected IOException");
+        }
+        catch (IOException except)
+        {
+        }
+
+        log = PreparedLog.open(_file);
+        try
+        {
+            assert("Recorded after one close", log.contains(xid));
+        }
+        finally
+        {
+            log.close();
+        }
+    }
+
+
+    private int countRecords()
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new FileReader(_file));
+        int            count = 0;
+
+        try
+        {
+            while (reader.readLine() != null)
+            {
+                ++count;
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return count;
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(PreparedLogTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
@@ -67,8 +67,13 @@ public class ResourceJdbcXaSuite
         TestSuite suite = new TestSuite("ResourceJdbcXaSuite test harness");
 //        suite.addTest(LocalXidTest.suite());
         suite.addTest(ClientConnectionTest.suite());
+        suite.addTest(ConnectionStateTest.suite());
         suite.addTest(EnabledDataSourceTest.suite());
+        suite.addTest(PreparedLogTest.suite());
+        suite.addTest(StatementCacheTest.suite());
+        suite.addTest(StatementDefaultsTest.suite());
         suite.addTest(TxConnectionTest.suite());
+        suite.addTest(TxConnectionTableTest.suite());
         suite.addTest(TyrexCallableStatementImplTest.suite());
         suite.addTest(TyrexDatabaseMetaDataImplTest.suite());
         suite.addTest(TyrexPreparedStatementImplTest.suite());
@@ -0,0 +1,279 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link StatementCache}.
+ */
+
+public class StatementCacheTest extends TestCase
+{
+    public StatementCacheTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Return a statement to the cache and take it again, with the
+     * same and with different keys.</p>
+     *
+     * @result The statement is only taken with an equal key, and its
+     * parameters are cleared when returned.
+     */
+
+    public void testReuse()
+        throws Exception
+    {
+        TestConnection     conn = new TestConnection();
+        StatementCache     cache = new StatementCache(10);
+        StatementCache.Key key = new StatementCache.Key("select 1", -1, -1, -1, false);
+        PreparedStatement  stmt = conn.getConnection().prepareStatement("select 1");
+
+        assertNull(cache.take(key));
+        cache.release(key, stmt);
+        assertEquals(1, conn.getCalls("clearParameters"));
+        assertEquals(1, cache.size());
+        assertNull(cache.take(new StatementCache.Key("select 1", -1, -1, -1, true)));
+        assertNull(cache.take(new StatementCache.Key("select 1", ResultSet.TYPE_FORWARD_ONLY,
+                                                     ResultSet.CONCUR_READ_ONLY, -1, false)));
+        assertNull(cache.take(new StatementCache.Key("select 2", -1, -1, -1, false)));
+        assert("Same statement",
+               cache.take(new StatementCache.Key("select 1", -1, -1, -1, false)) == stmt);
+        assertEquals(0, cache.size());
+        assertEquals(0, conn.getClosedStatements());
+    }
+
+
+    /**
+     * <p>Return more statements than the cache holds, and a second
+     * statement with the same key.</p>
+     *
+     * @result The least recently returned statement and the duplicate
+     * statement are closed.
+     */
+
+    public void testEviction()
+        throws Exception
+    {
+        TestConnection      conn = new TestConnection();
+        StatementCache      cache = new StatementCache(2);
+        StatementCache.Key[] keys = new StatementCache.Key[3];
+        PreparedStatement[]  stmts = new PreparedStatement[keys.length];
+
+        for (int i = 0; i < keys.length; ++i)
+        {
+            keys[i] = new StatementCache.Key("select " + i, -1, -1, -1, false);
+            stmts[i] = conn.getConnection().prepareStatement("select " + i);
+            cache.release(keys[i], stmts[i]);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(1, conn.getClosedStatements());
+        assertNull(cache.take(keys[0]));
+
+        cache.release(keys[1], conn.getConnection().prepareStatement("select 1"));
+        assertEquals(2, conn.getClosedStatements());
+        assert("Cached statement kept", cache.take(keys[1]) == stmts[1]);
+        assert("Cached statement kept", cache.take(keys[2]) == stmts[2]);
+    }
+
+
+    /**
+     * <p>Return a statement whose parameters cannot be cleared.</p>
+     *
+     * @result The statement is closed instead of cached.
+     */
+
+    public void testClearFailure()
+        throws Exception
+    {
+        TestConnection     conn = new TestConnection();
+        StatementCache     cache = new StatementCache(10);
+        StatementCache.Key key = new StatementCache.Key("select 1", -1, -1, -1, false);
+
+        conn.setFailing("clearParameters", true);
+        cache.release(key, conn.getConnection().prepareStatement("select 1"));
+        assertEquals(0, cache.size());
+        assertEquals(1, conn.getClosedStatements());
+    }
+
+
+    /**
+     * <p>Close a prepared statement after adding a batch, without
+     * executing it, then prepare the statement again. Repeat with a
+     * statement whose batch cannot be cleared.</p>
+     *
+     * @result The batch is cleared before the statement is cached.
+     * The statement whose batch cannot be cleared is closed instead
+     * of cached.
+     */
+
+    public void testPendingBatch()
+        throws Exception
+    {
+        TestDataSource    ds = new TestDataSource();
+        Connection        conn;
+        PreparedStatement stmt;
+
+        ds.setStatementCacheSize(10);
+        conn = ds.getXAConnection().getConnection();
+        stmt = conn.prepareStatement("insert into t values (?)");
+        stmt.setInt(1, 1);
+        stmt.addBatch();
+        stmt.close();
+        assertEquals(1, ds.getTestConnection().getCalls("clearBatch"));
+        assertEquals(0, ds.getTestConnection().getClosedStatements());
+
+        ds.getTestConnection().setFailing("clearBatch", true);
+        stmt = conn.prepareStatement("insert into t values (?)");
+        stmt.addBatch();
+        stmt.close();
+        assertEquals(1, ds.getTestConnection().getPrepared());
+        assertEquals(1, ds.getTestConnection().getClosedStatements());
+        conn.prepareStatement("insert into t values (?)").close();
+        assertEquals(2, ds.getTestConnection().getPrepared());
+        conn.close();
+    }
+
+
+    /**
+     * <p>Prepare the same statement twice through an application
+     * connection, closing it in between.</p>
+     *
+     * @result The driver prepares the statement only once.
+     */
+
+    public void testConnectionReuse()
+        throws Exception
+    {
+        TestDataSource    ds = new TestDataSource();
+        Connection        conn;
+        PreparedStatement stmt;
+
+        ds.setStatementCacheSize(10);
+        conn = ds.getXAConnection().getConnection();
+        stmt = conn.prepareStatement("select 1");
+        stmt.close();
+        stmt = conn.prepareStatement("select 1");
+        stmt.close();
+        conn.prepareCall("select 1").close();
+        assertEquals(2, ds.getTestConnection().getPrepared());
+        assertEquals(0, ds.getTestConnection().getClosedStatements());
+        conn.close();
+    }
+
+
+    /**
+     * <p>Change a property of a prepared statement before closing
+     * it.</p>
+     *
+     * @result The statement is closed instead of cached, and the next
+     * statement is prepared by the driver.
+     */
+
+    public void testModifiedStatement()
+        throws Exception
+    {
+        TestDataSource    ds = new TestDataSource();
+        Connection        conn;
+        PreparedStatement stmt;
+
+        ds.setStatementCacheSize(10);
+        conn = ds.getXAConnection().getConnection();
+        stmt = conn.prepareStatement("select 1");
+        stmt.setMaxRows(5);
+        stmt.close();
+        assertEquals(1, ds.getTestConnection().getClosedStatements());
+        conn.prepareStatement("select 1").close();
+        assertEquals(2, ds.getTestConnection().getPrepared());
+        conn.close();
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(StatementCacheTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * A data source that opens a test connection instead of using
+     * a JDBC driver.
+     */
+    private static class TestDataSource
+        extends EnabledDataSource
+    {
+        private TestConnection _conn;
+
+        public synchronized Connection getConnection(String user, String password)
+        {
+            _conn = new TestConnection();
+            return _conn.getConnection();
+        }
+
+        synchronized TestConnection getTestConnection()
+        {
+            return _conn;
+        }
+    }
+}
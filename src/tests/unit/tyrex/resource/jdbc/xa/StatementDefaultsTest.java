@@ -0,0 +1,294 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * Tests for {@link StatementDefaults} applied by {@link TyrexConnection}.
+ */
+
+public class StatementDefaultsTest extends TestCase
+{
+    public StatementDefaultsTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Create, prepare and prepare a callable statement with a fetch
+     * size, maximum rows and query timeout.</p>
+     *
+     * @result The properties are set on each statement.
+     */
+
+    public void testApplied()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        TestConnection test;
+        Connection     conn;
+
+        ds.setStatementDefaults(new StatementDefaults(100, 50, 30, false));
+        conn = ds.getXAConnection().getConnection();
+        test = ds.getTestConnection();
+
+        conn.createStatement();
+        assertEquals(1, test.getCalls("setFetchSize"));
+        assertEquals(new Integer(100), test.getArguments("setFetchSize")[0]);
+        assertEquals(1, test.getCalls("setMaxRows"));
+        assertEquals(new Integer(50), test.getArguments("setMaxRows")[0]);
+        assertEquals(1, test.getCalls("setQueryTimeout"));
+        assertEquals(new Integer(30), test.getArguments("setQueryTimeout")[0]);
+
+        conn.prepareStatement("select 1");
+        conn.prepareCall("select 2");
+        assertEquals(3, test.getCalls("setFetchSize"));
+        assertEquals(3, test.getCalls("setMaxRows"));
+        assertEquals(3, test.getCalls("setQueryTimeout"));
+        conn.close();
+    }
+
+
+    /**
+     * <p>Create and prepare statements with zero defaults.</p>
+     *
+     * @result The driver's defaults are kept.
+     */
+
+    public void testDriverDefaults()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        TestConnection test;
+        Connection     conn;
+
+        ds.setStatementDefaults(new StatementDefaults(0, 0, 0, false));
+        conn = ds.getXAConnection().getConnection();
+        test = ds.getTestConnection();
+        conn.createStatement();
+        conn.prepareStatement("select 1");
+        assertEquals(0, test.getCalls("setFetchSize"));
+        assertEquals(0, test.getCalls("setMaxRows"));
+        assertEquals(0, test.getCalls("setQueryTimeout"));
+        assertNull(test.getArguments("createStatement"));
+        assertEquals(1, test.getArguments("prepareStatement").length);
+        conn.close();
+    }
+
+
+    /**
+     * <p>Create and prepare statements with and without a result set
+     * type, with forward only defaults.</p>
+     *
+     * @result Only the statements without a result set type are made
+     * forward only and read only.
+     */
+
+    public void testForwardOnly()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        TestConnection test;
+        Connection     conn;
+        Object[]       args;
+
+        ds.setStatementDefaults(new StatementDefaults(0, 0, 0, true));
+        conn = ds.getXAConnection().getConnection();
+        test = ds.getTestConnection();
+
+        conn.createStatement();
+        args = test.getArguments("createStatement");
+        assertEquals(2, args.length);
+        assertEquals(new Integer(ResultSet.TYPE_FORWARD_ONLY), args[0]);
+        assertEquals(new Integer(ResultSet.CONCUR_READ_ONLY), args[1]);
+
+        conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE);
+        args = test.getArguments("createStatement");
+        assertEquals(new Integer(ResultSet.TYPE_SCROLL_INSENSITIVE), args[0]);
+        assertEquals(new Integer(ResultSet.CONCUR_UPDATABLE), args[1]);
+
+        conn.prepareStatement("select 1");
+        args = test.getArguments("prepareStatement");
+        assertEquals(3, args.length);
+        assertEquals(new Integer(ResultSet.TYPE_FORWARD_ONLY), args[1]);
+        assertEquals(new Integer(ResultSet.CONCUR_READ_ONLY), args[2]);
+
+        conn.prepareStatement("select 1", ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        args = test.getArguments("prepareStatement");
+        assertEquals(new Integer(ResultSet.TYPE_SCROLL_SENSITIVE), args[1]);
+
+        conn.prepareCall("select 2");
+        args = test.getArguments("prepareCall");
+        assertEquals(3, args.length);
+        assertEquals(new Integer(ResultSet.TYPE_FORWARD_ONLY), args[1]);
+        conn.close();
+    }
+
+
+    /**
+     * <p>Create and prepare statements with a fetch size the driver
+     * rejects.</p>
+     *
+     * @result The exception is reported to the application and the
+     * statements are closed. The prepared statement is not cached.
+     */
+
+    public void testRejected()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        TestConnection test;
+        Connection     conn;
+
+        ds.setStatementCacheSize(10);
+        ds.setStatementDefaults(new StatementDefaults(100, 0, 0, false));
+        conn = ds.getXAConnection().getConnection();
+        test = ds.getTestConnection();
+        test.setFailing("setFetchSize", true);
+
+        try
+        {
+            conn.createStatement();
+            fail("Created a statement with a rejected default");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        assertEquals(1, test.getClosedStatements());
+
+        try
+        {
+            conn.prepareStatement("select 1");
+            fail("Prepared a statement with a rejected default");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        assertEquals(2, test.getClosedStatements());
+
+        test.setFailing("setFetchSize", false);
+        conn.prepareStatement("select 1").close();
+        assertEquals(2, test.getPrepared());
+        conn.close();
+    }
+
+
+    /**
+     * <p>Prepare a statement, close it and prepare it again from the
+     * statement cache.</p>
+     *
+     * @result The defaults are applied to the statement only when the
+     * driver prepares it.
+     */
+
+    public void testCachedStatement()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        TestConnection test;
+        Connection     conn;
+
+        ds.setStatementCacheSize(10);
+        ds.setStatementDefaults(new StatementDefaults(100, 50, 30, false));
+        conn = ds.getXAConnection().getConnection();
+        test = ds.getTestConnection();
+        conn.prepareStatement("select 1").close();
+        conn.prepareStatement("select 1").close();
+        assertEquals(1, test.getPrepared());
+        assertEquals(0, test.getClosedStatements());
+        assertEquals(1, test.getCalls("setFetchSize"));
+        assertEquals(1, test.getCalls("setMaxRows"));
+        assertEquals(1, test.getCalls("setQueryTimeout"));
+        conn.close();
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(StatementDefaultsTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * A data source that opens a test connection instead of using
+     * a JDBC driver.
+     */
+    private static class TestDataSource
+        extends EnabledDataSource
+    {
+        private TestConnection _conn;
+
+        public synchronized Connection getConnection(String user, String password)
+        {
+            _conn = new TestConnection();
+            return _conn.getConnection();
+        }
+
+        synchronized TestConnection getTestConnection()
+        {
+            return _conn;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/**
+ * An underlying JDBC connection for tests. Remembers the properties
+ * set on it, counts the calls made to it and to the statements it
+ * prepares, and fails the calls it is told to fail.
+ */
+
+public class TestConnection
+    implements InvocationHandler
+{
+    private final HashMap _calls = new HashMap();
+
+    private final HashMap _arguments = new HashMap();
+
+    private final HashSet _failing = new HashSet();
+
+    private final Connection _connection;
+
+    private boolean _autoCommit = true;
+
+    private boolean _readOnly;
+
+    private int _isolation = Connection.TRANSACTION_READ_COMMITTED;
+
+    private String _catalog;
+
+    private int _prepared;
+
+    private int _closedStatements;
+
+
+    public TestConnection()
+    {
+        _connection = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class[] { Connection.class }, this);
+    }
+
+
+    /**
+     * Returns the connection.
+     */
+    public Connection getConnection()
+    {
+        return _connection;
+    }
+
+
+    /**
+     * Returns the number of calls made to the named method of the
+     * connection or its statements.
+     */
+    public synchronized int getCalls(String method)
+    {
+        Integer count = (Integer) _calls.get(method);
+
+        return (count == null) ? 0 : count.intValue();
+    }
+
+
+    /**
+     * Returns the arguments of the last call made to the named method
+     * of the connection or its statements. Returns null if the method
+     * was called without arguments, or was never called.
+     */
+    public synchronized Object[] getArguments(String method)
+    {
+        return (Object[]) _arguments.get(method);
+    }
+
+
+    /**
+     * Makes all further calls to the named method fail.
+     */
+    public synchronized void setFailing(String method, boolean failing)
+    {
+        if (failing)
+        {
+            _failing.add(method);
+        }
+        else
+        {
+            _failing.remove(method);
+        }
+    }
+
+
+    /**
+     * Returns the number of statements prepared by the driver.
+     */
+    public synchronized int getPrepared()
+    {
+        return _prepared;
+    }
+
+
+    /**
+     * Returns the number of statements closed.
+     */
+    public synchronized int getClosedStatements()
+    {
+        return _closedStatements;
+    }
+
+
+    public synchronized boolean getAutoCommit()
+    {
+        return _autoCommit;
+    }
+
+
+    public synchronized int getTransactionIsolation()
+    {
+        return _isolation;
+    }
+
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+    {
+        String name = method.getName();
+
+        if (name.equals("hashCode") && args == null)
+        {
+            return new Integer(System.identityHashCode(proxy));
+        }
+        if (name.equals("equals") && args != null && args.length == 1)
+        {
+            return new Boolean(proxy == args[0]);
+        }
+        if (name.equals("toString") && args == null)
+        {
+            return "TestConnection@" + System.identityHashCode(proxy);
+        }
+        synchronized (this)
+        {
+            count(name, args);
+            if (name.equals("setAutoCommit"))
+            {
+                _autoCommit = ((Boolean) args[0]).booleanValue();
+            }
+            else if (name.equals("getAutoCommit"))
+            {
+                return new Boolean(_autoCommit);
+            }
+            else if (name.equals("setReadOnly"))
+            {
+                _readOnly = ((Boolean) args[0]).booleanValue();
+            }
+            else if (name.equals("isReadOnly"))
+            {
+                return new Boolean(_readOnly);
+            }
+            else if (name.equals("setTransactionIsolation"))
+            {
+                _isolation = ((Integer) args[0]).intValue();
+            }
+            else if (name.equals("getTransactionIsolation"))
+            {
+                return new Integer(_isolation);
+            }
+            else if (name.equals("setCatalog"))
+            {
+                _catalog = (String) args[0];
+            }
+            else if (name.equals("getCatalog"))
+            {
+                return _catalog;
+            }
+            else if (name.equals("prepareStatement") || name.equals("prepareCall"))
+            {
+                ++_prepared;
+                return Proxy.newProxyInstance(
+                    CallableStatement.class.getClassLoader(),
+                    new Class[] { name.equals("prepareCall") ? CallableStatement.class : PreparedStatement.class },
+                    new StatementHandler());
+            }
+            else if (name.equals("createStatement"))
+            {
+                return Proxy.newProxyInstance(
+                    Statement.class.getClassLoader(), new Class[] { Statement.class },
+                    new StatementHandler());
+            }
+            return defaultValue(method);
+        }
+    }
+
+
+    /**
+     * Counts a call, records its arguments and throws an exception if
+     * the method is failing. Must be called while synchronized.
+     */
+    private void count(String name, Object[] args)
+        throws SQLException
+    {
+        _calls.put(name, new Integer(getCalls(name) + 1));
+        _arguments.put(name, args);
+        if (_failing.contains(name))
+        {
+            throw new SQLException("Failing " + name);
+        }
+    }
+
+
+    private static Object defaultValue(Method method)
+    {
+        Class type = method.getReturnType();
+
+        if (type == Boolean.TYPE)
+        {
+            return Boolean.FALSE;
+        }
+        if (type == Integer.TYPE)
+        {
+            return new Integer(0);
+        }
+        if (type == Long.TYPE)
+        {
+            return new Long(0);
+        }
+        return null;
+    }
+
+
+    /**
+     * Handles calls to the statements prepared by the connection.
+     */
+    private class StatementHandler
+        implements InvocationHandler
+    {
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            String name = method.getName();
+
+            if (name.equals("hashCode") && args == null)
+            {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            if (name.equals("equals") && args != null && args.length == 1)
+            {
+                return new Boolean(proxy == args[0]);
+            }
+            if (name.equals("toString") && args == null)
+            {
+                return "TestStatement@" + System.identityHashCode(proxy);
+            }
+            if (name.equals("getConnection"))
+            {
+                return _connection;
+            }
+            synchronized (TestConnection.this)
+            {
+                count(name, args);
+                if (name.equals("close"))
+                {
+                    ++_closedStatements;
+                }
+                return defaultValue(method);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.resource.jdbc.xa;
+
+import javax.transaction.xa.Xid;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import tyrex.tm.xid.XidUtils;
+
+
+/**
+ * Tests for {@link TxConnectionTable}.
+ */
+
+public class TxConnectionTableTest extends TestCase
+{
+    public TxConnectionTableTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Put, get and remove connections, enough of them for the
+     * table to grow.</p>
+     *
+     * @result Each transaction is associated with its own connection
+     * until it is removed, and the table lists every connection.
+     */
+
+    public void testPutGetRemove()
+        throws Exception
+    {
+        TxConnectionTable table = new TxConnectionTable();
+        Xid[]             xids = new Xid[500];
+        TxConnection[]    txConns = new TxConnection[xids.length];
+
+        for (int i = 0; i < xids.length; ++i)
+        {
+            xids[i] = XidUtils.newGlobal();
+            txConns[i] = new TxConnection();
+            assertNull(table.put(xids[i], txConns[i]));
+        }
+        assertEquals(xids.length, table.toArray().length);
+        for (int i = 0; i < xids.length; ++i)
+        {
+            assert("Connection " + i, table.get(xids[i]) == txConns[i]);
+        }
+        for (int i = 0; i < xids.length; i += 2)
+        {
+            assert("Removed " + i, table.remove(xids[i]) == txConns[i]);
+            assertNull(table.get(xids[i]));
+            assertNull(table.remove(xids[i]));
+        }
+        assertEquals(xids.length / 2, table.toArray().length);
+        for (int i = 1; i < xids.length; i += 2)
+        {
+            assert("Connection " + i, table.get(xids[i]) == txConns[i]);
+        }
+    }
+
+
+    /**
+     * <p>Associate a transaction that is already associated with a
+     * connection.</p>
+     *
+     * @result Put replaces the connection and returns the previous one,
+     * putIfAbsent keeps the existing connection and returns it.
+     */
+
+    public void testPutIfAbsent()
+        throws Exception
+    {
+        TxConnectionTable table = new TxConnectionTable();
+        Xid               xid = XidUtils.newGlobal();
+        TxConnection      first = new TxConnection();
+        TxConnection      second = new TxConnection();
+
+        assertNull(table.putIfAbsent(xid, first));
+        assert("putIfAbsent returns existing", table.putIfAbsent(xid, second) == first);
+        assert("Existing kept", table.get(xid) == first);
+        assert("put returns previous", table.put(xid, second) == first);
+        assert("Replaced", table.get(xid) == second);
+        assertEquals(1, table.toArray().length);
+    }
+
+
+    /**
+     * <p>Remove a transaction only if it is associated with a given
+     * connection.</p>
+     *
+     * @result The transaction is not removed while associated with
+     * another connection.
+     */
+
+    public void testConditionalRemove()
+        throws Exception
+    {
+        TxConnectionTable table = new TxConnectionTable();
+        Xid               xid = XidUtils.newGlobal();
+        TxConnection      txConn = new TxConnection();
+
+        table.put(xid, txConn);
+        assert("Other connection", ! table.remove(xid, new TxConnection()));
+        assert("Still associated", table.get(xid) == txConn);
+        assert("Same connection", table.remove(xid, txConn));
+        assertNull(table.get(xid));
+        assert("Already removed", ! table.remove(xid, txConn));
+    }
+
+
+    /**
+     * <p>Several threads add, look up and remove their own
+     * transactions at the same time.</p>
+     *
+     * @result No association is lost or mixed up, and the table is
+     * empty when all threads are done.
+     */
+
+    public void testConcurrentAccess()
+        throws Exception
+    {
+        final TxConnectionTable table = new TxConnectionTable();
+        final String[]          failure = new String[1];
+        Thread[]                threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    Xid[]          xids = new Xid[200];
+                    TxConnection[] txConns = new TxConnection[xids.length];
+
+                    for (int j = 0; j < xids.length; ++j)
+                    {
+                        xids[j] = XidUtils.newGlobal();
+                        txConns[j] = new TxConnection();
+                        if (table.putIfAbsent(xids[j], txConns[j]) != null)
+                        {
+                            failure[0] = "Transaction already associated";
+                        }
+                    }
+                    for (int j = 0; j < xids.length; ++j)
+                    {
+                        if (table.get(xids[j]) != txConns[j])
+                        {
+                            failure[0] = "Association lost";
+                        }
+                        if (! table.remove(xids[j], txConns[j]))
+                        {
+                            failure[0] = "Association not removed";
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+        assertNull(failure[0]);
+        assertEquals(0, table.toArray().length);
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(TxConnectionTableTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
@@ -89,6 +89,7 @@ public class TyrexCallableStatementImpl_TyrexPreparedStatementImplImpl
                                                               connection);
         Statement statement = resultSet.getStatement();
         return new TyrexPreparedStatementImpl((java.sql.PreparedStatement)statement,
-                                              (TyrexConnection) connection);
+                                              (TyrexConnection) connection,
+                                              null);
     }
 }
@@ -54,6 +54,13 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Vector;
 
 
 /**
@@ -94,6 +101,229 @@ public class TyrexResultSetImplTest extends TestCase
     }
 
 
+    /**
+     * <p>Close a result set in another thread, then read from it.</p>
+     *
+     * @result Moving to the next row and reading a column throw
+     * SQLException.
+     */
+
+    public void testClosedByOtherThread()
+        throws Exception
+    {
+        TestDataSource     ds = new TestDataSource();
+        Connection         conn = ds.getXAConnection().getConnection();
+        final ResultSet    rs = newResultSet(conn);
+        Thread             thread;
+
+        assert("No row", rs.next());
+        thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    rs.close();
+                }
+                catch (SQLException except)
+                {
+                    // Reported by the assertions below.
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertClosed(rs);
+        conn.close();
+    }
+
+
+    /**
+     * <p>Close a result set obtained from a statement, by closing the
+     * statement in another thread.</p>
+     *
+     * @result Moving to the next row and reading a column throw
+     * SQLException.
+     */
+
+    public void testStatementClosedByOtherThread()
+        throws Exception
+    {
+        TestDataSource           ds = new TestDataSource();
+        Connection               conn = ds.getXAConnection().getConnection();
+        final TyrexStatementImpl stmt = (TyrexStatementImpl) conn.createStatement();
+        ResultSet                rs;
+        Thread                   thread;
+
+        rs = new TyrexResultSetImpl(newUnderlyingResultSet(), stmt);
+        assert("No row", rs.next());
+        thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    stmt.close();
+                }
+                catch (SQLException except)
+                {
+                    // Reported by the assertions below.
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertClosed(rs);
+        conn.close();
+    }
+
+
+    /**
+     * <p>Close result sets while another thread is reading from
+     * them.</p>
+     *
+     * @result The reading thread only gets SQLException, never a
+     * NullPointerException or other runtime exception.
+     */
+
+    public void testCloseWhileReading()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        Connection     conn = ds.getXAConnection().getConnection();
+        Vector         errors = new Vector();
+        ResultSet      rs;
+        Thread         thread;
+
+        for (int i = 0; i < 100; ++i)
+        {
+            rs = newResultSet(conn);
+            thread = newReader(rs, errors);
+            thread.start();
+            Thread.yield();
+            rs.close();
+            thread.join();
+        }
+        assertEquals("Unexpected errors " + errors, 0, errors.size());
+        conn.close();
+    }
+
+
+    /**
+     * Returns a thread that reads from the result set until it is
+     * closed, and records any exception other than SQLException.
+     */
+    private static Thread newReader(final ResultSet rs, final Vector errors)
+    {
+        return new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    while (true)
+                    {
+                        rs.next();
+                        rs.getString(1);
+                        rs.getInt(1);
+                        rs.wasNull();
+                    }
+                }
+                catch (SQLException except)
+                {
+                    // Expected once closed.
+                }
+                catch (Throwable except)
+                {
+                    errors.addElement(except);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Asserts that every call to the result set throws SQLException.
+     */
+    private static void assertClosed(ResultSet rs)
+    {
+        try
+        {
+            rs.next();
+            fail("Moved to the next row of a closed result set");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        try
+        {
+            rs.getString(1);
+            fail("Read a column of a closed result set");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        try
+        {
+            rs.getInt("a");
+            fail("Read a column of a closed result set");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        try
+        {
+            rs.wasNull();
+            fail("Read a closed result set");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+    }
+
+
+    private static ResultSet newResultSet(Connection conn)
+    {
+        return new TyrexResultSetImpl(newUnderlyingResultSet(), (TyrexConnection) conn);
+    }
+
+
+    /**
+     * Returns a result set with an endless number of rows, whose
+     * columns are all null.
+     */
+    private static ResultSet newUnderlyingResultSet()
+    {
+        return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(), new Class[] { ResultSet.class },
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    Class type = method.getReturnType();
+
+                    if (method.getName().equals("next") || method.getName().equals("wasNull"))
+                    {
+                        return Boolean.TRUE;
+                    }
+                    if (type == Boolean.TYPE)
+                    {
+                        return Boolean.FALSE;
+                    }
+                    if (type == Integer.TYPE)
+                    {
+                        return new Integer(0);
+                    }
+                    return null;
+                }
+            });
+    }
+
+
     /** Adds a message in the log (except if the log is null)*/
     private void logMessage(String message)
     {
@@ -117,4 +347,18 @@ public class TyrexResultSetImplTest extends TestCase
     {
         tyrex.Unit.runTests(args, suite());
     }
+
+
+    /**
+     * A data source that opens a test connection instead of using
+     * a JDBC driver.
+     */
+    private static class TestDataSource
+        extends EnabledDataSource
+    {
+        public Connection getConnection(String user, String password)
+        {
+            return new TestConnection().getConnection();
+        }
+    }
 }
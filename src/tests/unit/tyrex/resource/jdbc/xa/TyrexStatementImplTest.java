@@ -54,6 +54,12 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 
 /**
@@ -94,6 +100,130 @@ public class TyrexStatementImplTest extends TestCase
     }
 
 
+    /**
+     * <p>Close a statement in another thread, then use it.</p>
+     *
+     * @result Reading its properties and executing it throw
+     * SQLException.
+     */
+
+    public void testClosedByOtherThread()
+        throws Exception
+    {
+        TestDataSource  ds = new TestDataSource();
+        Connection      conn = ds.getXAConnection().getConnection();
+        final Statement stmt = conn.createStatement();
+        Thread          thread;
+
+        stmt.getMaxRows();
+        thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    stmt.close();
+                }
+                catch (SQLException except)
+                {
+                    // Reported by the assertions below.
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        try
+        {
+            stmt.getMaxRows();
+            fail("Read a property of a closed statement");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        try
+        {
+            stmt.execute("select 1");
+            fail("Executed a closed statement");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        try
+        {
+            stmt.getResultSet();
+            fail("Read the result of a closed statement");
+        }
+        catch (SQLException except)
+        {
+            // Expected.
+        }
+        conn.close();
+    }
+
+
+    /**
+     * <p>Cancel a statement from another thread while it is
+     * executing.</p>
+     *
+     * @result The cancel reaches the underlying statement while the
+     * execute is still running, and ends it.
+     */
+
+    public void testCancelDuringExecute()
+        throws Exception
+    {
+        TestDataSource           ds = new TestDataSource();
+        Connection               conn = ds.getXAConnection().getConnection();
+        BlockingStatement        blocking = new BlockingStatement();
+        final TyrexStatementImpl stmt;
+        Thread                   executor;
+        Thread                   canceller;
+        boolean                  cancelled;
+
+        stmt = new TyrexStatementImpl(blocking.getStatement(), (TyrexConnection) conn);
+        executor = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    stmt.execute("select 1");
+                }
+                catch (SQLException except)
+                {
+                    // Not expected, the execute is cancelled.
+                }
+            }
+        };
+        canceller = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    stmt.cancel();
+                }
+                catch (SQLException except)
+                {
+                    // Reported as not cancelled.
+                }
+            }
+        };
+        executor.start();
+        assert("Not executing", blocking.waitForExecute(5000));
+        canceller.start();
+        canceller.join(5000);
+        cancelled = blocking.isCancelled();
+        blocking.release();
+        executor.join();
+        assert("Cancel blocked behind execute", cancelled);
+        stmt.close();
+        conn.close();
+    }
+
+
     /** Adds a message in the log (except if the log is null)*/
     private void logMessage(String message)
     {
@@ -117,4 +247,94 @@ public class TyrexStatementImplTest extends TestCase
     {
         tyrex.Unit.runTests(args, suite());
     }
+
+
+    /**
+     * A data source that opens a test connection instead of using
+     * a JDBC driver.
+     */
+    private static class TestDataSource
+        extends EnabledDataSource
+    {
+        public Connection getConnection(String user, String password)
+        {
+            return new TestConnection().getConnection();
+        }
+    }
+
+
+    /**
+     * An underlying statement whose execute blocks until the
+     * statement is cancelled or released.
+     */
+    private static class BlockingStatement
+        implements InvocationHandler
+    {
+        private boolean _executing;
+
+        private boolean _cancelled;
+
+        private boolean _released;
+
+        Statement getStatement()
+        {
+            return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(), new Class[] { Statement.class }, this);
+        }
+
+        synchronized boolean waitForExecute(long timeout)
+            throws InterruptedException
+        {
+            long end = System.currentTimeMillis() + timeout;
+
+            while (! _executing && System.currentTimeMillis() < end)
+            {
+                wait(end - System.currentTimeMillis());
+            }
+            return _executing;
+        }
+
+        synchronized boolean isCancelled()
+        {
+            return _cancelled;
+        }
+
+        synchronized void release()
+        {
+            _released = true;
+            notifyAll();
+        }
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            Class type = method.getReturnType();
+
+            if (method.getName().equals("execute"))
+            {
+                _executing = true;
+                notifyAll();
+                while (! _cancelled && ! _released)
+                {
+                    wait();
+                }
+                return Boolean.FALSE;
+            }
+            if (method.getName().equals("cancel"))
+            {
+                _cancelled = true;
+                notifyAll();
+                return null;
+            }
+            if (type == Boolean.TYPE)
+            {
+                return Boolean.FALSE;
+            }
+            if (type == Integer.TYPE)
+            {
+                return new Integer(0);
+            }
+            return null;
+        }
+    }
 }
@@ -53,7 +53,17 @@ package tyrex.resource.jdbc.xa;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.File;
 import java.io.PrintWriter;
+import java.sql.Connection;
+import java.util.HashSet;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import tyrex.tm.xid.XidUtils;
 
 
 /**
@@ -94,6 +104,296 @@ public class XAConnectionImplTest extends TestCase
     }
 
 
+    /**
+     * <p>Several connections start their own transactions at the same
+     * time.</p>
+     *
+     * @result Each transaction is associated with its own underlying
+     * connection, and is dissociated when it fails.
+     */
+
+    public void testConcurrentStart()
+        throws Exception
+    {
+        final TestDataSource ds = new TestDataSource();
+        final XAConnection[] xaConns = new XAConnection[8];
+        final Xid[]          xids = new Xid[xaConns.length];
+        final Throwable[]    failure = new Throwable[1];
+        Thread[]             threads = new Thread[xaConns.length];
+
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            final int index = i;
+
+            xaConns[i] = ds.getXAConnection();
+            xids[i] = XidUtils.newGlobal();
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        xaConns[index].getXAResource().start(xids[index], XAResource.TMNOFLAGS);
+                    }
+                    catch (Throwable except)
+                    {
+                        failure[0] = except;
+                    }
+                }
+            };
+        }
+        runAll(threads);
+        assertNull(failure[0]);
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            TxConnection txConn = ds.getTxConnection(xids[i]);
+
+            assertNotNull(txConn);
+            assertEquals(1, txConn.count);
+            assert("Auto commit disabled", ! txConn.conn.getAutoCommit());
+            for (int j = 0; j < i; ++j)
+            {
+                assert("Shared connection", ds.getTxConnection(xids[j]).conn != txConn.conn);
+            }
+        }
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            xaConns[i].getXAResource().end(xids[i], XAResource.TMFAIL);
+            assertNull(ds.getTxConnection(xids[i]));
+            xaConns[i].close();
+        }
+    }
+
+
+    /**
+     * <p>Several connections join the same transaction at the same
+     * time.</p>
+     *
+     * @result All connections share the transaction's underlying
+     * connection, and every join and end is counted.
+     */
+
+    public void testConcurrentJoin()
+        throws Exception
+    {
+        final TestDataSource ds = new TestDataSource();
+        final XAConnection[] xaConns = new XAConnection[8];
+        final Xid            xid = XidUtils.newGlobal();
+        final Throwable[]    failure = new Throwable[1];
+        XAConnection         first = ds.getXAConnection();
+        Thread[]             threads = new Thread[xaConns.length];
+        TxConnection         txConn;
+
+        first.getXAResource().start(xid, XAResource.TMNOFLAGS);
+        txConn = ds.getTxConnection(xid);
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            final int index = i;
+
+            xaConns[i] = ds.getXAConnection();
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        xaConns[index].getXAResource().start(xid, XAResource.TMJOIN);
+                    }
+                    catch (Throwable except)
+                    {
+                        failure[0] = except;
+                    }
+                }
+            };
+        }
+        runAll(threads);
+        assertNull(failure[0]);
+        assert("Same transaction connection", ds.getTxConnection(xid) == txConn);
+        assertEquals(xaConns.length + 1, txConn.count);
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            final int index = i;
+
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        xaConns[index].getXAResource().end(xid, XAResource.TMSUCCESS);
+                    }
+                    catch (Throwable except)
+                    {
+                        failure[0] = except;
+                    }
+                }
+            };
+        }
+        runAll(threads);
+        assertNull(failure[0]);
+        assertEquals(1, txConn.count);
+        first.getXAResource().end(xid, XAResource.TMFAIL);
+        assertEquals(0, txConn.count);
+        assertNull(ds.getTxConnection(xid));
+    }
+
+
+    /**
+     * <p>Several connections start the same transaction at the same
+     * time, without joining.</p>
+     *
+     * @result Exactly one connection starts the transaction, all others
+     * fail with XAER_DUPID.
+     */
+
+    public void testConcurrentDuplicateStart()
+        throws Exception
+    {
+        final TestDataSource ds = new TestDataSource();
+        final XAConnection[] xaConns = new XAConnection[8];
+        final Xid            xid = XidUtils.newGlobal();
+        final int[]          results = new int[2];
+        final Throwable[]    failure = new Throwable[1];
+        Thread[]             threads = new Thread[xaConns.length];
+
+        for (int i = 0; i < xaConns.length; ++i)
+        {
+            final int index = i;
+
+            xaConns[i] = ds.getXAConnection();
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        xaConns[index].getXAResource().start(xid, XAResource.TMNOFLAGS);
+                        synchronized (results)
+                        {
+                            ++results[0];
+                        }
+                    }
+                    catch (XAException except)
+                    {
+                        if (except.errorCode == XAException.XAER_DUPID)
+                        {
+                            synchronized (results)
+                            {
+                                ++results[1];
+                            }
+                        }
+                        else
+                        {
+                            failure[0] = except;
+                        }
+                    }
+                    catch (Throwable except)
+                    {
+                        failure[0] = except;
+                    }
+                }
+            };
+        }
+        runAll(threads);
+        assertNull(failure[0]);
+        assertEquals(1, results[0]);
+        assertEquals(xaConns.length - 1, results[1]);
+        assertNotNull(ds.getTxConnection(xid));
+        assertEquals(1, ds.getTxConnection(xid).count);
+    }
+
+
+    /**
+     * <p>Scan for the transactions recorded as prepared, more than
+     * fit in one page.</p>
+     *
+     * @result Each transaction is returned once, one page at a time,
+     * and the scan cannot continue after it ended. A scan started
+     * and ended in one call returns all the transactions.
+     */
+
+    public void testPagedRecover()
+        throws Exception
+    {
+        TestDataSource ds = new TestDataSource();
+        File           file = File.createTempFile("tyrex", ".log");
+        XAResource     xaRes;
+        HashSet        xids = new HashSet();
+        Xid[]          page;
+        int            pages = 0;
+
+        file.delete();
+        try
+        {
+            ds.setRecoveryLog(file.getPath());
+            for (int i = 0; i < 150; ++i)
+            {
+                Xid xid = XidUtils.newGlobal();
+
+                ds.prepared(xid);
+                xids.add(xid);
+            }
+            xaRes = ds.getXAConnection().getXAResource();
+            try
+            {
+                xaRes.recover(XAResource.TMNOFLAGS);
+                fail("Expected XAException");
+            }
+            catch (XAException except)
+            {
+                assertEquals(XAException.XAER_INVAL, except.errorCode);
+            }
+            page = xaRes.recover(XAResource.TMSTARTRSCAN);
+            while (page.length > 0)
+            {
+                ++pages;
+                assert("Page size", page.length <= 64);
+                for (int i = 0; i < page.length; ++i)
+                {
+                    assert("Returned once", xids.remove(page[i]));
+                }
+                page = xaRes.recover(XAResource.TMNOFLAGS);
+            }
+            assertEquals(3, pages);
+            assertEquals(0, xids.size());
+            assertEquals(0, xaRes.recover(XAResource.TMENDRSCAN).length);
+            // A scan started and ended in one call is not paged
+            assertEquals(150, xaRes.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN).length);
+            try
+            {
+                xaRes.recover(XAResource.TMNOFLAGS);
+                fail("Expected XAException");
+            }
+            catch (XAException except)
+            {
+                assertEquals(XAException.XAER_INVAL, except.errorCode);
+            }
+        }
+        finally
+        {
+            ds.setRecoveryLog(null);
+            file.delete();
+        }
+    }
+
+
+    /**
+     * Starts all the threads and waits for them to complete.
+     */
+    private static void runAll(Thread[] threads)
+        throws InterruptedException
+    {
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+    }
+
+
     /** Adds a message in the log (except if the log is null)*/
     private void logMessage(String message)
     {
@@ -117,4 +417,18 @@ public class XAConnectionImplTest extends TestCase
     {
         tyrex.Unit.runTests(args, suite());
     }
+
+
+    /**
+     * A data source that opens test connections instead of using
+     * a JDBC driver.
+     */
+    private static class TestDataSource
+        extends EnabledDataSource
+    {
+        public Connection getConnection(String user, String password)
+        {
+            return new TestConnection().getConnection();
+        }
+    }
 }
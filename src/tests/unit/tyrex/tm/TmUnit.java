@@ -46,7 +46,7 @@
 
 package tyrex.tm;
 
-//import tyrex.tm.impl.TmImplSuite;
+import tyrex.tm.impl.TmImplSuite;
 import tyrex.tm.xid.TmXidSuite;
 
 import junit.framework.TestSuite;
@@ -68,7 +68,7 @@ public class TmUnit
     public static TestSuite suite()
     {
         TestSuite suite = new TestSuite("TmUnit test harness");
-//        suite.addTest(TmImplSuite.suite());
+        suite.addTest(TmImplSuite.suite());
         suite.addTest(TmXidSuite.suite());
         return suite;
     }
@@ -0,0 +1,240 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.tm.impl;
+
+import javax.security.auth.Subject;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import tyrex.naming.MemoryBinding;
+
+
+/**
+ * Tests for the binding slot of {@link ThreadContext}.
+ */
+
+public class ThreadContextTest extends TestCase
+{
+    public ThreadContextTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Associate two thread contexts with a thread, one after the
+     * other, and dissociate them again.</p>
+     *
+     * @result The current bindings are those of the context last
+     * associated with the thread, then of the context it replaced, and
+     * finally of the thread's default context.
+     */
+
+    public void testSetUnset()
+        throws Throwable
+    {
+        runInThread(new Runnable()
+        {
+            public void run()
+            {
+                ThreadContext first = new ThreadContext((Subject) null);
+                ThreadContext second = new ThreadContext((Subject) null);
+                MemoryBinding initial;
+
+                initial = ThreadContext.getCurrentMemoryBinding();
+                assert("Default context", initial == ThreadContext.getThreadContext().getMemoryBinding());
+                assert("Same bindings", ThreadContext.getCurrentMemoryBinding() == initial);
+
+                ThreadContext.setThreadContext(first);
+                assert("First context", ThreadContext.getCurrentMemoryBinding() == first.getMemoryBinding());
+                ThreadContext.setThreadContext(second);
+                assert("Second context", ThreadContext.getCurrentMemoryBinding() == second.getMemoryBinding());
+
+                assert("Unset second", ThreadContext.unsetThreadContext() == second);
+                assert("First context restored",
+                       ThreadContext.getCurrentMemoryBinding() == first.getMemoryBinding());
+                assert("Unset first", ThreadContext.unsetThreadContext() == first);
+                assert("Default context restored", ThreadContext.getCurrentMemoryBinding() == initial);
+            }
+        });
+    }
+
+
+    /**
+     * <p>Associate a thread context with a thread, then clean up the
+     * thread.</p>
+     *
+     * @result The bindings of the context are no longer current, and a
+     * new default context is created for the thread.
+     */
+
+    public void testCleanup()
+        throws Throwable
+    {
+        runInThread(new Runnable()
+        {
+            public void run()
+            {
+                ThreadContext context = new ThreadContext((Subject) null);
+                MemoryBinding bindings;
+
+                ThreadContext.setThreadContext(context);
+                ThreadContext.cleanup(Thread.currentThread());
+                bindings = ThreadContext.getCurrentMemoryBinding();
+                assert("Context cleaned up", bindings != context.getMemoryBinding());
+                assert("New default context", bindings == ThreadContext.getThreadContext().getMemoryBinding());
+                ThreadContext.cleanup(Thread.currentThread());
+            }
+        });
+    }
+
+
+    /**
+     * <p>Associate a different thread context with each of several
+     * threads.</p>
+     *
+     * @result Each thread sees the bindings of its own context.
+     */
+
+    public void testThreads()
+        throws Throwable
+    {
+        Thread[]          threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    ThreadContext context = new ThreadContext((Subject) null);
+
+                    try
+                    {
+                        ThreadContext.setThreadContext(context);
+                        for (int j = 0; j < 1000; ++j)
+                        {
+                            assert("Own context", ThreadContext.getCurrentMemoryBinding() == context.getMemoryBinding());
+                            Thread.yield();
+                        }
+                        ThreadContext.unsetThreadContext();
+                    }
+                    catch (Throwable except)
+                    {
+                        failure[0] = except;
+                    }
+                    finally
+                    {
+                        ThreadContext.cleanup(Thread.currentThread());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i)
+        {
+            threads[i].join();
+        }
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+    }
+
+
+    /**
+     * Runs the test in a new thread, so the contexts associated with
+     * the current thread are not affected. Rethrows any failure.
+     */
+    private static void runInThread(final Runnable test)
+        throws Throwable
+    {
+        final Throwable[] failure = new Throwable[1];
+        Thread            thread;
+
+        thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    test.run();
+                }
+                catch (Throwable except)
+                {
+                    failure[0] = except;
+                }
+                finally
+                {
+                    ThreadContext.cleanup(Thread.currentThread());
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        TestSuite suite = new TestSuite(ThreadContextTest.class);
+        return suite;
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+}
@@ -0,0 +1,335 @@
+/**
+ * Redistribution and use of this software and associated documentation
+ * ("Software"), with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain copyright
+ *    statements and notices.  Redistributions must also contain a
+ *    copy of this document.
+ *
+ * 2. Redistributions in binary form must reproduce the
+ *    above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other
+ *    materials provided with the distribution.
+ *
+ * 3. The name "Exolab" must not be used to endorse or promote
+ *    products derived from this Software without prior written
+ *    permission of Intalio.  For written permission,
+ *    please contact info@exolab.org.
+ *
+ * 4. Products derived from this Software may not be called "Exolab"
+ *    nor may "Exolab" appear in their names without prior written
+ *    permission of Intalio. Exolab is a registered
+ *    trademark of Intalio.
+ *
+ * 5. Due credit should be given to the Exolab Project
+ *    (http://www.exolab.org/).
+ *
+ * THIS SOFTWARE IS PROVIDED BY INTALIO AND CONTRIBUTORS
+ * ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES, INCLUDING, BUT
+ * NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL
+ * INTALIO OR ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Copyright 1999-2001 (C) Intalio Inc. All Rights Reserved.
+ *
+ */
+
+
+package tyrex.tm.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.transaction.SystemException;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.omg.CosTransactions.Coordinator;
+import org.omg.CosTransactions.PropagationContext;
+import org.omg.CosTransactions.TransIdentity;
+import org.omg.CosTransactions.otid_t;
+
+
+/**
+ * Tests for the transactions imported by {@link TransactionDomainImpl}
+ * from an OTS propagation context.
+ */
+
+public class TransactionDomainImplTest extends TestCase
+{
+    public TransactionDomainImplTest(String name)
+    {
+        super(name);
+    }
+
+
+    /**
+     * <p>Recreate a transaction twice from the same propagation
+     * context.</p>
+     *
+     * @result The same transaction is returned both times, and it is
+     * registered with the remote coordinator only once. The
+     * transaction is found by findImportedTransaction.
+     */
+
+    public void testImportOnce()
+        throws Exception
+    {
+        TransactionDomainImpl domain = newDomain();
+        TestCoordinator       coordinator = new TestCoordinator();
+        PropagationContext    pgContext;
+        TransactionImpl       tx;
+
+        try
+        {
+            domain.recover();
+            pgContext = newContext(coordinator, 1, new byte[] {1, 2, 3, 4}, 4);
+            assert("Not imported yet", domain.findImportedTransaction(pgContext) == null);
+            tx = domain.recreateTransaction(pgContext);
+            assert("Transaction created", tx != null);
+            assert("Same transaction", domain.recreateTransaction(pgContext) == tx);
+            assertEquals("Registered", 1, coordinator.getRegistered());
+            assert("Imported", domain.findImportedTransaction(pgContext) == tx);
+        }
+        finally
+        {
+            domain.terminate();
+        }
+    }
+
+
+    /**
+     * <p>Recreate transactions from propagation contexts with equal
+     * transaction identifiers held in different arrays, with different
+     * branch qualifiers, and with a different format identifier.</p>
+     *
+     * @result The transaction is identified by the format identifier
+     * and the global transaction identifier only. A different format
+     * identifier imports a different transaction.
+     */
+
+    public void testImportKey()
+        throws Exception
+    {
+        TransactionDomainImpl domain = newDomain();
+        TestCoordinator       coordinator = new TestCoordinator();
+        TransactionImpl       tx;
+
+        try
+        {
+            domain.recover();
+            tx = domain.recreateTransaction(newContext(coordinator, 1, new byte[] {1, 2, 3, 4, 5}, 4));
+            assert("Equal identifier",
+                   domain.findImportedTransaction(newContext(coordinator, 1, new byte[] {1, 2, 3, 4, 5}, 4)) == tx);
+            assert("Different branch",
+                   domain.recreateTransaction(newContext(coordinator, 1, new byte[] {1, 2, 3, 4, 6}, 4)) == tx);
+            assert("Different global",
+                   domain.findImportedTransaction(newContext(coordinator, 1, new byte[] {1, 2, 3, 5, 5}, 4)) == null);
+            assert("Different length",
+                   domain.findImportedTransaction(newContext(coordinator, 1, new byte[] {1, 2, 3, 4, 5}, 3)) == null);
+            assert("Different format",
+                   domain.recreateTransaction(newContext(coordinator, 2, new byte[] {1, 2, 3, 4, 5}, 4)) != tx);
+            assertEquals("Registered", 2, coordinator.getRegistered());
+        }
+        finally
+        {
+            domain.terminate();
+        }
+    }
+
+
+    /**
+     * <p>Forget an imported transaction, then recreate it from the same
+     * propagation context.</p>
+     *
+     * @result The transaction is no longer found after it has been
+     * forgotten, and recreating it imports a new transaction.
+     */
+
+    public void testForget()
+        throws Exception
+    {
+        TransactionDomainImpl domain = newDomain();
+        TestCoordinator       coordinator = new TestCoordinator();
+        PropagationContext    pgContext;
+        TransactionImpl       tx;
+
+        try
+        {
+            domain.recover();
+            pgContext = newContext(coordinator, 1, new byte[] {1, 2, 3, 4}, 4);
+            tx = domain.recreateTransaction(pgContext);
+            domain.forgetTransaction(tx);
+            assert("Forgotten", domain.findImportedTransaction(pgContext) == null);
+            assert("New transaction", domain.recreateTransaction(pgContext) != tx);
+            assertEquals("Registered", 2, coordinator.getRegistered());
+        }
+        finally
+        {
+            domain.terminate();
+        }
+    }
+
+
+    /**
+     * <p>Import a transaction into a domain that has not been recovered
+     * yet, and into a domain that has been terminated.</p>
+     *
+     * @result Both findImportedTransaction and recreateTransaction throw
+     * SystemException, and no transaction is registered with the
+     * remote coordinator.
+     */
+
+    public void testInactiveDomain()
+        throws Exception
+    {
+        TransactionDomainImpl domain = newDomain();
+        TestCoordinator       coordinator = new TestCoordinator();
+        PropagationContext    pgContext;
+
+        pgContext = newContext(coordinator, 1, new byte[] {1, 2, 3, 4}, 4);
+        try
+        {
+            assertInactive("Not recovered", domain, pgContext);
+            domain.recover();
+            assert("Active", domain.recreateTransaction(pgContext) != null);
+        }
+        finally
+        {
+            domain.terminate();
+        }
+        assertInactive("Terminated", domain, pgContext);
+        assertEquals("Registered", 1, coordinator.getRegistered());
+    }
+
+
+    /**
+     * Asserts that the domain does not find or import the transaction.
+     */
+    private static void assertInactive(String message, TransactionDomainImpl domain,
+                                       PropagationContext pgContext)
+    {
+        try
+        {
+            domain.findImportedTransaction(pgContext);
+            fail(message + ": findImportedTransaction");
+        }
+        catch (SystemException except)
+        {
+            assertEquals(message, "Transaction domain not active", except.getMessage());
+        }
+        try
+        {
+            domain.recreateTransaction(pgContext);
+            fail(message + ": recreateTransaction");
+        }
+        catch (SystemException except)
+        {
+            assertEquals(message, "Transaction domain not active", except.getMessage());
+        }
+    }
+
+
+    /**
+     * Returns a new transaction domain. The domain is not active
+     * until recovered.
+     */
+    private static TransactionDomainImpl newDomain()
+        throws Exception
+    {
+        DomainConfig config = new DomainConfig();
+
+        config.setName("TransactionDomainImplTest");
+        return new TransactionDomainImpl(config);
+    }
+
+
+    /**
+     * Returns a propagation context for the OTS transaction identifier.
+     */
+    private static PropagationContext newContext(TestCoordinator coordinator, int formatID,
+                                                 byte[] tid, int bqualLength)
+    {
+        TransIdentity current;
+
+        current = new TransIdentity(coordinator.getCoordinator(), null,
+                                    new otid_t(formatID, bqualLength, tid));
+        return new PropagationContext(0, current, new TransIdentity[0], null);
+    }
+
+
+    // Compile the test suite.
+    public static TestSuite suite()
+    {
+        return new TestSuite(TransactionDomainImplTest.class);
+    }
+
+
+    // Allow this test to be run on its own.
+    public static void main(String args[])
+    {
+        tyrex.Unit.runTests(args, suite());
+    }
+
+
+    /**
+     * A remote coordinator that counts the resources registered
+     * with it.
+     */
+    private static class TestCoordinator
+        implements InvocationHandler
+    {
+        private final Coordinator _coordinator;
+
+
+        private int _registered;
+
+
+        TestCoordinator()
+        {
+            _coordinator = (Coordinator) Proxy.newProxyInstance(Coordinator.class.getClassLoader(),
+                                                                new Class[] {Coordinator.class}, this);
+        }
+
+
+        Coordinator getCoordinator()
+        {
+            return _coordinator;
+        }
+
+
+        synchronized int getRegistered()
+        {
+            return _registered;
+        }
+
+
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+        {
+            if (method.getName().equals("register_resource"))
+            {
+                ++_registered;
+                return null;
+            }
+            if (method.getName().equals("hashCode"))
+            {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            if (method.getName().equals("equals"))
+            {
+                return new Boolean(proxy == args[0]);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}